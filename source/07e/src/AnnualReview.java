@@ -12,6 +12,9 @@ import java.sql.Date;
  */
 public class AnnualReview {
     private final static Logger LOGGER = Logger.getLogger(AppController.class.getName());
+    private final static String REVIEWEE_SIGNED = "Reviewee Signed";
+    private final static String SUPERVISOR_SIGNED = "Supervisor Signed";
+    private final static String SECOND_REVIEWER_SIGNED = "Second Reviewer Signed";
     private Integer reviewID;
     private LinkedHashMap<String, String> details;
     private LinkedHashMap<String, Date> signatures;
@@ -31,9 +34,9 @@ public class AnnualReview {
         details.put("Job Title", null);
         details.put("Recommendation", null);
 
-        signatures.put("Reviewee Signed", null);
-        signatures.put("Supervisor Signed", null);
-        signatures.put("Second Reviewer Signed", null);
+        signatures.put(REVIEWEE_SIGNED, null);
+        signatures.put(SUPERVISOR_SIGNED, null);
+        signatures.put(SECOND_REVIEWER_SIGNED, null);
 
         reviews.put("A review of past performance: achievements and outcomes", null);
         reviews.put("A preview of future performance: goals/planned outcomes", null);
@@ -56,9 +59,9 @@ public class AnnualReview {
         details.put("Job Title", jobTitle);
         details.put("Recommendation", recommendation.toString());
 
-        signatures.put("Reviewee Signed", revieweeSigned);
-        signatures.put("Supervisor Signed", supervisorSigned);
-        signatures.put("Second Reviewer Signed", secondReviewerSigned);
+        signatures.put(REVIEWEE_SIGNED, revieweeSigned);
+        signatures.put(SUPERVISOR_SIGNED, supervisorSigned);
+        signatures.put(SECOND_REVIEWER_SIGNED, secondReviewerSigned);
 
         reviews.put("A review of past performance: achievements and outcomes", past);
         reviews.put("A preview of future performance: goals/planned outcomes", future);
@@ -150,26 +153,28 @@ public class AnnualReview {
      * @return Whether all 3 participants have signed this review.
      */
     boolean isComplete() {
-        return signatures.get("Reviewee") != null
-                && signatures.get("Supervisor") != null
-                && signatures.get("Second Reviewer") != null;
+        return signatures.get(REVIEWEE_SIGNED) != null
+                && signatures.get(SUPERVISOR_SIGNED) != null
+                && signatures.get(SECOND_REVIEWER_SIGNED) != null;
     }
 
     /**
      * Signs this review as the given user.
      * @param signee The staff number of the user to sign off the review as.
+     * @return Whether the review was signed, i.e. it was incomplete and the signee is on it.
      */
     boolean signOff(String signee) {
         if (!isComplete()) {
             if (signee.equals(details.get("Staff No"))) {
-                signatures.put("Reviewee", new Date(System.currentTimeMillis()));
+                signatures.put(REVIEWEE_SIGNED, new Date(System.currentTimeMillis()));
             } else if (signee.equals(details.get("Supervisor"))) {
-                signatures.put("Supervisor", new Date(System.currentTimeMillis()));
+                signatures.put(SUPERVISOR_SIGNED, new Date(System.currentTimeMillis()));
             } else if (signee.equals(details.get("Second Reviewer"))) {
-                signatures.put("Second Reviewer", new Date(System.currentTimeMillis()));
+                signatures.put(SECOND_REVIEWER_SIGNED, new Date(System.currentTimeMillis()));
             } else {
                 return false;
             }
+            return true;
         }
         return false;
     }
@@ -183,13 +188,13 @@ public class AnnualReview {
         if(staffNo != null) {
             if (staffNo.equals(details.get("Staff No"))) {
                 //User is the reviewee.
-                signatures.put("Staff No", new Date(System.currentTimeMillis()));
+                signatures.put(REVIEWEE_SIGNED, new Date(System.currentTimeMillis()));
             } else if (staffNo.equals(details.get("Supervisor"))) {
                 //User is the related supervisor.
-                signatures.put("Supervisor", new Date(System.currentTimeMillis()));
+                signatures.put(SUPERVISOR_SIGNED, new Date(System.currentTimeMillis()));
             } else if (staffNo.equals(details.get("Second Reviewer"))) {
                 //User is the second reviewer.
-                signatures.put("SecondReviewer", new Date(System.currentTimeMillis()));
+                signatures.put(SECOND_REVIEWER_SIGNED, new Date(System.currentTimeMillis()));
             }
         }
     }
@@ -200,9 +205,9 @@ public class AnnualReview {
      */
     boolean resetSignatures() {
         if (!isComplete()) {
-            signatures.put("Reviewee", null);
-            signatures.put("Supervisor", null);
-            signatures.put("Second Reviewer", null);
+            signatures.put(REVIEWEE_SIGNED, null);
+            signatures.put(SUPERVISOR_SIGNED, null);
+            signatures.put(SECOND_REVIEWER_SIGNED, null);
             return true;
         } else {
             return false;
@@ -0,0 +1,44 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AnnualReviewTests
+{
+    public AnnualReviewTests()
+    {
+    }
+
+    private AnnualReview unsignedReview()
+    {
+        return new AnnualReview(1, "0001", "Sam Harris", "0002", "0003", "Sales", "Clerk",
+                Recommendation.STAY_IN_POST, null, null, null, null, null);
+    }
+
+    @Test
+    public void reviewIsCompleteOnceEveryoneSigns()
+    {
+        AnnualReview review = unsignedReview();
+        assertTrue(review.signOff("0001"));
+        assertTrue(review.signOff("0002"));
+        assertFalse(review.isComplete());
+        assertTrue(review.signOff("0003"));
+        assertTrue(review.isComplete());
+    }
+
+    @Test
+    public void signaturesAreStoredInTheirColumns()
+    {
+        AnnualReview review = unsignedReview();
+        review.signOff("0002");
+        //One signature per column: reviewee, supervisor, second reviewer.
+        assertEquals(3, review.getSignatures().size());
+        assertNull(review.getSignatures().get(0));
+        assertNotNull(review.getSignatures().get(1));
+        assertNull(review.getSignatures().get(2));
+    }
+
+    @Test
+    public void strangersCantSign()
+    {
+        assertFalse(unsignedReview().signOff("9999"));
+    }
+}
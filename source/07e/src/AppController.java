@@ -1,5 +1,6 @@
 import javax.xml.crypto.Data;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.sql.Date;
 import java.time.LocalDate;
 import java.util.*;
@@ -35,7 +36,10 @@ class AppController{
         input = new Scanner(in);
         AppLogger.addHandler(LOGGER);
         LOGGER.log(Level.FINEST, "App Controller Constructed");
-        DatabaseController.connect();
+        //Keeps a repository that is already connected, e.g. a test's in-memory repository.
+        if (!DatabaseController.isConnected()) {
+            DatabaseController.connect();
+        }
     }
 
     /**
@@ -55,6 +59,17 @@ class AppController{
         System.out.println("Thank you for using the Yuconz System!");
     }
 
+    /**
+     * Runs the commands read from this controller's input as a script, without the menus.
+     * See {@link ScriptRunner} for the commands.
+     * @param report Where the outcome of each command is reported.
+     * @return The number of commands which weren't run successfully.
+     */
+    int runScript(PrintStream report) {
+        LOGGER.log(Level.INFO, "Began runScript Method");
+        return new ScriptRunner(this, report).run(input);
+    }
+
     /**
      * Displays the login page to the user and prompts for input.
      * Calls the method relevant to the action the user selects.
@@ -96,7 +111,10 @@ class AppController{
      * @param role The role the user has requested for this session.
      */
     void login(String user, String password, Role role) {
-        activeSession = Authenticator.authenticate(user, password, role);
+        try (Tracer.Span span = Tracer.startTrace("AppController.login")) {
+            activeSession = Authenticator.authenticate(user, password, role);
+            span.tag("exitCode", activeSession.getExitCode().name());
+        }
         LOGGER.log(Level.INFO, "Began login Method");
     }
 
@@ -197,10 +215,21 @@ class AppController{
     }
 
     /**
-     * Runs the appropriate method for a user-selected action
+     * Runs the appropriate method for a user-selected action, as a single trace.
      * @param chosenAction The action to run the method for
      */
     private void runAction(Permission chosenAction) {
+        try (Tracer.Span span = Tracer.startTrace("AppController.runAction")) {
+            span.tag("action", chosenAction.name()).tag("role", activeSession.getRole());
+            performAction(chosenAction);
+        }
+    }
+
+    /**
+     * Runs the appropriate method for a user-selected action
+     * @param chosenAction The action to run the method for
+     */
+    private void performAction(Permission chosenAction) {
         String targetID;
         switch (chosenAction) {
             case READ_PERSONAL_DETAILS:
@@ -254,6 +283,24 @@ class AppController{
                 }
                 break;
 
+            case SEARCH_PERSONAL_DETAILS:
+                targetID = activeSession.getUsername();
+                if (Authoriser.getAuthorisation(activeSession, chosenAction, targetID)) {
+                    System.out.println("Please input a surname or post code, or the start of one.");
+                    String text = input.nextLine();
+                    LOGGER.log(Level.INFO, targetID + " searched personal details for " + text);
+                    Map<String, String[]> matches =
+                            DatabaseController.searchPersonalDetails(text, 20);
+                    if (matches.size() > 0) {
+                        System.out.printf("%-10s %-20s %s%n", "Staff No", "Surname", "Post Code");
+                        matches.forEach((staffNo, values) -> System.out.printf(
+                                "%-10s %-20s %s%n", staffNo, values[0], values[1]));
+                    } else {
+                        System.out.println("No employees matched.");
+                    }
+                }
+                break;
+
             case CREATE_ANNUAL_REVIEW:
                 targetID = activeSession.getUsername();
                 if (Authoriser.getAuthorisation(activeSession, chosenAction, targetID)) {
@@ -314,6 +361,64 @@ class AppController{
                 }
                 break;
 
+            case MANAGER_READ_ANNUAL_REVIEW:
+                System.out.println("Please input the ID of the employee whose reviews " +
+                        "you wish to read.");
+                targetID = input.nextLine();
+                if (Authoriser.getAuthorisation(activeSession, chosenAction, targetID)) {
+                    LOGGER.log(Level.INFO, "Reading reviews of managed employee " + targetID);
+                    List<AnnualReview> reviews = DatabaseController.getReviews(targetID);
+                    if (reviews.size() > 0) {
+                        reviews.forEach(this::readReview);
+                    } else {
+                        System.out.println("This employee has no reviews.");
+                    }
+                } else {
+                    System.out.println("You do not manage this employee.");
+                }
+                break;
+
+            case ASSIGN_SECOND_REVIEWERS:
+                targetID = activeSession.getUsername();
+                if (Authoriser.getAuthorisation(activeSession, chosenAction, targetID)) {
+                    LOGGER.log(Level.INFO, targetID + " began assigning second reviewers");
+                    Map<Integer, String> assigned = ReviewerAssignment.assignAll();
+                    System.out.println("Assigned second reviewers to " + assigned.size() +
+                            " reviews.");
+                }
+                break;
+
+            case VIEW_REVIEW_COUNTS:
+                targetID = activeSession.getUsername();
+                if (Authoriser.getAuthorisation(activeSession, chosenAction, targetID)) {
+                    LOGGER.log(Level.INFO, targetID + " viewed the review counts");
+                    System.out.printf("%-20s %8s %8s %8s%n", "Section", "Open", "Awaiting",
+                            "Complete");
+                    DatabaseController.getReviewStatusCounts().forEach((section, counts) ->
+                            System.out.printf("%-20s %8d %8d %8d%n", section, counts.get("open"),
+                                    counts.get("awaiting"), counts.get("complete")));
+                }
+                break;
+
+            case SEARCH_ANNUAL_REVIEWS:
+                targetID = activeSession.getUsername();
+                if (Authoriser.getAuthorisation(activeSession, chosenAction, targetID)) {
+                    System.out.println("Please input the words to search for " +
+                            "(end a word with * to match words starting with it).");
+                    String query = input.nextLine();
+                    LOGGER.log(Level.INFO, targetID + " searched the reviews for " + query);
+                    List<Map<String, String>> matches = DatabaseController.searchReviews(query, 20);
+                    if (matches.size() > 0) {
+                        for (Map<String, String> match : matches) {
+                            System.out.printf("Review %-6s %-20s %s%n", match.get("reviewID"),
+                                    match.get("field"), match.get("snippet"));
+                        }
+                    } else {
+                        System.out.println("No reviews matched.");
+                    }
+                }
+                break;
+
             case SIGN_ANNUAL_REVIEW:
                 if (activeSession.getRole() == Role.REVIEWER) {
                     //Signing off as a reviewer.
@@ -327,10 +432,14 @@ class AppController{
                             LOGGER.log(Level.INFO, activeSession.getUsername() +
                                     " given sign off permission for " + targetID + ".");
                             AnnualReview review = DatabaseController.getUnfinishedReview(targetID);
-                            review.signOff(
-                                    DatabaseController.getStaffNo(activeSession.getUsername()));
-                            DatabaseController.updateAnnualReview(review);
-                            System.out.println("Signed off successfully");
+                            if (review == null) {
+                                System.out.println("There is no unfinished review to sign off.");
+                            } else {
+                                review.signOff(
+                                        DatabaseController.getStaffNo(activeSession.getUsername()));
+                                DatabaseController.updateAnnualReview(review);
+                                System.out.println("Signed off successfully");
+                            }
                         } else {
                             System.out.println("Authorisation denied.");
                         }
@@ -344,9 +453,13 @@ class AppController{
                         LOGGER.log(Level.INFO, activeSession.getUsername() +
                                 " given sign off permission for " + targetID + ".");
                         AnnualReview review = DatabaseController.getUnfinishedReview(targetID);
-                        review.signOff(DatabaseController.getStaffNo(targetID));
-                        DatabaseController.updateAnnualReview(review);
-                        System.out.println("Signed off successfully");
+                        if (review == null) {
+                            System.out.println("There is no unfinished review to sign off.");
+                        } else {
+                            review.signOff(DatabaseController.getStaffNo(targetID));
+                            DatabaseController.updateAnnualReview(review);
+                            System.out.println("Signed off successfully");
+                        }
                     }
                 }
                 break;
@@ -384,7 +497,13 @@ class AppController{
         System.out.println(review.printAllDetails());
     }
 
-    private boolean createNewReview() {
+    /**
+     * Creates a new annual review for the logged-in user, if one is due.
+     * A review is due if the user has none, or if all of theirs are complete and the newest
+     *  was about six months ago.
+     * @return Whether a review was created.
+     */
+    boolean createNewReview() {
         ArrayList<AnnualReview> reviews = new ArrayList<>(
                 DatabaseController.getReviews(activeSession.getUsername()));
         if (reviews.size() > 0) {
@@ -0,0 +1,34 @@
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/**
+ * Formats application log records in the format:
+ * XXXXms : {ClassName} : {Log.Level} : Message
+ * A single StringBuilder is reused between records, so format is synchronized.
+ * Records are normally formatted by the AsyncLogHandler's flusher thread, which is never
+ *  contended, so the lock costs nothing in practice.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class AppLogFormatter extends Formatter {
+    private final long initTime;
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * Creates a formatter which prints times relative to the given start time.
+     * @param initTime The time the application started, in milliseconds since the epoch.
+     */
+    AppLogFormatter(long initTime) {
+        this.initTime = initTime;
+    }
+
+    @Override
+    public synchronized String format(LogRecord record) {
+        line.setLength(0);
+        line.append(record.getMillis() - initTime).append("ms : ");
+        line.append(record.getLoggerName()).append(" : ");
+        line.append(record.getLevel()).append(" : ");
+        line.append(record.getMessage()).append(".\n");
+        return line.toString();
+    }
+}
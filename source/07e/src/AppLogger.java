@@ -2,9 +2,9 @@ import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.logging.FileHandler;
+import java.util.logging.Handler;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
-import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
@@ -12,6 +12,9 @@ import java.util.logging.Logger;
  *  A logger class which formats and stores application logs for the running operation of our
  *  program. Currently globally manages the logger levels for all classes and stores them
  *  within an external log.
+ * Records are written by an AsyncLogHandler, so logging doesn't add I/O to user actions.
+ * The queue size is set by "yuconz.log.queueSize" (default 8192), and "yuconz.log.whenFull"
+ *  chooses whether a full queue drops records ("drop", the default) or blocks ("block").
  * @author MD485
  * @version 20190310
  */
@@ -19,6 +22,8 @@ class AppLogger {
     //The file logger used to write the logs to a file.
     private static FileHandler fileLogger;
     private static ConsoleHandler consoleLogger;
+    //Publishes records to the file and console loggers on its own thread.
+    private static AsyncLogHandler asyncLogger;
     //The theoretical time the application starts. It's roughly 20ms too slow on average,
     //I believe this is because this class gets initialised when it's used and that's
     //some ms after the app controller gets initialized.
@@ -43,21 +48,18 @@ class AppLogger {
         //Makes sure the logger follows a specialised format, to be human readable if required.
         //Stores things in the format:
         //XXXXms : {ClassName} : {Log.Level} : Message
-        Formatter format = new Formatter() {
-            @Override
-            public String format(LogRecord record) {
-                String fString = "";
-                fString += record.getMillis() - INIT_TIME + "ms : ";
-                fString += record.getLoggerName() + " : ";
-                fString += record.getLevel() + " : ";
-                fString += record.getMessage() + ".\n";
-                return fString;
-            }
-        };
+        AppLogFormatter format = new AppLogFormatter(INIT_TIME);
 
         //Appends to the file.
         fileLogger.setFormatter(format);
         //consoleLogger.setFormatter(format);
+
+        asyncLogger = new AsyncLogHandler(Integer.getInteger("yuconz.log.queueSize", 8192),
+                "block".equals(System.getProperty("yuconz.log.whenFull")),
+                fileLogger, consoleLogger);
+        AppMetrics.registerGauge("yuconz_log_records_dropped",
+                "Log records dropped because the log queue was full.",
+                asyncLogger::getDroppedCount);
     }
 
     /**
@@ -94,8 +96,13 @@ class AppLogger {
         logger.setUseParentHandlers(false);
         //This appends all loggers passed into this method to the file logger, meaning they'll
         // be written to the log file specified by the fileLogger instance.
-        logger.addHandler(fileLogger);
-        logger.addHandler(consoleLogger);
+        //Records go through the async logger, which passes them to the file and console loggers.
+        for (Handler handler : logger.getHandlers()) {
+            if (handler == asyncLogger) {
+                return;
+            }
+        }
+        logger.addHandler(asyncLogger);
     }
 
     /**
@@ -103,7 +110,8 @@ class AppLogger {
      * closes unexpectedly.
      */
     static void shutdown() {
-        fileLogger.close();
+        //Closing the async logger publishes any queued records, then closes the file logger.
+        asyncLogger.close();
     }
 
     static void startLogging() {
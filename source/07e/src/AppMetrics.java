@@ -0,0 +1,310 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects application metrics and serves them in the Prometheus text format.
+ * Recording a metric only touches LongAdders, so the request path never takes a lock.
+ * The HTTP listener is only started if the "yuconz.metrics.port" system property is set,
+ *  and it only listens on the loopback address.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class AppMetrics {
+    private final static Logger LOGGER = Logger.getLogger(AppMetrics.class.getName());
+    //Upper bounds, in seconds, of the query latency histogram buckets.
+    private final static double[] LATENCY_BUCKETS =
+            {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5};
+    private final static LongAdder[] loginAttempts = newAdders(ExitCode.values().length);
+    private final static LongAdder[] grants = newAdders(Permission.values().length);
+    private final static LongAdder[] denials = newAdders(Permission.values().length);
+    private final static ConcurrentHashMap<String, Histogram> queryLatency =
+            new ConcurrentHashMap<>();
+    //Cache requests are stored as {hits, misses} for each named cache.
+    private final static ConcurrentHashMap<String, LongAdder[]> cacheRequests =
+            new ConcurrentHashMap<>();
+    private final static ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private static HttpServer server;
+
+    /**
+     * Records the outcome of a call to Authenticator.authenticate.
+     * @param exitCode The exit code of the created session.
+     */
+    static void recordLogin(ExitCode exitCode) {
+        loginAttempts[exitCode.ordinal()].increment();
+    }
+
+    /**
+     * Records the outcome of a call to Authoriser.getAuthorisation.
+     * @param permission The permission that was checked.
+     * @param granted Whether the permission was granted.
+     */
+    static void recordAuthorisation(Permission permission, boolean granted) {
+        if (granted) {
+            grants[permission.ordinal()].increment();
+        } else {
+            denials[permission.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Records the time spent executing a single SQL statement.
+     * @param sqlId The identifier of the statement, usually the DAO method name.
+     * @param nanos How long the statement took, in nanoseconds.
+     */
+    static void recordQuery(String sqlId, long nanos) {
+        Histogram histogram = queryLatency.get(sqlId);
+        if (histogram == null) {
+            histogram = queryLatency.computeIfAbsent(sqlId, (x) -> new Histogram());
+        }
+        histogram.observe(nanos / 1e9);
+    }
+
+    /**
+     * Records a hit in the named cache.
+     * @param cache The name of the cache.
+     */
+    static void cacheHit(String cache) {
+        cacheAdders(cache)[0].increment();
+    }
+
+    /**
+     * Records a miss in the named cache.
+     * @param cache The name of the cache.
+     */
+    static void cacheMiss(String cache) {
+        cacheAdders(cache)[1].increment();
+    }
+
+    /**
+     * Registers a gauge which is sampled every time the metrics are scraped.
+     * Registering a gauge with an existing name replaces the old gauge.
+     * @param name The metric name, optionally followed by a label set.
+     * @param help The description of the metric.
+     * @param value Supplies the current value of the gauge.
+     */
+    static void registerGauge(String name, String help, DoubleSupplier value) {
+        gauges.put(name, new Gauge(help, value));
+    }
+
+    /**
+     * Starts the metrics listener if a port has been configured.
+     * The listener runs on its own daemon thread and serves GET /metrics.
+     */
+    static synchronized void startServer() {
+        Integer port = Integer.getInteger("yuconz.metrics.port");
+        if (port == null || server != null) {
+            return;
+        }
+        try {
+            server = HttpServer.create(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", (exchange) -> {
+                byte[] body = render().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type",
+                        "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(Executors.newSingleThreadExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "yuconz-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+            LOGGER.log(Level.INFO, "Serving metrics on localhost:" + port);
+        } catch (IOException e) {
+            System.err.println("Could not start the metrics listener: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the metrics listener, if it is running.
+     */
+    static synchronized void stopServer() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format.
+     * @return The current value of every metric.
+     */
+    static String render() {
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "yuconz_login_attempts_total", "Authentication attempts by exit code.",
+                "counter");
+        for (ExitCode exitCode : ExitCode.values()) {
+            sample(out, "yuconz_login_attempts_total{exit_code=\"" + exitCode.name() + "\"}",
+                    loginAttempts[exitCode.ordinal()].sum());
+        }
+
+        header(out, "yuconz_authorisations_total", "Authorisation checks by permission " +
+                "and decision.", "counter");
+        for (Permission permission : Permission.values()) {
+            String labels = "{permission=\"" + permission.name() + "\",decision=\"";
+            sample(out, "yuconz_authorisations_total" + labels + "granted\"}",
+                    grants[permission.ordinal()].sum());
+            sample(out, "yuconz_authorisations_total" + labels + "denied\"}",
+                    denials[permission.ordinal()].sum());
+        }
+
+        header(out, "yuconz_query_duration_seconds", "SQL statement execution time.",
+                "histogram");
+        for (Map.Entry<String, Histogram> entry : queryLatency.entrySet()) {
+            entry.getValue().render(out, "yuconz_query_duration_seconds",
+                    "sql_id=\"" + entry.getKey() + "\"");
+        }
+
+        header(out, "yuconz_cache_requests_total", "Cache lookups by result.", "counter");
+        for (Map.Entry<String, LongAdder[]> entry : cacheRequests.entrySet()) {
+            String labels = "{cache=\"" + entry.getKey() + "\",result=\"";
+            sample(out, "yuconz_cache_requests_total" + labels + "hit\"}",
+                    entry.getValue()[0].sum());
+            sample(out, "yuconz_cache_requests_total" + labels + "miss\"}",
+                    entry.getValue()[1].sum());
+        }
+        header(out, "yuconz_cache_hit_ratio", "Fraction of cache lookups that hit.", "gauge");
+        for (Map.Entry<String, LongAdder[]> entry : cacheRequests.entrySet()) {
+            long hits = entry.getValue()[0].sum();
+            long total = hits + entry.getValue()[1].sum();
+            sample(out, "yuconz_cache_hit_ratio{cache=\"" + entry.getKey() + "\"}",
+                    total == 0 ? 0 : (double) hits / total);
+        }
+
+        String lastGauge = null;
+        for (Map.Entry<String, Gauge> entry : new TreeMap<>(gauges).entrySet()) {
+            String name = entry.getKey();
+            int labelStart = name.indexOf('{');
+            String baseName = labelStart < 0 ? name : name.substring(0, labelStart);
+            if (!baseName.equals(lastGauge)) {
+                header(out, baseName, entry.getValue().help, "gauge");
+                lastGauge = baseName;
+            }
+            sample(out, name, entry.getValue().value.getAsDouble());
+        }
+
+        renderJvm(out);
+        return out.toString();
+    }
+
+    /**
+     * Appends heap usage and garbage collection figures for this JVM.
+     * @param out The builder to append the metrics to.
+     */
+    private static void renderJvm(StringBuilder out) {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        header(out, "jvm_memory_heap_bytes", "JVM heap usage.", "gauge");
+        sample(out, "jvm_memory_heap_bytes{area=\"used\"}", heap.getUsed());
+        sample(out, "jvm_memory_heap_bytes{area=\"committed\"}", heap.getCommitted());
+        sample(out, "jvm_memory_heap_bytes{area=\"max\"}", heap.getMax());
+
+        header(out, "jvm_gc_collections_total", "Garbage collections by collector.",
+                "counter");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(out, "jvm_gc_collections_total{gc=\"" + gc.getName() + "\"}",
+                    gc.getCollectionCount());
+        }
+        header(out, "jvm_gc_collection_seconds_total", "Time spent in garbage collection.",
+                "counter");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample(out, "jvm_gc_collection_seconds_total{gc=\"" + gc.getName() + "\"}",
+                    gc.getCollectionTime() / 1e3);
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, double value) {
+        out.append(name).append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static LongAdder[] cacheAdders(String cache) {
+        LongAdder[] adders = cacheRequests.get(cache);
+        if (adders == null) {
+            adders = cacheRequests.computeIfAbsent(cache, (x) -> newAdders(2));
+        }
+        return adders;
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * A fixed-bucket latency histogram.
+     */
+    private static class Histogram {
+        private final LongAdder[] buckets = newAdders(LATENCY_BUCKETS.length + 1);
+        private final DoubleAdder sum = new DoubleAdder();
+
+        void observe(double seconds) {
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS.length && seconds > LATENCY_BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            sum.add(seconds);
+        }
+
+        void render(StringBuilder out, String name, String labels) {
+            long cumulative = 0;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                cumulative += buckets[i].sum();
+                sample(out, name + "_bucket{" + labels + ",le=\"" + LATENCY_BUCKETS[i] + "\"}",
+                        cumulative);
+            }
+            cumulative += buckets[LATENCY_BUCKETS.length].sum();
+            sample(out, name + "_bucket{" + labels + ",le=\"+Inf\"}", cumulative);
+            sample(out, name + "_sum{" + labels + "}", sum.sum());
+            sample(out, name + "_count{" + labels + "}", cumulative);
+        }
+    }
+
+    /**
+     * A gauge sampled when the metrics are rendered.
+     */
+    private static class Gauge {
+        private final String help;
+        private final DoubleSupplier value;
+
+        Gauge(String help, DoubleSupplier value) {
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler which hands records to a dedicated flusher thread,
+ *  so formatting and I/O no longer happen on the thread doing the logging.
+ * Records wait in a bounded queue. When the queue is full, the record is either dropped
+ *  and counted, or the logging thread blocks until there is room, depending on the policy.
+ * The number of dropped records is logged by the flusher once there is room again.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class AsyncLogHandler extends Handler {
+    //The most records the flusher publishes before flushing the targets.
+    private final static int BATCH_SIZE = 256;
+    private final ArrayBlockingQueue<LogRecord> queue;
+    private final boolean blockWhenFull;
+    private final Handler[] targets;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread flusher;
+    private long droppedReported;
+    private volatile boolean closed;
+
+    /**
+     * Creates an asynchronous handler and starts its flusher thread.
+     * @param capacity How many records may wait to be published.
+     * @param blockWhenFull Whether to block (true) or drop the record (false) when full.
+     * @param targets The handlers the records are published to, on the flusher thread.
+     */
+    AsyncLogHandler(int capacity, boolean blockWhenFull, Handler... targets) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.blockWhenFull = blockWhenFull;
+        this.targets = targets;
+        setLevel(Level.ALL);
+        flusher = new Thread(this::flushLoop, "yuconz-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Queues a record to be published by the flusher thread.
+     * @param record The record to publish.
+     */
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        //The source is found from the stack when first asked for, so it must be asked for
+        // here, on the logging thread, not by the formatter on the flusher thread.
+        record.getSourceClassName();
+        record.getSourceMethodName();
+        if (blockWhenFull) {
+            try {
+                queue.put(record);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment();
+            }
+        } else if (!queue.offer(record)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Returns the number of records dropped because the queue was full.
+     * @return The number of dropped records.
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Waits until every queued record has been published, then flushes the targets.
+     */
+    @Override
+    public void flush() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!queue.isEmpty() && flusher.isAlive() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+            Thread.yield();
+        }
+        for (Handler target : targets) {
+            target.flush();
+        }
+    }
+
+    /**
+     * Publishes every queued record, stops the flusher thread and closes the targets.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler target : targets) {
+            target.close();
+        }
+    }
+
+    /**
+     * The body of the flusher thread.
+     * Takes records in batches and publishes them to every target,
+     *  until the handler is closed and the queue is empty.
+     */
+    private void flushLoop() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                LogRecord first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                //Interrupted by close(), drain whatever is left.
+            }
+            queue.drainTo(batch, BATCH_SIZE - batch.size());
+            reportDrops(batch);
+            for (LogRecord record : batch) {
+                for (Handler target : targets) {
+                    target.publish(record);
+                }
+            }
+            for (Handler target : targets) {
+                target.flush();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Adds a warning to the batch if records have been dropped since the last warning.
+     * @param batch The batch of records about to be published.
+     */
+    private void reportDrops(List<LogRecord> batch) {
+        long total = dropped.sum();
+        if (total > droppedReported) {
+            LogRecord warning = new LogRecord(Level.WARNING, (total - droppedReported) +
+                    " log records were dropped because the log queue was full");
+            warning.setLoggerName(AsyncLogHandler.class.getName());
+            batch.add(0, warning);
+            droppedReported = total;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A compact binary format for audit log records.
+ * A file starts with the magic number and version, followed by one entry per record.
+ * Each entry starts with a tag byte giving the kind of record, and for authorisation
+ *  records whether the action was authorised.
+ * Timestamps are stored as varints, as the difference from the previous record's timestamp.
+ * Usernames are stored once per file in a dictionary, and referred to by their position
+ *  in it after that. Roles, permissions and exit codes are stored as their ordinals.
+ * Records that don't have the expected shape are stored as text, so nothing is lost.
+ * The Reader gives records back in the same CSV format the Authenticator and
+ *  Authoriser write.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class AuditCodec {
+    private final static int MAGIC = 0x59415544; //"YAUD"
+    private final static int VERSION = 1;
+    private final static int TEXT = 0;
+    private final static int AUTHENTICATION = 1;
+    private final static int AUTHORISATION = 2;
+    private final static int KIND_MASK = 3;
+    private final static int AUTHORISED = 4;
+    private final static Role[] roles = Role.values();
+    private final static Permission[] permissions = Permission.values();
+    private final static ExitCode[] exitCodes = ExitCode.values();
+
+    /**
+     * Writes audit records in the binary format.
+     */
+    static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final HashMap<String, Integer> dictionary = new HashMap<>();
+        private long lastTimestamp;
+
+        /**
+         * Creates a writer and writes the file header.
+         * @param out The stream to write to. It is closed when the writer is closed.
+         * @throws IOException If the header could not be written.
+         */
+        Writer(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+        }
+
+        /**
+         * Writes a record given in the CSV format of the audit logs.
+         * @param record An authentication or authorisation record.
+         * @throws IOException If the record could not be written.
+         */
+        void write(String record) throws IOException {
+            String[] fields = record.split(",", -1);
+            try {
+                if (fields.length == 4) {
+                    ExitCode exitCode = ExitCode.valueOf(fields[3]);
+                    Role role = role(fields[2]);
+                    long timestamp = Long.parseLong(fields[0]);
+                    out.writeByte(AUTHENTICATION);
+                    writeHeader(timestamp, fields[1], role);
+                    writeVarint(exitCode.ordinal());
+                    return;
+                } else if (fields.length == 6 && (fields[5].equals("Authorised")
+                        || fields[5].equals("Not Authorised"))) {
+                    Permission permission = Permission.valueOf(fields[3]);
+                    Role role = role(fields[2]);
+                    long timestamp = Long.parseLong(fields[0]);
+                    boolean authorised = fields[5].equals("Authorised");
+                    out.writeByte(AUTHORISATION | (authorised ? AUTHORISED : 0));
+                    writeHeader(timestamp, fields[1], role);
+                    writeVarint(permission.ordinal());
+                    writeString(fields[4]);
+                    return;
+                }
+            } catch (IllegalArgumentException e) {
+                //Not a record we know how to encode, so store it as text.
+            }
+            out.writeByte(TEXT);
+            byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        private void writeHeader(long timestamp, String username, Role role) throws IOException {
+            long delta = timestamp - lastTimestamp;
+            //Zigzag encode the delta, as records from concurrent sessions can be out of order.
+            writeVarint((delta << 1) ^ (delta >> 63));
+            lastTimestamp = timestamp;
+            writeString(username);
+            writeVarint(role.ordinal());
+        }
+
+        /**
+         * Writes a reference to a string in the dictionary,
+         *  adding the string after the reference if it is new.
+         * @param value The string to write.
+         * @throws IOException If the reference could not be written.
+         */
+        private void writeString(String value) throws IOException {
+            Integer index = dictionary.get(value);
+            if (index != null) {
+                writeVarint(index);
+                return;
+            }
+            writeVarint(dictionary.size());
+            dictionary.put(value, dictionary.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            out.write(bytes);
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+    }
+
+    /**
+     * Reads audit records written in the binary format, giving them back as CSV.
+     */
+    static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final List<String> dictionary = new ArrayList<>();
+        private final StringBuilder line = new StringBuilder(96);
+        private long lastTimestamp;
+
+        /**
+         * Creates a reader and checks the file header.
+         * @param in The stream to read from. It is closed when the reader is closed.
+         * @throws IOException If the stream is not in the binary format.
+         */
+        Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in));
+            if (this.in.readInt() != MAGIC || this.in.readUnsignedByte() != VERSION) {
+                throw new IOException("Not a binary audit log");
+            }
+        }
+
+        /**
+         * Reads the next record.
+         * @return The record in the CSV format of the audit logs, or null at the end of the file.
+         * @throws IOException If the record could not be read.
+         */
+        String readRecord() throws IOException {
+            int tag = in.read();
+            if (tag < 0) {
+                return null;
+            }
+            try {
+                if ((tag & KIND_MASK) == TEXT) {
+                    byte[] bytes = new byte[(int) readVarint()];
+                    in.readFully(bytes);
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+                long zigzag = readVarint();
+                lastTimestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+                line.setLength(0);
+                line.append(lastTimestamp).append(',');
+                line.append(readString()).append(',');
+                line.append(roles[(int) readVarint()]).append(',');
+                if ((tag & KIND_MASK) == AUTHENTICATION) {
+                    line.append(exitCodes[(int) readVarint()].name());
+                } else {
+                    line.append(permissions[(int) readVarint()].name()).append(',');
+                    line.append(readString()).append(',');
+                    line.append((tag & AUTHORISED) != 0 ? "Authorised" : "Not Authorised");
+                }
+                return line.toString();
+            } catch (EOFException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Corrupt binary audit log", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private String readString() throws IOException {
+            int index = (int) readVarint();
+            if (index < dictionary.size()) {
+                return dictionary.get(index);
+            }
+            byte[] bytes = new byte[(int) readVarint()];
+            in.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            dictionary.add(value);
+            return value;
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt varint in binary audit log");
+        }
+    }
+
+    private static Role role(String title) {
+        Role role = Role.fromTitle(title);
+        if (role == null) {
+            throw new IllegalArgumentException("Unknown role " + title);
+        }
+        return role;
+    }
+
+    /**
+     * Converts an audit log between the CSV and binary formats.
+     * Files ending .bin are binary, files ending .gz are gzipped CSV, anything else is CSV.
+     * @param source The log to convert.
+     * @param target The file to write the converted log to.
+     * @return The number of records converted.
+     * @throws IOException If the source could not be read or the target written.
+     */
+    static long convert(Path source, Path target) throws IOException {
+        long records = 0;
+        if (isBinary(source)) {
+            try (Reader reader = new Reader(Files.newInputStream(source));
+                 BufferedWriter writer = openWriter(target)) {
+                String record;
+                while ((record = reader.readRecord()) != null) {
+                    writer.write(record);
+                    writer.newLine();
+                    records++;
+                }
+            }
+        } else if (isBinary(target)) {
+            try (BufferedReader reader = openReader(source);
+                 Writer writer = new Writer(Files.newOutputStream(target))) {
+                String record;
+                while ((record = reader.readLine()) != null) {
+                    writer.write(record);
+                    records++;
+                }
+            }
+        } else {
+            try (BufferedReader reader = openReader(source);
+                 BufferedWriter writer = openWriter(target)) {
+                String record;
+                while ((record = reader.readLine()) != null) {
+                    writer.write(record);
+                    writer.newLine();
+                    records++;
+                }
+            }
+        }
+        return records;
+    }
+
+    static boolean isBinary(Path path) {
+        return path.toString().endsWith(".bin");
+    }
+
+    private static BufferedReader openReader(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if (path.toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static BufferedWriter openWriter(Path path) throws IOException {
+        OutputStream out = Files.newOutputStream(path);
+        if (path.toString().endsWith(".gz")) {
+            out = new GZIPOutputStream(out);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Runs the audit-convert maintenance tool.
+     * @param args The log to convert and the file to write the converted log to.
+     */
+    static void runTool(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: audit-convert SOURCE TARGET " +
+                    "(files ending .bin are binary, .gz gzipped CSV, anything else CSV)");
+            return;
+        }
+        Path source = Paths.get(args[0]);
+        Path target = Paths.get(args[1]);
+        try {
+            long records = convert(source, target);
+            System.out.println("Converted " + records + " records, " + Files.size(source) +
+                    " bytes to " + Files.size(target) + " bytes.");
+        } catch (IOException e) {
+            System.out.println("Could not convert " + args[0] + ": " + e.getMessage());
+        }
+    }
+}
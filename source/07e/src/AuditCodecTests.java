@@ -0,0 +1,90 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AuditCodecTests
+{
+    public AuditCodecTests()
+    {
+    }
+
+    private List<String> roundTrip(List<String> records) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (AuditCodec.Writer writer = new AuditCodec.Writer(bytes)) {
+            for (String record : records) {
+                writer.write(record);
+            }
+        }
+        List<String> decoded = new ArrayList<>();
+        try (AuditCodec.Reader reader =
+                     new AuditCodec.Reader(new ByteArrayInputStream(bytes.toByteArray()))) {
+            String record;
+            while ((record = reader.readRecord()) != null) {
+                decoded.add(record);
+            }
+        }
+        return decoded;
+    }
+
+    @Test
+    public void authenticationRecordsRoundTrip() throws IOException
+    {
+        List<String> records = Arrays.asList(
+                "1551637442054,zzz987,Reviewer,LOGIN_SUCCESS",
+                "1551637442073,abc129,User,INVALID_LOGIN",
+                "1551637442085,zzz987,HR Employee,LOGGED_OUT");
+        assertEquals(records, roundTrip(records));
+    }
+
+    @Test
+    public void authorisationRecordsRoundTrip() throws IOException
+    {
+        List<String> records = Arrays.asList(
+                "1551646588223,abc123,HR Employee,READ_PERSONAL_DETAILS,abc123,Authorised",
+                "1551646588000,zzz987,User,HR_READ_PERSONAL_DETAILS,abc123,Not Authorised",
+                "1551646650009,abc123,Director,READ_ANY_ANNUAL_REVIEW,zzz987,Authorised");
+        assertEquals(records, roundTrip(records));
+    }
+
+    @Test
+    public void unknownRecordsAreKeptAsText() throws IOException
+    {
+        List<String> records = Arrays.asList(
+                "1551637442054,zzz987,Intern,LOGIN_SUCCESS",
+                "not a record",
+                "",
+                "1551637442085,zzz987,User,LOGIN_SUCCESS");
+        assertEquals(records, roundTrip(records));
+    }
+
+    @Test
+    public void binaryIsSmallerThanCsv() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int csvLength = 0;
+        try (AuditCodec.Writer writer = new AuditCodec.Writer(bytes)) {
+            for (int i = 0; i < 1000; i++) {
+                String record = (1551646588223L + i * 1000) + ",abc" + (i % 10) +
+                        ",HR Employee,HR_READ_PERSONAL_DETAILS,zzz" + (i % 20) + ",Authorised";
+                csvLength += record.getBytes(StandardCharsets.UTF_8).length + 1;
+                writer.write(record);
+            }
+        }
+        assertTrue(bytes.size() * 5 < csvLength);
+    }
+
+    @Test(expected = IOException.class)
+    public void csvIsNotReadAsBinary() throws IOException
+    {
+        new AuditCodec.Reader(new ByteArrayInputStream(
+                "1551637442054,zzz987,Reviewer,LOGIN_SUCCESS\n".getBytes(StandardCharsets.UTF_8)));
+    }
+}
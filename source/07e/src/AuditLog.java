@@ -0,0 +1,491 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A segmented, append-only audit log of CSV records, each starting with a timestamp.
+ * The current segment is always {name}.txt, so it can still be read like the old logs.
+ * When the current segment grows past "yuconz.audit.maxSegmentBytes" (default 16MB), or its
+ *  first record is older than "yuconz.audit.maxSegmentHours" (default 24), it is closed
+ *  and renamed to {name}.{sequence}.txt, then compressed to {name}.{sequence}.txt.gz
+ *  on a background thread.
+ * The manifest, {name}.manifest, lists every closed segment in order along with the time
+ *  range it covers, so the full history can be read in order without opening every segment.
+ * If "yuconz.audit.segmentFormat" is "binary", closed segments are written in the compact
+ *  AuditCodec format as {name}.{sequence}.bin instead.
+ * If "yuconz.audit.retainSegments" is set, only that many closed segments are kept.
+ * Logs are kept in the directory given by "yuconz.audit.dir" (default "log").
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class AuditLog {
+    private final static long MAX_SEGMENT_BYTES =
+            Long.getLong("yuconz.audit.maxSegmentBytes", 16 * 1024 * 1024);
+    private final static long MAX_SEGMENT_MILLIS =
+            Long.getLong("yuconz.audit.maxSegmentHours", 24) * 60 * 60 * 1000;
+    private final static int RETAIN_SEGMENTS = Integer.getInteger("yuconz.audit.retainSegments", 0);
+    private final static boolean BINARY_SEGMENTS =
+            "binary".equals(System.getProperty("yuconz.audit.segmentFormat"));
+    //How much of the end of an existing segment is read to find its latest record.
+    private final static int TAIL_BYTES = 64 * 1024;
+    private final static ExecutorService compressor = Executors.newSingleThreadExecutor((r) -> {
+        Thread thread = new Thread(r, "yuconz-audit-compressor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    final static AuditLog AUTHENTICATION = new AuditLog("AuthenticationLog");
+    final static AuditLog AUTHORISATION = new AuditLog("AuthorisationLog");
+
+    private final String name;
+    private final File directory;
+    private final long maxSegmentBytes;
+    private final long maxSegmentMillis;
+    private final int retainSegments;
+    private final boolean binarySegments;
+    private BufferedWriter writer;
+    private long activeSize;
+    private long activeRecords;
+    //Whether activeRecords counts the whole segment, not just the records appended since opening.
+    private boolean activeCounted;
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    /**
+     * Creates an audit log in the configured log directory.
+     * @param name The name of the log, e.g. AuthenticationLog.
+     */
+    AuditLog(String name) {
+        this(name, new File(System.getProperty("yuconz.audit.dir", "log")),
+                MAX_SEGMENT_BYTES, MAX_SEGMENT_MILLIS, RETAIN_SEGMENTS, BINARY_SEGMENTS);
+    }
+
+    /**
+     * Creates an audit log in the given directory.
+     * @param name The name of the log, e.g. AuthenticationLog.
+     * @param directory The directory holding the log's segments and manifest.
+     * @param maxSegmentBytes The size at which the current segment is rotated.
+     * @param maxSegmentMillis The age of the first record at which the current segment is rotated.
+     * @param retainSegments How many closed segments to keep, or 0 to keep them all.
+     * @param binarySegments Whether closed segments are stored in the binary format,
+     *  rather than gzipped.
+     */
+    AuditLog(String name, File directory, long maxSegmentBytes, long maxSegmentMillis,
+             int retainSegments, boolean binarySegments) {
+        this.name = name;
+        this.directory = directory.getAbsoluteFile();
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentMillis = maxSegmentMillis;
+        this.retainSegments = retainSegments;
+        this.binarySegments = binarySegments;
+    }
+
+    /**
+     * Appends a record to the current segment, rotating the segment first if it is full.
+     * The record is flushed to the file before this returns.
+     * @param record The CSV record, starting with its timestamp.
+     * @throws IOException If the record could not be written.
+     */
+    synchronized void append(String record) throws IOException {
+        long timestamp = timestampOf(record);
+        if (writer == null) {
+            openActive();
+        }
+        if (activeSize > 0 && (activeSize >= maxSegmentBytes
+                || timestamp - firstTimestamp >= maxSegmentMillis)) {
+            rotate();
+        }
+        if (activeSize == 0) {
+            firstTimestamp = timestamp;
+        }
+        writer.write(record);
+        writer.newLine();
+        writer.flush();
+        activeSize += record.getBytes(StandardCharsets.UTF_8).length + 1;
+        activeRecords++;
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+    }
+
+    /**
+     * Closes the current segment and starts a new one.
+     * The closed segment is added to the manifest and compressed in the background.
+     * If the segment was opened with records already in it, its manifest entry gets its
+     *  record count once it has been compressed.
+     * @throws IOException If the segment could not be closed.
+     */
+    synchronized void rotate() throws IOException {
+        if (writer == null) {
+            openActive();
+        }
+        if (activeSize == 0) {
+            return;
+        }
+        writer.close();
+        writer = null;
+
+        List<Segment> manifest = readManifest();
+        long sequence = manifest.isEmpty() ? 1 : manifest.get(manifest.size() - 1).sequence + 1;
+        String fileName = String.format("%s.%06d.txt", name, sequence);
+        Files.move(activeFile().toPath(), new File(directory, fileName).toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+        Segment closed = new Segment(sequence, firstTimestamp, lastTimestamp,
+                activeCounted ? activeRecords : -1, fileName);
+        manifest.add(closed);
+        while (retainSegments > 0 && manifest.size() > retainSegments) {
+            Segment expired = manifest.remove(0);
+            Files.deleteIfExists(new File(directory, expired.fileName).toPath());
+        }
+        writeManifest(manifest);
+        compressor.execute(() -> compress(closed));
+        openActive();
+    }
+
+    /**
+     * Reads every record in the log in order, from the oldest closed segment to the newest
+     *  record in the current segment.
+     * @param from Segments entirely before this timestamp are skipped.
+     * @param to Segments entirely after this timestamp are skipped.
+     * @param consumer Receives each record in the segments read.
+     * @throws IOException If a segment could not be read.
+     */
+    void read(long from, long to, Consumer<String> consumer) throws IOException {
+        List<Path> paths = closedSegments(from, to);
+        paths.add(activeFile().toPath());
+        read(paths, consumer);
+    }
+
+    /**
+     * Reads the records in the closed segments only, oldest first.
+     * @param from Segments entirely before this timestamp are skipped.
+     * @param to Segments entirely after this timestamp are skipped.
+     * @param consumer Receives each record in the segments read.
+     * @throws IOException If a segment could not be read.
+     */
+    void readClosed(long from, long to, Consumer<String> consumer) throws IOException {
+        read(closedSegments(from, to), consumer);
+    }
+
+    /**
+     * Lists the closed segments overlapping a time range.
+     * @param from Segments entirely before this timestamp are left out.
+     * @param to Segments entirely after this timestamp are left out.
+     * @return The paths of the segments, oldest first.
+     * @throws IOException If the manifest could not be read.
+     */
+    private synchronized List<Path> closedSegments(long from, long to) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (writer != null) {
+            writer.flush();
+        }
+        for (Segment segment : readManifest()) {
+            if (segment.lastTimestamp >= from && segment.firstTimestamp <= to) {
+                paths.add(new File(directory, segment.fileName).toPath());
+            }
+        }
+        return paths;
+    }
+
+    private void read(List<Path> paths, Consumer<String> consumer) throws IOException {
+        for (Path path : paths) {
+            if (!Files.exists(path)) {
+                //The segment has been compressed since the manifest was read.
+                path = path.resolveSibling(compressedName(path.getFileName().toString()));
+                if (!Files.exists(path)) {
+                    continue;
+                }
+            }
+            if (AuditCodec.isBinary(path)) {
+                try (AuditCodec.Reader reader = new AuditCodec.Reader(Files.newInputStream(path))) {
+                    String record;
+                    while ((record = reader.readRecord()) != null) {
+                        consumer.accept(record);
+                    }
+                }
+            } else {
+                try (BufferedReader reader = open(path)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        consumer.accept(line);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads every record in the log in order.
+     * @param consumer Receives each record.
+     * @throws IOException If a segment could not be read.
+     */
+    void readAll(Consumer<String> consumer) throws IOException {
+        read(Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Returns the closed segments of this log, oldest first.
+     * @return The segments listed in the manifest.
+     * @throws IOException If the manifest could not be read.
+     */
+    synchronized List<Segment> segments() throws IOException {
+        return readManifest();
+    }
+
+    /**
+     * Waits until every segment closed so far has been compressed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    static void awaitCompression() throws InterruptedException {
+        try {
+            compressor.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            //The marker task cannot fail.
+        }
+    }
+
+    /**
+     * Creates a log for reading the segments of an existing log, using the configured formats.
+     * @param activeFile The log's current segment, e.g. log/AuthorisationLog.txt.
+     * @return The log.
+     */
+    static AuditLog forActiveFile(Path activeFile) {
+        String fileName = activeFile.getFileName().toString();
+        String name = fileName.endsWith(".txt")
+                ? fileName.substring(0, fileName.length() - ".txt".length()) : fileName;
+        Path parent = activeFile.toAbsolutePath().getParent();
+        return new AuditLog(name, parent.toFile(), MAX_SEGMENT_BYTES, MAX_SEGMENT_MILLIS,
+                RETAIN_SEGMENTS, BINARY_SEGMENTS);
+    }
+
+    /**
+     * Returns the file holding the current segment.
+     * @return The current segment.
+     */
+    File activeFile() {
+        return new File(directory, name + ".txt");
+    }
+
+    private static BufferedReader open(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if (path.toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens the current segment for appending, creating it if it doesn't exist.
+     * If the segment already has records, its time range is read back from its first line
+     *  and its last few lines, so that opening a large segment doesn't read all of it.
+     * @throws IOException If the segment could not be opened.
+     */
+    private void openActive() throws IOException {
+        //Make the log directory if it doesn't already exist
+        directory.mkdirs();
+        File active = activeFile();
+        activeSize = active.length();
+        activeRecords = 0;
+        activeCounted = activeSize == 0;
+        firstTimestamp = 0;
+        lastTimestamp = 0;
+        if (activeSize > 0) {
+            try (BufferedReader reader = open(active.toPath())) {
+                firstTimestamp = timestampOf(reader.readLine());
+            }
+            lastTimestamp = Math.max(firstTimestamp, latestTimestamp(active));
+        }
+        writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(active.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8));
+        //Finish compressing any segments closed before the last shutdown.
+        for (Segment segment : readManifest()) {
+            if (segment.fileName.endsWith(".txt")) {
+                compressor.execute(() -> compress(segment));
+            }
+        }
+    }
+
+    /**
+     * Finds the latest timestamp among the records at the end of a segment.
+     * @param file The segment.
+     * @return The latest timestamp, or 0 if no complete record was found.
+     * @throws IOException If the segment could not be read.
+     */
+    private static long latestTimestamp(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long start = Math.max(0, in.length() - TAIL_BYTES);
+            byte[] tail = new byte[(int) (in.length() - start)];
+            in.seek(start);
+            in.readFully(tail);
+            String[] lines = new String(tail, StandardCharsets.UTF_8).split("\n");
+            long latest = 0;
+            //Unless the tail is the whole segment, its first line is probably only part of one.
+            for (int i = start == 0 ? 0 : 1; i < lines.length; i++) {
+                if (!lines[i].trim().isEmpty()) {
+                    latest = Math.max(latest, timestampOf(lines[i].trim()));
+                }
+            }
+            return latest;
+        }
+    }
+
+    /**
+     * Compresses a closed segment and points its manifest entry at the compressed file,
+     *  filling in how many records it holds.
+     * @param segment The closed segment to compress.
+     */
+    private void compress(Segment segment) {
+        Path source = new File(directory, segment.fileName).toPath();
+        String compressedName = compressedName(segment.fileName);
+        Path target = source.resolveSibling(compressedName);
+        Path temp = source.resolveSibling(compressedName + ".tmp");
+        try {
+            if (!Files.exists(source)) {
+                return;
+            }
+            long records = 0;
+            if (binarySegments) {
+                try (BufferedReader reader = open(source);
+                     AuditCodec.Writer writer = new AuditCodec.Writer(Files.newOutputStream(temp))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        writer.write(line);
+                        records++;
+                    }
+                }
+            } else {
+                try (InputStream in = Files.newInputStream(source);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, read);
+                        for (int i = 0; i < read; i++) {
+                            if (buffer[i] == '\n') {
+                                records++;
+                            }
+                        }
+                    }
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                boolean retained = false;
+                List<Segment> manifest = readManifest();
+                for (int i = 0; i < manifest.size(); i++) {
+                    Segment entry = manifest.get(i);
+                    if (entry.sequence == segment.sequence) {
+                        manifest.set(i, new Segment(entry.sequence, entry.firstTimestamp,
+                                entry.lastTimestamp, records, compressedName));
+                        retained = true;
+                    }
+                }
+                if (retained) {
+                    writeManifest(manifest);
+                } else {
+                    //The segment expired while it was being compressed.
+                    Files.deleteIfExists(target);
+                }
+            }
+            Files.deleteIfExists(source);
+        } catch (IOException e) {
+            System.err.println("IOException when compressing audit log segment " +
+                    segment.fileName + ".");
+        }
+    }
+
+    /**
+     * Returns the name a closed segment is given once it has been compressed.
+     * @param fileName The name of the uncompressed segment, ending .txt.
+     * @return The name of the compressed segment.
+     */
+    private String compressedName(String fileName) {
+        if (binarySegments) {
+            return fileName.substring(0, fileName.length() - ".txt".length()) + ".bin";
+        }
+        return fileName + ".gz";
+    }
+
+    private File manifestFile() {
+        return new File(directory, name + ".manifest");
+    }
+
+    private List<Segment> readManifest() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        File manifest = manifestFile();
+        if (manifest.exists()) {
+            for (String line : Files.readAllLines(manifest.toPath(), StandardCharsets.UTF_8)) {
+                String[] fields = line.split(",");
+                if (fields.length == 5) {
+                    segments.add(new Segment(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                            Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4]));
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Replaces the manifest atomically, so readers never see a partly written manifest.
+     * @param segments The closed segments, oldest first.
+     * @throws IOException If the manifest could not be written.
+     */
+    private void writeManifest(List<Segment> segments) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Segment segment : segments) {
+            lines.add(segment.sequence + "," + segment.firstTimestamp + "," +
+                    segment.lastTimestamp + "," + segment.records + "," + segment.fileName);
+        }
+        Path temp = new File(directory, name + ".manifest.tmp").toPath();
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, manifestFile().toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long timestampOf(String record) {
+        int comma = record.indexOf(',');
+        try {
+            return Long.parseLong(comma < 0 ? record : record.substring(0, comma));
+        } catch (NumberFormatException e) {
+            return System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * A closed segment, as listed in the manifest.
+     */
+    static class Segment {
+        final long sequence;
+        final long firstTimestamp;
+        final long lastTimestamp;
+        final long records;
+        final String fileName;
+
+        Segment(long sequence, long firstTimestamp, long lastTimestamp, long records,
+                String fileName) {
+            this.sequence = sequence;
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+            this.records = records;
+            this.fileName = fileName;
+        }
+    }
+}
@@ -0,0 +1,467 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * A sidecar index over one of the CSV audit logs (AuthenticationLog or AuthorisationLog).
+ * Records are indexed by hour, storing the byte range each hour's records occupy,
+ *  and by username, storing the offset of every record belonging to that user.
+ * The index is kept in a file next to the log (e.g. AuthorisationLog.txt.idx), and is
+ *  updated incrementally by reading only the part of the log written since the last update.
+ * Both indexing and queries read the log through memory-mapped I/O, so a query only
+ *  touches the parts of the log that can contain matching records.
+ * The index only covers the log's current segment, so it is rebuilt whenever the log
+ *  rotates; queryHistory also reads the closed segments the query's time range overlaps.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class AuditLogIndex {
+    private final static int MAGIC = 0x59494458;
+    private final static int VERSION = 1;
+    //The width of each time bucket, in milliseconds.
+    private final static long BUCKET_MILLIS = 60 * 60 * 1000;
+    //How much of the start of the log is checksummed, to notice when the log is replaced.
+    private final static int HEAD_LENGTH = 64;
+
+    private final Path log;
+    private final Path indexFile;
+    private long indexedLength;
+    private long headChecksum;
+    //Bucket start time -> {first byte, end byte} of the records in that bucket.
+    private final TreeMap<Long, long[]> buckets = new TreeMap<>();
+    private final HashMap<String, Postings> users = new HashMap<>();
+
+    private AuditLogIndex(Path log) {
+        this.log = log;
+        this.indexFile = Paths.get(log.toString() + ".idx");
+    }
+
+    /**
+     * Opens the index for the given log, loading the sidecar index if there is one,
+     *  and brings the index up to date with the log.
+     * @param log The audit log to index.
+     * @return The up to date index.
+     * @throws IOException If the log or index could not be read.
+     */
+    static AuditLogIndex open(Path log) throws IOException {
+        AuditLogIndex index = new AuditLogIndex(log);
+        if (Files.exists(index.indexFile)) {
+            try {
+                index.load();
+            } catch (IOException e) {
+                //A damaged index is rebuilt from the log.
+                index.clear();
+            }
+        }
+        index.update();
+        return index;
+    }
+
+    /**
+     * Indexes any records appended to the log since the last update, and saves the index.
+     * If the log has been truncated or replaced, the index is rebuilt from scratch.
+     * Only complete lines are indexed, a partly written record is left for the next update.
+     * @throws IOException If the log could not be read or the index could not be saved.
+     */
+    synchronized void update() throws IOException {
+        if (!Files.exists(log)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < indexedLength || headChecksum(channel, indexedLength) != headChecksum) {
+                clear();
+            }
+            if (size == indexedLength) {
+                return;
+            }
+            long position = indexedLength;
+            while (position < size) {
+                long length = Math.min(size - position, Integer.MAX_VALUE);
+                MappedByteBuffer buffer =
+                        channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int consumed = indexRegion(buffer, position);
+                if (consumed == 0) {
+                    break;
+                }
+                position += consumed;
+            }
+            indexedLength = position;
+            headChecksum = headChecksum(channel, indexedLength);
+        }
+        save();
+    }
+
+    /**
+     * Finds every record in the given time range, optionally belonging to one user.
+     * @param username The user whose records to find, or null for every user.
+     * @param from The earliest timestamp to include, in milliseconds since the epoch.
+     * @param to The latest timestamp to include, in milliseconds since the epoch.
+     * @return The matching records, in the order they appear in the log.
+     * @throws IOException If the log could not be read.
+     */
+    synchronized List<String> query(String username, long from, long to) throws IOException {
+        List<String> results = new ArrayList<>();
+        if (from > to || indexedLength == 0) {
+            return results;
+        }
+        Postings postings = null;
+        if (username != null) {
+            postings = users.get(username);
+            if (postings == null) {
+                return results;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            for (long[] range : segments(from, to)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        range[0], range[1] - range[0]);
+                if (postings == null) {
+                    //Scan every record in the segment.
+                    int position = 0;
+                    while (position < buffer.limit()) {
+                        int end = lineEnd(buffer, position);
+                        addIfInRange(results, decode(buffer, position, end), from, to);
+                        position = end + 1;
+                    }
+                } else {
+                    //Only read the user's records within the segment.
+                    int i = postings.firstAtOrAfter(range[0]);
+                    for (; i < postings.size && postings.offsets[i] < range[1]; i++) {
+                        int position = (int) (postings.offsets[i] - range[0]);
+                        int end = lineEnd(buffer, position);
+                        addIfInRange(results, decode(buffer, position, end), from, to);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Finds every record in the given time range across the whole history of a log,
+     *  reading the closed segments overlapping the range and then querying the index
+     *  of the current segment.
+     * @param log The current segment of the audit log, e.g. log/AuthorisationLog.txt.
+     * @param username The user whose records to find, or null for every user.
+     * @param from The earliest timestamp to include, in milliseconds since the epoch.
+     * @param to The latest timestamp to include, in milliseconds since the epoch.
+     * @return The matching records, oldest segment first.
+     * @throws IOException If the log or one of its segments could not be read.
+     */
+    static List<String> queryHistory(Path log, String username, long from, long to)
+            throws IOException {
+        List<String> results = new ArrayList<>();
+        if (from > to) {
+            return results;
+        }
+        AuditLog.forActiveFile(log).readClosed(from, to, (line) -> {
+            String[] fields = line.split(",", 3);
+            if (fields.length >= 2 && (username == null || username.equals(fields[1]))) {
+                addIfInRange(results, line, from, to);
+            }
+        });
+        results.addAll(open(log).query(username, from, to));
+        return results;
+    }
+
+    /**
+     * Returns how many bytes of the log have been indexed.
+     * @return The length of the indexed part of the log.
+     */
+    synchronized long getIndexedLength() {
+        return indexedLength;
+    }
+
+    /**
+     * Merges the byte ranges of every bucket overlapping the time range.
+     * @param from The earliest timestamp to include.
+     * @param to The latest timestamp to include.
+     * @return The ranges of the log to read, in order and without overlaps.
+     */
+    private List<long[]> segments(long from, long to) {
+        List<long[]> ranges = new ArrayList<>();
+        //Timestamps are never negative, which also keeps the bucket arithmetic from overflowing.
+        long firstBucket = bucketOf(Math.max(0, from));
+        for (long[] range : buckets.subMap(firstBucket, true, bucketOf(to), true).values()) {
+            ranges.add(new long[] {range[0], range[1]});
+        }
+        ranges.sort((a, b) -> Long.compare(a[0], b[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Indexes every complete line in the buffer.
+     * @param buffer The mapped region of the log.
+     * @param base The offset of the start of the buffer within the log.
+     * @return How many bytes of the buffer were indexed.
+     */
+    private int indexRegion(ByteBuffer buffer, long base) {
+        int position = 0;
+        int limit = buffer.limit();
+        while (position < limit) {
+            int end = lineEnd(buffer, position);
+            if (end >= limit) {
+                //The last line hasn't been completely written yet.
+                break;
+            }
+            String line = decode(buffer, position, end);
+            long offset = base + position;
+            String[] fields = line.split(",", 3);
+            if (fields.length >= 2) {
+                try {
+                    long bucket = bucketOf(Long.parseLong(fields[0]));
+                    long[] range = buckets.get(bucket);
+                    if (range == null) {
+                        buckets.put(bucket, new long[] {offset, base + end + 1});
+                    } else {
+                        range[0] = Math.min(range[0], offset);
+                        range[1] = Math.max(range[1], base + end + 1);
+                    }
+                    users.computeIfAbsent(fields[1], (x) -> new Postings()).add(offset);
+                } catch (NumberFormatException e) {
+                    //Lines without a timestamp are not records, and are skipped.
+                }
+            }
+            position = end + 1;
+        }
+        return position;
+    }
+
+    private static long bucketOf(long timestamp) {
+        return Math.floorDiv(timestamp, BUCKET_MILLIS) * BUCKET_MILLIS;
+    }
+
+    private static int lineEnd(ByteBuffer buffer, int position) {
+        int limit = buffer.limit();
+        while (position < limit && buffer.get(position) != '\n') {
+            position++;
+        }
+        return position;
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void addIfInRange(List<String> results, String line, long from, long to) {
+        int comma = line.indexOf(',');
+        if (comma < 0) {
+            return;
+        }
+        try {
+            long timestamp = Long.parseLong(line.substring(0, comma));
+            if (timestamp >= from && timestamp <= to) {
+                results.add(line);
+            }
+        } catch (NumberFormatException e) {
+            //Not a record.
+        }
+    }
+
+    /**
+     * Checksums the start of the indexed part of the log.
+     * @param channel The log.
+     * @param indexedLength How much of the log has been indexed.
+     * @return The checksum of up to HEAD_LENGTH bytes from the start of the log.
+     * @throws IOException If the log could not be read.
+     */
+    private static long headChecksum(FileChannel channel, long indexedLength)
+            throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(HEAD_LENGTH, indexedLength));
+        channel.read(head, 0);
+        CRC32 crc = new CRC32();
+        crc.update(head.array(), 0, head.position());
+        return crc.getValue();
+    }
+
+    private void clear() {
+        indexedLength = 0;
+        headChecksum = 0;
+        buckets.clear();
+        users.clear();
+    }
+
+    /**
+     * Writes the index to its sidecar file, replacing the previous index atomically.
+     * @throws IOException If the index could not be written.
+     */
+    private void save() throws IOException {
+        Path temp = Paths.get(indexFile.toString() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(indexedLength);
+            out.writeLong(headChecksum);
+            out.writeInt(buckets.size());
+            for (Map.Entry<Long, long[]> bucket : buckets.entrySet()) {
+                out.writeLong(bucket.getKey());
+                out.writeLong(bucket.getValue()[0]);
+                out.writeLong(bucket.getValue()[1]);
+            }
+            out.writeInt(users.size());
+            for (Map.Entry<String, Postings> user : users.entrySet()) {
+                out.writeUTF(user.getKey());
+                Postings postings = user.getValue();
+                out.writeInt(postings.size);
+                //Offsets are increasing, so store the gaps between them.
+                long previous = 0;
+                for (int i = 0; i < postings.size; i++) {
+                    out.writeLong(postings.offsets[i] - previous);
+                    previous = postings.offsets[i];
+                }
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the index from its sidecar file.
+     * @throws IOException If the index could not be read or is not a valid index.
+     */
+    private void load() throws IOException {
+        try (InputStream file = Files.newInputStream(indexFile);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an audit log index: " + indexFile);
+            }
+            indexedLength = in.readLong();
+            headChecksum = in.readLong();
+            int bucketCount = in.readInt();
+            for (int i = 0; i < bucketCount; i++) {
+                buckets.put(in.readLong(), new long[] {in.readLong(), in.readLong()});
+            }
+            int userCount = in.readInt();
+            for (int i = 0; i < userCount; i++) {
+                String username = in.readUTF();
+                Postings postings = new Postings();
+                int size = in.readInt();
+                long offset = 0;
+                for (int j = 0; j < size; j++) {
+                    offset += in.readLong();
+                    postings.add(offset);
+                }
+                users.put(username, postings);
+            }
+        }
+    }
+
+    /**
+     * Runs the audit log query tool.
+     * Usage: audit-query LOG [--user USERNAME] [--from DATE|MILLIS] [--to DATE|MILLIS]
+     *  [--match TEXT]
+     * Dates are in yyyy-MM-dd format, --to includes the whole of the given day.
+     * @param args The command line arguments, after the command name.
+     */
+    static void runTool(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: audit-query LOG [--user USERNAME] [--from DATE] " +
+                    "[--to DATE] [--match TEXT]");
+            return;
+        }
+        String username = null;
+        String match = null;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--user":
+                    username = args[i + 1];
+                    break;
+                case "--from":
+                    from = parseTime(args[i + 1], false);
+                    break;
+                case "--to":
+                    to = parseTime(args[i + 1], true);
+                    break;
+                case "--match":
+                    match = args[i + 1];
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        try {
+            for (String line : queryHistory(Paths.get(args[0]), username, from, to)) {
+                if (match == null || line.contains(match)) {
+                    System.out.println(line);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not query " + args[0] + ": " + e.getMessage());
+        }
+    }
+
+    static long parseTime(String value, boolean endOfDay) {
+        if (value.matches("\\d+")) {
+            return Long.parseLong(value);
+        }
+        LocalDate date = LocalDate.parse(value);
+        if (endOfDay) {
+            date = date.plusDays(1);
+        }
+        long millis = date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return endOfDay ? millis - 1 : millis;
+    }
+
+    /**
+     * A growable, sorted list of record offsets.
+     */
+    private static class Postings {
+        private long[] offsets = new long[4];
+        private int size;
+
+        void add(long offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        int firstAtOrAfter(long offset) {
+            int index = Arrays.binarySearch(offsets, 0, size, offset);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class AuditLogIndexTests
+{
+    private static final long HOUR = 60 * 60 * 1000;
+    private Path directory;
+    private Path log;
+
+    public AuditLogIndexTests()
+    {
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("auditIndex");
+        log = directory.resolve("AuthorisationLog.txt");
+        append("1000,abc123,User,READ_PERSONAL_DETAILS,abc123,Authorised",
+                "2000,zzz987,User,HR_READ_PERSONAL_DETAILS,abc123,Not Authorised",
+                (2 * HOUR) + ",abc123,User,AMEND_PERSONAL_DETAILS,abc123,Authorised",
+                (5 * HOUR) + ",zzz987,HR Employee,HR_READ_PERSONAL_DETAILS,abc123,Authorised");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.walk(directory).sorted(Comparator.reverseOrder()).forEach((path) -> {
+            path.toFile().delete();
+        });
+    }
+
+    private void append(String... lines) throws IOException
+    {
+        Files.write(log, Arrays.asList(lines), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    public void queryByUser() throws IOException
+    {
+        List<String> records = AuditLogIndex.open(log).query("zzz987", 0, Long.MAX_VALUE);
+        assertEquals(2, records.size());
+        assertTrue(records.get(0).startsWith("2000,zzz987"));
+        assertTrue(records.get(1).contains("HR Employee"));
+    }
+
+    @Test
+    public void queryByTimeRange() throws IOException
+    {
+        List<String> records = AuditLogIndex.open(log).query(null, HOUR, 3 * HOUR);
+        assertEquals(1, records.size());
+        assertTrue(records.get(0).contains("AMEND_PERSONAL_DETAILS"));
+    }
+
+    @Test
+    public void queryByUserAndTimeRange() throws IOException
+    {
+        List<String> records = AuditLogIndex.open(log).query("abc123", 0, HOUR);
+        assertEquals(1, records.size());
+        assertTrue(records.get(0).startsWith("1000,abc123"));
+    }
+
+    @Test
+    public void unknownUserHasNoRecords() throws IOException
+    {
+        assertTrue(AuditLogIndex.open(log).query("nobody", 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void updateOnlyIndexesNewRecords() throws IOException
+    {
+        AuditLogIndex index = AuditLogIndex.open(log);
+        long indexed = index.getIndexedLength();
+        append((6 * HOUR) + ",cva987,User,READ_PERSONAL_DETAILS,cva987,Authorised");
+        index.update();
+        assertTrue(index.getIndexedLength() > indexed);
+        assertEquals(1, index.query("cva987", 0, Long.MAX_VALUE).size());
+        assertEquals(2, index.query("abc123", 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void partialLinesAreLeftForTheNextUpdate() throws IOException
+    {
+        Files.write(log, "7000,cva987,User".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        AuditLogIndex index = AuditLogIndex.open(log);
+        assertTrue(index.query("cva987", 0, Long.MAX_VALUE).isEmpty());
+        append(",READ_PERSONAL_DETAILS,cva987,Authorised");
+        index.update();
+        assertEquals(1, index.query("cva987", 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void indexIsReloadedFromSidecar() throws IOException
+    {
+        AuditLogIndex.open(log);
+        assertTrue(Files.exists(directory.resolve("AuthorisationLog.txt.idx")));
+        AuditLogIndex reopened = AuditLogIndex.open(log);
+        assertEquals(Files.size(log), reopened.getIndexedLength());
+        assertEquals(2, reopened.query("abc123", 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void replacedLogIsReindexed() throws IOException
+    {
+        AuditLogIndex.open(log);
+        Files.write(log, Arrays.asList(
+                "9000,new001,User,READ_PERSONAL_DETAILS,new001,Authorised"),
+                StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+        AuditLogIndex index = AuditLogIndex.open(log);
+        assertTrue(index.query("abc123", 0, Long.MAX_VALUE).isEmpty());
+        assertEquals(1, index.query("new001", 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void historyIncludesRotatedSegments() throws IOException, InterruptedException
+    {
+        AuditLogIndex.open(log);
+        AuditLog audit = new AuditLog("AuthorisationLog", directory.toFile(), 1 << 20, 24 * HOUR,
+                0, false);
+        audit.rotate();
+        audit.append((6 * HOUR) + ",abc123,User,READ_PERSONAL_DETAILS,abc123,Authorised");
+        AuditLog.awaitCompression();
+
+        AuditLog.Segment closed = audit.segments().get(0);
+        assertEquals(5 * HOUR, closed.lastTimestamp);
+        assertEquals(4, closed.records);
+        List<String> records = AuditLogIndex.queryHistory(log, "abc123", 0, Long.MAX_VALUE);
+        assertEquals(3, records.size());
+        assertTrue(records.get(0).startsWith("1000,abc123"));
+        assertTrue(records.get(2).startsWith(String.valueOf(6 * HOUR)));
+        assertEquals(1, AuditLogIndex.queryHistory(log, null, HOUR, 3 * HOUR).size());
+    }
+}
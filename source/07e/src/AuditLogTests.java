@@ -0,0 +1,128 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class AuditLogTests
+{
+    private static final long HOUR = 60 * 60 * 1000;
+    private Path directory;
+
+    public AuditLogTests()
+    {
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("auditLog");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.walk(directory).sorted(Comparator.reverseOrder()).forEach((path) -> {
+            path.toFile().delete();
+        });
+    }
+
+    private List<String> readAll(AuditLog log) throws IOException
+    {
+        List<String> records = new ArrayList<>();
+        log.readAll(records::add);
+        return records;
+    }
+
+    @Test
+    public void rotatesWhenSegmentIsFull() throws IOException, InterruptedException
+    {
+        AuditLog log = new AuditLog("AuthorisationLog", directory.toFile(), 100, HOUR, 0, false);
+        for (int i = 0; i < 10; i++) {
+            log.append(i + ",abc123,User,READ_PERSONAL_DETAILS,abc123,Authorised");
+        }
+        AuditLog.awaitCompression();
+        List<AuditLog.Segment> segments = log.segments();
+        assertFalse(segments.isEmpty());
+        for (AuditLog.Segment segment : segments) {
+            assertTrue(segment.fileName.endsWith(".gz"));
+            assertTrue(Files.exists(directory.resolve(segment.fileName)));
+        }
+        assertEquals(0, segments.get(0).firstTimestamp);
+        List<String> records = readAll(log);
+        assertEquals(10, records.size());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(records.get(i).startsWith(i + ",abc123"));
+        }
+    }
+
+    @Test
+    public void rotatesWhenSegmentIsOld() throws IOException, InterruptedException
+    {
+        AuditLog log = new AuditLog("AuthenticationLog", directory.toFile(), 1 << 20, HOUR, 0, false);
+        log.append("1000,abc123,User,LOGIN_SUCCESS");
+        log.append((HOUR + 1000) + ",abc123,User,LOGGED_OUT");
+        assertEquals(1, log.segments().size());
+        assertEquals(1, log.segments().get(0).records);
+        assertEquals(2, readAll(log).size());
+    }
+
+    @Test
+    public void readSkipsSegmentsOutsideTheRange() throws IOException, InterruptedException
+    {
+        AuditLog log = new AuditLog("AuthenticationLog", directory.toFile(), 1 << 20, HOUR, 0, false);
+        log.append("0,abc123,User,LOGIN_SUCCESS");
+        log.append((2 * HOUR) + ",abc123,User,LOGIN_SUCCESS");
+        log.append((4 * HOUR) + ",abc123,User,LOGIN_SUCCESS");
+        AuditLog.awaitCompression();
+        List<String> records = new ArrayList<>();
+        log.read(HOUR, 3 * HOUR, records::add);
+        //The middle segment and the current segment
+        assertEquals(2, records.size());
+        assertTrue(records.get(0).startsWith(String.valueOf(2 * HOUR)));
+    }
+
+    @Test
+    public void oldSegmentsAreRemoved() throws IOException, InterruptedException
+    {
+        AuditLog log = new AuditLog("AuthenticationLog", directory.toFile(), 1, HOUR, 2, false);
+        for (int i = 0; i < 5; i++) {
+            log.append(i + ",abc123,User,LOGIN_SUCCESS");
+        }
+        AuditLog.awaitCompression();
+        assertEquals(2, log.segments().size());
+        assertEquals(3, readAll(log).size());
+    }
+
+    @Test
+    public void reopenedLogContinuesCurrentSegment() throws IOException
+    {
+        AuditLog log = new AuditLog("AuthenticationLog", directory.toFile(), 1 << 20, HOUR, 0, false);
+        log.append("1000,abc123,User,LOGIN_SUCCESS");
+        AuditLog reopened = new AuditLog("AuthenticationLog", directory.toFile(), 1 << 20, HOUR, 0,
+                false);
+        reopened.append("2000,abc123,User,LOGGED_OUT");
+        assertTrue(reopened.segments().isEmpty());
+        assertEquals(2, readAll(reopened).size());
+    }
+
+    @Test
+    public void binarySegmentsReadBackAsCsv() throws IOException, InterruptedException
+    {
+        AuditLog log = new AuditLog("AuthorisationLog", directory.toFile(), 100, HOUR, 0, true);
+        for (int i = 0; i < 10; i++) {
+            log.append(i + ",abc123,User,READ_PERSONAL_DETAILS,abc123,Authorised");
+        }
+        AuditLog.awaitCompression();
+        assertTrue(log.segments().get(0).fileName.endsWith(".bin"));
+        List<String> records = readAll(log);
+        assertEquals(10, records.size());
+        assertEquals("9,abc123,User,READ_PERSONAL_DETAILS,abc123,Authorised", records.get(9));
+    }
+}
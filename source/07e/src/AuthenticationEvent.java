@@ -0,0 +1,56 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A Flight Recorder event for a single call to Authenticator.authenticate.
+ * Usernames are hashed so recordings can be shared without exposing who logged in.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+@Name("yuconz.Authentication")
+@Label("Authentication")
+@Category({"Yuconz", "Security"})
+@Description("A login attempt")
+@StackTrace(false)
+class AuthenticationEvent extends Event {
+    @Label("Username Hash")
+    @Description("The first 16 hex digits of the SHA-256 hash of the username")
+    String usernameHash;
+
+    @Label("Role")
+    String role;
+
+    @Label("Exit Code")
+    String exitCode;
+
+    /**
+     * Hashes a username for inclusion in a recording.
+     * @param username The username to hash.
+     * @return The first 16 hex digits of the SHA-256 hash of the username.
+     */
+    static String hash(String username) {
+        if (username == null) {
+            return null;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(username.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            //Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
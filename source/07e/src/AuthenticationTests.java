@@ -2,30 +2,48 @@ import static org.junit.Assert.*;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
 
+@RunWith(Parameterized.class)
 public class AuthenticationTests
 {
+    //Every test runs against the in-memory repository and against a new SQLite database.
+    @Parameterized.Parameter
+    public String engine;
+    private Path database;
     private static final Role[] roles = Role.values();
     public AuthenticationTests()
     {
     }
 
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines()
+    {
+        return Arrays.asList(new Object[][] {{"memory"}, {"sqlite"}});
+    }
+
     @Before
-    public void setUp() throws SQLException
+    public void setUp() throws SQLException, IOException
     {
-        DatabaseController.connect();
+        database = SQLiteRepositoryTests.connect(engine);
         DatabaseController.addDummyUser("zzz987", "0000", "password", "012345");
         DatabaseController.addDummyUser("cva987", "0001", "password", "0");
     }
 
     @After
-    public void tearDown()
+    public void tearDown() throws IOException
     {
         DatabaseController.removeDummyUser("zzz987");
         DatabaseController.removeDummyUser("cva987");
         DatabaseController.disconnect();
+        SQLiteRepositoryTests.delete(database);
     }
 
     @Test
@@ -1,9 +1,4 @@
-import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.logging.Logger;
 
@@ -34,6 +29,8 @@ class Authenticator {
      * @return A new Session with the provided username, role and an exit code
      */
     static Session authenticate(String username, String password, Role role) {
+        AuthenticationEvent event = new AuthenticationEvent();
+        event.begin();
         ExitCode exitCode;
         if(!correctPassword(username, password)) {
             //Failure code 1: Incorrect username or password.
@@ -48,8 +45,16 @@ class Authenticator {
         long loginTime = System.currentTimeMillis();
         Session retSession = new Session(loginTime, username, role, exitCode);
         activeSessions.add(retSession);
+        AppMetrics.recordLogin(exitCode);
 
         logAuthCheck(retSession);
+        event.end();
+        if (event.shouldCommit()) {
+            event.usernameHash = AuthenticationEvent.hash(username);
+            event.role = String.valueOf(role);
+            event.exitCode = exitCode.name();
+            event.commit();
+        }
         //System.err.println("Exit code is " + retSession.getExitCode());
         return retSession;
     }
@@ -61,6 +66,7 @@ class Authenticator {
      */
     static boolean logout(Session activeSession) {
         boolean success = activeSessions.remove(activeSession);
+        AuthorisationCache.invalidateSession(activeSession);
         activeSession.destroySession();
         return success;
     }
@@ -127,15 +133,9 @@ class Authenticator {
         logContent.append(",");
         logContent.append(createdSession.getExitCode().name());
 
-        File path = new File("log/AuthenticationLog.txt").getAbsoluteFile();
-        //Make the log directory if it doesn't already exist
-        path.getParentFile().mkdirs();
         try {
-            //Make the log file if it doesn't already exist
-            path.createNewFile();
-            //Append timestamp and info
-            Files.write(path.toPath(), Arrays.asList(logContent.toString()),
-                    StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            //Append timestamp and info, rotating the log if the current segment is full
+            AuditLog.AUTHENTICATION.append(logContent.toString());
         } catch (IOException e) {
             System.err.println("IOException when logging the Authentication Check.");
         }
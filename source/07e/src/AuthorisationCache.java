@@ -0,0 +1,121 @@
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A short-lived cache of authorisation decisions which needed the database to make,
+ *  keyed on the session, the permission and the target user.
+ * Decisions made from the session alone are cheap, so are not cached.
+ * Decisions last "yuconz.authCache.ttlMs" milliseconds (default 30000, 0 disables the cache).
+ * Every decision is dropped when reviews are created, assigned or signed,
+ *  and a session's decisions are dropped when it logs out.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class AuthorisationCache {
+    private final static long TTL_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("yuconz.authCache.ttlMs", 30000));
+    private final static int MAX_ENTRIES = Integer.getInteger("yuconz.authCache.maxEntries", 10000);
+    private final static ConcurrentHashMap<Key, Decision> decisions = new ConcurrentHashMap<>();
+    //Increased whenever reviews change, so that decisions made before then are ignored.
+    private final static AtomicLong reviewGeneration = new AtomicLong();
+
+    /**
+     * Returns the cached decision for this check, or makes and caches a new one.
+     * @param user The session of the user that requested the action.
+     * @param action The action that was requested.
+     * @param targetUser The user the action would be performed on.
+     * @param decide Makes the decision when there isn't a cached one.
+     * @return Whether the action is authorised.
+     */
+    static boolean get(Session user, Permission action, String targetUser, BooleanSupplier decide) {
+        if (TTL_NANOS <= 0) {
+            return decide.getAsBoolean();
+        }
+        Key key = new Key(user, action, targetUser);
+        long generation = reviewGeneration.get();
+        Decision cached = decisions.get(key);
+        if (cached != null && cached.generation == generation
+                && System.nanoTime() - cached.madeAt < TTL_NANOS) {
+            AppMetrics.cacheHit("authorisation");
+            return cached.granted;
+        }
+        AppMetrics.cacheMiss("authorisation");
+        boolean granted = decide.getAsBoolean();
+        if (decisions.size() >= MAX_ENTRIES) {
+            decisions.clear();
+        }
+        decisions.put(key, new Decision(granted, generation, System.nanoTime()));
+        return granted;
+    }
+
+    /**
+     * Drops every cached decision, as a review has been created, assigned or signed.
+     */
+    static void invalidateReviews() {
+        reviewGeneration.incrementAndGet();
+        decisions.clear();
+    }
+
+    /**
+     * Drops the cached decisions of a session which has ended.
+     * @param session The session that has ended.
+     */
+    static void invalidateSession(Session session) {
+        decisions.keySet().removeIf((key) -> key.session == session);
+    }
+
+    /**
+     * Returns the number of cached decisions.
+     * @return The number of cached decisions.
+     */
+    static int size() {
+        return decisions.size();
+    }
+
+    /**
+     * The session, permission and target user of an authorisation check.
+     * Sessions are compared by identity, so a new login never sees an old session's decisions.
+     */
+    private static class Key {
+        private final Session session;
+        private final Permission action;
+        private final String targetUser;
+
+        Key(Session session, Permission action, String targetUser) {
+            this.session = session;
+            this.action = action;
+            this.targetUser = targetUser;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return session == other.session && action == other.action
+                    && Objects.equals(targetUser, other.targetUser);
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(session) * 31 + action.hashCode()) * 31
+                    + Objects.hashCode(targetUser);
+        }
+    }
+
+    private static class Decision {
+        private final boolean granted;
+        private final long generation;
+        private final long madeAt;
+
+        Decision(boolean granted, long generation, long madeAt) {
+            this.granted = granted;
+            this.generation = generation;
+            this.madeAt = madeAt;
+        }
+    }
+}
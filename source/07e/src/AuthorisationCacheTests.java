@@ -0,0 +1,73 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AuthorisationCacheTests
+{
+    private final AtomicInteger decisions = new AtomicInteger();
+    private final Session session =
+            new Session(0, "rev001", Role.REVIEWER, ExitCode.LOGIN_SUCCESS);
+
+    public AuthorisationCacheTests()
+    {
+    }
+
+    @After
+    public void tearDown()
+    {
+        AuthorisationCache.invalidateReviews();
+    }
+
+    private boolean check(Session user, String targetUser)
+    {
+        return AuthorisationCache.get(user, Permission.SIGN_ANNUAL_REVIEW, targetUser, () -> {
+            decisions.incrementAndGet();
+            return true;
+        });
+    }
+
+    @Test
+    public void repeatedChecksAreCached()
+    {
+        assertTrue(check(session, "abc123"));
+        assertTrue(check(session, "abc123"));
+        assertEquals(1, decisions.get());
+    }
+
+    @Test
+    public void targetsAreCachedSeparately()
+    {
+        check(session, "abc123");
+        check(session, "zzz987");
+        assertEquals(2, decisions.get());
+    }
+
+    @Test
+    public void sessionsAreCachedSeparately()
+    {
+        check(session, "abc123");
+        check(new Session(0, "rev001", Role.REVIEWER, ExitCode.LOGIN_SUCCESS), "abc123");
+        assertEquals(2, decisions.get());
+    }
+
+    @Test
+    public void reviewChangesInvalidate()
+    {
+        check(session, "abc123");
+        AuthorisationCache.invalidateReviews();
+        check(session, "abc123");
+        assertEquals(2, decisions.get());
+    }
+
+    @Test
+    public void logoutInvalidatesSession()
+    {
+        Session other = new Session(0, "rev002", Role.REVIEWER, ExitCode.LOGIN_SUCCESS);
+        check(session, "abc123");
+        check(other, "abc123");
+        Authenticator.logout(session);
+        assertEquals(1, AuthorisationCache.size());
+    }
+}
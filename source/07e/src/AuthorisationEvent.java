@@ -0,0 +1,27 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for a single call to Authoriser.getAuthorisation.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+@Name("yuconz.Authorisation")
+@Label("Authorisation")
+@Category({"Yuconz", "Security"})
+@Description("A permission check")
+@StackTrace(false)
+class AuthorisationEvent extends Event {
+    @Label("Permission")
+    String permission;
+
+    @Label("Role")
+    String role;
+
+    @Label("Granted")
+    boolean granted;
+}
@@ -1,14 +1,10 @@
-import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
-import java.util.Arrays;
 import java.util.logging.Logger;
 
 /**
  * Authorises users to perform certain actions based on their authenticated role in their active Session.
- * ToDo: Implement AuthorisationDB for cases such as Manager reading their supervised employees' annual review records vs reading another employee's records.
+ * Managers may read the annual review records of anyone below them in the supervisor hierarchy,
+ *  which the database keeps as a closure table so the check is a single lookup.
  * @author Marin md485, James jd556
  * @version 20190301
  */
@@ -25,6 +21,23 @@ class Authoriser {
      * @return Whether the requesting user has permission to perform the specified action.
      */
     static boolean getAuthorisation(Session user, Permission action, String targetUser) {
+        Tracer.Span span = Tracer.span("Authoriser.getAuthorisation")
+                .tag("permission", action.name());
+        try {
+            return authorise(user, action, targetUser, span);
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Decides whether the user may perform the action, records the decision,
+     *  and tags the span with it.
+     */
+    private static boolean authorise(Session user, Permission action, String targetUser,
+                                     Tracer.Span span) {
+        AuthorisationEvent event = new AuthorisationEvent();
+        event.begin();
         boolean success;
         switch (action) {
             case READ_PERSONAL_DETAILS: case AMEND_PERSONAL_DETAILS: case CREATE_ANNUAL_REVIEW:
@@ -34,23 +47,42 @@ class Authoriser {
                 break;
             case HR_AMEND_PERSONAL_DETAILS: case HR_READ_PERSONAL_DETAILS:
             case CREATE_PERSONAL_DETAILS: case READ_ANY_ANNUAL_REVIEW:
+            case ASSIGN_SECOND_REVIEWERS: case VIEW_REVIEW_COUNTS:
+            case SEARCH_ANNUAL_REVIEWS: case SEARCH_PERSONAL_DETAILS:
                 //Check whether the user requesting the file has the specified HR permission
                 success = user.getRole().getPermissions().contains(action);
                 break;
             case REVIEWER_AMEND_ANNUAL_REVIEW: case REVIEWER_READ_PAST_ANNUAL_REVIEW:
             case REVIEWER_READ_CURRENT_ANNUAL_REVIEW:
                 success = user.getRole().getPermissions().contains(action) &&
-                        DatabaseController.listReviewees(user.getUsername())
-                                .contains(targetUser);
+                        AuthorisationCache.get(user, action, targetUser, () ->
+                                DatabaseController.listReviewees(user.getUsername())
+                                        .contains(targetUser));
+                break;
+            case MANAGER_READ_ANNUAL_REVIEW:
+                //Check whether the target is anywhere below the manager in the hierarchy
+                success = user.getRole().getPermissions().contains(action) &&
+                        DatabaseController.isInManagementChain(user.getUsername(), targetUser);
                 break;
             case SIGN_ANNUAL_REVIEW:
-                success = user.getUsername().equals(targetUser) || DatabaseController.isReviewing(user.getUsername(), targetUser);
+                success = user.getUsername().equals(targetUser) ||
+                        AuthorisationCache.get(user, action, targetUser, () ->
+                                DatabaseController.isReviewing(user.getUsername(), targetUser));
                 break;
             default:
                 //This isn't a defined request
                 success = false;
         }
+        AppMetrics.recordAuthorisation(action, success);
         logAuthAttempt(user, action, targetUser, success);
+        event.end();
+        if (event.shouldCommit()) {
+            event.permission = action.name();
+            event.role = String.valueOf(user.getRole());
+            event.granted = success;
+            event.commit();
+        }
+        span.tag("granted", success);
         return success;
     }
 
@@ -83,15 +115,9 @@ class Authoriser {
             logContent.append("Not Authorised");
         }
 
-        File path = new File("log/AuthorisationLog.txt").getAbsoluteFile();
-        //Make the log directory if it doesn't already exist
-        path.getParentFile().mkdirs();
         try {
-            //Make the log file if it doesn't already exist
-            path.createNewFile();
-            //Append timestamp and info
-            Files.write(path.toPath(), Arrays.asList(logContent.toString()),
-                    StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            //Append timestamp and info, rotating the log if the current segment is full
+            AuditLog.AUTHORISATION.append(logContent.toString());
         } catch (IOException e) {
             System.err.println("IOException when logging the Authorisation Check.");
         }
@@ -2,21 +2,38 @@ import static org.junit.Assert.*;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
 
+@RunWith(Parameterized.class)
 public class AuthoriserTests
 {
+    //Every test runs against the in-memory repository and against a new SQLite database.
+    @Parameterized.Parameter
+    public String engine;
+    private Path database;
     private Session UserHR, User;
 
     public AuthoriserTests()
     {
     }
 
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines()
+    {
+        return Arrays.asList(new Object[][] {{"memory"}, {"sqlite"}});
+    }
+
     @Before
-    public void setUp() throws SQLException
+    public void setUp() throws SQLException, IOException
     {
-        DatabaseController.connect();
+        database = SQLiteRepositoryTests.connect(engine);
         DatabaseController.addDummyUser("zzz987", "0000", "password", "012345");
         DatabaseController.addDummyUser("cva987", "0001", "password", "0");
 
@@ -25,11 +42,12 @@ public class AuthoriserTests
     }
 
     @After
-    public void tearDown()
+    public void tearDown() throws IOException
     {
         DatabaseController.removeDummyUser("zzz987");
         DatabaseController.removeDummyUser("cva987");
         DatabaseController.disconnect();
+        SQLiteRepositoryTests.delete(database);
     }
 
     @Test
@@ -91,4 +109,39 @@ public class AuthoriserTests
         assertTrue(Authoriser.getAuthorisation(UserHR, Permission.CREATE_PERSONAL_DETAILS, "akc342"));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void managerCanReadManagedReviews()
+    {
+        Session manager = Authenticator.authenticate("zzz987", "password", Role.MANAGER);
+        DatabaseController.setSupervisor("0001", "0000");
+        assertTrue(Authoriser.getAuthorisation(manager, Permission.MANAGER_READ_ANNUAL_REVIEW, User.getUsername()));
+    }
+
+    @Test
+    public void managerCantReadUnmanagedReviews()
+    {
+        Session manager = Authenticator.authenticate("zzz987", "password", Role.MANAGER);
+        assertFalse(Authoriser.getAuthorisation(manager, Permission.MANAGER_READ_ANNUAL_REVIEW, User.getUsername()));
+    }
+
+    @Test
+    public void employeeCantSuperviseTheirManager()
+    {
+        DatabaseController.setSupervisor("0001", "0000");
+        DatabaseController.setSupervisor("0000", "0001");
+        //The second assignment is refused, so the first one still stands.
+        assertTrue(DatabaseController.listManagedEmployees("0001").isEmpty());
+        assertEquals(1, DatabaseController.listManagedEmployees("0000").size());
+        assertTrue(DatabaseController.isInManagementChain("zzz987", "cva987"));
+        assertFalse(DatabaseController.isInManagementChain("cva987", "zzz987"));
+    }
+
+    @Test
+    public void newReviewIsSeenByCachedSignOffDecisions()
+    {
+        DatabaseController.setSupervisor("0001", "0000");
+        assertFalse(Authoriser.getAuthorisation(UserHR, Permission.SIGN_ANNUAL_REVIEW, User.getUsername()));
+        DatabaseController.createAnnualReview(User.getUsername());
+        assertTrue(Authoriser.getAuthorisation(UserHR, Permission.SIGN_ANNUAL_REVIEW, User.getUsername()));
+    }
+}
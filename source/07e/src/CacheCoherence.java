@@ -0,0 +1,186 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps caches in step with changes other processes make to the same SQLite database.
+ * Every "yuconz.coherence.pollMs" milliseconds (default 1000, 0 disables polling) it asks
+ *  SQLite whether the database has changed, using PRAGMA data_version, which costs no
+ *  more than a lock check. Only if it has are the new rows of the ChangeLog table read,
+ *  and each changed row is passed to the listener.
+ * If rows were pruned from the ChangeLog before they were read, the listener is told to
+ *  drop everything it caches.
+ * The poller has its own connection, so the changes it sees include this process's own.
+ *  The listener is called on the poller's thread and is handed that connection, so it can
+ *  read the changed rows without sharing a connection with another thread.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class CacheCoherence {
+    private final static long POLL_MILLIS = Long.getLong("yuconz.coherence.pollMs", 1000);
+    //How long changes are kept in the ChangeLog, so slow pollers don't miss them.
+    private final static long RETENTION_SECONDS =
+            TimeUnit.MINUTES.toSeconds(Long.getLong("yuconz.changeLog.retentionMinutes", 60));
+    private final String path;
+    private final Listener listener;
+    private Connection conn;
+    private Thread poller;
+    private long dataVersion = -1;
+    private long lastSeq;
+    private long lastPruned;
+    private volatile boolean closed;
+
+    /**
+     * Told about the rows other connections have changed.
+     */
+    interface Listener {
+        /**
+         * A row has been inserted, updated or deleted.
+         * @param conn The poller's connection, for reading the row.
+         * @param table The table the row is in.
+         * @param key The primary key of the row.
+         */
+        void changed(Connection conn, String table, String key);
+
+        /**
+         * Changes were missed, so everything cached may be stale.
+         * @param conn The poller's connection, for reloading the cache.
+         */
+        void invalidateAll(Connection conn);
+    }
+
+    /**
+     * Creates a poller for the database at the given location.
+     * @param path The location of the database file.
+     * @param listener Told about each changed row.
+     */
+    CacheCoherence(String path, Listener listener) {
+        this.path = path;
+        this.listener = listener;
+    }
+
+    /**
+     * Opens the poller's connection, and starts polling from the latest change.
+     * Does nothing if polling is disabled.
+     * @throws SQLException If the connection could not be opened.
+     */
+    synchronized void start() throws SQLException {
+        if (POLL_MILLIS <= 0 || poller != null) {
+            return;
+        }
+        conn = DriverManager.getConnection("jdbc:sqlite:" + path);
+        try (Statement statement = conn.createStatement();
+             ResultSet rSet = statement.executeQuery(
+                     "SELECT seq FROM sqlite_sequence WHERE name = 'ChangeLog'")) {
+            lastSeq = rSet.next() ? rSet.getLong(1) : 0;
+        }
+        dataVersion = getDataVersion();
+        poller = new Thread(this::pollLoop, "yuconz-cache-coherence");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    /**
+     * Stops polling and closes the poller's connection.
+     */
+    void close() {
+        Thread stopping;
+        synchronized (this) {
+            closed = true;
+            stopping = poller;
+        }
+        if (stopping != null) {
+            stopping.interrupt();
+            try {
+                stopping.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            try {
+                if (conn != null) {
+                    conn.close();
+                    conn = null;
+                }
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks for changes once, passing any to the listener.
+     * @return The number of changed rows found.
+     * @throws SQLException If the database could not be read.
+     */
+    synchronized int poll() throws SQLException {
+        if (conn == null) {
+            return 0;
+        }
+        long version = getDataVersion();
+        if (version == dataVersion) {
+            return 0;
+        }
+        dataVersion = version;
+        int changes = 0;
+        try (Tracer.Span span = Tracer.span("CacheCoherence.poll");
+             StatementProbe pStatement = StatementProbe.prepare(conn, "pollChangeLog",
+                     "SELECT seq, tableName, rowKey FROM ChangeLog WHERE seq > ? ORDER BY seq")) {
+            pStatement.setLong(1, lastSeq);
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                long seq = rSet.getLong("seq");
+                //Sequence numbers are only skipped when the rows were pruned unread.
+                if (seq != lastSeq + 1 && changes == 0) {
+                    listener.invalidateAll(conn);
+                }
+                lastSeq = seq;
+                listener.changed(conn, rSet.getString("tableName"), rSet.getString("rowKey"));
+                changes++;
+            }
+            span.tag("changes", changes);
+        }
+        prune();
+        return changes;
+    }
+
+    private void pollLoop() {
+        while (!closed) {
+            try {
+                Thread.sleep(POLL_MILLIS);
+                poll();
+            } catch (InterruptedException e) {
+                return;
+            } catch (SQLException e) {
+                System.out.println("Could not check for changes: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes changes older than the retention period, at most once a minute.
+     */
+    private void prune() throws SQLException {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        if (now - lastPruned < 60) {
+            return;
+        }
+        lastPruned = now;
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "pruneChangeLog",
+                "DELETE FROM ChangeLog WHERE changedAt < ?")) {
+            pStatement.setLong(1, now - RETENTION_SECONDS);
+            pStatement.execute();
+        }
+    }
+
+    private long getDataVersion() throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rSet = statement.executeQuery("PRAGMA data_version")) {
+            return rSet.next() ? rSet.getLong(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.Locale;
+
+/**
+ * A change to a personal details record or an annual review, read from the change stream.
+ * Only the row's key is recorded: consumers read the row itself if they need it, and
+ *  so always see its latest values.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class ChangeEvent {
+    /**
+     * What happened to the row. An archived review was moved into the archive, rather than
+     *  deleted, and is still read by getPastReviews when asked for.
+     */
+    enum Operation {
+        INSERT, UPDATE, DELETE, ARCHIVE;
+
+        static Operation of(String stored) {
+            return valueOf(stored.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final long seq;
+    private final String table;
+    private final String key;
+    private final Operation operation;
+    private final long changedAt;
+
+    /**
+     * Creates a change.
+     * @param seq Where the change is in the stream. Later changes have higher numbers.
+     * @param table The table changed: "PersonalDetails" or "AnnualReview".
+     * @param key The staff number or reviewID of the row.
+     * @param operation What happened to the row.
+     * @param changedAt When it happened, in milliseconds since the epoch.
+     */
+    ChangeEvent(long seq, String table, String key, Operation operation, long changedAt) {
+        this.seq = seq;
+        this.table = table;
+        this.key = key;
+        this.operation = operation;
+        this.changedAt = changedAt;
+    }
+
+    long getSeq() {
+        return seq;
+    }
+
+    String getTable() {
+        return table;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    Operation getOperation() {
+        return operation;
+    }
+
+    long getChangedAt() {
+        return changedAt;
+    }
+
+    public String toString() {
+        return seq + " " + operation + " " + table + " " + key;
+    }
+}
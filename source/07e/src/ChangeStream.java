@@ -0,0 +1,118 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails the changes to personal details and annual reviews, for systems such as payroll
+ *  which need to follow them without reading whole tables.
+ * Changes are read in batches, in the order they were committed. The offset is the seq
+ *  of the last change read, so a consumer which saves it after handling each batch can
+ *  resume from there, and sees every change at least once.
+ * A sharded repository has a change stream in each shard, so the stream keeps an offset
+ *  for each, and each batch holds the changes of one or more shards in turn.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class ChangeStream {
+    private final static long POLL_MILLIS = Long.getLong("yuconz.changeStream.pollMs", 200);
+    private final List<HRRepository> shards;
+    private final int batchSize;
+    private final long[] offsets;
+    //The shard the next poll reads first, so a busy shard can't hold up the others.
+    private int nextShard;
+
+    /**
+     * Creates a tail of the changes after the given offset, of a repository which isn't split.
+     * @param repository The repository whose changes to read.
+     * @param offset The seq of the last change already handled, or 0 for the start.
+     * @param batchSize The most changes returned by each poll.
+     * @throws IllegalArgumentException If the repository has more than one shard.
+     */
+    ChangeStream(HRRepository repository, long offset, int batchSize) {
+        this(repository, new long[] {offset}, batchSize);
+    }
+
+    /**
+     * Creates a tail of the changes after the given offsets.
+     * @param repository The repository whose changes to read.
+     * @param offsets The seq of the last change already handled in each shard, in the order
+     *  of getShards, or null for the start.
+     * @param batchSize The most changes returned by each poll.
+     * @throws IllegalArgumentException If there isn't an offset for each shard.
+     */
+    ChangeStream(HRRepository repository, long[] offsets, int batchSize) {
+        this.shards = repository.getShards();
+        this.offsets = offsets == null ? new long[shards.size()] : offsets.clone();
+        this.batchSize = batchSize;
+        if (this.offsets.length != shards.size()) {
+            throw new IllegalArgumentException("There are " + shards.size() +
+                    " shards, but " + this.offsets.length + " offsets");
+        }
+    }
+
+    /**
+     * Reads the next batch of changes, without waiting for any.
+     * @return Up to batchSize changes, oldest first, or none if there are no new changes.
+     * @throws SQLException If the changes could not be read.
+     */
+    List<ChangeEvent> poll() throws SQLException {
+        try (Tracer.Span span = Tracer.span("ChangeStream.poll")) {
+            List<ChangeEvent> changes = new ArrayList<>();
+            for (int i = 0; i < shards.size() && changes.size() < batchSize; i++) {
+                int shard = (nextShard + i) % shards.size();
+                List<ChangeEvent> shardChanges = shards.get(shard)
+                        .readChanges(offsets[shard], batchSize - changes.size());
+                if (!shardChanges.isEmpty()) {
+                    offsets[shard] = shardChanges.get(shardChanges.size() - 1).getSeq();
+                    changes.addAll(shardChanges);
+                }
+            }
+            nextShard = (nextShard + 1) % shards.size();
+            span.tag("changes", changes.size());
+            return changes;
+        }
+    }
+
+    /**
+     * Reads the next batch of changes, waiting for one if there are none yet.
+     * @param timeout How long to wait for a change.
+     * @param unit The unit of the timeout.
+     * @return Up to batchSize changes, oldest first, or none if the wait timed out.
+     * @throws SQLException If the changes could not be read.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    List<ChangeEvent> poll(long timeout, TimeUnit unit) throws SQLException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<ChangeEvent> changes = poll();
+        while (changes.isEmpty()) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                break;
+            }
+            Thread.sleep(Math.min(POLL_MILLIS, remaining));
+            changes = poll();
+        }
+        return changes;
+    }
+
+    /**
+     * Returns the seq of the last change read, to resume from later.
+     * @return The offset of this stream.
+     * @throws IllegalStateException If the repository has more than one shard.
+     */
+    long getOffset() {
+        if (offsets.length != 1) {
+            throw new IllegalStateException("Each shard has its own offset");
+        }
+        return offsets[0];
+    }
+
+    /**
+     * Returns the seq of the last change read from each shard, to resume from later.
+     * @return The offsets of this stream, in the order of the repository's shards.
+     */
+    long[] getOffsets() {
+        return offsets.clone();
+    }
+}
@@ -0,0 +1,115 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(Parameterized.class)
+public class ChangeStreamTests
+{
+    //Every test runs against the in-memory repository and against a new SQLite database.
+    @Parameterized.Parameter
+    public String engine;
+    private Path database;
+    private HRRepository repository;
+    private long start;
+
+    public ChangeStreamTests()
+    {
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines()
+    {
+        return Arrays.asList(new Object[][] {{"memory"}, {"sqlite"}});
+    }
+
+    @Before
+    public void setUp() throws Exception
+    {
+        database = SQLiteRepositoryTests.newDatabase(engine);
+        repository = SQLiteRepositoryTests.repository(database);
+        repository.connect();
+        //Skips the changes made creating the dummy users.
+        ChangeStream skip = new ChangeStream(repository, 0, Integer.MAX_VALUE);
+        skip.poll();
+        start = skip.getOffset();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        repository.close();
+        SQLiteRepositoryTests.delete(database);
+    }
+
+    @Test
+    public void changesAreStreamedInOrder() throws Exception
+    {
+        repository.addPersonalDetails(SQLiteRepositoryTests.details("9001", "Harris"));
+        repository.updatePersonalDetails(SQLiteRepositoryTests.details("9001", "Harper"));
+        AnnualReview review = new AnnualReview();
+        review.setField("Staff No", "9001");
+        repository.insertAnnualReview(review);
+        repository.removePersonalDetails("9001");
+
+        List<ChangeEvent> changes = new ChangeStream(repository, start, 10).poll();
+        assertEquals(4, changes.size());
+        assertEquals(ChangeEvent.Operation.INSERT, changes.get(0).getOperation());
+        assertEquals(ChangeEvent.Operation.UPDATE, changes.get(1).getOperation());
+        assertEquals("AnnualReview", changes.get(2).getTable());
+        assertEquals(ChangeEvent.Operation.DELETE, changes.get(3).getOperation());
+        assertEquals("9001", changes.get(3).getKey());
+        for (int i = 1; i < changes.size(); i++) {
+            assertEquals(changes.get(i - 1).getSeq() + 1, changes.get(i).getSeq());
+        }
+    }
+
+    @Test
+    public void consumersResumeFromTheirOffsetInBatches() throws Exception
+    {
+        for (int i = 0; i < 5; i++) {
+            repository.addPersonalDetails(SQLiteRepositoryTests.details("900" + i, "Harris"));
+        }
+        ChangeStream stream = new ChangeStream(repository, start, 2);
+        assertEquals("9000", stream.poll().get(0).getKey());
+        long saved = stream.getOffset();
+
+        ChangeStream resumed = new ChangeStream(repository, saved, 2);
+        List<ChangeEvent> batch = resumed.poll();
+        assertEquals(2, batch.size());
+        assertEquals("9002", batch.get(0).getKey());
+        assertEquals(1, resumed.poll().size());
+        assertTrue(resumed.poll(10, TimeUnit.MILLISECONDS).isEmpty());
+
+        repository.updatePersonalDetails(SQLiteRepositoryTests.details("9004", "Harper"));
+        batch = resumed.poll(1, TimeUnit.SECONDS);
+        assertEquals(ChangeEvent.Operation.UPDATE, batch.get(0).getOperation());
+    }
+
+    @Test
+    public void settingAReviewsStatusIsntAChangeOfItsOwn() throws Exception
+    {
+        AnnualReview review = new AnnualReview();
+        review.setField("Staff No", "1234");
+        repository.insertAnnualReview(review);
+        ChangeStream stream = new ChangeStream(repository, start, 10);
+        List<ChangeEvent> changes = stream.poll();
+        assertEquals(1, changes.size());
+        assertEquals(ChangeEvent.Operation.INSERT, changes.get(0).getOperation());
+
+        review = repository.getAnnualReview(Integer.parseInt(changes.get(0).getKey()));
+        assertTrue(review.signOff("1234"));
+        repository.updateAnnualReview(review);
+        changes = stream.poll();
+        assertEquals(1, changes.size());
+        assertEquals(ChangeEvent.Operation.UPDATE, changes.get(0).getOperation());
+    }
+}
@@ -0,0 +1,182 @@
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs database controller operations in the background, so that independent lookups
+ *  can be made at the same time instead of one after another.
+ * Operations run on virtual threads when the JVM has them, or else on a fixed pool of
+ *  daemon threads. Either way no more operations run at once than the repository has
+ *  connections, or "yuconz.async.maxConcurrent" if that is set; the rest wait their turn.
+ * That only bounds the total: operations which need the same connection, such as two on
+ *  one shard, wait for each other in the repository, which lets one thread at a time use
+ *  each connection.
+ * Each operation's spans belong to the trace of the thread which started it.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class DatabaseAsync {
+    private static ExecutorService executor;
+    //Bounds the virtual threads running operations, or null if the fixed pool bounds them.
+    private static Semaphore permits;
+
+    private DatabaseAsync() {
+    }
+
+    /**
+     * Starts the executor if it isn't running yet, sized for the connected repository.
+     * @return The executor.
+     */
+    private static synchronized ExecutorService executor() {
+        if (executor == null) {
+            int maxConcurrent = Integer.getInteger("yuconz.async.maxConcurrent",
+                    Math.max(1, DatabaseController.getConnectionCount()));
+            executor = newVirtualThreadExecutor();
+            if (executor != null) {
+                permits = new Semaphore(maxConcurrent, true);
+            } else {
+                AtomicInteger threads = new AtomicInteger();
+                executor = Executors.newFixedThreadPool(maxConcurrent, (runnable) -> {
+                    Thread thread = new Thread(runnable, "yuconz-async-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Creates an executor which starts a virtual thread for each task.
+     * Looked up reflectively, as virtual threads only exist from Java 21.
+     * @return The executor, or null if this JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stops the executor, waiting briefly for running operations to finish.
+     * The next operation starts a new one, sized for whichever repository is connected then.
+     */
+    static synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+            permits = null;
+        }
+    }
+
+    /**
+     * Runs a database operation in the background, once a connection is free.
+     * @param operation The operation, usually a call to the database controller.
+     * @param <T> The type of the operation's result.
+     * @return The operation's result, completed exceptionally if it threw.
+     */
+    static <T> CompletableFuture<T> supply(Supplier<T> operation) {
+        ExecutorService running = executor();
+        Semaphore limit = permits;
+        Supplier<T> traced = Tracer.inCurrentTrace(operation);
+        if (limit == null) {
+            return CompletableFuture.supplyAsync(traced, running);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            limit.acquireUninterruptibly();
+            try {
+                return traced.get();
+            } finally {
+                limit.release();
+            }
+        }, running);
+    }
+
+    /**
+     * Gets the staff number of a user in the background.
+     * @param username The user.
+     * @return The user's staff number, or null if they don't exist.
+     */
+    static CompletableFuture<String> getStaffNo(String username) {
+        return supply(() -> DatabaseController.getStaffNo(username));
+    }
+
+    /**
+     * Gets a user's personal details in the background.
+     * @param userID The username or staff number of the user.
+     * @return Their personal details, or null if they have none.
+     */
+    static CompletableFuture<PersonalDetails> getPersonalDetails(String userID) {
+        return supply(() -> DatabaseController.getPersonalDetails(userID));
+    }
+
+    /**
+     * Gets a user's unfinished annual review in the background.
+     * @param username The user.
+     * @return Their unfinished review, or null if they have none.
+     */
+    static CompletableFuture<AnnualReview> getUnfinishedReview(String username) {
+        return supply(() -> DatabaseController.getUnfinishedReview(username));
+    }
+
+    /**
+     * Gets all of a user's annual reviews in the background.
+     * @param username The user.
+     * @return Their reviews.
+     */
+    static CompletableFuture<List<AnnualReview>> getReviews(String username) {
+        return supply(() -> DatabaseController.getReviews(username));
+    }
+
+    /**
+     * Gets a user's completed annual reviews in the background.
+     * @param username The user.
+     * @return Their completed reviews.
+     */
+    static CompletableFuture<List<AnnualReview>> getPastReviews(String username) {
+        return supply(() -> DatabaseController.getPastReviews(username));
+    }
+
+    /**
+     * Gets an annual review in the background.
+     * @param reviewID The ID of the review.
+     * @return The review, or null if it doesn't exist.
+     */
+    static CompletableFuture<AnnualReview> getAnnualReview(Integer reviewID) {
+        return supply(() -> DatabaseController.getAnnualReview(reviewID));
+    }
+
+    /**
+     * Lists a reviewer's reviewees in the background.
+     * @param username The reviewer.
+     * @return The staff numbers of their active reviewees.
+     */
+    static CompletableFuture<List<String>> listReviewees(String username) {
+        return supply(() -> DatabaseController.listReviewees(username));
+    }
+
+    /**
+     * Saves an updated annual review in the background.
+     * @param review The updated review.
+     * @return Completes once the review is saved.
+     */
+    static CompletableFuture<Void> updateAnnualReview(AnnualReview review) {
+        return supply(() -> {
+            DatabaseController.updateAnnualReview(review);
+            return null;
+        });
+    }
+}
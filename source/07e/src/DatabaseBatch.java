@@ -0,0 +1,371 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Several reads and writes on behalf of one user, run together.
+ * Operations are added to the batch, each with the permission it needs, and run when the
+ *  batch is executed. Each one is authorised on its own, so one denied operation doesn't
+ *  stop the rest.
+ * Operations run in the order they were added, but consecutive reads of personal details
+ *  or of unfinished reviews are each made with a single set-based query, so a screen
+ *  showing many employees costs a few queries instead of a few per employee.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class DatabaseBatch {
+    private final Session session;
+    private final List<Operation<?>> operations = new ArrayList<>();
+    private boolean executed;
+
+    /**
+     * The kinds of operation a batch can hold, each with the permissions it can be run under.
+     */
+    private enum Kind {
+        READ_PERSONAL_DETAILS(Permission.READ_PERSONAL_DETAILS,
+                Permission.HR_READ_PERSONAL_DETAILS),
+        READ_UNFINISHED_REVIEW(Permission.READ_CURRENT_ANNUAL_REVIEW,
+                Permission.REVIEWER_READ_CURRENT_ANNUAL_REVIEW, Permission.READ_ANY_ANNUAL_REVIEW,
+                Permission.MANAGER_READ_ANNUAL_REVIEW),
+        READ_PAST_REVIEWS(Permission.READ_PAST_ANNUAL_REVIEW,
+                Permission.REVIEWER_READ_PAST_ANNUAL_REVIEW, Permission.READ_ANY_ANNUAL_REVIEW,
+                Permission.MANAGER_READ_ANNUAL_REVIEW),
+        LIST_REVIEWEES(),
+        AMEND_PERSONAL_DETAILS(Permission.AMEND_PERSONAL_DETAILS,
+                Permission.HR_AMEND_PERSONAL_DETAILS),
+        UPDATE_ANNUAL_REVIEW(Permission.REVIEWER_AMEND_ANNUAL_REVIEW,
+                Permission.SIGN_ANNUAL_REVIEW);
+
+        private final Set<Permission> permissions = EnumSet.noneOf(Permission.class);
+
+        Kind(Permission... permissions) {
+            this.permissions.addAll(Arrays.asList(permissions));
+        }
+
+        boolean isRead() {
+            return this != AMEND_PERSONAL_DETAILS && this != UPDATE_ANNUAL_REVIEW;
+        }
+
+        /**
+         * Checks whether an operation of this kind can be run under a permission.
+         * @param permission The permission, or null for the operations that need none.
+         * @return Whether the permission is one for this kind of operation.
+         */
+        boolean allows(Permission permission) {
+            return permission == null ? permissions.isEmpty() : permissions.contains(permission);
+        }
+    }
+
+    /**
+     * The outcome of one operation in a batch, available once the batch has been executed.
+     * @param <T> The type of the operation's value.
+     */
+    static final class Result<T> {
+        private boolean done;
+        private boolean authorised;
+        private T value;
+        private RuntimeException error;
+
+        private Result() {
+        }
+
+        /**
+         * Gets whether the operation was authorised and run.
+         * @return Whether it was authorised.
+         */
+        boolean isAuthorised() {
+            return authorised;
+        }
+
+        /**
+         * Gets the error the operation failed with.
+         * @return The error, or null if it didn't fail.
+         */
+        RuntimeException getError() {
+            return error;
+        }
+
+        /**
+         * Gets the value the operation read.
+         * @return The value, or null if nothing was found, the operation was a write,
+         *  or it wasn't authorised or failed.
+         * @throws IllegalStateException If the batch hasn't been executed yet.
+         */
+        T get() {
+            if (!done) {
+                throw new IllegalStateException("The batch hasn't been executed yet.");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * An operation waiting to run.
+     * @param <T> The type of its value.
+     */
+    private static final class Operation<T> {
+        private final Kind kind;
+        private final Permission permission;
+        private final String target;
+        private final Object argument;
+        private final Result<T> result = new Result<>();
+
+        private Operation(Kind kind, Permission permission, String target, Object argument) {
+            this.kind = kind;
+            this.permission = permission;
+            this.target = target;
+            this.argument = argument;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void complete(Object value) {
+            result.value = (T) value;
+        }
+    }
+
+    /**
+     * Creates an empty batch.
+     * @param session The session of the user the operations are performed for.
+     */
+    DatabaseBatch(Session session) {
+        this.session = session;
+    }
+
+    private <T> Result<T> add(Kind kind, Permission permission, String target, Object argument) {
+        if (executed) {
+            throw new IllegalStateException("The batch has already been executed.");
+        }
+        Operation<T> operation = new Operation<>(kind, permission, target, argument);
+        operations.add(operation);
+        return operation.result;
+    }
+
+    /**
+     * Adds a read of someone's personal details.
+     * @param permission READ_PERSONAL_DETAILS for the user's own, or HR_READ_PERSONAL_DETAILS.
+     * @param targetID The username or staff number whose details are read.
+     * @return The details, once the batch has been executed.
+     */
+    Result<PersonalDetails> readPersonalDetails(Permission permission, String targetID) {
+        return add(Kind.READ_PERSONAL_DETAILS, permission, targetID, null);
+    }
+
+    /**
+     * Adds a read of someone's unfinished annual review.
+     * @param permission READ_CURRENT_ANNUAL_REVIEW for the user's own,
+     *  or a permission to read other people's.
+     * @param targetID The username or staff number whose review is read.
+     * @return The review, once the batch has been executed.
+     */
+    Result<AnnualReview> readUnfinishedReview(Permission permission, String targetID) {
+        return add(Kind.READ_UNFINISHED_REVIEW, permission, targetID, null);
+    }
+
+    /**
+     * Adds a read of someone's completed annual reviews.
+     * @param permission READ_PAST_ANNUAL_REVIEW for the user's own,
+     *  or a permission to read other people's.
+     * @param targetID The username or staff number whose reviews are read.
+     * @return The reviews, once the batch has been executed.
+     */
+    Result<List<AnnualReview>> readPastReviews(Permission permission, String targetID) {
+        return add(Kind.READ_PAST_REVIEWS, permission, targetID, null);
+    }
+
+    /**
+     * Adds a read of the user's own reviewees, which needs no permission.
+     * @return The staff numbers of the user's active reviewees, once the batch has been executed.
+     */
+    Result<List<String>> listReviewees() {
+        return add(Kind.LIST_REVIEWEES, null, session.getUsername(), null);
+    }
+
+    /**
+     * Adds an amendment of someone's personal details.
+     * @param permission AMEND_PERSONAL_DETAILS for the user's own, or HR_AMEND_PERSONAL_DETAILS.
+     * @param targetID The username or staff number whose details are amended.
+     * @param details The amended details.
+     * @return Whether it was authorised, once the batch has been executed.
+     */
+    Result<Void> amendPersonalDetails(Permission permission, String targetID,
+                                      PersonalDetails details) {
+        return add(Kind.AMEND_PERSONAL_DETAILS, permission, targetID, details);
+    }
+
+    /**
+     * Adds an update of someone's unfinished annual review, such as signing it off.
+     * @param permission REVIEWER_AMEND_ANNUAL_REVIEW, or SIGN_ANNUAL_REVIEW to only sign it.
+     * @param targetID The username or staff number whose review is updated.
+     * @param review The updated review.
+     * @return Whether it was authorised, once the batch has been executed.
+     */
+    Result<Void> updateAnnualReview(Permission permission, String targetID, AnnualReview review) {
+        return add(Kind.UPDATE_ANNUAL_REVIEW, permission, targetID, review);
+    }
+
+    /**
+     * Authorises and runs every operation in the batch.
+     * A batch can only be executed once.
+     * @return The results of the operations, in the order they were added.
+     */
+    List<Result<?>> execute() {
+        if (executed) {
+            throw new IllegalStateException("The batch has already been executed.");
+        }
+        executed = true;
+        try (Tracer.Span span = Tracer.span("DatabaseBatch.execute")) {
+            span.tag("operations", operations.size());
+            List<Operation<?>> reads = new ArrayList<>();
+            for (Operation<?> operation : operations) {
+                if (!authorise(operation)) {
+                    continue;
+                }
+                if (operation.kind.isRead()) {
+                    reads.add(operation);
+                } else {
+                    //A write must see the reads before it done, and be seen by the reads after it.
+                    runReads(reads);
+                    reads.clear();
+                    run(operation);
+                }
+            }
+            runReads(reads);
+            List<Result<?>> results = new ArrayList<>();
+            for (Operation<?> operation : operations) {
+                operation.result.done = true;
+                results.add(operation.result);
+            }
+            return results;
+        }
+    }
+
+    private boolean authorise(Operation<?> operation) {
+        //A permission for another kind of operation doesn't authorise this one.
+        Permission permission = operation.permission;
+        operation.result.authorised = operation.kind.allows(permission) && (permission == null ||
+                Authoriser.getAuthorisation(session, permission, operation.target));
+        return operation.result.authorised;
+    }
+
+    /**
+     * Runs consecutive reads, reading each kind that can be read together with one query.
+     * @param reads The authorised reads, in order.
+     */
+    private void runReads(List<Operation<?>> reads) {
+        Set<String> detailsTargets = new LinkedHashSet<>();
+        Set<String> reviewTargets = new LinkedHashSet<>();
+        for (Operation<?> operation : reads) {
+            if (operation.kind == Kind.READ_PERSONAL_DETAILS) {
+                detailsTargets.add(operation.target);
+            } else if (operation.kind == Kind.READ_UNFINISHED_REVIEW) {
+                reviewTargets.add(operation.target);
+            }
+        }
+        Map<String, PersonalDetails> details = Collections.emptyMap();
+        Map<String, AnnualReview> reviews = Collections.emptyMap();
+        try {
+            if (detailsTargets.size() > 1) {
+                details = DatabaseController.getPersonalDetails(detailsTargets);
+            }
+            if (reviewTargets.size() > 1) {
+                reviews = DatabaseController.getUnfinishedReviews(reviewTargets);
+            }
+        } catch (RuntimeException e) {
+            //Falls back to reading each one on its own, so only the failing reads fail.
+            detailsTargets.clear();
+            reviewTargets.clear();
+        }
+        for (Operation<?> operation : reads) {
+            if (operation.kind == Kind.READ_PERSONAL_DETAILS && detailsTargets.size() > 1) {
+                operation.complete(details.get(operation.target));
+            } else if (operation.kind == Kind.READ_UNFINISHED_REVIEW && reviewTargets.size() > 1) {
+                operation.complete(reviews.get(operation.target));
+            } else {
+                run(operation);
+            }
+        }
+    }
+
+    /**
+     * Checks that a write changes the record it was authorised for.
+     * @param operation The write.
+     * @param staffNo The staff number of the record it writes.
+     * @throws IllegalArgumentException If the record belongs to someone else.
+     */
+    private static void checkTarget(Operation<?> operation, String staffNo) {
+        if (staffNo == null || !staffNo.equals(DatabaseController.getStaffNo(operation.target))) {
+            throw new IllegalArgumentException("The record doesn't belong to " +
+                    operation.target + ".");
+        }
+    }
+
+    /**
+     * Checks that an update of a review changes the review it was authorised for.
+     * Only the target's unfinished review can be updated, and the stored review decides
+     *  whose review it is, as the updated copy's fields could have been changed to anyone's.
+     * @param operation The update.
+     * @param review The updated review.
+     * @return The review to save: the updated one, or if the permission only allows signing,
+     *  the stored one signed by the user.
+     * @throws IllegalArgumentException If the review isn't the target's unfinished review,
+     *  or the user can't sign it.
+     */
+    private AnnualReview checkReview(Operation<?> operation, AnnualReview review) {
+        AnnualReview stored = DatabaseController.getUnfinishedReview(operation.target);
+        if (stored == null || review.getReviewID() == null ||
+                !review.getReviewID().equals(stored.getReviewID())) {
+            throw new IllegalArgumentException("Review " + review.getReviewID() +
+                    " isn't the unfinished review of " + operation.target + ".");
+        }
+        checkTarget(operation, stored.getField("Staff No"));
+        checkTarget(operation, review.getField("Staff No"));
+        if (operation.permission != Permission.SIGN_ANNUAL_REVIEW) {
+            return review;
+        }
+        //Signing only adds the user's own signature; anything else changed is left out.
+        if (!stored.signOff(DatabaseController.getStaffNo(session.getUsername()))) {
+            throw new IllegalArgumentException(session.getUsername() +
+                    " can't sign review " + stored.getReviewID() + ".");
+        }
+        return stored;
+    }
+
+    /**
+     * Runs a single operation, recording what it read or the error it failed with.
+     * @param operation The authorised operation.
+     */
+    private void run(Operation<?> operation) {
+        try {
+            switch (operation.kind) {
+                case READ_PERSONAL_DETAILS:
+                    operation.complete(DatabaseController.getPersonalDetails(operation.target));
+                    break;
+                case READ_UNFINISHED_REVIEW:
+                    operation.complete(DatabaseController.getUnfinishedReview(operation.target));
+                    break;
+                case READ_PAST_REVIEWS:
+                    operation.complete(DatabaseController.getPastReviews(operation.target));
+                    break;
+                case LIST_REVIEWEES:
+                    operation.complete(DatabaseController.listReviewees(operation.target));
+                    break;
+                case AMEND_PERSONAL_DETAILS:
+                    PersonalDetails details = (PersonalDetails) operation.argument;
+                    checkTarget(operation, details.getField("Staff No"));
+                    DatabaseController.updatePersonalDetails(details);
+                    break;
+                case UPDATE_ANNUAL_REVIEW:
+                    DatabaseController.updateAnnualReview(
+                            checkReview(operation, (AnnualReview) operation.argument));
+                    break;
+            }
+        } catch (RuntimeException e) {
+            operation.result.error = e;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DatabaseBatchTests
+{
+    private Session reviewer;
+
+    public DatabaseBatchTests()
+    {
+    }
+
+    private static void addReview(String staffNo)
+    {
+        DatabaseController.insertAnnualReview(new AnnualReview(null, staffNo, "Sam", "9000",
+                null, "HR", "Clerk", Recommendation.NOT_SET,
+                Date.valueOf(LocalDate.now()), null, null, null, null));
+    }
+
+    @Before
+    public void setUp() throws SQLException
+    {
+        DatabaseController.connect(new InMemoryRepository());
+        DatabaseController.addDummyUser("rev900", "9000", "password", "5");
+        DatabaseController.addDummyUser("emp901", "9001", "password", "0");
+        DatabaseController.addDummyUser("emp902", "9002", "password", "0");
+        addReview("9001");
+        addReview("9002");
+        reviewer = Authenticator.authenticate("rev900", "password", Role.REVIEWER);
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseController.disconnect();
+    }
+
+    @Test
+    public void landingScreenIsReadInOrderWithDeniedReadsLeftOut()
+    {
+        DatabaseBatch reviewees = new DatabaseBatch(reviewer);
+        DatabaseBatch.Result<List<String>> list = reviewees.listReviewees();
+        reviewees.execute();
+        List<String> staffNos = new ArrayList<>(list.get());
+        staffNos.sort(null);
+        assertEquals(2, staffNos.size());
+
+        DatabaseBatch batch = new DatabaseBatch(reviewer);
+        List<DatabaseBatch.Result<AnnualReview>> reviews = new ArrayList<>();
+        for (String staffNo : staffNos) {
+            reviews.add(batch.readUnfinishedReview(
+                    Permission.REVIEWER_READ_CURRENT_ANNUAL_REVIEW, staffNo));
+        }
+        DatabaseBatch.Result<PersonalDetails> denied =
+                batch.readPersonalDetails(Permission.HR_READ_PERSONAL_DETAILS, "9001");
+        DatabaseBatch.Result<PersonalDetails> own =
+                batch.readPersonalDetails(Permission.READ_PERSONAL_DETAILS, "rev900");
+        assertEquals(4, batch.execute().size());
+
+        assertEquals("9001", reviews.get(0).get().getField("Staff No"));
+        assertEquals("9002", reviews.get(1).get().getField("Staff No"));
+        assertFalse(denied.isAuthorised());
+        assertNull(denied.get());
+        assertEquals("9000", own.get().getField("Staff No"));
+    }
+
+    @Test
+    public void readsAfterAWriteSeeIt()
+    {
+        DatabaseBatch first = new DatabaseBatch(reviewer);
+        DatabaseBatch.Result<AnnualReview> review =
+                first.readUnfinishedReview(Permission.REVIEWER_READ_CURRENT_ANNUAL_REVIEW, "9001");
+        first.execute();
+        review.get().signOff("9000");
+
+        DatabaseBatch batch = new DatabaseBatch(reviewer);
+        DatabaseBatch.Result<Void> wrongTarget =
+                batch.updateAnnualReview(Permission.SIGN_ANNUAL_REVIEW, "9002", review.get());
+        batch.updateAnnualReview(Permission.SIGN_ANNUAL_REVIEW, "9001", review.get());
+        DatabaseBatch.Result<AnnualReview> reread =
+                batch.readUnfinishedReview(Permission.REVIEWER_READ_CURRENT_ANNUAL_REVIEW, "9001");
+        batch.execute();
+
+        assertTrue(wrongTarget.getError() instanceof IllegalArgumentException);
+        //Signatures are reviewee, supervisor, second reviewer.
+        assertNotNull(reread.get().getSignatures().get(1));
+    }
+
+    @Test
+    public void signingOnlyChangesTheSignatures()
+    {
+        AnnualReview review = DatabaseController.getUnfinishedReview("emp901");
+        review.setField("Recommendation", Recommendation.PROMOTION.toString());
+        review.setField("Staff No", "9002");
+        DatabaseBatch batch = new DatabaseBatch(reviewer);
+        DatabaseBatch.Result<Void> moved =
+                batch.updateAnnualReview(Permission.SIGN_ANNUAL_REVIEW, "9002", review);
+        batch.execute();
+        assertTrue(moved.getError() instanceof IllegalArgumentException);
+
+        review.setField("Staff No", "9001");
+        batch = new DatabaseBatch(reviewer);
+        DatabaseBatch.Result<Void> signed =
+                batch.updateAnnualReview(Permission.SIGN_ANNUAL_REVIEW, "9001", review);
+        batch.execute();
+        assertNull(signed.getError());
+        AnnualReview stored = DatabaseController.getUnfinishedReview("emp901");
+        assertEquals(Recommendation.NOT_SET.toString(), stored.getField("Recommendation"));
+        assertNotNull(stored.getSignatures().get(1));
+    }
+
+    @Test
+    public void updatesNeedAPermissionToChangeReviews()
+    {
+        Session employee = Authenticator.authenticate("emp901", "password", Role.EMPLOYEE);
+        AnnualReview review = DatabaseController.getUnfinishedReview("emp901");
+        review.setField("Recommendation", Recommendation.PROMOTION.toString());
+        DatabaseBatch batch = new DatabaseBatch(employee);
+        DatabaseBatch.Result<Void> update = batch.updateAnnualReview(
+                Permission.READ_CURRENT_ANNUAL_REVIEW, "emp901", review);
+        DatabaseBatch.Result<PersonalDetails> read =
+                batch.readPersonalDetails(Permission.AMEND_PERSONAL_DETAILS, "emp901");
+        batch.execute();
+
+        assertFalse(update.isAuthorised());
+        assertFalse(read.isAuthorised());
+        assertEquals(Recommendation.NOT_SET.toString(),
+                DatabaseController.getUnfinishedReview("emp901").getField("Recommendation"));
+    }
+
+    @Test
+    public void completedReviewsCantBeUpdated()
+    {
+        Date signed = Date.valueOf(LocalDate.now().minusYears(1));
+        DatabaseController.insertAnnualReview(new AnnualReview(null, "9001", "Sam", "9000",
+                "9002", "HR", "Clerk", Recommendation.NOT_SET, signed, signed, signed,
+                null, null));
+        AnnualReview past = DatabaseController.getPastReviews("emp901").get(0);
+        past.setField("Recommendation", Recommendation.PROMOTION.toString());
+        DatabaseBatch batch = new DatabaseBatch(reviewer);
+        DatabaseBatch.Result<Void> update = batch.updateAnnualReview(
+                Permission.REVIEWER_AMEND_ANNUAL_REVIEW, "9001", past);
+        batch.execute();
+
+        assertTrue(update.getError() instanceof IllegalArgumentException);
+        assertEquals(Recommendation.NOT_SET.toString(),
+                DatabaseController.getPastReviews("emp901").get(0).getField("Recommendation"));
+    }
+}
@@ -1,20 +1,30 @@
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
-import java.sql.Date;
 import java.util.*;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 /**
  * The database controller.
  * Handles connections to databases and operations on databases.
+ * Every operation is passed on to the HR repository chosen when connecting, which is
+ *  the SQLite database unless "yuconz.db.engine" is "memory".
+ * If "yuconz.db.shards" lists sections, separated by commas, each of those sections is kept
+ *  in a database file of its own by a {@link ShardedRepository}.
+ * If "yuconz.writeBehind" is true, amended personal details are saved in the background
+ *  by a {@link PersonalDetailsWriteBehind}.
+ * If "yuconz.archive" is true, reviews completed long ago are archived by a {@link ReviewArchiver}.
  * @author James jd556, Marin md485, Jamie jdg23
  * @version 20190323
  */
 class DatabaseController {
-    private final static Logger LOGGER = Logger.getLogger(AppController.class.getName());
-    //The connection to the Database we use as our main point of interaction.
-    private static Connection conn;
+    //The repository every operation is performed on.
+    private static HRRepository repository;
+    //Saves amended personal details in the background, or null to save them straight away.
+    private static PersonalDetailsWriteBehind writeBehind;
+    //Archives reviews completed long ago, or null if they are never archived.
+    private static ReviewArchiver archiver;
     //Dummy data is still maintained both for the initialisation of new databases,
     // and to maintain the current operation of the program.
     // (TODO: Change the operations relying on the hashmaps to use SQL statements)
@@ -24,78 +34,56 @@ class DatabaseController {
     /**
      * A method used to connect to the database, or initialise a new one if a database
      * doesn't currently exist.
+     * "yuconz.db.engine" chooses where the data is kept: "sqlite" (the default) for the
+     *  database file at "yuconz.db.path", or "memory" for an empty in-memory repository
+     *  holding just the dummy users, which is lost on disconnecting.
      */
     static void connect() {
-        //Makes sure the connection isn't currently connected to a server and closes it if it is.
-        //This is to avoid opened database files not being closed correctly.
-        try {
-            if (conn != null) {
-                conn.close();
+        if ("memory".equalsIgnoreCase(System.getProperty("yuconz.db.engine", "sqlite"))) {
+            connect(new InMemoryRepository());
+        } else {
+            //Places the DB into the user.home location of the OS, this location exists in all
+            // OSs so there shouldn't be issues in it's creation.
+            //"yuconz.db.path" points the system at another database, e.g. a test database.
+            String shards = System.getProperty("yuconz.db.shards", "").trim();
+            if (shards.isEmpty()) {
+                connect(new SQLiteRepository(databasePath()));
+            } else {
+                connect(ShardedRepository.ofSQLite(databasePath(),
+                        Arrays.asList(shards.split("\\s*,\\s*"))));
             }
-        } catch (SQLException ex) {
-            System.out.println(ex.getMessage());
         }
-        //Places the DB into the user.home location of the OS, this location exists in all OSs
-        //so there shouldn't be issues in it's creation.
-        String url = "jdbc:sqlite:" + System.getProperty("user.home") +
-                File.separator + "Yuconz.db";
-        try {
-            //Attempts to connect to the database, if it cannot a new database is created.
-            conn = DriverManager.getConnection(url);
-            //Checks to see if there are any tables in the database the connection connected to,
-            // this is used to check whether a new database was created, or whether an existing
-            // database was connected to.
-            if (conn.createStatement().executeQuery("SELECT name FROM sqlite_master " +
-                    "WHERE type ='table' AND name NOT LIKE 'sqlite_%'").next()) {
-                System.out.println("Connection to Yuconz Database has been established.");
-            } else {
-                System.out.println("Database not found, initialising new database.");
-                //In the case where a new database is created the following strings will
-                // initialise the necessary tables for the function of database.
-                // IF NOT EXISTS is used on the off-chance the previous code erroneously
-                // assumes the database it's connected to has no tables.
-
-                System.out.println("Creating Tables.");
-
-                //Execution of the SQL statements defined above.
-                List<String> sqlStatements = getTableDefinitions();
-                for(String sqlStatement : sqlStatements) {
-                    conn.createStatement().execute(sqlStatement);
-                }
-
-                System.out.println("Populating Users.");
-
-                // The following for each loops populate the tables defined above with,
-                // the dummy data within our initialisation hash maps.
-                for(Map.Entry<String, String[]> users : authDb.entrySet()) {
-                    addDummyUser(users.getKey(), users.getValue()[0],
-                            users.getValue()[1], users.getValue()[2]);
-                }
-
-                System.out.println("Populating PersonalDetails.");
-
-                for(Map.Entry<String, PersonalDetails> details : personalDetails.entrySet()) {
-                    PersonalDetails values = details.getValue();
-                    conn.createStatement().execute(
-                            "INSERT INTO PersonalDetails VALUES ('"
-                                    + values.getField("Staff No") + "','"
-                                    + values.getField("Surname") + "','"
-                                    + values.getField("Name") + "','"
-                                    + values.getField("Date of Birth") + "','"
-                                    + values.getField("Address") + "','"
-                                    + values.getField("Town/City") + "','"
-                                    + values.getField("Post Code") + "','"
-                                    + values.getField("Telephone Number") + "','"
-                                    + values.getField("Mobile Number") + "','"
-                                    + values.getField("Emergency Contact") + "','"
-                                    + values.getField("Emergency Contact Number") + "');");
-                }
+        if (Boolean.getBoolean("yuconz.writeBehind")) {
+            //The intent journal sits beside the database unless "yuconz.writeBehind.journal" is set.
+            String journal = System.getProperty("yuconz.writeBehind.journal",
+                    databasePath() + ".intents");
+            try {
+                writeBehind = new PersonalDetailsWriteBehind(repository, Paths.get(journal));
+            } catch (IOException e) {
+                System.out.println("Saving amendments straight away: " + e.getMessage());
             }
-        } catch (Exception e) {
-            System.out.println("Critical Error: " + e.getMessage());
+        }
+        if (Boolean.getBoolean("yuconz.archive")) {
+            archiver = new ReviewArchiver(repository);
+            archiver.start();
         }
     }
 
+    private static String databasePath() {
+        return System.getProperty("yuconz.db.path",
+                System.getProperty("user.home") + File.separator + "Yuconz.db");
+    }
+
+    /**
+     * Connects to the given repository, disconnecting from the current one first.
+     * @param engine The repository to perform every operation on.
+     */
+    static void connect(HRRepository engine) {
+        disconnect();
+        repository = engine;
+        repository.connect();
+    }
+
     static {
         authDb = new HashMap<>();
         personalDetails = new HashMap<>();
@@ -124,152 +112,51 @@ class DatabaseController {
     }
 
     static void disconnect() {
-        try {
-            if (conn != null) {
-                conn.close();
-            }
-        } catch (SQLException ex) {
-            System.out.println(ex.getMessage());
-        }
-    }
-
-    /**
-     * Returns a list of the SQLite HR Database Table definitions.
-     * @return A list of SQLite table creation statements.
-     */
-    private static List<String> getTableDefinitions() {
-        List<String> statements = new ArrayList<>();
-        String createEmployeeDetailsTable = "CREATE TABLE " +
-                "IF NOT EXISTS EmployeeDetails ( " +
-                "staffNo VARCHAR(255) PRIMARY KEY," +
-                "username VARCHAR(255) UNIQUE," +
-                "supervisor VARCHAR(255)," +
-                "section VARCHAR(255)," +
-                "jobTitle VARCHAR(255)," +
-                "role VARCHAR(255)," +
-                "FOREIGN KEY (supervisor) REFERENCES EmployeeDetails (staffNo) );";
-        String createAuthenticationTable = "CREATE TABLE IF NOT EXISTS Authentication (" +
-                "username VARCHAR(255) PRIMARY KEY," +
-                "password VARCHAR(255)," +
-                "FOREIGN KEY (username) REFERENCES EmployeeDetails (username) );";
-        String createUsersView = "CREATE VIEW IF NOT EXISTS Users AS " +
-                "SELECT Authentication.username AS uid, " +
-                "Authentication.password AS pass, " +
-                "EmployeeDetails.role AS permissions " +
-                "FROM Authentication JOIN EmployeeDetails " +
-                "ON Authentication.username = EmployeeDetails.username ;";
-        String createPersonalDetailsTable = "CREATE TABLE " +
-                "IF NOT EXISTS PersonalDetails (" +
-                "staffNo varchar(255) PRIMARY KEY," +
-                "surname varchar(20)," +
-                "name varchar(20)," +
-                "dob char(10)," +
-                "address varchar(40)," +
-                "town varchar(20)," +
-                "postcode varchar(9)," +
-                "telNo varchar(20)," +
-                "mobNo varchar(20)," +
-                "emergCont varchar(40)," +
-                "contNo varchar(20)," +
-                "FOREIGN KEY (staffNo) REFERENCES EmployeeDetails (staffNo));";
-        String createAnnualReviewTable = "CREATE TABLE IF NOT EXISTS AnnualReview (" +
-                "reviewID INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "staffNo VARCHAR(255)," +
-                "name VARCHAR(255)," +
-                "supervisor VARCHAR(255)," +
-                "secondReviewer VARCHAR(255)," +
-                "section VARCHAR(255)," +
-                "jobTitle VARCHAR(255)," +
-                "recommendation VARCHAR(255)," +
-                "performanceSummary TEXT," +
-                "reviewerComments TEXT," +
-                "revieweeSigned DATE," +
-                "supervisorSigned DATE," +
-                "secondReviewerSigned DATE," +
-                "FOREIGN KEY (staffNo) REFERENCES EmployeeDetails (staffNo) ," +
-                "FOREIGN KEY (supervisor) REFERENCES EmployeeDetails (staffNo)," +
-                "FOREIGN KEY (secondReviewer) REFERENCES EmployeeDetails (staffNo) );";
-        String createPastPerformanceTable = "CREATE TABLE " +
-                "IF NOT EXISTS PastPerformance (" +
-                "reviewID INTEGER," +
-                "number INTEGER," +
-                "objective TEXT," +
-                "achievement TEXT," +
-                "PRIMARY KEY (reviewID, number)," +
-                "FOREIGN KEY (reviewID) REFERENCES AnnualReview (reviewID)" +
-                ");";
-        String createFutureGoalsTable = "CREATE TABLE " +
-                "IF NOT EXISTS FutureGoals (" +
-                "reviewID INTEGER," +
-                "goalNo INTEGER," +
-                "content TEXT," +
-                "PRIMARY KEY (reviewID, goalNo)," +
-                "FOREIGN KEY (reviewID) REFERENCES AnnualReview (reviewID)" +
-                ");";
-
-        String createUsersUpdateTrigger = "CREATE TRIGGER " +
-                "IF NOT EXISTS UsersUpdate INSTEAD OF UPDATE ON Users " +
-                "FOR EACH ROW BEGIN " +
-                "UPDATE EmployeeDetails SET " +
-                "username = NEW.username, " +
-                "role = NEW.permissions " +
-                "WHERE username = OLD.username; " +
-                "UPDATE Authentication SET " +
-                "username = NEW.username, " +
-                "password = NEW.password " +
-                "WHERE username = OLD.username; " +
-                "END;";
-
-        statements.add(createEmployeeDetailsTable);
-        statements.add(createAuthenticationTable);
-        statements.add(createUsersView);
-        statements.add(createPersonalDetailsTable);
-        statements.add(createAnnualReviewTable);
-        statements.add(createPastPerformanceTable);
-        statements.add(createFutureGoalsTable);
-        statements.add(createUsersUpdateTrigger);
-
-        return statements;
+        DatabaseAsync.close();
+        if (archiver != null) {
+            archiver.close();
+            archiver = null;
+        }
+        if (writeBehind != null) {
+            writeBehind.close();
+            writeBehind = null;
+        }
+        if (repository != null) {
+            repository.close();
+            repository = null;
+        }
     }
 
     /**
-     * Adds a user to the HR Database for testing purposes.
-     * Creates an EmployeeDetails record and an Authentication record for that user.
-     * @param username The username of the user.
-     * @param staffNo The staff number of the user.
-     * @param password The password of the user.
-     * @param roles The roles the user can authenticate as.
-     * @throws SQLException If the SQL statements could not be executed.
+     * Checks whether the controller is connected to a repository.
+     * @return Whether the controller is connected.
      */
-    static void addDummyUser(String username, String staffNo, String password,
-                             String roles) throws SQLException {
-        String empDetails = "INSERT INTO EmployeeDetails " +
-                "(staffNo, username, role) VALUES (?, ?, ?); ";
-        String authDetails = "INSERT INTO Authentication (username, password) VALUES (?, ?);";
-        String personalDetails = "INSERT INTO PersonalDetails VALUES (?,?,?,?,?,?,?,?,?,?,?);";
-        PreparedStatement empSql = conn.prepareStatement(empDetails);
-        empSql.setString(1, staffNo);
-        empSql.setString(2, username);
-        empSql.setString(3, roles);
-
-        PreparedStatement authSql = conn.prepareStatement(authDetails);
-        authSql.setString(1, username);
-        authSql.setString(2, password);
-
-        PreparedStatement perSql = conn.prepareStatement(personalDetails);
-        perSql.setString(1, staffNo);
-        for(int i = 0; i < 10; i++) {
-            StringBuilder dummyData = new StringBuilder();
-            for(int j = 0; j < 9; j++) {
-                char a = (char) (32 + Math.round(Math.random()*94));
-                dummyData.append(a);
-            }
-            perSql.setString(i+2, dummyData.toString());
-        }
+    static boolean isConnected() {
+        return repository != null;
+    }
+
+    /**
+     * Gets the most operations which can be running on the repository at once.
+     * @return The repository's number of connections.
+     */
+    static int getConnectionCount() {
+        return repository.getConnectionCount();
+    }
 
-        empSql.execute();
-        authSql.execute();
-        perSql.execute();
+    /**
+     * Gets the dummy users every new repository starts with.
+     * @return The staff number, password and roles of each dummy user, by username.
+     */
+    static Map<String, String[]> getDummyUsers() {
+        return Collections.unmodifiableMap(authDb);
+    }
+
+    /**
+     * Gets the dummy personal details every new repository starts with.
+     * @return The personal details of each dummy user, by username.
+     */
+    static Map<String, PersonalDetails> getDummyPersonalDetails() {
+        return Collections.unmodifiableMap(personalDetails);
     }
 
     /**
@@ -282,6 +169,20 @@ class DatabaseController {
         removeDummyUser(username, getStaffNo(username));
     }
 
+    /**
+     * Adds a user to the HR Database for testing purposes.
+     * Creates an EmployeeDetails record and an Authentication record for that user.
+     * @param username The username of the user.
+     * @param staffNo The staff number of the user.
+     * @param password The password of the user.
+     * @param roles The roles the user can authenticate as.
+     * @throws SQLException If the user could not be added.
+     */
+    static void addDummyUser(String username, String staffNo, String password,
+                             String roles) throws SQLException {
+        repository.addDummyUser(username, staffNo, password, roles);
+    }
+
     /**
      * Removes a dummy user from the system.
      * Deletes the authentication record and employee details record of the specified user.
@@ -290,8 +191,7 @@ class DatabaseController {
      * @param staffNo The staff number of the dummy user to delete.
      */
     static void removeDummyUser(String username, String staffNo) {
-        removeUser(username);
-        removeEmpDetails(staffNo);
+        repository.removeDummyUser(username, staffNo);
     }
 
     /**
@@ -300,21 +200,12 @@ class DatabaseController {
      * @return The specified user's staff number, or null if not found.
      */
     static String getStaffNo(String username) {
-        //Checks to see if the input is already a staffNo
-        if (Character.isDigit(username.charAt(0))) {
-            return username;
-        }
-        String sql = "SELECT staffNo FROM EmployeeDetails WHERE username = ?";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            pStatement.setString(1, username);
-            ResultSet rSet = pStatement.executeQuery();
-            if (rSet.next()) {
-                return rSet.getString("staffNo");
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.getStaffNo");
+        try {
+            return repository.getStaffNo(username);
+        } finally {
+            span.close();
         }
-        return null;
     }
 
     /**
@@ -324,17 +215,12 @@ class DatabaseController {
      * @return The fields associated with the given username as an array, or null if not found.
      */
     static String[] getAuthData(String username) {
-        String sql = "SELECT pass, permissions FROM Users WHERE uid = ?";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            pStatement.setString(1, username);
-            ResultSet rSet = pStatement.executeQuery();
-            if (rSet.next()) {
-                return new String[] {rSet.getString("pass"), rSet.getString("permissions")};
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.getAuthData");
+        try {
+            return repository.getAuthData(username);
+        } finally {
+            span.close();
         }
-        return null;
     }
 
     /**
@@ -343,30 +229,46 @@ class DatabaseController {
      * @return The personal details for that user, or null if not present.
      */
     static PersonalDetails getPersonalDetails(String userID) {
-        String sql = "SELECT staffNo, surname, name, dob, address, town, postcode, telNo, mobNo, " +
-                "emergCont, contNo FROM PersonalDetails WHERE staffNo = ?";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            pStatement.setString(1, getStaffNo(userID));
-            ResultSet rSet = pStatement.executeQuery();
-            if (rSet.next()) {
-                return new PersonalDetails(
-                        rSet.getString("staffNo"),
-                        rSet.getString("surname"),
-                        rSet.getString("name"),
-                        rSet.getString("dob"),
-                        rSet.getString("address"),
-                        rSet.getString("town"),
-                        rSet.getString("postcode"),
-                        rSet.getString("telNo"),
-                        rSet.getString("mobNo"),
-                        rSet.getString("emergCont"),
-                        rSet.getString("contNo")
-                );
+        Tracer.Span span = Tracer.span("DatabaseController.getPersonalDetails");
+        try {
+            if (writeBehind != null) {
+                //An amendment still waiting to be saved is newer than the repository's copy.
+                PersonalDetails pending = writeBehind.getPending(repository.getStaffNo(userID));
+                if (pending != null) {
+                    return pending;
+                }
             }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            return repository.getPersonalDetails(userID);
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Gets the personal details of several users with as few queries as possible.
+     * @param userIDs The usernames or staff numbers of the users.
+     * @return Each user's personal details, by the username or staff number given,
+     *  leaving out users without any.
+     */
+    static Map<String, PersonalDetails> getPersonalDetails(Collection<String> userIDs) {
+        Tracer.Span span = Tracer.span("DatabaseController.getPersonalDetailsBatch");
+        try {
+            span.tag("users", userIDs.size());
+            Map<String, PersonalDetails> details = repository.getPersonalDetails(userIDs);
+            if (writeBehind != null) {
+                //Only details already saved can have amendments waiting to be saved.
+                for (Map.Entry<String, PersonalDetails> entry : details.entrySet()) {
+                    PersonalDetails pending =
+                            writeBehind.getPending(entry.getValue().getField("Staff No"));
+                    if (pending != null) {
+                        entry.setValue(pending);
+                    }
+                }
+            }
+            return details;
+        } finally {
+            span.close();
         }
-        return null;
     }
 
     /**
@@ -374,22 +276,11 @@ class DatabaseController {
      * @param details The personal details to be added to the database.
      */
     static void addPersonalDetails(PersonalDetails details) {
-        String sql = "INSERT INTO PersonalDetails VALUES (?,?,?,?,?,?,?,?,?,?,?)";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)) {
-            pStatement.setString(1, details.getField("Staff No"));
-            pStatement.setString(2, details.getField("Surname"));
-            pStatement.setString(3, details.getField("Name"));
-            pStatement.setString(4, details.getField("Date of Birth"));
-            pStatement.setString(5, details.getField("Address"));
-            pStatement.setString(6, details.getField("Town/City"));
-            pStatement.setString(7, details.getField("Post Code"));
-            pStatement.setString(8, details.getField("Telephone Number"));
-            pStatement.setString(9, details.getField("Mobile Number"));
-            pStatement.setString(10, details.getField("Emergency Contact"));
-            pStatement.setString(11, details.getField("Emergency Contact Number"));
-            pStatement.execute();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.addPersonalDetails");
+        try {
+            repository.addPersonalDetails(details);
+        } finally {
+            span.close();
         }
     }
 
@@ -398,35 +289,21 @@ class DatabaseController {
      * @param details The updated personal details file to put in the database.
      */
     static void updatePersonalDetails(PersonalDetails details) {
-        String sql = "UPDATE PersonalDetails SET " +
-                "staffNo = ?," +
-                "surname = ?," +
-                "name = ?," +
-                "dob = ?," +
-                "address = ?," +
-                "town = ?," +
-                "postcode = ?," +
-                "telNo = ?," +
-                "mobNo = ?," +
-                "emergCont = ?," +
-                "contNo = ? " +
-                "WHERE staffNo = ?;";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)) {
-            pStatement.setString(1, details.getField("Staff No"));
-            pStatement.setString(2, details.getField("Surname"));
-            pStatement.setString(3, details.getField("Name"));
-            pStatement.setString(4, details.getField("Date of Birth"));
-            pStatement.setString(5, details.getField("Address"));
-            pStatement.setString(6, details.getField("Town/City"));
-            pStatement.setString(7, details.getField("Post Code"));
-            pStatement.setString(8, details.getField("Telephone Number"));
-            pStatement.setString(9, details.getField("Mobile Number"));
-            pStatement.setString(10, details.getField("Emergency Contact"));
-            pStatement.setString(11, details.getField("Emergency Contact Number"));
-            pStatement.setString(12, details.getField("Staff No"));
-            pStatement.execute();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.updatePersonalDetails");
+        try {
+            if (writeBehind != null) {
+                try {
+                    writeBehind.update(details);
+                    //Searches see the amendment now, like reads do, not once it is saved.
+                    repository.indexPersonalDetails(details);
+                    return;
+                } catch (IOException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+            repository.updatePersonalDetails(details);
+        } finally {
+            span.close();
         }
     }
 
@@ -437,13 +314,26 @@ class DatabaseController {
      * @param staffNo The staff number of the user whose record to remove.
      */
     static void removePersonalDetails(String staffNo) {
-        String sql = "DELETE FROM PersonalDetails WHERE staffNo = ?";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)) {
-            pStatement.setString(1, staffNo);
-            pStatement.execute();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        if (writeBehind != null) {
+            try {
+                writeBehind.flush();
+            } catch (SQLException | IOException e) {
+                System.out.println(e.getMessage());
+            }
         }
+        repository.removePersonalDetails(staffNo);
+    }
+
+    /**
+     * Finds employees by the start of their surname or post code, or failing that by a
+     *  surname or post code similar to the text given.
+     * @param text The surname or post code to search for, or the start of one.
+     * @param limit The most employees to return.
+     * @return The surname and post code of each matching employee, by staff number,
+     *  prefix matches first.
+     */
+    static Map<String, String[]> searchPersonalDetails(String text, int limit) {
+        return repository.searchPersonalDetails(text, limit);
     }
 
     /**
@@ -453,16 +343,7 @@ class DatabaseController {
      * @param password The password for the user.
      */
     static void addUser(String username, String password) {
-        String sql = "INSERT INTO Authentication VALUES (?,?) " +
-                "ON CONFLICT DO UPDATE SET username = excluded.username, " +
-                "password = excluded.password";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)) {
-            pStatement.setString(1, username);
-            pStatement.setString(2, password);
-            pStatement.execute();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
+        repository.addUser(username, password);
     }
 
     /**
@@ -470,27 +351,7 @@ class DatabaseController {
      * @param username Which user to remove
      */
     static void removeUser(String username) {
-        String sql = "DELETE FROM Authentication WHERE username = ?";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)) {
-            pStatement.setString(1, username);
-            pStatement.execute();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-    }
-
-    /**
-     * Removes a user from the Employee Details table.
-     * @param staffNo The staff number of the user to remove.
-     */
-    private static void removeEmpDetails(String staffNo) {
-        String sql = "DELETE FROM EmployeeDetails WHERE staffNo = ?";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)) {
-            pStatement.setString(1, staffNo);
-            pStatement.execute();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
+        repository.removeUser(username);
     }
 
     /**
@@ -499,24 +360,13 @@ class DatabaseController {
      * @param username The username of the employee to create an annual review for.
      */
     static void createAnnualReview(String username) {
-        String sql = "SELECT Emp.staffNo, Pers.name, Emp.supervisor, Emp.section, Emp.jobTitle " +
-                "FROM EmployeeDetails AS Emp JOIN PersonalDetails AS Pers " +
-                "ON Emp.staffNo = Pers.staffNo WHERE username = ?;";
-
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)) {
-            pStatement.setString(1, username);
-            ResultSet rSet = pStatement.executeQuery();
-            if (rSet.next()) {
-                AnnualReview review = new AnnualReview();
-                review.setField("Staff No", rSet.getString("staffNo"));
-                review.setField("Name", rSet.getString("name"));
-                review.setField("Supervisor", rSet.getString("supervisor"));
-                review.setField("Section", rSet.getString("section"));
-                review.setField("Job Title", rSet.getString("jobTitle"));
-                insertAnnualReview(review);
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.createAnnualReview");
+        try {
+            repository.createAnnualReview(username);
+            //The new review has reviewers, so cached decisions about them are stale.
+            AuthorisationCache.invalidateReviews();
+        } finally {
+            span.close();
         }
     }
 
@@ -525,70 +375,13 @@ class DatabaseController {
      * @param review The newly created annual review to store.
      */
     static void insertAnnualReview(AnnualReview review) {
-        String reviewInsert = "INSERT INTO AnnualReview (staffNo, name, supervisor, " +
-                "secondReviewer, section, jobTitle, recommendation, performanceSummary, " +
-                "reviewerComments, revieweeSigned, supervisorSigned, secondReviewerSigned) " +
-                "VALUES (?,?,?,?,?,?,?,?,?,?,?,?);";
-        String pastPerfInsert = "INSERT INTO PastPerformance VALUES (?,?,?,?);";
-        String FutureGoalsInsert = "INSERT INTO FutureGoals VALUES (?,?,?);";
-
-        ArrayList<Date> signatures = review.getSignatures();
-        PerformanceReview pastReview = review.getPastPerformance();
-        PerformanceReview futureGoals = review.getFutureGoals();
-
-        try ( PreparedStatement rInsert = conn.prepareStatement(reviewInsert);
-              PreparedStatement ppInsert = conn.prepareStatement(pastPerfInsert);
-              PreparedStatement fgInsert = conn.prepareStatement(FutureGoalsInsert)){
-            rInsert.setString(1, review.getField("Staff No"));
-            rInsert.setString(2, review.getField("Name"));
-            rInsert.setString(3, review.getField("Supervisor"));
-            rInsert.setString(4, review.getField("Second Reviewer"));
-            rInsert.setString(5, review.getField("Section"));
-            rInsert.setString(6, review.getField("Job Title"));
-            rInsert.setString(7, review.getField("Recommendation"));
-            if (pastReview == null) {
-                rInsert.setNull(8, Types.VARCHAR);
-            } else {
-                rInsert.setString(8, pastReview.getSummary());
-            }
-            if (futureGoals == null) {
-                rInsert.setNull(9, Types.VARCHAR);
-            } else {
-                rInsert.setString(9, futureGoals.getSummary());
-            }
-            for (int i = 0; i < 3; i++) {
-                if (signatures.get(i) == null) {
-                    rInsert.setNull(i+10, Types.DATE);
-                } else {
-                    rInsert.setDate(i+10, signatures.get(i));
-                }
-            }
-            rInsert.execute();
-
-            if (review.getReviewID() != null) {
-                ppInsert.setInt(1, review.getReviewID());
-                //Loop to insert all past performance.
-                ArrayList<String> objectives = pastReview.getGoals();
-                for (int i = 0; i < objectives.size(); i++) {
-                    ppInsert.setInt(2, i);
-                    ppInsert.setString(3, objectives.get(i));
-                    ppInsert.setString(4, pastReview.getResult(objectives.get(i)));
-
-                    ppInsert.execute();
-                }
-
-                fgInsert.setInt(1, review.getReviewID());
-                //Loop to insert all future goals.
-                ArrayList<String> goals = futureGoals.getGoals();
-                for (int i = 0; i < goals.size(); i++) {
-                    fgInsert.setInt(2, i);
-                    fgInsert.setString(3, goals.get(i));
-
-                    fgInsert.execute();
-                }
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.insertAnnualReview");
+        try {
+            repository.insertAnnualReview(review);
+            //The reviewers or signatures may have changed, so cached decisions are stale.
+            AuthorisationCache.invalidateReviews();
+        } finally {
+            span.close();
         }
     }
 
@@ -598,87 +391,13 @@ class DatabaseController {
      * @param updatedReview The updated annual review to store.
      */
     static void updateAnnualReview(AnnualReview updatedReview) {
-        //Update Annual Review table, then update adjacent tables.
-        String reviewUpdate = "UPDATE AnnualReview SET " +
-                "staffNo = ?," +
-                "name = ?," +
-                "supervisor = ?," +
-                "secondReviewer = ?," +
-                "section = ?," +
-                "jobTitle = ?," +
-                "recommendation = ?," +
-                "performanceSummary = ?," +
-                "reviewerComments = ?," +
-                "revieweeSigned = ?," +
-                "supervisorSigned = ?," +
-                "secondReviewerSigned = ? " +
-                "WHERE reviewID = ?;";
-        String pastPerfUpdate = "INSERT INTO PastPerformance VALUES(?,?,?,?)";/* ON CONFLICT(reviewID, number) DO " +
-                "UPDATE SET reviewID = excluded.reviewID," +
-                "number = excluded.number," +
-                "objective = excluded.objective," +
-                "achievement = excluded.achievement;";*/
-        String FutureGoalsUpdate = "INSERT INTO FutureGoals VALUES(?,?,?)";/* ON CONFLICT(reviewID, number) DO " +
-                "UPDATE SET reviewID = excluded.reviewID," +
-                "number = excluded.number," +
-                "content = excluded.content;";*/
-
-        ArrayList<Date> signatures = updatedReview.getSignatures();
-        PerformanceReview pastReview = updatedReview.getPastPerformance();
-        PerformanceReview futureGoals = updatedReview.getFutureGoals();
-
-        try ( PreparedStatement rUpdate = conn.prepareStatement(reviewUpdate);
-                PreparedStatement ppUpdate = conn.prepareStatement(pastPerfUpdate);
-                PreparedStatement fgUpdate = conn.prepareStatement(FutureGoalsUpdate)){
-            rUpdate.setString(1, updatedReview.getField("Staff No"));
-            rUpdate.setString(2, updatedReview.getField("Name"));
-            rUpdate.setString(3, updatedReview.getField("Supervisor"));
-            rUpdate.setString(4, updatedReview.getField("Second Reviewer"));
-            rUpdate.setString(5, updatedReview.getField("Section"));
-            rUpdate.setString(6, updatedReview.getField("Job Title"));
-            rUpdate.setString(7, updatedReview.getField("Recommendation"));
-            if (pastReview == null) {
-                rUpdate.setNull(8, Types.VARCHAR);
-            } else {
-                rUpdate.setString(8, pastReview.getSummary());
-            }
-            if (futureGoals == null) {
-                rUpdate.setNull(9, Types.VARCHAR);
-            } else {
-                rUpdate.setString(9, futureGoals.getSummary());
-            }
-            for (int i = 0; i < 3; i++) {
-                if (signatures.get(i) == null) {
-                    rUpdate.setNull(i+10, Types.DATE);
-                } else {
-                    rUpdate.setDate(i+10, signatures.get(i));
-                }
-            }
-            rUpdate.execute();
-
-            ppUpdate.setInt(1, updatedReview.getReviewID());
-            //Loop to update all past performance.
-            ArrayList<String> objectives = pastReview.getGoals();
-            for (int i = 0; i < objectives.size(); i++) {
-                ppUpdate.setInt(2, i);
-                ppUpdate.setString(3, objectives.get(i));
-                ppUpdate.setString(4, pastReview.getResult(objectives.get(i)));
-
-                ppUpdate.execute();
-            }
-
-            fgUpdate.setInt(1, updatedReview.getReviewID());
-            //Loop to update all future goals.
-            ArrayList<String> goals = futureGoals.getGoals();
-            for (int i = 0; i < goals.size(); i++) {
-                fgUpdate.setInt(2, i);
-                fgUpdate.setString(3, goals.get(i));
-
-                fgUpdate.execute();
-            }
-
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.updateAnnualReview");
+        try {
+            repository.updateAnnualReview(updatedReview);
+            //The reviewers or signatures may have changed, so cached decisions are stale.
+            AuthorisationCache.invalidateReviews();
+        } finally {
+            span.close();
         }
     }
 
@@ -688,12 +407,13 @@ class DatabaseController {
      * @param reviewID Which review file to delete.
      */
     static void deleteAnnualReview(Integer reviewID) {
-        String sql = "DELETE FROM AnnualReview WHERE reviewID = ?;";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)) {
-            pStatement.setInt(1, reviewID);
-            pStatement.execute();
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.deleteAnnualReview");
+        try {
+            repository.deleteAnnualReview(reviewID);
+            //The reviewers or signatures may have changed, so cached decisions are stale.
+            AuthorisationCache.invalidateReviews();
+        } finally {
+            span.close();
         }
     }
 
@@ -703,42 +423,12 @@ class DatabaseController {
      * @return The annual review stored in the database, or null if not found.
      */
     static AnnualReview getAnnualReview(Integer reviewID) {
-        String sql = "SELECT reviewID, staffNo, name, supervisor, secondReviewer, section, " +
-                "jobTitle, recommendation, performanceSummary, reviewerComments, revieweeSigned, " +
-                "supervisorSigned, secondReviewerSigned FROM AnnualReview WHERE reviewID = ?";
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            pStatement.setInt(1, reviewID);
-            ResultSet rSet = pStatement.executeQuery();
-            if (rSet.next()) {
-                String recommendation = rSet.getString("recommendation");
-                Recommendation recommended;
-                if (recommendation != null) {
-                    recommended = Recommendation.valueOf(recommendation);
-                } else {
-                    recommended = Recommendation.NOT_SET;
-                }
-                AnnualReview review = new AnnualReview(
-                        rSet.getInt("reviewID"),
-                        rSet.getString("staffNo"),
-                        rSet.getString("name"),
-                        rSet.getString("supervisor"),
-                        rSet.getString("secondReviewer"),
-                        rSet.getString("section"),
-                        rSet.getString("jobTitle"),
-                        recommended,
-                        rSet.getDate("revieweeSigned"),
-                        rSet.getDate("supervisorSigned"),
-                        rSet.getDate("secondReviewerSigned"),
-                        null,
-                        null
-                );
-                //Add past performance and future goals related to this review.
-                return findAndSetFutureGoals(findAndSetPastPerformance(review));
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.getAnnualReview");
+        try {
+            return repository.getAnnualReview(reviewID);
+        } finally {
+            span.close();
         }
-        return null;
     }
 
     /**
@@ -747,26 +437,28 @@ class DatabaseController {
      * @return The list of that user's completed Annual Reviews.
      */
     static List<AnnualReview> getPastReviews(String username) {
-        String staffNo = getStaffNo(username);
-        List<AnnualReview> results = new ArrayList<>();
-        String sql = "SELECT reviewID FROM AnnualReview WHERE " +
-                "(revieweeSigned NOTNULL AND supervisorSigned NOTNULL AND " +
-                "secondReviewerSigned NOTNULL) AND staffNo = ?;";
-
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            pStatement.setString(1, staffNo);
-            ResultSet rSet = pStatement.executeQuery();
-
-            while (rSet.next()) {
-                //Get each record corresponding to a returned recordID,
-                //Add each found record to the list of returned records.
-                results.add(getAnnualReview(rSet.getInt("reviewID")));
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.getPastReviews");
+        try {
+            return repository.getPastReviews(username);
+        } finally {
+            span.close();
         }
+    }
 
-        return results;
+    /**
+     * Gets all completed reviews corresponding to the given user, optionally including
+     *  those which have been archived.
+     * @param username The username of the employee to find Annual Reviews for.
+     * @param includeArchived Whether to include archived reviews.
+     * @return The list of that user's completed Annual Reviews, oldest first.
+     */
+    static List<AnnualReview> getPastReviews(String username, boolean includeArchived) {
+        Tracer.Span span = Tracer.span("DatabaseController.getPastReviews");
+        try {
+            return repository.getPastReviews(username, includeArchived);
+        } finally {
+            span.close();
+        }
     }
 
     /**
@@ -775,127 +467,117 @@ class DatabaseController {
      * @return The list of that user's active and inactive Annual Reviews.
      */
     static List<AnnualReview> getReviews(String username) {
-        String staffNo = getStaffNo(username);
-        List<AnnualReview> results = new ArrayList<>();
-        String sql = "SELECT reviewID FROM AnnualReview WHERE staffNo = ?;";
-
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            pStatement.setString(1, staffNo);
-            ResultSet rSet = pStatement.executeQuery();
-
-            while (rSet.next()) {
-                //Get each record corresponding to a returned recordID,
-                //Add each found record to the list of returned records.
-                results.add(getAnnualReview(rSet.getInt("reviewID")));
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.getReviews");
+        try {
+            return repository.getReviews(username);
+        } finally {
+            span.close();
         }
-
-        return results;
     }
 
     /**
-     * Finds past performance records related to the specified annual review.
-     * Adds those records to the review, and returns the amended review.
-     * Note: The summary of the past performance needs to be set separately (initialised to "").
-     * @param review The annual review to find past performance records for.
-     * @return The amended review.
+     * Gets an unfinished annual review for the specified staffNo.
+     * Assumes that each employee has a maximum of one unfinished review.
+     * @param username The user to get an unfinished review for.
+     * @return The currently active annual review of that user, or null if not found.
      */
-    private static AnnualReview findAndSetPastPerformance(AnnualReview review) {
-        Integer reviewID = review.getReviewID();
-        LinkedHashMap<String, String> pastPerf = new LinkedHashMap<>();
-        String sql = "SELECT * FROM PastPerformance WHERE reviewID = ? ORDER BY number ASC;";
-
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            pStatement.setInt(1, reviewID);
-            ResultSet rSet = pStatement.executeQuery();
-
-            while (rSet.next()) {
-                pastPerf.put(rSet.getString("objective"), rSet.getString("achievement"));
-            }
-
-            review.setPastPerformance(new PerformanceReview(pastPerf, ""));
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+    static AnnualReview getUnfinishedReview(String username) {
+        Tracer.Span span = Tracer.span("DatabaseController.getUnfinishedReview");
+        try {
+            return repository.getUnfinishedReview(username);
+        } finally {
+            span.close();
         }
-        return review;
     }
 
     /**
-     * Finds future goal records related to the specified annual review.
-     * Adds those records to the review, and returns the amended review.
-     * Note: The comments on the future goals need to be set separately (initialised to "").
-     * @param review The annual review to find past performance records for.
-     * @return The amended review.
+     * Gets the unfinished annual reviews of several users with as few queries as possible.
+     * @param userIDs The usernames or staff numbers of the users.
+     * @return Each user's unfinished review, by the username or staff number given,
+     *  leaving out users without one.
      */
-    private static AnnualReview findAndSetFutureGoals(AnnualReview review) {
-        Integer reviewID = review.getReviewID();
-        ArrayList<String> goals = new ArrayList<>();
-        String sql = "SELECT * FROM FutureGoals WHERE reviewID = ? ORDER BY goalNo ASC;";
+    static Map<String, AnnualReview> getUnfinishedReviews(Collection<String> userIDs) {
+        Tracer.Span span = Tracer.span("DatabaseController.getUnfinishedReviews");
+        try {
+            span.tag("users", userIDs.size());
+            return repository.getUnfinishedReviews(userIDs);
+        } finally {
+            span.close();
+        }
+    }
 
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            pStatement.setInt(1, reviewID);
-            ResultSet rSet = pStatement.executeQuery();
+    /**
+     * Gets the staff number, name and section of owners of annual reviews
+     *  which are in progress but without a second reviewer.
+     * @return The staffNo, name and section of employees under review without a second reviewer.
+     */
+    static List<Map<String, String>> reviewsWithoutASecondReviewer() {
+        Tracer.Span span = Tracer.span("DatabaseController.reviewsWithoutASecondReviewer");
+        try {
+            return repository.reviewsWithoutASecondReviewer();
+        } finally {
+            span.close();
+        }
+    }
 
-            while (rSet.next()) {
-                goals.add(rSet.getString("content"));
-            }
+    /**
+     * Gets the open reviews which don't have a second reviewer yet.
+     * @return The staff number of the reviewee of each review, by reviewID in ascending order.
+     */
+    static Map<Integer, String> getReviewsNeedingSecondReviewer() {
+        Tracer.Span span = Tracer.span("DatabaseController.getReviewsNeedingSecondReviewer");
+        try {
+            return repository.getReviewsNeedingSecondReviewer();
+        } finally {
+            span.close();
+        }
+    }
 
-            review.setPastPerformance(new PerformanceReview(false, goals, ""));
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+    /**
+     * Gets how many open reviews each reviewer is supervisor or second reviewer on.
+     * @return The number of open reviews of every employee with the Reviewer role,
+     *  by staff number.
+     */
+    static Map<String, Integer> getReviewerLoads() {
+        Tracer.Span span = Tracer.span("DatabaseController.getReviewerLoads");
+        try {
+            return repository.getReviewerLoads();
+        } finally {
+            span.close();
         }
-        return review;
     }
 
     /**
-     * Gets an unfinished annual review for the specified staffNo.
-     * Assumes that each employee has a maximum of one unfinished review.
-     * @param username The user to get an unfinished review for.
-     * @return The currently active annual review of that user, or null if not found.
+     * Gets the supervisor chain of every reviewee whose review needs a second reviewer,
+     *  including the supervisor named on the review itself.
+     * @return The staff numbers of each reviewee's supervisors, by the reviewee's staff number.
      */
-    static AnnualReview getUnfinishedReview(String username) {
-        String staffNo = getStaffNo(username);
-        String currentReviewQuery = "SELECT reviewID FROM AnnualReview WHERE " +
-                "(revieweeSigned IS NULL OR supervisorSigned IS NULL OR " +
-                "secondReviewerSigned IS NULL) AND staffNo = ?";
-
-        try (PreparedStatement pStatement = conn.prepareStatement(currentReviewQuery)){
-            pStatement.setString(1, staffNo);
-            ResultSet rSet = pStatement.executeQuery();
-            if (rSet.next()) {
-                return getAnnualReview(rSet.getInt("reviewID"));
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+    static Map<String, Set<String>> getRevieweeSupervisorChains() {
+        Tracer.Span span = Tracer.span("DatabaseController.getRevieweeSupervisorChains");
+        try {
+            return repository.getRevieweeSupervisorChains();
+        } finally {
+            span.close();
         }
-        return null;
     }
 
     /**
-     * Gets the staff number, name and section of owners of annual reviews
-     *  which are in progress but without a second reviewer.
-     * @return The staffNo, name and section of employees under review without a second reviewer.
+     * Saves second reviewer assignments all together.
+     * Reviews which were given a second reviewer in the meantime are left alone.
+     * If any assignment fails, none are saved.
+     * @param assignments The staff number of the second reviewer of each review, by reviewID.
+     * @return The number of reviews assigned.
      */
-    static List<Map<String, String>> reviewsWithoutASecondReviewer() {
-        String sql = "SELECT staffNo, name, section FROM AnnualReview WHERE secondReviewer = NULL";
-        List<Map<String, String>> result = new ArrayList<>();
-
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            ResultSet rSet = pStatement.executeQuery();
-            while (rSet.next()) {
-                Map<String, String> row = new HashMap<>();
-                row.put("staffNo", rSet.getString("staffNo"));
-                row.put("name", rSet.getString("name"));
-                row.put("section", rSet.getString("section"));
-                result.add(row);
-            }
-            return result;
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+    static int assignSecondReviewers(Map<Integer, String> assignments) {
+        Tracer.Span span = Tracer.span("DatabaseController.assignSecondReviewers");
+        try {
+            int assigned = repository.assignSecondReviewers(assignments);
+            //The reviewers may have changed, so cached decisions are stale.
+            AuthorisationCache.invalidateReviews();
+            return assigned;
+        } finally {
+            span.close();
         }
-        return null;
     }
 
     /**
@@ -904,23 +586,12 @@ class DatabaseController {
      * @return The staff number of that reviewer's active reviewees.
      */
     static List<String> listReviewees(String username) {
-        String sql = "SELECT staffNo FROM AnnualReview WHERE (revieweeSigned ISNULL OR supervisorSigned ISNULL OR " +
-                "secondReviewerSigned ISNULL) AND (supervisor = ? OR secondReviewer = ?);";
-        List<String> reviewees = new ArrayList<>();
-        String staffNo = getStaffNo(username);
-
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            pStatement.setString(1, staffNo);
-            pStatement.setString(2, staffNo);
-            ResultSet rSet = pStatement.executeQuery();
-            while (rSet.next()) {
-                reviewees.add(rSet.getString("staffNo"));
-            }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+        Tracer.Span span = Tracer.span("DatabaseController.listReviewees");
+        try {
+            return repository.listReviewees(username);
+        } finally {
+            span.close();
         }
-
-        return reviewees;
     }
 
     /**
@@ -930,23 +601,160 @@ class DatabaseController {
      * @return Whether the first user is currently reviewing the targetUsername.
      */
     static boolean isReviewing(String username, String targetUsername) {
-        List<String> reviewees = listReviewees(username);
-        return reviewees.contains(getStaffNo(targetUsername));
+        Tracer.Span span = Tracer.span("DatabaseController.isReviewing");
+        try {
+            return repository.isReviewing(username, targetUsername);
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Gets the number of reviews in each section with each status,
+     *  without reading the reviews themselves.
+     * @return The number of 'open', 'awaiting' and 'complete' reviews, by section.
+     */
+    static Map<String, Map<String, Integer>> getReviewStatusCounts() {
+        Tracer.Span span = Tracer.span("DatabaseController.getReviewStatusCounts");
+        try {
+            return repository.getReviewStatusCounts();
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Searches the free text of every review: the performance summary, reviewer comments,
+     *  past objectives and achievements, and future goals.
+     * Only the ids and matching snippets are read, not the reviews themselves.
+     * Each word of the query must appear in the same piece of text, and a word ending
+     *  in * matches any word starting with it.
+     * @param query The words to search for.
+     * @param limit The most reviews to return.
+     * @return The reviewID, the field which matched best and a snippet of that field,
+     *  for each matching review, best match first.
+     */
+    static List<Map<String, String>> searchReviews(String query, int limit) {
+        Tracer.Span span = Tracer.span("DatabaseController.searchReviews");
+        try {
+            return repository.searchReviews(query, limit);
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Sets the supervisor of an employee.
+     * Fails if the employee supervises the new supervisor, directly or not.
+     * @param staffNo The staff number of the employee.
+     * @param supervisor The staff number of their new supervisor, or null for none.
+     */
+    static void setSupervisor(String staffNo, String supervisor) {
+        Tracer.Span span = Tracer.span("DatabaseController.setSupervisor");
+        try {
+            repository.setSupervisor(staffNo, supervisor);
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Sets the section an employee works in.
+     * @param staffNo The staff number of the employee.
+     * @param section Their new section, or null for none.
+     */
+    static void setSection(String staffNo, String section) {
+        Tracer.Span span = Tracer.span("DatabaseController.setSection");
+        try {
+            repository.setSection(staffNo, section);
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Gets whether a manager is in an employee's chain of management,
+     *  i.e. supervises them directly or supervises one of their supervisors.
+     * @param manager The username or staff number of the manager.
+     * @param employee The username or staff number of the employee.
+     * @return Whether the manager is above the employee in the supervisor hierarchy.
+     */
+    static boolean isInManagementChain(String manager, String employee) {
+        Tracer.Span span = Tracer.span("DatabaseController.isInManagementChain");
+        try {
+            return repository.isInManagementChain(manager, employee);
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Gets everyone a manager supervises, directly or not.
+     * @param manager The username or staff number of the manager.
+     * @return The staff numbers of the employees below the manager, nearest first.
+     */
+    static List<String> listManagedEmployees(String manager) {
+        Tracer.Span span = Tracer.span("DatabaseController.listManagedEmployees");
+        try {
+            return repository.listManagedEmployees(manager);
+        } finally {
+            span.close();
+        }
     }
 
+    /**
+     * Gets every annual review, whatever its status.
+     * @return Every annual review.
+     */
     static List<AnnualReview> getAllReviews() {
-        String sql = "SELECT reviewID FROM AnnualReview";
-        List<AnnualReview> result = new ArrayList<>();
+        Tracer.Span span = Tracer.span("DatabaseController.getAllReviews");
+        try {
+            return repository.getAllReviews();
+        } finally {
+            span.close();
+        }
+    }
+
+    /**
+     * Tails the changes to personal details and annual reviews, in every shard.
+     * @param offsets The offsets of a stream to resume, from ChangeStream.getOffsets,
+     *  or null to start from the first change.
+     * @param batchSize The most changes returned by each poll.
+     * @return A stream of the changes after offsets.
+     */
+    static ChangeStream tailChanges(long[] offsets, int batchSize) {
+        return new ChangeStream(repository, offsets, batchSize);
+    }
 
-        try (PreparedStatement pStatement = conn.prepareStatement(sql)){
-            ResultSet rSet = pStatement.executeQuery();
-            while (rSet.next()) {
-                result.add(getAnnualReview(rSet.getInt("reviewID")));
+    /**
+     * Starts backing up the database on a background thread, while it stays in use.
+     * Each shard is backed up on its own: the first to the target, and shard n beside it,
+     *  with "-n" added to its name before any extension.
+     * @param target Where to write the backup.
+     * @return The running backup of each shard, to follow their progress or cancel them.
+     * @throws SQLException If the repository can't be backed up.
+     */
+    static List<OnlineBackup> startBackup(Path target) throws SQLException {
+        Tracer.Span span = Tracer.span("DatabaseController.startBackup");
+        try {
+            List<HRRepository> shards = repository.getShards();
+            List<OnlineBackup> backups = new ArrayList<>();
+            String name = target.getFileName().toString();
+            int extension = name.lastIndexOf('.') > 0 ? name.lastIndexOf('.') : name.length();
+            try {
+                for (int i = 0; i < shards.size(); i++) {
+                    Path shardTarget = i == 0 ? target : target.resolveSibling(
+                            name.substring(0, extension) + "-" + i + name.substring(extension));
+                    backups.add(shards.get(i).startBackup(shardTarget));
+                }
+            } catch (SQLException e) {
+                //A backup of only some of the shards is no use.
+                backups.forEach(OnlineBackup::cancel);
+                throw e;
             }
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+            return backups;
+        } finally {
+            span.close();
         }
-        return result;
     }
-
 }
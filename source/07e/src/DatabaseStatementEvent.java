@@ -0,0 +1,33 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for a single statement executed by the DatabaseController.
+ * The event spans from preparing the statement until it is closed.
+ * Time actually spent inside the database is recorded separately in databaseTime.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+@Name("yuconz.DatabaseStatement")
+@Label("Database Statement")
+@Category({"Yuconz", "Database"})
+@Description("A SQL statement executed by the DatabaseController")
+@StackTrace(false)
+class DatabaseStatementEvent extends Event {
+    @Label("SQL Id")
+    @Description("The DAO operation the statement belongs to")
+    String sqlId;
+
+    @Label("Rows")
+    @Description("Rows read by a query, or rows changed by an update")
+    int rows;
+
+    @Label("Database Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long databaseTime;
+}
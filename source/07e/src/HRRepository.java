@@ -0,0 +1,379 @@
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Where the HR data is kept: users, personal details, annual reviews and the supervisor
+ *  hierarchy. The DatabaseController passes every operation on to a repository.
+ * Implementations must be safe to use from more than one thread.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+interface HRRepository {
+
+    /**
+     * Opens the repository, creating it with the dummy users if it doesn't exist yet.
+     */
+    void connect();
+
+    /**
+     * Closes the repository. Does nothing if it isn't open.
+     */
+    void close();
+
+    /**
+     * Gets the most operations which can be running on the repository at once.
+     * @return The number of database connections, or of threads which can usefully share the data.
+     */
+    int getConnectionCount();
+
+    /**
+     * Gets the repositories this one is split across. Each shard has its own change stream
+     *  and is backed up on its own.
+     * @return The shards, or just this repository if it isn't split.
+     */
+    List<HRRepository> getShards();
+
+    /**
+     * Adds a user to the HR Database for testing purposes.
+     * Creates an EmployeeDetails record and an Authentication record for that user.
+     * @param username The username of the user.
+     * @param staffNo The staff number of the user.
+     * @param password The password of the user.
+     * @param roles The roles the user can authenticate as.
+     * @throws SQLException If the user could not be added.
+     */
+    void addDummyUser(String username, String staffNo, String password,
+                      String roles) throws SQLException;
+
+    /**
+     * Removes a dummy user from the system.
+     * Deletes the authentication record and employee details record of the specified user.
+     * For testing purposes only.
+     * @param username The username of the dummy user to delete.
+     * @param staffNo The staff number of the dummy user to delete.
+     */
+    void removeDummyUser(String username, String staffNo);
+
+    /**
+     * Gets the staff number of the user with the specified login.
+     * @param username Which user to get the staff number of.
+     * @return The specified user's staff number, or null if not found.
+     */
+    String getStaffNo(String username);
+
+    /**
+     * Gets the section an employee works in.
+     * @param staffNo The staff number of the employee.
+     * @return Their section, or null if they have none or aren't found.
+     */
+    String getSection(String staffNo);
+
+    /**
+     * Gets the fields associated with the given username.
+     * Returns fields in [password, roles] format.
+     * @param username The username to lookup.
+     * @return The fields associated with the given username as an array, or null if not found.
+     */
+    String[] getAuthData(String username);
+
+    /**
+     * Gets the personal details file related to the specified userId, or null if it doesn't exist.
+     * @param userID The username of the user to get the personal details for.
+     * @return The personal details for that user, or null if not present.
+     */
+    PersonalDetails getPersonalDetails(String userID);
+
+    /**
+     * Gets the personal details of several users at once.
+     * @param userIDs The usernames or staff numbers of the users.
+     * @return Each user's personal details, by the username or staff number given,
+     *  leaving out users without any.
+     */
+    Map<String, PersonalDetails> getPersonalDetails(Collection<String> userIDs);
+
+    /**
+     * Adds the specified personal details record for userID to the personal details database.
+     * @param details The personal details to be added to the database.
+     */
+    void addPersonalDetails(PersonalDetails details);
+
+    /**
+     * Updates a personal details file.
+     * @param details The updated personal details file to put in the database.
+     */
+    void updatePersonalDetails(PersonalDetails details);
+
+    /**
+     * Updates several personal details files together. Either every update is saved, or none.
+     * @param updates The updated personal details files to put in the database.
+     * @return The number of files updated. Files which don't exist yet are not added.
+     * @throws SQLException If the updates could not be saved.
+     */
+    int updateAllPersonalDetails(List<PersonalDetails> updates) throws SQLException;
+
+    /**
+     * Updates the search index with an amendment which is saved later, so searches find
+     *  the amended surname and post code straight away.
+     * Employees without personal details are left out, as saving the amendment won't add them.
+     * @param details The amended personal details file.
+     */
+    void indexPersonalDetails(PersonalDetails details);
+
+    /**
+     * Removes a user's personal details from the system.
+     * This will not be used in the final version of the system,
+     * this only exists for the purposes of testing mockups.
+     * @param staffNo The staff number of the user whose record to remove.
+     */
+    void removePersonalDetails(String staffNo);
+
+    /**
+     * Finds employees by the start of their surname or post code, or failing that by a
+     *  surname or post code similar to the text given.
+     * @param text The surname or post code to search for, or the start of one.
+     * @param limit The most employees to return.
+     * @return The surname and post code of each matching employee, by staff number,
+     *  prefix matches first.
+     */
+    Map<String, String[]> searchPersonalDetails(String text, int limit);
+
+    /**
+     * Adds a new user to the authentication database.
+     * Replaces the old details if the user already exists.
+     * @param username The username to add to the database
+     * @param password The password for the user.
+     */
+    void addUser(String username, String password);
+
+    /**
+     * Removes a user from the authentication database
+     * @param username Which user to remove
+     */
+    void removeUser(String username);
+
+    /**
+     * Creates an annual review for the specified user.
+     * Fills in staff number, name, supervisor, section and job title from employeeDetails table.
+     * @param username The username of the employee to create an annual review for.
+     */
+    void createAnnualReview(String username);
+
+    /**
+     * Inserts a new annual review record in the database.
+     * @param review The newly created annual review to store.
+     */
+    void insertAnnualReview(AnnualReview review);
+
+    /**
+     * Makes new reviews take reviewIDs from the given one upwards, so that reviewIDs from
+     *  different repositories don't collide. Does nothing if higher IDs are already in use.
+     * @param first The lowest reviewID a new review may have.
+     * @throws SQLException If the reviewIDs could not be reserved.
+     */
+    void reserveReviewIDs(int first) throws SQLException;
+
+    /**
+     * Updates an existing annual review record in the database.
+     * Fails if the review doesn't already exist.
+     * @param updatedReview The updated annual review to store.
+     */
+    void updateAnnualReview(AnnualReview updatedReview);
+
+    /**
+     * Deletes the specified annual review file.
+     * For testing purposes only.
+     * @param reviewID Which review file to delete.
+     */
+    void deleteAnnualReview(Integer reviewID);
+
+    /**
+     * Gets the specified annual review.
+     * @param reviewID The reviewID of the annual review to retrieve from the database.
+     * @return The annual review stored in the database, or null if not found.
+     */
+    AnnualReview getAnnualReview(Integer reviewID);
+
+    /**
+     * Gets all completed reviews corresponding to the given user.
+     * @param username The username of the employee to find Annual Reviews for.
+     * @return The list of that user's completed Annual Reviews.
+     */
+    List<AnnualReview> getPastReviews(String username);
+
+    /**
+     * Gets all completed reviews corresponding to the given user, optionally including
+     *  those which have been archived.
+     * @param username The username of the employee to find Annual Reviews for.
+     * @param includeArchived Whether to include archived reviews.
+     * @return The list of that user's completed Annual Reviews, oldest first.
+     */
+    List<AnnualReview> getPastReviews(String username, boolean includeArchived);
+
+    /**
+     * Moves a batch of reviews completed before the given date into the archive, in one
+     *  transaction. Archived reviews are only read by getPastReviews when asked for, though
+     *  they are still counted by getReviewStatusCounts and found by searchReviews. Each move
+     *  is streamed as an archive rather than a delete.
+     * @param completedBefore Reviews whose last signature is before this date are archived.
+     * @param batchSize The most reviews to archive.
+     * @return The number of reviews archived, which is less than batchSize once none are left.
+     * @throws SQLException If the batch could not be archived. Nothing is moved.
+     */
+    int archiveReviews(Date completedBefore, int batchSize) throws SQLException;
+
+    /**
+     * Gets all active and inactive reviews belonging to the given user.
+     * @param username The username of the employee to find Annual Reviews for.
+     * @return The list of that user's active and inactive Annual Reviews.
+     */
+    List<AnnualReview> getReviews(String username);
+
+    /**
+     * Gets an unfinished annual review for the specified staffNo.
+     * Assumes that each employee has a maximum of one unfinished review.
+     * @param username The user to get an unfinished review for.
+     * @return The currently active annual review of that user, or null if not found.
+     */
+    AnnualReview getUnfinishedReview(String username);
+
+    /**
+     * Gets the unfinished annual reviews of several users at once.
+     * @param userIDs The usernames or staff numbers of the users.
+     * @return Each user's unfinished review, by the username or staff number given,
+     *  leaving out users without one.
+     */
+    Map<String, AnnualReview> getUnfinishedReviews(Collection<String> userIDs);
+
+    /**
+     * Gets the staff number, name and section of owners of annual reviews
+     *  which are in progress but without a second reviewer.
+     * @return The staffNo, name and section of employees under review without a second reviewer.
+     */
+    List<Map<String, String>> reviewsWithoutASecondReviewer();
+
+    /**
+     * Gets the open reviews which don't have a second reviewer yet.
+     * @return The staff number of the reviewee of each review, by reviewID in ascending order.
+     */
+    Map<Integer, String> getReviewsNeedingSecondReviewer();
+
+    /**
+     * Gets how many open reviews each reviewer is supervisor or second reviewer on.
+     * @return The number of open reviews of every employee with the Reviewer role,
+     *  by staff number.
+     */
+    Map<String, Integer> getReviewerLoads();
+
+    /**
+     * Gets the supervisor chain of every reviewee whose review needs a second reviewer,
+     *  including the supervisor named on the review itself.
+     * @return The staff numbers of each reviewee's supervisors, by the reviewee's staff number.
+     */
+    Map<String, Set<String>> getRevieweeSupervisorChains();
+
+    /**
+     * Saves second reviewer assignments all together.
+     * Reviews which were given a second reviewer in the meantime are left alone.
+     * If any assignment fails, none are saved.
+     * @param assignments The staff number of the second reviewer of each review, by reviewID.
+     * @return The number of reviews assigned.
+     */
+    int assignSecondReviewers(Map<Integer, String> assignments);
+
+    /**
+     * Gets a list of the users with active reviews which are being reviewed by the given user.
+     * @param username The username of the reviewer.
+     * @return The staff number of that reviewer's active reviewees.
+     */
+    List<String> listReviewees(String username);
+
+    /**
+     * Gets whether a user is currently reviewing another user.
+     * @param username The reviewer.
+     * @param targetUsername The reviewee.
+     * @return Whether the first user is currently reviewing the targetUsername.
+     */
+    boolean isReviewing(String username, String targetUsername);
+
+    /**
+     * Gets the number of reviews in each section with each status,
+     *  without reading the reviews themselves.
+     * @return The number of 'open', 'awaiting' and 'complete' reviews, by section.
+     */
+    Map<String, Map<String, Integer>> getReviewStatusCounts();
+
+    /**
+     * Searches the free text of every review: the performance summary, reviewer comments,
+     *  past objectives and achievements, and future goals.
+     * Only the ids and matching snippets are read, not the reviews themselves.
+     * Each word of the query must appear in the same piece of text, and a word ending
+     *  in * matches any word starting with it.
+     * @param query The words to search for.
+     * @param limit The most reviews to return.
+     * @return The reviewID, the field which matched best and a snippet of that field,
+     *  for each matching review, best match first.
+     */
+    List<Map<String, String>> searchReviews(String query, int limit);
+
+    /**
+     * Sets the supervisor of an employee.
+     * Fails if the employee supervises the new supervisor, directly or not.
+     * @param staffNo The staff number of the employee.
+     * @param supervisor The staff number of their new supervisor, or null for none.
+     */
+    void setSupervisor(String staffNo, String supervisor);
+
+    /**
+     * Sets the section an employee works in, which decides their shard in a sharded
+     *  repository. An employee with reviews can't change shard, as their reviewIDs locate them.
+     * @param staffNo The staff number of the employee.
+     * @param section Their new section, or null for none.
+     */
+    void setSection(String staffNo, String section);
+
+    /**
+     * Gets whether a manager is in an employee's chain of management,
+     *  i.e. supervises them directly or supervises one of their supervisors.
+     * @param manager The username or staff number of the manager.
+     * @param employee The username or staff number of the employee.
+     * @return Whether the manager is above the employee in the supervisor hierarchy.
+     */
+    boolean isInManagementChain(String manager, String employee);
+
+    /**
+     * Gets everyone a manager supervises, directly or not.
+     * @param manager The username or staff number of the manager.
+     * @return The staff numbers of the employees below the manager, nearest first.
+     */
+    List<String> listManagedEmployees(String manager);
+
+    /**
+     * Gets every annual review, whatever its status.
+     * @return Every annual review.
+     */
+    List<AnnualReview> getAllReviews();
+
+    /**
+     * Reads the changes to personal details and annual reviews after the given one.
+     * Changes are numbered in the order they were made, and are never removed.
+     * @param afterSeq The seq of the last change already read, or 0 for the first change.
+     * @param limit The most changes to return.
+     * @return The changes after afterSeq, oldest first.
+     * @throws SQLException If the changes could not be read.
+     */
+    List<ChangeEvent> readChanges(long afterSeq, int limit) throws SQLException;
+
+    /**
+     * Starts backing up the repository on a background thread, while it stays in use.
+     * @param target Where to write the backup. A previous backup there is replaced once
+     *  the new one is complete.
+     * @return The running backup, to follow its progress or cancel it.
+     * @throws SQLException If this repository can't be backed up.
+     */
+    OnlineBackup startBackup(Path target) throws SQLException;
+}
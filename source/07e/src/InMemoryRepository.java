@@ -0,0 +1,928 @@
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * An HR repository held in memory, for tests, profiling the application without the
+ *  cost of storage, and short-lived instances. Nothing is saved when it closes.
+ * It starts with the same dummy users as a new SQLite database.
+ * Reviews are kept by reviewID, with secondary indexes of each employee's reviews and
+ *  each reviewer's open reviews, so lookups don't scan every review. ReviewIDs are kept
+ *  in primitive int maps and sets rather than boxed in the collections.
+ * Reads share a lock and writes take it exclusively, so it can be used from many threads.
+ * Values are copied in and out, so changing a returned object doesn't change the repository.
+ * Changes to personal details and reviews are streamed as they are made, like the
+ *  ChangeStream table of a SQLite database.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class InMemoryRepository implements HRRepository {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Employee> employees = new HashMap<>();
+    private final Map<String, String> staffNoByUsername = new HashMap<>();
+    private final Map<String, String> passwords = new HashMap<>();
+    private final Map<String, PersonalDetails> personalDetails = new HashMap<>();
+    //Reviews by reviewID. Staff numbers keep their leading zeros, so they stay strings.
+    private final IntMap<Review> reviews = new IntMap<>();
+    //The reviewIDs of each employee's reviews, by staff number.
+    private final Map<String, IntSet> reviewsByStaffNo = new HashMap<>();
+    //The reviewIDs of the open reviews each employee supervises or second reviews.
+    private final Map<String, IntSet> openReviewsByReviewer = new HashMap<>();
+    private final PersonalDetailsIndex searchIndex = new PersonalDetailsIndex();
+    //Reviews completed long ago, kept apart so they don't slow down the current reviews.
+    private final IntMap<Review> archivedReviews = new IntMap<>();
+    private final Map<String, IntSet> archivedByStaffNo = new HashMap<>();
+    //Every change to personal details and reviews, where a change's seq is its index plus one.
+    private final List<ChangeEvent> changes = new ArrayList<>();
+    private int nextReviewID = 1;
+
+    @Override
+    public void connect() {
+        write(() -> {
+            if (employees.isEmpty()) {
+                for (Map.Entry<String, String[]> user :
+                        DatabaseController.getDummyUsers().entrySet()) {
+                    String[] values = user.getValue();
+                    putUser(user.getKey(), values[0], values[1], values[2]);
+                }
+                for (PersonalDetails details :
+                        DatabaseController.getDummyPersonalDetails().values()) {
+                    putPersonalDetails(details);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public int getConnectionCount() {
+        //Readers share the lock, so there's no use running more of them than there are cores.
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public List<HRRepository> getShards() {
+        return Collections.singletonList(this);
+    }
+
+    @Override
+    public void addDummyUser(String username, String staffNo, String password,
+                             String roles) throws SQLException {
+        boolean added = write(() -> {
+            if (employees.containsKey(staffNo) || staffNoByUsername.containsKey(username)) {
+                return false;
+            }
+            putUser(username, staffNo, password, roles);
+            return true;
+        });
+        if (!added) {
+            throw new SQLException("User " + username + " or staff number " + staffNo +
+                    " already exists");
+        }
+    }
+
+    /**
+     * Adds a user, with personal details of random characters like the SQLite dummy users.
+     * The write lock must be held.
+     */
+    private void putUser(String username, String staffNo, String password, String roles) {
+        employees.put(staffNo, new Employee(staffNo, username, roles));
+        staffNoByUsername.put(username, staffNo);
+        passwords.put(username, password);
+        String[] dummyData = new String[10];
+        for (int i = 0; i < dummyData.length; i++) {
+            StringBuilder field = new StringBuilder();
+            for (int j = 0; j < 9; j++) {
+                field.append((char) (32 + Math.round(Math.random() * 94)));
+            }
+            dummyData[i] = field.toString();
+        }
+        putPersonalDetails(new PersonalDetails(staffNo, dummyData[0], dummyData[1], dummyData[2],
+                dummyData[3], dummyData[4], dummyData[5], dummyData[6], dummyData[7],
+                dummyData[8], dummyData[9]));
+    }
+
+    @Override
+    public void removeDummyUser(String username, String staffNo) {
+        write(() -> {
+            passwords.remove(username);
+            Employee employee = employees.remove(staffNo);
+            if (employee != null && employee.username != null) {
+                staffNoByUsername.remove(employee.username);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public String getStaffNo(String username) {
+        //Checks to see if the input is already a staffNo
+        if (Character.isDigit(username.charAt(0))) {
+            return username;
+        }
+        return read(() -> staffNoByUsername.get(username));
+    }
+
+    @Override
+    public String getSection(String staffNo) {
+        return read(() -> {
+            Employee employee = employees.get(staffNo);
+            return employee == null ? null : employee.section;
+        });
+    }
+
+    @Override
+    public String[] getAuthData(String username) {
+        return read(() -> {
+            String staffNo = staffNoByUsername.get(username);
+            String password = passwords.get(username);
+            if (staffNo == null || password == null) {
+                return null;
+            }
+            return new String[] {password, employees.get(staffNo).role};
+        });
+    }
+
+    @Override
+    public PersonalDetails getPersonalDetails(String userID) {
+        String staffNo = getStaffNo(userID);
+        return read(() -> copy(personalDetails.get(staffNo)));
+    }
+
+    @Override
+    public Map<String, PersonalDetails> getPersonalDetails(Collection<String> userIDs) {
+        return read(() -> {
+            Map<String, PersonalDetails> result = new HashMap<>();
+            for (String userID : userIDs) {
+                PersonalDetails details = personalDetails.get(getStaffNo(userID));
+                if (details != null) {
+                    result.put(userID, copy(details));
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void addPersonalDetails(PersonalDetails details) {
+        write(() -> {
+            if (personalDetails.containsKey(details.getField("Staff No"))) {
+                System.out.println("Personal details for " + details.getField("Staff No") +
+                        " already exist");
+            } else {
+                putPersonalDetails(details);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void updatePersonalDetails(PersonalDetails details) {
+        write(() -> {
+            if (personalDetails.containsKey(details.getField("Staff No"))) {
+                putPersonalDetails(details);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public int updateAllPersonalDetails(List<PersonalDetails> updates) {
+        return write(() -> {
+            int updated = 0;
+            for (PersonalDetails details : updates) {
+                if (personalDetails.containsKey(details.getField("Staff No"))) {
+                    putPersonalDetails(details);
+                    updated++;
+                }
+            }
+            return updated;
+        });
+    }
+
+    @Override
+    public void indexPersonalDetails(PersonalDetails details) {
+        searchIndex.replace(details.getField("Staff No"), details.getField("Surname"),
+                details.getField("Post Code"));
+    }
+
+    private void putPersonalDetails(PersonalDetails details) {
+        String staffNo = details.getField("Staff No");
+        PersonalDetails old = personalDetails.put(staffNo, copy(details));
+        recordChange("PersonalDetails", staffNo,
+                old == null ? ChangeEvent.Operation.INSERT : ChangeEvent.Operation.UPDATE);
+        searchIndex.put(staffNo, details.getField("Surname"), details.getField("Post Code"));
+    }
+
+    @Override
+    public void removePersonalDetails(String staffNo) {
+        write(() -> {
+            if (personalDetails.remove(staffNo) != null) {
+                recordChange("PersonalDetails", staffNo, ChangeEvent.Operation.DELETE);
+            }
+            searchIndex.remove(staffNo);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, String[]> searchPersonalDetails(String text, int limit) {
+        Map<String, String[]> results = new LinkedHashMap<>();
+        for (String staffNo : searchIndex.search(text, limit)) {
+            String[] values = searchIndex.getValues(staffNo);
+            if (values != null) {
+                results.put(staffNo, values);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void addUser(String username, String password) {
+        write(() -> passwords.put(username, password));
+    }
+
+    @Override
+    public void removeUser(String username) {
+        write(() -> passwords.remove(username));
+    }
+
+    @Override
+    public void createAnnualReview(String username) {
+        write(() -> {
+            String staffNo = staffNoByUsername.get(username);
+            Employee employee = staffNo == null ? null : employees.get(staffNo);
+            PersonalDetails details = staffNo == null ? null : personalDetails.get(staffNo);
+            if (employee != null && details != null) {
+                AnnualReview review = new AnnualReview();
+                review.setField("Staff No", staffNo);
+                review.setField("Name", details.getField("Name"));
+                review.setField("Supervisor", employee.supervisor);
+                review.setField("Section", employee.section);
+                review.setField("Job Title", employee.jobTitle);
+                putReview(new Review(nextReviewID++, review));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void insertAnnualReview(AnnualReview review) {
+        write(() -> {
+            putReview(new Review(nextReviewID++, review));
+            return null;
+        });
+    }
+
+    @Override
+    public void reserveReviewIDs(int first) {
+        write(() -> nextReviewID = Math.max(nextReviewID, first));
+    }
+
+    @Override
+    public void updateAnnualReview(AnnualReview updatedReview) {
+        write(() -> {
+            Integer reviewID = updatedReview.getReviewID();
+            if (reviewID != null && reviews.containsKey(reviewID)) {
+                putReview(new Review(reviewID, updatedReview));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteAnnualReview(Integer reviewID) {
+        write(() -> {
+            Review review = reviewID == null ? null : reviews.remove(reviewID);
+            if (review != null) {
+                unindex(review);
+                recordChange("AnnualReview", reviewID.toString(), ChangeEvent.Operation.DELETE);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Stores a review, replacing the one with the same reviewID, and updates the indexes.
+     * The write lock must be held.
+     */
+    private void putReview(Review review) {
+        Review old = reviews.put(review.reviewID, review);
+        if (old != null) {
+            unindex(old);
+        }
+        recordChange("AnnualReview", String.valueOf(review.reviewID),
+                old == null ? ChangeEvent.Operation.INSERT : ChangeEvent.Operation.UPDATE);
+        reviewsByStaffNo.computeIfAbsent(review.staffNo, (k) -> new IntSet())
+                .add(review.reviewID);
+        if (!review.isComplete()) {
+            for (String reviewer : review.reviewers()) {
+                openReviewsByReviewer.computeIfAbsent(reviewer, (k) -> new IntSet())
+                        .add(review.reviewID);
+            }
+        }
+    }
+
+    /**
+     * Appends a change to the stream. The write lock must be held.
+     */
+    private void recordChange(String table, String key, ChangeEvent.Operation operation) {
+        changes.add(new ChangeEvent(changes.size() + 1, table, key, operation,
+                System.currentTimeMillis()));
+    }
+
+    private void unindex(Review review) {
+        removeFromIndex(reviewsByStaffNo, review.staffNo, review.reviewID);
+        for (String reviewer : review.reviewers()) {
+            removeFromIndex(openReviewsByReviewer, reviewer, review.reviewID);
+        }
+    }
+
+    private static IntSet reviewIDs(Map<String, IntSet> index, String key) {
+        IntSet reviewIDs = index.get(key);
+        return reviewIDs == null ? new IntSet() : reviewIDs;
+    }
+
+    private static void removeFromIndex(Map<String, IntSet> index, String key, int reviewID) {
+        IntSet reviewIDs = index.get(key);
+        if (reviewIDs != null) {
+            reviewIDs.remove(reviewID);
+            if (reviewIDs.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public AnnualReview getAnnualReview(Integer reviewID) {
+        return read(() -> {
+            Review review = reviewID == null ? null : reviews.get(reviewID);
+            return review == null ? null : review.toAnnualReview();
+        });
+    }
+
+    @Override
+    public List<AnnualReview> getPastReviews(String username) {
+        return getPastReviews(username, false);
+    }
+
+    @Override
+    public List<AnnualReview> getPastReviews(String username, boolean includeArchived) {
+        String staffNo = getStaffNo(username);
+        return read(() -> {
+            List<AnnualReview> results = new ArrayList<>();
+            IntSet reviewIDs = reviewIDs(reviewsByStaffNo, staffNo);
+            for (int i = 0; i < reviewIDs.size(); i++) {
+                Review review = reviews.get(reviewIDs.get(i));
+                if (review.isComplete()) {
+                    results.add(review.toAnnualReview());
+                }
+            }
+            if (includeArchived) {
+                IntSet archivedIDs = reviewIDs(archivedByStaffNo, staffNo);
+                for (int i = 0; i < archivedIDs.size(); i++) {
+                    results.add(archivedReviews.get(archivedIDs.get(i)).toAnnualReview());
+                }
+                results.sort(Comparator.comparing(AnnualReview::getReviewID));
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public int archiveReviews(Date completedBefore, int batchSize) {
+        return write(() -> {
+            List<Review> batch = new ArrayList<>();
+            for (Review review : reviews.values()) {
+                if (batch.size() == batchSize) {
+                    break;
+                }
+                if (review.isComplete() && review.completedOn().before(completedBefore)) {
+                    batch.add(review);
+                }
+            }
+            for (Review review : batch) {
+                reviews.remove(review.reviewID);
+                unindex(review);
+                recordChange("AnnualReview", String.valueOf(review.reviewID),
+                        ChangeEvent.Operation.ARCHIVE);
+                archivedReviews.put(review.reviewID, review);
+                archivedByStaffNo.computeIfAbsent(review.staffNo, (k) -> new IntSet())
+                        .add(review.reviewID);
+            }
+            return batch.size();
+        });
+    }
+
+    @Override
+    public List<AnnualReview> getReviews(String username) {
+        String staffNo = getStaffNo(username);
+        return read(() -> {
+            List<AnnualReview> results = new ArrayList<>();
+            IntSet reviewIDs = reviewIDs(reviewsByStaffNo, staffNo);
+            for (int i = 0; i < reviewIDs.size(); i++) {
+                results.add(reviews.get(reviewIDs.get(i)).toAnnualReview());
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public AnnualReview getUnfinishedReview(String username) {
+        String staffNo = getStaffNo(username);
+        return read(() -> {
+            IntSet reviewIDs = reviewIDs(reviewsByStaffNo, staffNo);
+            for (int i = 0; i < reviewIDs.size(); i++) {
+                Review review = reviews.get(reviewIDs.get(i));
+                if (!review.isComplete()) {
+                    return review.toAnnualReview();
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, AnnualReview> getUnfinishedReviews(Collection<String> userIDs) {
+        return read(() -> {
+            Map<String, AnnualReview> result = new HashMap<>();
+            for (String userID : userIDs) {
+                AnnualReview review = getUnfinishedReview(userID);
+                if (review != null) {
+                    result.put(userID, review);
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public List<Map<String, String>> reviewsWithoutASecondReviewer() {
+        return read(() -> {
+            List<Map<String, String>> result = new ArrayList<>();
+            for (Review review : reviews.values()) {
+                if (review.secondReviewer == null) {
+                    Map<String, String> row = new HashMap<>();
+                    row.put("staffNo", review.staffNo);
+                    row.put("name", review.name);
+                    row.put("section", review.section);
+                    result.add(row);
+                }
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public Map<Integer, String> getReviewsNeedingSecondReviewer() {
+        return read(() -> {
+            Map<Integer, String> pending = new LinkedHashMap<>();
+            for (Review review : reviews.values()) {
+                if (review.secondReviewer == null && !review.isComplete()) {
+                    pending.put(review.reviewID, review.staffNo);
+                }
+            }
+            return pending;
+        });
+    }
+
+    @Override
+    public Map<String, Integer> getReviewerLoads() {
+        return read(() -> {
+            Map<String, Integer> loads = new HashMap<>();
+            //Roles are stored as a string of role ordinals.
+            String reviewerRole = String.valueOf(Role.REVIEWER.ordinal());
+            for (Employee employee : employees.values()) {
+                if (employee.role != null && employee.role.contains(reviewerRole)) {
+                    loads.put(employee.staffNo, reviewIDs(openReviewsByReviewer,
+                            employee.staffNo).size());
+                }
+            }
+            return loads;
+        });
+    }
+
+    @Override
+    public Map<String, Set<String>> getRevieweeSupervisorChains() {
+        return read(() -> {
+            Map<String, Set<String>> chains = new HashMap<>();
+            for (Review review : reviews.values()) {
+                if (review.secondReviewer == null && !review.isComplete()) {
+                    Set<String> chain = chains.computeIfAbsent(review.staffNo,
+                            (k) -> new HashSet<>(supervisorsOf(review.staffNo)));
+                    if (review.supervisor != null) {
+                        chain.add(review.supervisor);
+                    }
+                }
+            }
+            return chains;
+        });
+    }
+
+    @Override
+    public int assignSecondReviewers(Map<Integer, String> assignments) {
+        return write(() -> {
+            int assigned = 0;
+            for (Map.Entry<Integer, String> assignment : assignments.entrySet()) {
+                Review review = reviews.get(assignment.getKey());
+                //Reviews which were given a second reviewer in the meantime are left alone.
+                if (review != null && review.secondReviewer == null) {
+                    putReview(review.withSecondReviewer(assignment.getValue()));
+                    assigned++;
+                }
+            }
+            return assigned;
+        });
+    }
+
+    @Override
+    public List<String> listReviewees(String username) {
+        String staffNo = getStaffNo(username);
+        return read(() -> {
+            Set<String> reviewees = new TreeSet<>();
+            IntSet reviewIDs = reviewIDs(openReviewsByReviewer, staffNo);
+            for (int i = 0; i < reviewIDs.size(); i++) {
+                reviewees.add(reviews.get(reviewIDs.get(i)).staffNo);
+            }
+            return new ArrayList<>(reviewees);
+        });
+    }
+
+    @Override
+    public boolean isReviewing(String username, String targetUsername) {
+        return listReviewees(username).contains(getStaffNo(targetUsername));
+    }
+
+    @Override
+    public Map<String, Map<String, Integer>> getReviewStatusCounts() {
+        return read(() -> {
+            Map<String, Map<String, Integer>> counts = new TreeMap<>();
+            //Archived reviews are still counted.
+            for (Review review : allReviews()) {
+                Map<String, Integer> section = counts.computeIfAbsent(review.section, (k) -> {
+                    Map<String, Integer> statuses = new LinkedHashMap<>();
+                    statuses.put("open", 0);
+                    statuses.put("awaiting", 0);
+                    statuses.put("complete", 0);
+                    return statuses;
+                });
+                section.merge(review.status(), 1, Integer::sum);
+            }
+            return counts;
+        });
+    }
+
+    @Override
+    public List<Map<String, String>> searchReviews(String query, int limit) {
+        List<String> words = new ArrayList<>();
+        for (String word : query.toLowerCase(Locale.ROOT).trim().split("\\s+")) {
+            if (!word.replace("*", "").isEmpty()) {
+                words.add(word);
+            }
+        }
+        return read(() -> {
+            List<Map<String, String>> results = new ArrayList<>();
+            if (words.isEmpty()) {
+                return results;
+            }
+            //Archived reviews stay searchable.
+            for (Review review : allReviews()) {
+                if (results.size() >= limit) {
+                    break;
+                }
+                //The first piece of text containing every word is the review's match.
+                for (String[] text : review.texts()) {
+                    if (text[1] != null && containsWords(text[1], words)) {
+                        Map<String, String> row = new HashMap<>();
+                        row.put("reviewID", String.valueOf(review.reviewID));
+                        row.put("field", text[0]);
+                        row.put("snippet", text[1]);
+                        results.add(row);
+                        break;
+                    }
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Checks whether a piece of text contains every word, a word ending in * matching any
+     *  word starting with it.
+     */
+    private static boolean containsWords(String text, List<String> words) {
+        List<String> textWords = Arrays.asList(
+                text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"));
+        for (String word : words) {
+            boolean prefix = word.endsWith("*");
+            String stem = word.replace("*", "");
+            if (textWords.stream().noneMatch((w) -> prefix ? w.startsWith(stem) : w.equals(stem))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void setSection(String staffNo, String section) {
+        write(() -> {
+            Employee employee = employees.get(staffNo);
+            if (employee != null) {
+                employee.section = section;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void setSupervisor(String staffNo, String supervisor) {
+        write(() -> {
+            Employee employee = employees.get(staffNo);
+            if (employee == null) {
+                return null;
+            }
+            if (supervisor != null && (supervisor.equals(staffNo)
+                    || supervisorsOf(supervisor).contains(staffNo))) {
+                System.out.println("An employee cannot supervise their own supervisor");
+            } else {
+                employee.supervisor = supervisor;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isInManagementChain(String manager, String employee) {
+        String managerNo = getStaffNo(manager);
+        String employeeNo = getStaffNo(employee);
+        if (managerNo == null || employeeNo == null) {
+            return false;
+        }
+        return read(() -> supervisorsOf(employeeNo).contains(managerNo));
+    }
+
+    @Override
+    public List<String> listManagedEmployees(String manager) {
+        String managerNo = getStaffNo(manager);
+        return read(() -> {
+            //Breadth first, so the nearest employees come first like the SQLite repository.
+            List<String> managed = new ArrayList<>();
+            List<String> level = Collections.singletonList(managerNo);
+            while (!level.isEmpty()) {
+                List<String> next = new ArrayList<>();
+                for (Employee employee : employees.values()) {
+                    if (employee.supervisor != null && level.contains(employee.supervisor)) {
+                        next.add(employee.staffNo);
+                    }
+                }
+                Collections.sort(next);
+                managed.addAll(next);
+                level = next;
+            }
+            return managed;
+        });
+    }
+
+    @Override
+    public List<AnnualReview> getAllReviews() {
+        return read(() -> {
+            List<AnnualReview> result = new ArrayList<>();
+            for (Review review : reviews.values()) {
+                result.add(review.toAnnualReview());
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public List<ChangeEvent> readChanges(long afterSeq, int limit) {
+        return read(() -> {
+            int from = (int) Math.min(Math.max(afterSeq, 0), changes.size());
+            return new ArrayList<>(changes.subList(from, Math.min(from + limit, changes.size())));
+        });
+    }
+
+    @Override
+    public OnlineBackup startBackup(Path target) throws SQLException {
+        throw new SQLException("An in-memory repository has nothing to back up");
+    }
+
+    /**
+     * Gets everyone above an employee in the supervisor hierarchy, nearest first.
+     * The read or write lock must be held.
+     */
+    private List<String> supervisorsOf(String staffNo) {
+        List<String> chain = new ArrayList<>();
+        Employee employee = employees.get(staffNo);
+        while (employee != null && employee.supervisor != null
+                && !chain.contains(employee.supervisor)) {
+            chain.add(employee.supervisor);
+            employee = employees.get(employee.supervisor);
+        }
+        return chain;
+    }
+
+    /**
+     * Gets the current reviews followed by the archived ones.
+     * The read or write lock must be held.
+     */
+    private List<Review> allReviews() {
+        List<Review> all = new ArrayList<>(reviews.size() + archivedReviews.size());
+        for (Review review : reviews.values()) {
+            all.add(review);
+        }
+        for (Review review : archivedReviews.values()) {
+            all.add(review);
+        }
+        return all;
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        lock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static PersonalDetails copy(PersonalDetails details) {
+        if (details == null) {
+            return null;
+        }
+        return new PersonalDetails(details.getField("Staff No"), details.getField("Surname"),
+                details.getField("Name"), details.getField("Date of Birth"),
+                details.getField("Address"), details.getField("Town/City"),
+                details.getField("Post Code"), details.getField("Telephone Number"),
+                details.getField("Mobile Number"), details.getField("Emergency Contact"),
+                details.getField("Emergency Contact Number"));
+    }
+
+    /**
+     * An employee's row of EmployeeDetails.
+     */
+    private static class Employee {
+        private final String staffNo;
+        private final String username;
+        private final String role;
+        private String supervisor;
+        private String section;
+        private String jobTitle;
+
+        Employee(String staffNo, String username, String role) {
+            this.staffNo = staffNo;
+            this.username = username;
+            this.role = role;
+        }
+    }
+
+    /**
+     * A copy of an annual review, as it would be stored in the AnnualReview, PastPerformance
+     *  and FutureGoals tables.
+     */
+    private static class Review {
+        private final int reviewID;
+        private final String staffNo;
+        private final String name;
+        private final String supervisor;
+        private final String secondReviewer;
+        private final String section;
+        private final String jobTitle;
+        private final String recommendation;
+        private final String performanceSummary;
+        private final String reviewerComments;
+        private final List<Date> signatures;
+        private final LinkedHashMap<String, String> objectives;
+        private final List<String> goals;
+
+        Review(int reviewID, AnnualReview review) {
+            this.reviewID = reviewID;
+            staffNo = review.getField("Staff No");
+            name = review.getField("Name");
+            supervisor = review.getField("Supervisor");
+            secondReviewer = review.getField("Second Reviewer");
+            section = review.getField("Section");
+            jobTitle = review.getField("Job Title");
+            recommendation = review.getField("Recommendation");
+            signatures = new ArrayList<>(review.getSignatures());
+            PerformanceReview past = review.getPastPerformance();
+            PerformanceReview future = review.getFutureGoals();
+            performanceSummary = past == null ? null : past.getSummary();
+            reviewerComments = future == null ? null : future.getSummary();
+            objectives = new LinkedHashMap<>();
+            if (past != null && past.getAchievements() != null) {
+                objectives.putAll(past.getAchievements());
+            }
+            goals = new ArrayList<>();
+            if (future != null && future.getGoals() != null) {
+                goals.addAll(future.getGoals());
+            }
+        }
+
+        private Review(Review review, String secondReviewer) {
+            reviewID = review.reviewID;
+            staffNo = review.staffNo;
+            name = review.name;
+            supervisor = review.supervisor;
+            this.secondReviewer = secondReviewer;
+            section = review.section;
+            jobTitle = review.jobTitle;
+            recommendation = review.recommendation;
+            performanceSummary = review.performanceSummary;
+            reviewerComments = review.reviewerComments;
+            signatures = review.signatures;
+            objectives = review.objectives;
+            goals = review.goals;
+        }
+
+        Review withSecondReviewer(String secondReviewer) {
+            return new Review(this, secondReviewer);
+        }
+
+        boolean isComplete() {
+            return !signatures.contains(null);
+        }
+
+        /**
+         * Gets the date of the last signature. The review must be complete.
+         */
+        Date completedOn() {
+            return Collections.max(signatures);
+        }
+
+        String status() {
+            if (isComplete()) {
+                return "complete";
+            }
+            return signatures.stream().allMatch((date) -> date == null) ? "open" : "awaiting";
+        }
+
+        List<String> reviewers() {
+            List<String> reviewers = new ArrayList<>(2);
+            if (supervisor != null) {
+                reviewers.add(supervisor);
+            }
+            if (secondReviewer != null && !secondReviewer.equals(supervisor)) {
+                reviewers.add(secondReviewer);
+            }
+            return reviewers;
+        }
+
+        /**
+         * Gets the free text of the review, as the name of the field and its text.
+         */
+        List<String[]> texts() {
+            List<String[]> texts = new ArrayList<>();
+            texts.add(new String[] {"performanceSummary", performanceSummary});
+            texts.add(new String[] {"reviewerComments", reviewerComments});
+            for (Map.Entry<String, String> objective : objectives.entrySet()) {
+                texts.add(new String[] {"objective", objective.getKey()});
+                texts.add(new String[] {"achievement", objective.getValue()});
+            }
+            for (String goal : goals) {
+                texts.add(new String[] {"content", goal});
+            }
+            return texts;
+        }
+
+        AnnualReview toAnnualReview() {
+            return new AnnualReview(reviewID, staffNo, name, supervisor, secondReviewer, section,
+                    jobTitle, Recommendation.fromStored(recommendation), signatures.get(0),
+                    signatures.get(1), signatures.get(2),
+                    new PerformanceReview(new LinkedHashMap<>(objectives),
+                            performanceSummary == null ? "" : performanceSummary),
+                    new PerformanceReview(false, new ArrayList<>(goals),
+                            reviewerComments == null ? "" : reviewerComments));
+        }
+    }
+}
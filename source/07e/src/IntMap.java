@@ -0,0 +1,161 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A map from int keys to values, kept in key order in primitive arrays so keys are never boxed.
+ * Adding a key larger than every key before it is an append, which suits reviewIDs as they
+ *  are handed out in order. Removed entries are cleared in place, and the arrays are
+ *  compacted once most of their slots have been cleared.
+ * Not thread safe, the owner must lock around it.
+ * @param <V> The type of the values.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class IntMap<V> {
+    private int[] keys = new int[16];
+    private Object[] values = new Object[16];
+    //Slots in use, including cleared ones, which keep their key so the keys stay sorted.
+    private int length;
+    private int size;
+
+    /**
+     * Finds the slot of a key.
+     * @param key The key.
+     * @return The slot holding the key, or -(insertion point) - 1 if no slot does.
+     */
+    private int slotOf(int key) {
+        if (length > 0 && key > keys[length - 1]) {
+            return -length - 1;
+        }
+        return Arrays.binarySearch(keys, 0, length, key);
+    }
+
+    /**
+     * Gets the value of a key.
+     * @param key The key.
+     * @return Its value, or null if it has none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int slot = slotOf(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * Gets whether a key has a value.
+     * @param key The key.
+     * @return Whether it has a value.
+     */
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Sets the value of a key.
+     * @param key The key.
+     * @param value Its value, which mustn't be null.
+     * @return Its previous value, or null if it had none.
+     */
+    @SuppressWarnings("unchecked")
+    V put(int key, V value) {
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            V old = (V) values[slot];
+            values[slot] = value;
+            if (old == null) {
+                size++;
+            }
+            return old;
+        }
+        slot = -slot - 1;
+        if (length == keys.length) {
+            keys = Arrays.copyOf(keys, length * 2);
+            values = Arrays.copyOf(values, length * 2);
+        }
+        System.arraycopy(keys, slot, keys, slot + 1, length - slot);
+        System.arraycopy(values, slot, values, slot + 1, length - slot);
+        keys[slot] = key;
+        values[slot] = value;
+        length++;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the value of a key.
+     * @param key The key.
+     * @return Its value, or null if it had none.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(int key) {
+        int slot = slotOf(key);
+        if (slot < 0 || values[slot] == null) {
+            return null;
+        }
+        V old = (V) values[slot];
+        values[slot] = null;
+        size--;
+        if (length > 16 && size < length / 2) {
+            compact();
+        }
+        return old;
+    }
+
+    /**
+     * Drops the cleared slots.
+     */
+    private void compact() {
+        int used = 0;
+        for (int i = 0; i < length; i++) {
+            if (values[i] != null) {
+                keys[used] = keys[i];
+                values[used++] = values[i];
+            }
+        }
+        Arrays.fill(values, used, length, null);
+        length = used;
+    }
+
+    /**
+     * Returns the number of keys with values.
+     * @return The size of the map.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the values in key order.
+     * The map mustn't be changed while they are iterated.
+     * @return The values.
+     */
+    Iterable<V> values() {
+        return () -> new Iterator<V>() {
+            private int next = advance(0);
+
+            private int advance(int slot) {
+                while (slot < length && values[slot] == null) {
+                    slot++;
+                }
+                return slot;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (next >= length) {
+                    throw new NoSuchElementException();
+                }
+                V value = (V) values[next];
+                next = advance(next + 1);
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.Arrays;
+
+/**
+ * A sorted set of ints kept in a primitive array, so its members are never boxed.
+ * Meant for the small sets of reviewIDs indexed by employee, which are read by position:
+ *  for (int i = 0; i < set.size(); i++) { int reviewID = set.get(i); }
+ * Not thread safe, the owner must lock around it.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class IntSet {
+    private int[] members = new int[4];
+    private int size;
+
+    /**
+     * Adds a member, if it isn't one already.
+     * @param member The member to add.
+     */
+    void add(int member) {
+        int index = Arrays.binarySearch(members, 0, size, member);
+        if (index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        if (size == members.length) {
+            members = Arrays.copyOf(members, size * 2);
+        }
+        System.arraycopy(members, index, members, index + 1, size - index);
+        members[index] = member;
+        size++;
+    }
+
+    /**
+     * Removes a member, if it is one.
+     * @param member The member to remove.
+     */
+    void remove(int member) {
+        int index = Arrays.binarySearch(members, 0, size, member);
+        if (index >= 0) {
+            System.arraycopy(members, index + 1, members, index, size - index - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Returns the number of members.
+     * @return The size of the set.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets a member by its position in the set.
+     * @param index The position, from 0 for the smallest member.
+     * @return The member.
+     */
+    int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return members[index];
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 /**
  * The entry point into the Yuconz system.
  * This is the class that should be run to execute the program.
@@ -7,8 +9,31 @@
  */
 public class Main {
     public static void main(String[] args) {
+        //Maintenance tools are run by passing the tool name as the first argument.
+        if (args.length > 0) {
+            String[] toolArgs = Arrays.copyOfRange(args, 1, args.length);
+            switch (args[0]) {
+                case "audit-query":
+                    AuditLogIndex.runTool(toolArgs);
+                    return;
+                case "audit-convert":
+                    AuditCodec.runTool(toolArgs);
+                    return;
+                case "replay":
+                    WorkloadReplay.runTool(toolArgs);
+                    return;
+                case "script":
+                    ScriptRunner.runTool(toolArgs);
+                    return;
+                default:
+                    System.out.println("Unknown tool " + args[0]);
+                    return;
+            }
+        }
         Runtime.getRuntime().addShutdownHook(new Thread(AppLogger::shutdown));
+        Runtime.getRuntime().addShutdownHook(new Thread(AppMetrics::stopServer));
         AppLogger.startLogging();
+        AppMetrics.startServer();
         AppController app = new AppController();
         app.run();
     }
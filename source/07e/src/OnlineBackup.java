@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Backs up a SQLite database while the application keeps using it.
+ * The backup reads the database in one transaction, so it copies a consistent snapshot,
+ *  and with the database in WAL mode that read never blocks anyone writing.
+ * Each table is copied "yuconz.backup.rowsPerStep" rows at a time (default 500), pausing
+ *  "yuconz.backup.pauseMs" milliseconds between steps (default 10), so the backup never
+ *  holds the disk for long enough to slow down interactive requests.
+ * The copy is written beside the target and moved over it once complete, so the target
+ *  is always either the previous backup or a whole new one.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class OnlineBackup {
+    //Finds the name in a CREATE statement from the schema, to create it in the backup instead.
+    private final static Pattern CREATE = Pattern.compile(
+            "^(CREATE\\s+(?:VIRTUAL\\s+|UNIQUE\\s+)?(?:TABLE|INDEX|TRIGGER|VIEW)\\s+)",
+            Pattern.CASE_INSENSITIVE);
+    private final String source;
+    private final Path target;
+    private final int rowsPerStep;
+    private final long pauseMillis;
+    private final CompletableFuture<Path> result = new CompletableFuture<>();
+    private volatile long rowsCopied;
+    private volatile long totalRows;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a backup with the throttle from the system properties.
+     * @param source The location of the database to back up.
+     * @param target Where to write the backup.
+     */
+    OnlineBackup(String source, Path target) {
+        this(source, target, Integer.getInteger("yuconz.backup.rowsPerStep", 500),
+                Long.getLong("yuconz.backup.pauseMs", 10));
+    }
+
+    /**
+     * Creates a backup.
+     * @param source The location of the database to back up.
+     * @param target Where to write the backup.
+     * @param rowsPerStep The most rows copied in each step.
+     * @param pauseMillis How long to pause between steps.
+     */
+    OnlineBackup(String source, Path target, int rowsPerStep, long pauseMillis) {
+        this.source = source;
+        this.target = target;
+        this.rowsPerStep = rowsPerStep;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Starts the backup on a background thread.
+     * @return Completed with the target once the backup has been written,
+     *  or completed exceptionally if it failed or was cancelled.
+     */
+    CompletableFuture<Path> start() {
+        AppMetrics.registerGauge("yuconz_backup_progress_ratio",
+                "How much of the running or last backup has been copied.", this::getProgress);
+        AppMetrics.registerGauge("yuconz_backup_rows_copied",
+                "Rows copied by the running or last backup.", () -> rowsCopied);
+        Thread thread = new Thread(this::run, "yuconz-backup");
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    /**
+     * Gets the outcome of the backup, as returned by start.
+     * @return Completed with the target once the backup has been written,
+     *  or completed exceptionally if it failed or was cancelled.
+     */
+    CompletableFuture<Path> getResult() {
+        return result;
+    }
+
+    /**
+     * Returns how much of the database has been copied.
+     * @return The fraction of rows copied, from 0 to 1.
+     */
+    double getProgress() {
+        if (result.isDone() && !result.isCompletedExceptionally()) {
+            return 1;
+        }
+        long total = totalRows;
+        return total == 0 ? 0 : Math.min(1, (double) rowsCopied / total);
+    }
+
+    /**
+     * Stops the backup at its next step, leaving any previous backup in place.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    private void run() {
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try (Tracer.Span span = Tracer.span("OnlineBackup.run")) {
+            Files.deleteIfExists(partial);
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + source)) {
+                try (PreparedStatement attach = conn.prepareStatement("ATTACH DATABASE ? AS backup")) {
+                    attach.setString(1, partial.toString());
+                    attach.execute();
+                }
+                try {
+                    copy(conn);
+                } finally {
+                    execute(conn, "DETACH DATABASE backup");
+                }
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            span.tag("rows", rowsCopied);
+            result.complete(target);
+        } catch (SQLException | IOException | InterruptedException e) {
+            System.out.println("Backup failed: " + e.getMessage());
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+            }
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Copies the schema and every row into the attached backup, in one transaction.
+     */
+    private void copy(Connection conn) throws SQLException, InterruptedException {
+        if (!"wal".equalsIgnoreCase(query(conn, "PRAGMA journal_mode"))) {
+            System.out.println("The database isn't in WAL mode, so writes wait for the backup.");
+        }
+        conn.setAutoCommit(false);
+        try {
+            //The first read starts the snapshot every later read sees.
+            Map<String, String> tables = new LinkedHashMap<>();
+            List<String> others = new ArrayList<>();
+            try (Statement statement = conn.createStatement();
+                 ResultSet rSet = statement.executeQuery("SELECT type, name, sql " +
+                         "FROM main.sqlite_master WHERE sql IS NOT NULL ORDER BY rowid")) {
+                while (rSet.next()) {
+                    if (!"table".equals(rSet.getString("type"))) {
+                        others.add(rSet.getString("sql"));
+                    } else if (!rSet.getString("name").startsWith("sqlite_")) {
+                        tables.put(rSet.getString("name"), rSet.getString("sql"));
+                    }
+                }
+            }
+            List<String> copied = new ArrayList<>();
+            for (Map.Entry<String, String> table : tables.entrySet()) {
+                //A virtual table creates its own shadow tables, whose rows are copied instead.
+                if (!table.getValue().toUpperCase().startsWith("CREATE VIRTUAL")) {
+                    copied.add(table.getKey());
+                }
+                if (query(conn, "SELECT 1 FROM backup.sqlite_master WHERE name = '" +
+                        table.getKey() + "'") == null) {
+                    execute(conn, inBackup(table.getValue()));
+                }
+            }
+            long total = 0;
+            for (String table : copied) {
+                total += Long.parseLong(query(conn, "SELECT count(*) FROM main." + table));
+            }
+            totalRows = total;
+            for (String table : copied) {
+                copyRows(conn, table);
+            }
+            //Indexes and triggers are created last, so they aren't updated row by row.
+            for (String sql : others) {
+                execute(conn, inBackup(sql));
+            }
+            if (query(conn, "SELECT 1 FROM main.sqlite_master WHERE name = 'sqlite_sequence'")
+                    != null) {
+                execute(conn, "DELETE FROM backup.sqlite_sequence");
+                execute(conn,
+                        "INSERT INTO backup.sqlite_sequence SELECT * FROM main.sqlite_sequence");
+            }
+            conn.commit();
+        } catch (SQLException | InterruptedException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Copies a table rowsPerStep rows at a time, in rowid order.
+     * Tables without rowids are small here, so are copied in one step.
+     */
+    private void copyRows(Connection conn, String table)
+            throws SQLException, InterruptedException {
+        String copy = "INSERT OR REPLACE INTO backup." + table + " SELECT * FROM main." + table;
+        long lastRowID;
+        try {
+            query(conn, "SELECT rowid FROM main." + table + " LIMIT 1");
+        } catch (SQLException withoutRowID) {
+            try (Statement statement = conn.createStatement()) {
+                rowsCopied += statement.executeUpdate(copy);
+            }
+            return;
+        }
+        try (PreparedStatement step = conn.prepareStatement(copy +
+                " WHERE rowid > ? ORDER BY rowid LIMIT ?");
+             PreparedStatement last = conn.prepareStatement("SELECT max(rowid) FROM " +
+                     "(SELECT rowid FROM main." + table + " WHERE rowid > ? ORDER BY rowid LIMIT ?)")) {
+            lastRowID = Long.MIN_VALUE;
+            while (true) {
+                if (cancelled) {
+                    throw new InterruptedException("Backup cancelled");
+                }
+                last.setLong(1, lastRowID);
+                last.setInt(2, rowsPerStep);
+                long nextRowID;
+                try (ResultSet rSet = last.executeQuery()) {
+                    rSet.next();
+                    nextRowID = rSet.getLong(1);
+                    if (rSet.wasNull()) {
+                        return;
+                    }
+                }
+                step.setLong(1, lastRowID);
+                step.setInt(2, rowsPerStep);
+                rowsCopied += step.executeUpdate();
+                lastRowID = nextRowID;
+                if (pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrites a CREATE statement from the schema to create its object in the backup.
+     */
+    private static String inBackup(String sql) {
+        Matcher matcher = CREATE.matcher(sql);
+        return matcher.find() ? matcher.replaceFirst("$1backup.") : sql;
+    }
+
+    private static void execute(Connection conn, String sql) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static String query(Connection conn, String sql) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet rSet = statement.executeQuery(sql)) {
+            return rSet.next() ? rSet.getString(1) : null;
+        }
+    }
+}
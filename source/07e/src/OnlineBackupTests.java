@@ -0,0 +1,90 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class OnlineBackupTests
+{
+    private Path directory;
+    private String database;
+    private Path target;
+    private SQLiteRepository repository;
+
+    public OnlineBackupTests()
+    {
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("onlineBackup");
+        database = directory.resolve("hr.db").toString();
+        target = directory.resolve("backup.db");
+        repository = new SQLiteRepository(database);
+        repository.connect();
+        repository.updatePersonalDetails(SQLiteRepositoryTests.details("1234", "Harris"));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        repository.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).forEach((path) -> {
+            path.toFile().delete();
+        });
+    }
+
+    private String surnameInBackup()
+    {
+        SQLiteRepository backup = new SQLiteRepository(target.toString());
+        backup.connect();
+        try {
+            return backup.getPersonalDetails("1234").getField("Surname");
+        } finally {
+            backup.close();
+        }
+    }
+
+    @Test
+    public void backupCopiesTheDatabaseWhileItIsInUse() throws Exception
+    {
+        OnlineBackup backup = new OnlineBackup(database, target, 2, 0);
+        CompletableFuture<Path> done = backup.start();
+        repository.updatePersonalDetails(SQLiteRepositoryTests.details("1234", "Harper"));
+        assertEquals(target, done.get(30, TimeUnit.SECONDS));
+        assertEquals(1.0, backup.getProgress(), 0);
+        assertFalse(Files.exists(directory.resolve("backup.db.part")));
+
+        String surname = surnameInBackup();
+        //The backup is a snapshot from either side of the update, never a mix.
+        assertTrue(surname, "Harris".equals(surname) || "Harper".equals(surname));
+        assertEquals("trueLies2019", repository.getAuthData("abc123")[0]);
+    }
+
+    @Test
+    public void cancelledBackupLeavesThePreviousOneInPlace() throws Exception
+    {
+        new OnlineBackup(database, target, 500, 0).start().get(30, TimeUnit.SECONDS);
+        repository.updatePersonalDetails(SQLiteRepositoryTests.details("1234", "Harper"));
+
+        OnlineBackup backup = new OnlineBackup(database, target, 1, 100);
+        CompletableFuture<Path> done = backup.start();
+        backup.cancel();
+        try {
+            done.get(30, TimeUnit.SECONDS);
+            fail("The backup should have been cancelled.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        }
+        assertFalse(Files.exists(directory.resolve("backup.db.part")));
+        assertEquals("Harris", surnameInBackup());
+    }
+}
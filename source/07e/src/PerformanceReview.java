@@ -84,6 +84,10 @@ public class PerformanceReview {
         }
     }
 
+    LinkedHashMap<String, String> getAchievements() {
+        return achievements;
+    }
+
     String getResult(String goal) {
         return achievements.get(goal);
     }
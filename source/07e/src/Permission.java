@@ -20,7 +20,12 @@ public enum Permission {
     REVIEWER_READ_PAST_ANNUAL_REVIEW("Read a past completed annual review document"),
     REVIEWER_AMEND_ANNUAL_REVIEW("Amend a currently active annual review document"),
     SIGN_ANNUAL_REVIEW("Sign off on a currently active annual review"),
-    READ_ANY_ANNUAL_REVIEW("Read an annual review document");
+    READ_ANY_ANNUAL_REVIEW("Read an annual review document"),
+    MANAGER_READ_ANNUAL_REVIEW("Read the annual review documents of an employee you manage"),
+    ASSIGN_SECOND_REVIEWERS("Assign second reviewers to every review without one"),
+    VIEW_REVIEW_COUNTS("View the number of open, awaiting and complete reviews in each section"),
+    SEARCH_ANNUAL_REVIEWS("Search the text of every annual review"),
+    SEARCH_PERSONAL_DETAILS("Find employees by surname or post code");
 
     private String description;
 
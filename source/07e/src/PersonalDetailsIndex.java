@@ -0,0 +1,276 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An in-memory index of employees' surnames and post codes, for finding staff numbers
+ *  without scanning the PersonalDetails table.
+ * Values are compared ignoring case, spaces and punctuation, so "mk5 9" finds "MK5 9LS".
+ * Prefix lookups use a sorted map of the values, and fuzzy lookups use the trigrams
+ *  (runs of three characters) of each value, scored by how many they share with the query.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class PersonalDetailsIndex {
+    //How similar a value must be to a fuzzy query, as shared trigrams over all trigrams.
+    private final static double FUZZY_THRESHOLD =
+            Double.parseDouble(System.getProperty("yuconz.search.fuzzyThreshold", "0.3"));
+
+    /**
+     * The fields of personal details which are indexed.
+     */
+    enum Field {
+        SURNAME, POST_CODE
+    }
+
+    private final Map<Field, FieldIndex> fields = new HashMap<>();
+    //The indexed surname and post code of each employee, by staff number.
+    private final Map<String, String[]> entries = new HashMap<>();
+
+    PersonalDetailsIndex() {
+        for (Field field : Field.values()) {
+            fields.put(field, new FieldIndex());
+        }
+    }
+
+    /**
+     * Adds an employee to the index, replacing any values they were indexed under before.
+     * @param staffNo The staff number of the employee.
+     * @param surname Their surname.
+     * @param postCode Their post code.
+     */
+    synchronized void put(String staffNo, String surname, String postCode) {
+        remove(staffNo);
+        String[] values = {surname, postCode};
+        entries.put(staffNo, values);
+        for (Field field : Field.values()) {
+            fields.get(field).add(normalise(values[field.ordinal()]), staffNo);
+        }
+    }
+
+    /**
+     * Replaces the values an employee is indexed under, if they are in the index already.
+     * @param staffNo The staff number of the employee.
+     * @param surname Their surname.
+     * @param postCode Their post code.
+     * @return Whether they were in the index.
+     */
+    synchronized boolean replace(String staffNo, String surname, String postCode) {
+        if (!entries.containsKey(staffNo)) {
+            return false;
+        }
+        put(staffNo, surname, postCode);
+        return true;
+    }
+
+    /**
+     * Removes an employee from the index.
+     * @param staffNo The staff number of the employee.
+     */
+    synchronized void remove(String staffNo) {
+        String[] values = entries.remove(staffNo);
+        if (values != null) {
+            for (Field field : Field.values()) {
+                fields.get(field).remove(normalise(values[field.ordinal()]), staffNo);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of employees in the index.
+     * @return The number of employees in the index.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the surname and post code an employee is indexed under.
+     * @param staffNo The staff number of the employee.
+     * @return Their surname and post code, or null if they aren't in the index.
+     */
+    synchronized String[] getValues(String staffNo) {
+        String[] values = entries.get(staffNo);
+        return values == null ? null : values.clone();
+    }
+
+    /**
+     * Finds the employees whose value of a field starts with the given text.
+     * @param field The field to search.
+     * @param prefix The start of the value.
+     * @param limit The most staff numbers to return.
+     * @return The matching staff numbers, in order of their values.
+     */
+    synchronized List<String> findByPrefix(Field field, String prefix, int limit) {
+        List<String> staffNos = new ArrayList<>();
+        String key = normalise(prefix);
+        if (key.isEmpty()) {
+            return staffNos;
+        }
+        //Every value starting with the prefix sorts between it and the prefix followed by
+        // the largest character.
+        for (Set<String> matches : fields.get(field).byValue.subMap(key, key + Character.MAX_VALUE)
+                .values()) {
+            for (String staffNo : matches) {
+                if (staffNos.size() >= limit) {
+                    return staffNos;
+                }
+                staffNos.add(staffNo);
+            }
+        }
+        return staffNos;
+    }
+
+    /**
+     * Finds the employees whose value of a field is similar to the given text,
+     *  so that misspelt surnames and post codes are still found.
+     * @param field The field to search.
+     * @param text The text to match.
+     * @param limit The most staff numbers to return.
+     * @return The matching staff numbers, most similar first.
+     */
+    synchronized List<String> findSimilar(Field field, String text, int limit) {
+        FieldIndex index = fields.get(field);
+        Set<String> queryTrigrams = trigrams(normalise(text));
+        //Count the trigrams each value shares with the query.
+        Map<String, Integer> shared = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            for (String value : index.byTrigram.getOrDefault(trigram, Collections.emptySet())) {
+                shared.merge(value, 1, Integer::sum);
+            }
+        }
+        List<Map.Entry<String, Double>> scored = new ArrayList<>();
+        for (Map.Entry<String, Integer> candidate : shared.entrySet()) {
+            int common = candidate.getValue();
+            int all = queryTrigrams.size() + index.trigramCounts.get(candidate.getKey()) - common;
+            double similarity = (double) common / all;
+            if (similarity >= FUZZY_THRESHOLD) {
+                scored.add(new HashMap.SimpleEntry<>(candidate.getKey(), similarity));
+            }
+        }
+        scored.sort((a, b) -> {
+            int bySimilarity = Double.compare(b.getValue(), a.getValue());
+            return bySimilarity != 0 ? bySimilarity : a.getKey().compareTo(b.getKey());
+        });
+        List<String> staffNos = new ArrayList<>();
+        for (Map.Entry<String, Double> value : scored) {
+            for (String staffNo : index.byValue.get(value.getKey())) {
+                if (staffNos.size() >= limit) {
+                    return staffNos;
+                }
+                staffNos.add(staffNo);
+            }
+        }
+        return staffNos;
+    }
+
+    /**
+     * Finds the employees whose surname or post code starts with the given text,
+     *  followed by those whose surname or post code is similar to it.
+     * @param text The text to search for.
+     * @param limit The most staff numbers to return.
+     * @return The matching staff numbers, prefix matches first.
+     */
+    synchronized List<String> search(String text, int limit) {
+        Set<String> staffNos = new LinkedHashSet<>();
+        for (Field field : Field.values()) {
+            staffNos.addAll(findByPrefix(field, text, limit));
+        }
+        for (Field field : Field.values()) {
+            if (staffNos.size() >= limit) {
+                break;
+            }
+            staffNos.addAll(findSimilar(field, text, limit));
+        }
+        List<String> results = new ArrayList<>(staffNos);
+        return results.size() > limit ? results.subList(0, limit) : results;
+    }
+
+    /**
+     * Puts a value in the form it is indexed under: lower case letters and digits only.
+     * @param value The value of a field.
+     * @return The indexed form of the value.
+     */
+    static String normalise(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder key = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                key.append(Character.toLowerCase(c));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the trigrams of an indexed value. The value is padded with two spaces at
+     *  the start and one at the end, so short values have trigrams and the start of a value
+     *  counts for more.
+     * @param key A value in its indexed form.
+     * @return The value's trigrams, or none if the value is empty.
+     */
+    static Set<String> trigrams(String key) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        if (key.isEmpty()) {
+            return trigrams;
+        }
+        String padded = "  " + key + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    /**
+     * The index of one field: the staff numbers with each value, the values with each
+     *  trigram, and the number of trigrams in each value.
+     */
+    private static class FieldIndex {
+        private final TreeMap<String, Set<String>> byValue = new TreeMap<>();
+        private final Map<String, Set<String>> byTrigram = new HashMap<>();
+        private final Map<String, Integer> trigramCounts = new HashMap<>();
+
+        void add(String key, String staffNo) {
+            if (key.isEmpty()) {
+                return;
+            }
+            Set<String> staffNos = byValue.get(key);
+            if (staffNos == null) {
+                staffNos = new TreeSet<>();
+                byValue.put(key, staffNos);
+                Set<String> trigrams = trigrams(key);
+                trigramCounts.put(key, trigrams.size());
+                for (String trigram : trigrams) {
+                    byTrigram.computeIfAbsent(trigram, (t) -> new HashSet<>()).add(key);
+                }
+            }
+            staffNos.add(staffNo);
+        }
+
+        void remove(String key, String staffNo) {
+            Set<String> staffNos = byValue.get(key);
+            if (staffNos == null || !staffNos.remove(staffNo) || !staffNos.isEmpty()) {
+                return;
+            }
+            byValue.remove(key);
+            trigramCounts.remove(key);
+            for (String trigram : trigrams(key)) {
+                Set<String> values = byTrigram.get(trigram);
+                values.remove(key);
+                if (values.isEmpty()) {
+                    byTrigram.remove(trigram);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class PersonalDetailsIndexTests
+{
+    public PersonalDetailsIndexTests()
+    {
+    }
+
+    private PersonalDetailsIndex sampleIndex()
+    {
+        PersonalDetailsIndex index = new PersonalDetailsIndex();
+        index.put("1234", "Harris", "MK5 9LS");
+        index.put("1235", "Fire", "LT3 0MT");
+        index.put("1236", "Harrison", "MK5 2AB");
+        index.put("1237", "Smith", "CT2 7NZ");
+        return index;
+    }
+
+    @Test
+    public void prefixesIgnoreCaseAndSpaces()
+    {
+        PersonalDetailsIndex index = sampleIndex();
+        assertEquals(Arrays.asList("1234", "1236"),
+                index.findByPrefix(PersonalDetailsIndex.Field.SURNAME, "harr", 10));
+        assertEquals(Collections.singletonList("1234"),
+                index.findByPrefix(PersonalDetailsIndex.Field.POST_CODE, "mk59", 10));
+        assertEquals(Collections.singletonList("1234"),
+                index.findByPrefix(PersonalDetailsIndex.Field.SURNAME, "HARR", 1));
+    }
+
+    @Test
+    public void misspellingsAreFoundByTrigrams()
+    {
+        PersonalDetailsIndex index = sampleIndex();
+        assertEquals("1237",
+                index.findSimilar(PersonalDetailsIndex.Field.SURNAME, "Smyth", 10).get(0));
+        assertTrue(index.findSimilar(PersonalDetailsIndex.Field.SURNAME, "Zzz", 10).isEmpty());
+    }
+
+    @Test
+    public void updatesReplaceOldValues()
+    {
+        PersonalDetailsIndex index = sampleIndex();
+        index.put("1235", "Stone", "LT3 0MT");
+        assertTrue(index.findByPrefix(PersonalDetailsIndex.Field.SURNAME, "Fire", 10).isEmpty());
+        assertEquals(Collections.singletonList("1235"), index.search("Stone", 10));
+        index.remove("1235");
+        assertTrue(index.search("LT3", 10).isEmpty());
+        assertEquals(3, index.size());
+    }
+}
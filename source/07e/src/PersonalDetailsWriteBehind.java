@@ -0,0 +1,415 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Saves amended personal details in the background, so the user doesn't wait for the disk.
+ * An amendment is written to an intent journal and kept in memory, where reads see it
+ *  straight away. A flusher thread then saves the pending amendments to the repository
+ *  in one batch, keeping only the latest amendment of each employee.
+ * The flusher runs once the oldest pending amendment is "yuconz.writeBehind.maxLagMs" old
+ *  (default 500), or once "yuconz.writeBehind.batchSize" amendments are pending (default 100).
+ * If "yuconz.writeBehind.maxPending" amendments are pending (default 10000), amending waits
+ *  for the flusher.
+ * Amendments left in the journal by a crash are saved when the next write-behind starts.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class PersonalDetailsWriteBehind {
+    private final static String[] FIELDS = {"Staff No", "Surname", "Name", "Date of Birth",
+            "Address", "Town/City", "Post Code", "Telephone Number", "Mobile Number",
+            "Emergency Contact", "Emergency Contact Number"};
+    private final HRRepository repository;
+    private final Path journal;
+    private final long maxLagNanos;
+    private final int batchSize;
+    private final int maxPending;
+    //Whether each journal record is forced to the disk before the amendment is acknowledged.
+    private final boolean sync;
+    //The latest pending amendment of each employee, by staff number, oldest first.
+    private final LinkedHashMap<String, PersonalDetails> pending = new LinkedHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final Thread flusher;
+    private FileChannel journalChannel;
+    private long oldestPendingAt;
+    //After a failed flush, the flusher doesn't try again until this time.
+    private long retryAt = System.nanoTime();
+    private boolean flushing;
+    private volatile boolean closed;
+
+    /**
+     * Creates a write-behind with the settings from the system properties.
+     * @param repository The repository amendments are saved to.
+     * @param journal The intent journal.
+     * @throws IOException If the journal could not be recovered or opened.
+     */
+    PersonalDetailsWriteBehind(HRRepository repository, Path journal) throws IOException {
+        this(repository, journal, Long.getLong("yuconz.writeBehind.maxLagMs", 500),
+                Integer.getInteger("yuconz.writeBehind.batchSize", 100),
+                Integer.getInteger("yuconz.writeBehind.maxPending", 10000),
+                !"false".equals(System.getProperty("yuconz.writeBehind.sync")));
+    }
+
+    /**
+     * Creates a write-behind, saves any amendments left in the journal, and starts the flusher.
+     * @param repository The repository amendments are saved to.
+     * @param journal The intent journal.
+     * @param maxLagMillis How long an amendment may wait before it is saved.
+     * @param batchSize How many pending amendments start a flush straight away.
+     * @param maxPending How many pending amendments make amending wait for the flusher.
+     * @param sync Whether each amendment is forced to the disk before it is acknowledged.
+     * @throws IOException If the journal could not be recovered or opened.
+     */
+    PersonalDetailsWriteBehind(HRRepository repository, Path journal, long maxLagMillis,
+                               int batchSize, int maxPending, boolean sync) throws IOException {
+        this.repository = repository;
+        this.journal = journal;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.sync = sync;
+        if (journal.getParent() != null) {
+            Files.createDirectories(journal.getParent());
+        }
+        recover();
+        journalChannel = FileChannel.open(journal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        AppMetrics.registerGauge("yuconz_write_behind_pending",
+                "Personal details amendments waiting to be saved.", this::pendingCount);
+        AppMetrics.registerGauge("yuconz_write_behind_lag_seconds",
+                "How long the oldest pending amendment has waited.", () -> lagMillis() / 1000.0);
+        flusher = new Thread(this::flushLoop, "yuconz-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Records an amendment. It is in the journal when this returns, and is saved to the
+     *  repository later.
+     * @param details The amended personal details.
+     * @throws IOException If the amendment could not be written to the journal.
+     */
+    synchronized void update(PersonalDetails details) throws IOException {
+        if (closed) {
+            throw new IOException("Write-behind is closed");
+        }
+        while (pending.size() >= maxPending) {
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for the flusher", e);
+            }
+        }
+        String[] values = toValues(details);
+        ByteBuffer record = encode(values);
+        while (record.hasRemaining()) {
+            journalChannel.write(record);
+        }
+        if (sync) {
+            journalChannel.force(false);
+        }
+        if (pending.isEmpty()) {
+            oldestPendingAt = System.nanoTime();
+            //The flusher waits without a deadline while nothing is pending.
+            notifyAll();
+        }
+        //Re-inserting moves the employee to the back, so the order stays oldest first.
+        if (pending.remove(values[0]) != null) {
+            coalesced.increment();
+        }
+        pending.put(values[0], fromValues(values));
+        if (pending.size() >= batchSize) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Gets an employee's pending amendment, if there is one.
+     * @param staffNo The staff number of the employee.
+     * @return A copy of their latest pending amendment, or null if none is pending.
+     */
+    synchronized PersonalDetails getPending(String staffNo) {
+        PersonalDetails details = pending.get(staffNo);
+        return details == null ? null : fromValues(toValues(details));
+    }
+
+    /**
+     * Returns the number of employees with pending amendments.
+     * @return The number of pending amendments after coalescing.
+     */
+    synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Returns how long the oldest pending amendment has waited.
+     * @return The lag in milliseconds, or 0 if nothing is pending.
+     */
+    synchronized long lagMillis() {
+        return pending.isEmpty() ? 0
+                : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldestPendingAt);
+    }
+
+    /**
+     * Returns the number of amendments replaced by a later amendment before being saved.
+     * @return The number of coalesced amendments.
+     */
+    long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of amendments saved to the repository.
+     * @return The number of flushed amendments.
+     */
+    long getFlushedCount() {
+        return flushed.sum();
+    }
+
+    /**
+     * Saves every pending amendment now.
+     * @throws SQLException If the amendments could not be saved. They stay pending.
+     * @throws IOException If the journal could not be rewritten.
+     */
+    void flush() throws SQLException, IOException {
+        Map<String, PersonalDetails> batch;
+        synchronized (this) {
+            while (flushing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            flushing = true;
+            batch = new LinkedHashMap<>(pending);
+        }
+        try {
+            repository.updateAllPersonalDetails(new ArrayList<>(batch.values()));
+            synchronized (this) {
+                //Amendments made during the flush are newer objects, so they stay pending.
+                for (Map.Entry<String, PersonalDetails> saved : batch.entrySet()) {
+                    pending.remove(saved.getKey(), saved.getValue());
+                }
+                flushed.add(batch.size());
+                oldestPendingAt = System.nanoTime();
+                rewriteJournal();
+            }
+        } finally {
+            synchronized (this) {
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stops the flusher and saves every pending amendment.
+     * If they can't be saved, they are left in the journal for the next start.
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (SQLException | IOException e) {
+            System.out.println("Amendments left in " + journal + ": " + e.getMessage());
+        }
+        synchronized (this) {
+            try {
+                journalChannel.close();
+                if (pending.isEmpty()) {
+                    Files.deleteIfExists(journal);
+                }
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            synchronized (this) {
+                //Wait until the oldest amendment is due or a batch is ready, and any back off
+                // is over, or we're closing.
+                while (!closed && (pending.isEmpty() || System.nanoTime() - retryAt < 0
+                        || pending.size() < batchSize
+                        && System.nanoTime() - oldestPendingAt < maxLagNanos)) {
+                    try {
+                        if (pending.isEmpty()) {
+                            wait();
+                        } else {
+                            long now = System.nanoTime();
+                            long remaining = retryAt - now;
+                            if (pending.size() < batchSize) {
+                                remaining = Math.max(remaining,
+                                        maxLagNanos - (now - oldestPendingAt));
+                            }
+                            TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, remaining));
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            try {
+                flush();
+            } catch (SQLException | IOException e) {
+                System.out.println("Could not save amendments, retrying: " + e.getMessage());
+                synchronized (this) {
+                    //Back off for one lag period before trying again, even if a batch is ready.
+                    retryAt = System.nanoTime() + maxLagNanos;
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the journal with one holding only the pending amendments.
+     * The new journal is written beside the old one and moved over it, so a crash leaves
+     *  one or the other. Must be called holding this object's lock.
+     */
+    private void rewriteJournal() throws IOException {
+        Path rewritten = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(rewritten, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (PersonalDetails details : pending.values()) {
+                ByteBuffer record = encode(toValues(details));
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(false);
+        }
+        journalChannel.close();
+        Files.move(rewritten, journal, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        journalChannel = FileChannel.open(journal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Saves the amendments left in the journal by a previous run, then empties it.
+     * A record cut short by a crash ends the journal, and is ignored.
+     */
+    private void recover() throws IOException {
+        if (!Files.exists(journal)) {
+            return;
+        }
+        LinkedHashMap<String, PersonalDetails> intents = new LinkedHashMap<>();
+        try (InputStream in = Files.newInputStream(journal)) {
+            String[] values;
+            while ((values = decode(in)) != null) {
+                intents.remove(values[0]);
+                intents.put(values[0], fromValues(values));
+            }
+        }
+        if (!intents.isEmpty()) {
+            try {
+                repository.updateAllPersonalDetails(new ArrayList<>(intents.values()));
+            } catch (SQLException e) {
+                throw new IOException("Could not save the amendments in " + journal, e);
+            }
+            System.out.println("Saved " + intents.size() + " amendments from " + journal + ".");
+        }
+        Files.delete(journal);
+    }
+
+    /**
+     * Encodes a journal record: its length and CRC-32, then the fields.
+     */
+    static ByteBuffer encode(String[] values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (String value : values) {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(12 + payload.length);
+        record.putInt(payload.length).putLong(crc.getValue()).put(payload).flip();
+        return record;
+    }
+
+    /**
+     * Decodes the next journal record.
+     * @return The fields of the record, or null at the end of the journal or a torn record.
+     */
+    static String[] decode(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        try {
+            int length = in.readInt();
+            long checksum = in.readLong();
+            if (length < 0 || length > 1 << 20) {
+                return null;
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (crc.getValue() != checksum) {
+                return null;
+            }
+            DataInputStream fields = new DataInputStream(new ByteArrayInputStream(payload));
+            String[] values = new String[FIELDS.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = fields.readBoolean() ? fields.readUTF() : null;
+            }
+            return values;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static String[] toValues(PersonalDetails details) {
+        String[] values = new String[FIELDS.length];
+        for (int i = 0; i < FIELDS.length; i++) {
+            values[i] = details.getField(FIELDS[i]);
+        }
+        return values;
+    }
+
+    private static PersonalDetails fromValues(String[] values) {
+        return new PersonalDetails(values[0], values[1], values[2], values[3], values[4],
+                values[5], values[6], values[7], values[8], values[9], values[10]);
+    }
+}
@@ -0,0 +1,177 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.List;
+
+public class PersonalDetailsWriteBehindTests
+{
+    private Path directory;
+    private Path journal;
+    private CountingRepository repository;
+
+    public PersonalDetailsWriteBehindTests()
+    {
+    }
+
+    private static class CountingRepository extends InMemoryRepository
+    {
+        private int batches;
+
+        @Override
+        public int updateAllPersonalDetails(List<PersonalDetails> updates)
+        {
+            batches++;
+            return super.updateAllPersonalDetails(updates);
+        }
+    }
+
+    private static class FailingRepository extends SQLiteRepository
+    {
+        private int attempts;
+
+        FailingRepository(Path database)
+        {
+            super(database.toString());
+        }
+
+        @Override
+        public synchronized int updateAllPersonalDetails(List<PersonalDetails> updates)
+                throws SQLException
+        {
+            attempts++;
+            throw new SQLException("database is locked");
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("yuconz-write-behind");
+        journal = directory.resolve("Yuconz.db.intents");
+        repository = new CountingRepository();
+        repository.connect();
+        repository.addPersonalDetails(SQLiteRepositoryTests.details("9001", "Harris"));
+        repository.addPersonalDetails(SQLiteRepositoryTests.details("9002", "Fire"));
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(journal);
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void repeatedAmendmentsAreSavedOnceInOneBatch() throws Exception
+    {
+        PersonalDetailsWriteBehind writeBehind =
+                new PersonalDetailsWriteBehind(repository, journal, 60000, 100, 1000, false);
+        writeBehind.update(SQLiteRepositoryTests.details("9001", "Harrison"));
+        writeBehind.update(SQLiteRepositoryTests.details("9002", "Flint"));
+        writeBehind.update(SQLiteRepositoryTests.details("9001", "Harper"));
+        assertEquals(2, writeBehind.pendingCount());
+        assertEquals(1, writeBehind.getCoalescedCount());
+        assertEquals("Harper", writeBehind.getPending("9001").getField("Surname"));
+        assertEquals("Harris", repository.getPersonalDetails("9001").getField("Surname"));
+
+        writeBehind.flush();
+        assertEquals(1, repository.batches);
+        assertEquals(0, writeBehind.pendingCount());
+        assertNull(writeBehind.getPending("9001"));
+        assertEquals("Harper", repository.getPersonalDetails("9001").getField("Surname"));
+        assertEquals("Flint", repository.getPersonalDetails("9002").getField("Surname"));
+        writeBehind.close();
+        assertFalse(Files.exists(journal));
+    }
+
+    @Test
+    public void flusherSavesAmendmentsWithinTheLag() throws Exception
+    {
+        PersonalDetailsWriteBehind writeBehind =
+                new PersonalDetailsWriteBehind(repository, journal, 20, 100, 1000, false);
+        writeBehind.update(SQLiteRepositoryTests.details("9001", "Harrison"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writeBehind.pendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, writeBehind.pendingCount());
+        assertEquals("Harrison", repository.getPersonalDetails("9001").getField("Surname"));
+        writeBehind.close();
+    }
+
+    @Test
+    public void journalledAmendmentsSurviveACrash() throws Exception
+    {
+        //Abandoning a write-behind without closing it stands in for a crash.
+        PersonalDetailsWriteBehind crashed =
+                new PersonalDetailsWriteBehind(repository, journal, 60000, 100, 1000, true);
+        crashed.update(SQLiteRepositoryTests.details("9001", "Harrison"));
+        crashed.update(SQLiteRepositoryTests.details("9002", "Flint"));
+        PersonalDetails harper = SQLiteRepositoryTests.details("9001", "Harper");
+        harper.getAllDetails().put("Mobile Number", null);
+        crashed.update(harper);
+        //A record torn by the crash ends the journal.
+        Files.write(journal, new byte[]{0, 0, 1}, StandardOpenOption.APPEND);
+        assertEquals("Harris", repository.getPersonalDetails("9001").getField("Surname"));
+
+        PersonalDetailsWriteBehind restarted =
+                new PersonalDetailsWriteBehind(repository, journal, 60000, 100, 1000, false);
+        assertEquals("Harper", repository.getPersonalDetails("9001").getField("Surname"));
+        assertEquals("Flint", repository.getPersonalDetails("9002").getField("Surname"));
+        assertNull(repository.getPersonalDetails("9001").getField("Mobile Number"));
+        assertEquals(0, restarted.pendingCount());
+        restarted.close();
+    }
+
+    @Test
+    public void searchesFindAmendmentsBeforeTheyAreSaved()
+    {
+        String[] properties = {"yuconz.db.engine", "yuconz.writeBehind",
+                "yuconz.writeBehind.journal", "yuconz.writeBehind.maxLagMs"};
+        String[] values = {"memory", "true", journal.toString(), "60000"};
+        for (int i = 0; i < properties.length; i++) {
+            System.setProperty(properties[i], values[i]);
+        }
+        try {
+            DatabaseController.connect();
+            DatabaseController.updatePersonalDetails(
+                    SQLiteRepositoryTests.details("1234", "Zebedee"));
+            assertTrue(DatabaseController.searchPersonalDetails("Zebed", 10).containsKey("1234"));
+            //Nobody has personal details for this staff number, so saving it won't add them.
+            DatabaseController.updatePersonalDetails(
+                    SQLiteRepositoryTests.details("9999", "Zebedee"));
+            assertFalse(DatabaseController.searchPersonalDetails("Zebed", 10).containsKey("9999"));
+        } finally {
+            DatabaseController.disconnect();
+            for (String property : properties) {
+                System.clearProperty(property);
+            }
+        }
+    }
+
+    @Test
+    public void failedFlushesAreRetriedAfterTheLag() throws Exception
+    {
+        FailingRepository failing = new FailingRepository(directory.resolve("hr.db"));
+        PersonalDetailsWriteBehind writeBehind =
+                new PersonalDetailsWriteBehind(failing, journal, 200, 1, 1000, false);
+        //A full batch is waiting, but the flusher still backs off between attempts.
+        writeBehind.update(SQLiteRepositoryTests.details("9001", "Harrison"));
+        Thread.sleep(1000);
+        int attempts;
+        synchronized (failing) {
+            attempts = failing.attempts;
+        }
+        assertTrue(attempts >= 1 && attempts <= 6);
+        assertEquals(1, writeBehind.pendingCount());
+        writeBehind.close();
+        assertTrue(Files.exists(journal));
+    }
+}
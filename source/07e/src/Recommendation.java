@@ -16,4 +16,19 @@ public enum Recommendation {
         return recommendation;
     }
 
+    /**
+     * Reads a stored recommendation, which may be the name or the description.
+     * @param stored The stored recommendation, or null.
+     * @return The recommendation, or NOT_SET if it isn't one.
+     */
+    static Recommendation fromStored(String stored) {
+        for (Recommendation recommendation : values()) {
+            if (recommendation.name().equals(stored)
+                    || recommendation.recommendation.equals(stored)) {
+                return recommendation;
+            }
+        }
+        return NOT_SET;
+    }
+
 }
@@ -0,0 +1,112 @@
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves reviews completed long ago into the archive, so the tables every open review
+ *  query uses only hold recent reviews.
+ * Every "yuconz.archive.intervalHours" hours (default 24) it archives the reviews completed
+ *  more than "yuconz.archive.years" years ago (default 6), "yuconz.archive.batchSize"
+ *  reviews per transaction (default 500), pausing "yuconz.archive.pauseMs" milliseconds
+ *  between transactions (default 100) so other writers aren't kept waiting.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class ReviewArchiver {
+    private final static Logger LOGGER = Logger.getLogger(AppController.class.getName());
+    private final HRRepository repository;
+    private final int years;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "yuconz-archiver");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Creates an archiver with the settings from the system properties.
+     * @param repository The repository to archive reviews in.
+     */
+    ReviewArchiver(HRRepository repository) {
+        this(repository, Integer.getInteger("yuconz.archive.years", 6),
+                Integer.getInteger("yuconz.archive.batchSize", 500),
+                Long.getLong("yuconz.archive.pauseMs", 100));
+    }
+
+    /**
+     * Creates an archiver.
+     * @param repository The repository to archive reviews in.
+     * @param years How many years after completion a review is archived.
+     * @param batchSize The most reviews archived in each transaction.
+     * @param pauseMillis How long to pause between transactions.
+     */
+    ReviewArchiver(HRRepository repository, int years, int batchSize, long pauseMillis) {
+        this.repository = repository;
+        this.years = years;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Starts archiving on a background thread, now and then every interval.
+     */
+    void start() {
+        long interval = TimeUnit.HOURS.toMillis(Long.getLong("yuconz.archive.intervalHours", 24));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archive();
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Could not archive reviews: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Archives every review completed before the cut-off, one batch at a time.
+     * @return The number of reviews archived.
+     * @throws SQLException If a batch could not be archived. Earlier batches stay archived.
+     * @throws InterruptedException If the thread was interrupted between batches.
+     */
+    int archive() throws SQLException, InterruptedException {
+        Date cutOff = Date.valueOf(LocalDate.now().minusYears(years));
+        try (Tracer.Span span = Tracer.span("ReviewArchiver.archive")) {
+            int total = 0;
+            int archived;
+            do {
+                archived = repository.archiveReviews(cutOff, batchSize);
+                total += archived;
+                if (archived >= batchSize && pauseMillis > 0) {
+                    Thread.sleep(pauseMillis);
+                }
+            } while (archived >= batchSize);
+            if (total > 0) {
+                //Archived reviews are no longer anyone's to review.
+                AuthorisationCache.invalidateReviews();
+                LOGGER.log(Level.INFO, "Archived " + total + " reviews completed before " + cutOff);
+            }
+            span.tag("reviews", total);
+            return total;
+        }
+    }
+
+    /**
+     * Stops archiving, waiting for a running batch to finish.
+     */
+    void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+@RunWith(Parameterized.class)
+public class ReviewArchiverTests
+{
+    //Every test runs against the in-memory repository and against a new SQLite database.
+    @Parameterized.Parameter
+    public String engine;
+    private Path database;
+    private HRRepository repository;
+
+    public ReviewArchiverTests()
+    {
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> engines()
+    {
+        return Arrays.asList(new Object[][] {{"memory"}, {"sqlite"}});
+    }
+
+    private void addReview(String staffNo, int yearsAgo, boolean complete)
+    {
+        Date signed = Date.valueOf(LocalDate.now().minusYears(yearsAgo));
+        repository.insertAnnualReview(new AnnualReview(null, staffNo, "Sam", "1235", "0101",
+                "HR", "Clerk", Recommendation.NOT_SET, signed, signed, complete ? signed : null,
+                null, null));
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        database = SQLiteRepositoryTests.newDatabase(engine);
+        repository = SQLiteRepositoryTests.repository(database);
+        repository.connect();
+        addReview("1234", 10, true);
+        addReview("1234", 8, false);
+        addReview("1234", 7, true);
+        addReview("1234", 1, true);
+        addReview("1235", 9, true);
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        repository.close();
+        SQLiteRepositoryTests.delete(database);
+    }
+
+    @Test
+    public void oldCompletedReviewsAreArchivedInBatches() throws Exception
+    {
+        ReviewArchiver archiver = new ReviewArchiver(repository, 6, 2, 0);
+        assertEquals(3, archiver.archive());
+        assertEquals(0, archiver.archive());
+
+        assertEquals(1, repository.getPastReviews("1234").size());
+        assertEquals(2, repository.getReviews("1234").size());
+        assertNotNull(repository.getUnfinishedReview("1234"));
+        assertTrue(repository.getPastReviews("1235").isEmpty());
+    }
+
+    @Test
+    public void pastReviewsIncludeTheArchiveWhenAsked() throws Exception
+    {
+        new ReviewArchiver(repository, 6, 500, 0).archive();
+        List<AnnualReview> past = repository.getPastReviews("1234", true);
+        assertEquals(3, past.size());
+        for (int i = 1; i < past.size(); i++) {
+            assertTrue(past.get(i - 1).getReviewID() < past.get(i).getReviewID());
+        }
+        assertEquals(1, repository.getPastReviews("1235", true).size());
+    }
+
+    @Test
+    public void archivedReviewsAreMovedNotDeleted() throws Exception
+    {
+        ChangeStream skip = new ChangeStream(repository, 0, Integer.MAX_VALUE);
+        skip.poll();
+        ChangeStream stream = new ChangeStream(repository, skip.getOffset(), 10);
+
+        new ReviewArchiver(repository, 6, 500, 0).archive();
+        List<ChangeEvent> changes = stream.poll();
+        assertEquals(3, changes.size());
+        for (ChangeEvent change : changes) {
+            assertEquals(ChangeEvent.Operation.ARCHIVE, change.getOperation());
+        }
+        //Archived reviews are still complete reviews.
+        assertEquals(4, repository.getReviewStatusCounts().get("HR").get("complete").intValue());
+    }
+}
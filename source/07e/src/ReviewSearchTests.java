@@ -0,0 +1,133 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ReviewSearchTests
+{
+    private Path database;
+    private SQLiteRepository repository;
+
+    public ReviewSearchTests()
+    {
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        database = SQLiteRepositoryTests.newDatabase("sqlite");
+        repository = new SQLiteRepository(database.toString());
+        repository.connect();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        repository.close();
+        SQLiteRepositoryTests.delete(database);
+    }
+
+    private AnnualReview addReview(int yearsAgo, String achievement, String goal)
+    {
+        Date signed = yearsAgo == 0 ? null : Date.valueOf(LocalDate.now().minusYears(yearsAgo));
+        LinkedHashMap<String, String> past = new LinkedHashMap<>();
+        past.put("Answer the phones", achievement);
+        repository.insertAnnualReview(new AnnualReview(null, "1234", "Sam", "1235", "9876",
+                "HR", "Clerk", Recommendation.NOT_SET, signed, signed, signed, null, null));
+        //A new review's objectives and goals are saved once it has an ID.
+        Integer reviewID = repository.getReviews("1234").get(0).getReviewID();
+        AnnualReview review = new AnnualReview(reviewID, "1234", "Sam", "1235", "9876",
+                "HR", "Clerk", Recommendation.NOT_SET, signed, signed, signed,
+                new PerformanceReview(past, "A steady year"),
+                new PerformanceReview(false, new ArrayList<>(Arrays.asList(goal)), "More"));
+        repository.updateAnnualReview(review);
+        return review;
+    }
+
+    private List<String> search(String query)
+    {
+        List<String> reviewIDs = new ArrayList<>();
+        for (Map<String, String> result : repository.searchReviews(query, 10)) {
+            reviewIDs.add(result.get("reviewID"));
+        }
+        return reviewIDs;
+    }
+
+    private int count(String table) throws SQLException
+    {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + database)) {
+            ResultSet rSet = conn.createStatement().executeQuery("SELECT count(*) FROM " + table);
+            rSet.next();
+            return rSet.getInt(1);
+        }
+    }
+
+    @Test
+    public void everyWordIsQuoted()
+    {
+        assertEquals("\"team\" \"work\"", SQLiteRepository.toMatchExpression(" team   work "));
+        //FTS5 operators and punctuation are searched for as text, not parsed.
+        assertEquals("\"NOT\" \"a-b\" \"say\"\"hi\"\"\"",
+                SQLiteRepository.toMatchExpression("NOT a-b say\"hi\""));
+    }
+
+    @Test
+    public void trailingStarMatchesPrefixes()
+    {
+        assertEquals("\"train\"* \"java\"", SQLiteRepository.toMatchExpression("train* java"));
+        assertEquals("", SQLiteRepository.toMatchExpression(" * "));
+    }
+
+    @Test
+    public void updatesReplaceTheIndexedText() throws SQLException
+    {
+        AnnualReview review = addReview(0, "Answered every call", "Learn the switchboard");
+        String reviewID = String.valueOf(review.getReviewID());
+        assertEquals(Arrays.asList(reviewID), search("switchboard"));
+        int entries = count("ReviewSearch");
+
+        for (String goal : new String[] {"Learn spreadsheets", "Train a new clerk"}) {
+            review.getFutureGoals().getGoals().set(0, goal);
+            repository.updateAnnualReview(review);
+        }
+        assertEquals(Arrays.asList(reviewID), search("clerk"));
+        assertTrue(search("switchboard").isEmpty());
+        assertTrue(search("spreadsheets").isEmpty());
+        //Each save replaces the review's entries instead of adding more.
+        assertEquals(entries, count("ReviewSearch"));
+        assertEquals(count("ReviewSearchRows"), count("ReviewSearch"));
+
+        repository.deleteAnnualReview(review.getReviewID());
+        assertTrue(search("clerk").isEmpty());
+        assertTrue(search("call").isEmpty());
+        assertEquals(0, count("ReviewSearch"));
+        assertEquals(0, count("ReviewSearchRows"));
+    }
+
+    @Test
+    public void archivedReviewsAreStillFound() throws Exception
+    {
+        AnnualReview review = addReview(10, "Answered every call", "Learn the switchboard");
+        assertEquals(1, new ReviewArchiver(repository, 6, 500, 0).archive());
+
+        List<Map<String, String>> results = repository.searchReviews("switch*", 10);
+        assertEquals(1, results.size());
+        assertEquals(String.valueOf(review.getReviewID()), results.get(0).get("reviewID"));
+        assertTrue(results.get(0).get("snippet").contains("[switchboard]"));
+        assertEquals(count("ReviewSearchRows"), count("ReviewSearch"));
+    }
+}
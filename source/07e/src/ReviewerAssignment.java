@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Assigns second reviewers to every open review which doesn't have one, in one pass.
+ * Each review goes to the eligible reviewer with the fewest open reviews at that point,
+ *  found with a min-heap of reviewers ordered by load, so reviews are spread evenly.
+ * A reviewer is not eligible for a review if they are the reviewee,
+ *  or anywhere in the reviewee's chain of supervisors.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class ReviewerAssignment {
+
+    /**
+     * Assigns a second reviewer to every open review without one,
+     *  and saves the assignments in a single transaction.
+     * @return The staff number of the second reviewer assigned to each review, by reviewID.
+     */
+    static Map<Integer, String> assignAll() {
+        try (Tracer.Span span = Tracer.span("ReviewerAssignment.assignAll")) {
+            Map<Integer, String> pending = DatabaseController.getReviewsNeedingSecondReviewer();
+            if (pending.isEmpty()) {
+                return Collections.emptyMap();
+            }
+            Map<Integer, String> assignments = plan(pending, DatabaseController.getReviewerLoads(),
+                    DatabaseController.getRevieweeSupervisorChains());
+            DatabaseController.assignSecondReviewers(assignments);
+            span.tag("reviews", pending.size()).tag("assigned", assignments.size());
+            return assignments;
+        }
+    }
+
+    /**
+     * Chooses a second reviewer for each review.
+     * Reviews are assigned in the order given. Reviews which no reviewer is eligible for
+     *  are left out of the result.
+     * @param reviews The staff number of the reviewee of each review, by reviewID.
+     * @param loads The number of open reviews each reviewer already has, by staff number.
+     * @param excluded The staff numbers in each reviewee's supervisor chain, by reviewee.
+     * @return The staff number of the second reviewer chosen for each review, by reviewID.
+     */
+    static Map<Integer, String> plan(Map<Integer, String> reviews, Map<String, Integer> loads,
+                                     Map<String, Set<String>> excluded) {
+        PriorityQueue<Reviewer> heap = new PriorityQueue<>(Math.max(1, loads.size()));
+        for (Map.Entry<String, Integer> load : loads.entrySet()) {
+            heap.add(new Reviewer(load.getKey(), load.getValue()));
+        }
+        Map<Integer, String> assignments = new LinkedHashMap<>();
+        List<Reviewer> skipped = new ArrayList<>();
+        for (Map.Entry<Integer, String> review : reviews.entrySet()) {
+            String reviewee = review.getValue();
+            Set<String> chain = excluded.getOrDefault(reviewee, Collections.emptySet());
+            //Set aside the least loaded reviewers until one is eligible.
+            Reviewer chosen = null;
+            while (!heap.isEmpty()) {
+                Reviewer candidate = heap.poll();
+                if (candidate.staffNo.equals(reviewee) || chain.contains(candidate.staffNo)) {
+                    skipped.add(candidate);
+                } else {
+                    chosen = candidate;
+                    break;
+                }
+            }
+            heap.addAll(skipped);
+            skipped.clear();
+            if (chosen != null) {
+                assignments.put(review.getKey(), chosen.staffNo);
+                chosen.load++;
+                heap.add(chosen);
+            }
+        }
+        return assignments;
+    }
+
+    /**
+     * A reviewer and their current number of open reviews, ordered by load then staff number.
+     */
+    private static class Reviewer implements Comparable<Reviewer> {
+        private final String staffNo;
+        private int load;
+
+        Reviewer(String staffNo, int load) {
+            this.staffNo = staffNo;
+            this.load = load;
+        }
+
+        @Override
+        public int compareTo(Reviewer other) {
+            int byLoad = Integer.compare(load, other.load);
+            return byLoad != 0 ? byLoad : staffNo.compareTo(other.staffNo);
+        }
+    }
+}
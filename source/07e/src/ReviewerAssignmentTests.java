@@ -0,0 +1,80 @@
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class ReviewerAssignmentTests
+{
+    public ReviewerAssignmentTests()
+    {
+    }
+
+    @Test
+    public void reviewsGoToTheLeastLoadedReviewer()
+    {
+        Map<Integer, String> reviews = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            reviews.put(i, "10" + i);
+        }
+        Map<String, Integer> loads = new HashMap<>();
+        loads.put("0001", 3);
+        loads.put("0002", 0);
+        loads.put("0003", 0);
+        Map<Integer, String> assignments =
+                ReviewerAssignment.plan(reviews, loads, Collections.emptyMap());
+        assertEquals(6, assignments.size());
+        Map<String, Integer> totals = new HashMap<>(loads);
+        assignments.values().forEach((reviewer) -> totals.merge(reviewer, 1, Integer::sum));
+        //Three existing plus six new reviews, spread evenly.
+        assertEquals(Integer.valueOf(3), totals.get("0001"));
+        assertEquals(Integer.valueOf(3), totals.get("0002"));
+        assertEquals(Integer.valueOf(3), totals.get("0003"));
+    }
+
+    @Test
+    public void supervisorChainIsExcluded()
+    {
+        Map<Integer, String> reviews = new LinkedHashMap<>();
+        reviews.put(1, "0004");
+        Map<String, Integer> loads = new HashMap<>();
+        loads.put("0001", 0);
+        loads.put("0002", 0);
+        loads.put("0003", 5);
+        Map<String, Set<String>> excluded = new HashMap<>();
+        excluded.put("0004", new HashSet<>(Arrays.asList("0001", "0002")));
+        assertEquals("0003", ReviewerAssignment.plan(reviews, loads, excluded).get(1));
+    }
+
+    @Test
+    public void revieweeDoesNotReviewThemselves()
+    {
+        Map<Integer, String> reviews = new LinkedHashMap<>();
+        reviews.put(1, "0001");
+        Map<String, Integer> loads = new HashMap<>();
+        loads.put("0001", 0);
+        loads.put("0002", 4);
+        assertEquals("0002",
+                ReviewerAssignment.plan(reviews, loads, Collections.emptyMap()).get(1));
+    }
+
+    @Test
+    public void reviewsWithNoEligibleReviewerAreLeftOut()
+    {
+        Map<Integer, String> reviews = new LinkedHashMap<>();
+        reviews.put(1, "0004");
+        reviews.put(2, "0005");
+        Map<String, Integer> loads = new HashMap<>();
+        loads.put("0001", 0);
+        Map<String, Set<String>> excluded = new HashMap<>();
+        excluded.put("0004", Collections.singleton("0001"));
+        Map<Integer, String> assignments = ReviewerAssignment.plan(reviews, loads, excluded);
+        assertFalse(assignments.containsKey(1));
+        assertEquals("0001", assignments.get(2));
+    }
+}
@@ -17,11 +17,15 @@ public enum Role {
                     Permission.READ_PAST_ANNUAL_REVIEW, Permission.SIGN_ANNUAL_REVIEW)),
     HR_EMPLOYEE("HR Employee",
             Arrays.asList(Permission.CREATE_PERSONAL_DETAILS, Permission.HR_READ_PERSONAL_DETAILS,
-                    Permission.HR_AMEND_PERSONAL_DETAILS, Permission.READ_ANY_ANNUAL_REVIEW)),
+                    Permission.HR_AMEND_PERSONAL_DETAILS, Permission.READ_ANY_ANNUAL_REVIEW,
+                    Permission.ASSIGN_SECOND_REVIEWERS, Permission.VIEW_REVIEW_COUNTS,
+                    Permission.SEARCH_ANNUAL_REVIEWS, Permission.SEARCH_PERSONAL_DETAILS)),
     MANAGER("Manager",
-            Arrays.asList(Permission.READ_PERSONAL_DETAILS, Permission.AMEND_PERSONAL_DETAILS)),
+            Arrays.asList(Permission.READ_PERSONAL_DETAILS, Permission.AMEND_PERSONAL_DETAILS,
+                    Permission.MANAGER_READ_ANNUAL_REVIEW)),
     DIRECTOR("Director",
-            Arrays.asList(Permission.READ_ANY_ANNUAL_REVIEW)),
+            Arrays.asList(Permission.READ_ANY_ANNUAL_REVIEW, Permission.VIEW_REVIEW_COUNTS,
+                    Permission.SEARCH_ANNUAL_REVIEWS)),
     REVIEWER("Reviewer",
             Arrays.asList(Permission.REVIEWER_READ_CURRENT_ANNUAL_REVIEW,
                     Permission.REVIEWER_READ_PAST_ANNUAL_REVIEW,
@@ -42,4 +46,18 @@ public enum Role {
     public LinkedHashSet<Permission> getPermissions() {
         return permissions;
     }
+
+    /**
+     * Finds the role with the given title, as written in the audit logs.
+     * @param title The title of the role, e.g. "HR Employee".
+     * @return The role with that title, or null if there isn't one.
+     */
+    static Role fromTitle(String title) {
+        for (Role role : values()) {
+            if (role.title.equals(title)) {
+                return role;
+            }
+        }
+        return null;
+    }
 }
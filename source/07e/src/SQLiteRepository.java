@@ -0,0 +1,2102 @@
+import java.nio.file.Path;
+import java.sql.*;
+import java.sql.Date;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HR repository stored in an SQLite database file.
+ * Holds a single connection to the database, and creates or upgrades the database's tables
+ *  when it connects.
+ * @author James jd556, Marin md485, Jamie jdg23
+ * @version 20261019
+ */
+class SQLiteRepository implements HRRepository {
+    //The number of open connections, across every SQLite repository.
+    private final static AtomicInteger openConnections = new AtomicInteger();
+    //Matches reviews which haven't been signed by everyone yet, using the partial indexes.
+    private final static String OPEN_REVIEW = "status <> 'complete'";
+    //The most parameters put in one IN clause, well under SQLite's limit of 999 per statement.
+    private final static int MAX_IN_PARAMETERS = 500;
+    //True in a trigger on a review's tables while archiveReviews is moving the review, as the
+    // review is copied into the archive before it is deleted.
+    private final static String ARCHIVING = "EXISTS (SELECT 1 FROM AnnualReviewArchive " +
+            "WHERE reviewID = OLD.reviewID)";
+    private final static String UPDATE_PERSONAL_DETAILS = "UPDATE PersonalDetails SET " +
+            "staffNo = ?," +
+            "surname = ?," +
+            "name = ?," +
+            "dob = ?," +
+            "address = ?," +
+            "town = ?," +
+            "postcode = ?," +
+            "telNo = ?," +
+            "mobNo = ?," +
+            "emergCont = ?," +
+            "contNo = ? " +
+            "WHERE staffNo = ?;";
+    //The location of the database file.
+    private final String path;
+    //The connection to the Database we use as our main point of interaction.
+    //A connection can't be used by two threads at once, so its users hold this repository's
+    // lock: every method using it is synchronized.
+    private Connection conn;
+    //A second connection for background writers, the write-behind flusher and the archiver,
+    // so their transactions never toggle autocommit on the main connection under another thread.
+    private Connection background;
+    //Surnames and post codes of every employee, for searching without scanning the table.
+    // Reloading it builds a new index and swaps it in, so searches never see it half full.
+    private volatile PersonalDetailsIndex searchIndex = new PersonalDetailsIndex();
+    //Drops cached rows which other processes have changed.
+    private CacheCoherence coherence;
+
+    static {
+        //Each repository holds a main connection, and a background one once a background writer
+        // needs it. A connection is in use whenever a statement is open on it.
+        AppMetrics.registerGauge("yuconz_db_pool_connections{state=\"open\"}",
+                "Database connections by state.", openConnections::get);
+        AppMetrics.registerGauge("yuconz_db_pool_connections{state=\"in_use\"}",
+                "Database connections by state.",
+                () -> Math.min(openConnections.get(), StatementProbe.activeStatements()));
+    }
+
+    /**
+     * Creates a repository for the database at the given location.
+     * The database is created when the repository connects, if it doesn't exist yet.
+     * @param path The location of the database file.
+     */
+    SQLiteRepository(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public synchronized void connect() {
+        //Makes sure the connection isn't currently connected to a server and closes it if it is.
+        //This is to avoid opened database files not being closed correctly.
+        close();
+        String url = "jdbc:sqlite:" + path;
+        try {
+            //Attempts to connect to the database, if it cannot a new database is created.
+            conn = DriverManager.getConnection(url);
+            openConnections.incrementAndGet();
+            //In WAL mode readers, such as an online backup, never block writers.
+            //The pragma returns the new mode as a row, so its statement must be closed or it
+            // stays in progress and blocks every later commit on the connection.
+            execute("PRAGMA journal_mode = WAL");
+            //Checks to see if there are any tables in the database the connection connected to,
+            // this is used to check whether a new database was created, or whether an existing
+            // database was connected to.
+            boolean existing;
+            try (Statement statement = conn.createStatement();
+                 ResultSet rSet = statement.executeQuery("SELECT name FROM sqlite_master " +
+                         "WHERE type ='table' AND name NOT LIKE 'sqlite_%'")) {
+                existing = rSet.next();
+            }
+            if (existing) {
+                System.out.println("Connection to Yuconz Database has been established.");
+            } else {
+                System.out.println("Database not found, initialising new database.");
+                //In the case where a new database is created the following strings will
+                // initialise the necessary tables for the function of database.
+                // IF NOT EXISTS is used on the off-chance the previous code erroneously
+                // assumes the database it's connected to has no tables.
+
+                System.out.println("Creating Tables.");
+
+                //Execution of the SQL statements defined above.
+                List<String> sqlStatements = getTableDefinitions();
+                for(String sqlStatement : sqlStatements) {
+                    execute(sqlStatement);
+                }
+
+                System.out.println("Populating Users.");
+
+                // The following for each loops populate the tables defined above with,
+                // the dummy data within our initialisation hash maps.
+                for(Map.Entry<String, String[]> users :
+                        DatabaseController.getDummyUsers().entrySet()) {
+                    addDummyUser(users.getKey(), users.getValue()[0],
+                            users.getValue()[1], users.getValue()[2]);
+                }
+
+                System.out.println("Populating PersonalDetails.");
+
+                for(Map.Entry<String, PersonalDetails> details :
+                        DatabaseController.getDummyPersonalDetails().entrySet()) {
+                    PersonalDetails values = details.getValue();
+                    execute(
+                            "INSERT INTO PersonalDetails VALUES ('"
+                                    + values.getField("Staff No") + "','"
+                                    + values.getField("Surname") + "','"
+                                    + values.getField("Name") + "','"
+                                    + values.getField("Date of Birth") + "','"
+                                    + values.getField("Address") + "','"
+                                    + values.getField("Town/City") + "','"
+                                    + values.getField("Post Code") + "','"
+                                    + values.getField("Telephone Number") + "','"
+                                    + values.getField("Mobile Number") + "','"
+                                    + values.getField("Emergency Contact") + "','"
+                                    + values.getField("Emergency Contact Number") + "');");
+                }
+            }
+            //Brings databases created by older versions up to date.
+            for (String sqlStatement : getSchemaUpgrades()) {
+                execute(sqlStatement);
+            }
+            loadSearchIndex(conn);
+            //The listener runs on the poller's thread, so it reads through the poller's connection.
+            coherence = new CacheCoherence(path, new CacheCoherence.Listener() {
+                @Override
+                public void changed(Connection source, String table, String key) {
+                    if ("PersonalDetails".equals(table)) {
+                        reloadSearchIndex(source, key);
+                    } else if (!"Authentication".equals(table)) {
+                        //Authorisation decisions depend on who reviews and supervises whom.
+                        AuthorisationCache.invalidateReviews();
+                    }
+                }
+
+                @Override
+                public void invalidateAll(Connection source) {
+                    loadSearchIndex(source);
+                    AuthorisationCache.invalidateReviews();
+                }
+            });
+            coherence.start();
+        } catch (Exception e) {
+            System.out.println("Critical Error: " + e.getMessage());
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * Gets the connection for background writers, opening it the first time it is needed.
+     * Writers must hold its lock while they use it, as they may run on different threads.
+     * @return The background connection.
+     * @throws SQLException If the connection could not be opened.
+     */
+    private synchronized Connection backgroundConnection() throws SQLException {
+        if (background == null) {
+            background = DriverManager.getConnection("jdbc:sqlite:" + path);
+            openConnections.incrementAndGet();
+            try (Statement statement = background.createStatement()) {
+                //Waits for a write on the main connection to finish, rather than failing.
+                statement.execute("PRAGMA busy_timeout = 5000");
+            }
+        }
+        return background;
+    }
+
+    @Override
+    public int getConnectionCount() {
+        return 1;
+    }
+
+    @Override
+    public List<HRRepository> getShards() {
+        return Collections.singletonList(this);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (coherence != null) {
+            coherence.close();
+            coherence = null;
+        }
+        try {
+            if (conn != null) {
+                conn.close();
+                conn = null;
+                openConnections.decrementAndGet();
+            }
+            if (background != null) {
+                background.close();
+                background = null;
+                openConnections.decrementAndGet();
+            }
+        } catch (SQLException ex) {
+            System.out.println(ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns a list of the SQLite HR Database Table definitions.
+     * @return A list of SQLite table creation statements.
+     */
+    private static List<String> getTableDefinitions() {
+        List<String> statements = new ArrayList<>();
+        String createEmployeeDetailsTable = "CREATE TABLE " +
+                "IF NOT EXISTS EmployeeDetails ( " +
+                "staffNo VARCHAR(255) PRIMARY KEY," +
+                "username VARCHAR(255) UNIQUE," +
+                "supervisor VARCHAR(255)," +
+                "section VARCHAR(255)," +
+                "jobTitle VARCHAR(255)," +
+                "role VARCHAR(255)," +
+                "FOREIGN KEY (supervisor) REFERENCES EmployeeDetails (staffNo) );";
+        String createAuthenticationTable = "CREATE TABLE IF NOT EXISTS Authentication (" +
+                "username VARCHAR(255) PRIMARY KEY," +
+                "password VARCHAR(255)," +
+                "FOREIGN KEY (username) REFERENCES EmployeeDetails (username) );";
+        String createUsersView = "CREATE VIEW IF NOT EXISTS Users AS " +
+                "SELECT Authentication.username AS uid, " +
+                "Authentication.password AS pass, " +
+                "EmployeeDetails.role AS permissions " +
+                "FROM Authentication JOIN EmployeeDetails " +
+                "ON Authentication.username = EmployeeDetails.username ;";
+        String createPersonalDetailsTable = "CREATE TABLE " +
+                "IF NOT EXISTS PersonalDetails (" +
+                "staffNo varchar(255) PRIMARY KEY," +
+                "surname varchar(20)," +
+                "name varchar(20)," +
+                "dob char(10)," +
+                "address varchar(40)," +
+                "town varchar(20)," +
+                "postcode varchar(9)," +
+                "telNo varchar(20)," +
+                "mobNo varchar(20)," +
+                "emergCont varchar(40)," +
+                "contNo varchar(20)," +
+                "FOREIGN KEY (staffNo) REFERENCES EmployeeDetails (staffNo));";
+        String createAnnualReviewTable = "CREATE TABLE IF NOT EXISTS AnnualReview (" +
+                "reviewID INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "staffNo VARCHAR(255)," +
+                "name VARCHAR(255)," +
+                "supervisor VARCHAR(255)," +
+                "secondReviewer VARCHAR(255)," +
+                "section VARCHAR(255)," +
+                "jobTitle VARCHAR(255)," +
+                "recommendation VARCHAR(255)," +
+                "performanceSummary TEXT," +
+                "reviewerComments TEXT," +
+                "revieweeSigned DATE," +
+                "supervisorSigned DATE," +
+                "secondReviewerSigned DATE," +
+                "FOREIGN KEY (staffNo) REFERENCES EmployeeDetails (staffNo) ," +
+                "FOREIGN KEY (supervisor) REFERENCES EmployeeDetails (staffNo)," +
+                "FOREIGN KEY (secondReviewer) REFERENCES EmployeeDetails (staffNo) );";
+        String createPastPerformanceTable = "CREATE TABLE " +
+                "IF NOT EXISTS PastPerformance (" +
+                "reviewID INTEGER," +
+                "number INTEGER," +
+                "objective TEXT," +
+                "achievement TEXT," +
+                "PRIMARY KEY (reviewID, number)," +
+                "FOREIGN KEY (reviewID) REFERENCES AnnualReview (reviewID)" +
+                ");";
+        String createFutureGoalsTable = "CREATE TABLE " +
+                "IF NOT EXISTS FutureGoals (" +
+                "reviewID INTEGER," +
+                "goalNo INTEGER," +
+                "content TEXT," +
+                "PRIMARY KEY (reviewID, goalNo)," +
+                "FOREIGN KEY (reviewID) REFERENCES AnnualReview (reviewID)" +
+                ");";
+
+        String createUsersUpdateTrigger = "CREATE TRIGGER " +
+                "IF NOT EXISTS UsersUpdate INSTEAD OF UPDATE ON Users " +
+                "FOR EACH ROW BEGIN " +
+                "UPDATE EmployeeDetails SET " +
+                "username = NEW.username, " +
+                "role = NEW.permissions " +
+                "WHERE username = OLD.username; " +
+                "UPDATE Authentication SET " +
+                "username = NEW.username, " +
+                "password = NEW.password " +
+                "WHERE username = OLD.username; " +
+                "END;";
+
+        statements.add(createEmployeeDetailsTable);
+        statements.add(createAuthenticationTable);
+        statements.add(createUsersView);
+        statements.add(createPersonalDetailsTable);
+        statements.add(createAnnualReviewTable);
+        statements.add(createPastPerformanceTable);
+        statements.add(createFutureGoalsTable);
+        statements.add(createUsersUpdateTrigger);
+
+        return statements;
+    }
+
+    /**
+     * Returns the SQLite statements which add tables, indexes and triggers introduced since
+     *  the original table definitions.
+     * Every statement can be run more than once, as they are run on every connection.
+     * @return A list of SQLite statements.
+     */
+    private List<String> getSchemaUpgrades() throws SQLException {
+        List<String> statements = new ArrayList<>();
+        //The closure of the supervisor hierarchy: a row for every employee and each of their
+        // supervisors, however far up the chain, plus one for the employee themselves at depth 0.
+        String createSupervisorChainTable = "CREATE TABLE IF NOT EXISTS SupervisorChain (" +
+                "ancestor VARCHAR(255)," +
+                "descendant VARCHAR(255)," +
+                "depth INTEGER," +
+                "PRIMARY KEY (ancestor, descendant) );";
+        String createSupervisorChainIndex = "CREATE INDEX IF NOT EXISTS " +
+                "SupervisorChainDescendant ON SupervisorChain (descendant, depth);";
+        //Fills the closure from the supervisor column if it is empty, i.e. it is new.
+        String populateSupervisorChain = "INSERT OR IGNORE INTO SupervisorChain " +
+                "WITH RECURSIVE Chain (ancestor, descendant, depth) AS (" +
+                "SELECT staffNo, staffNo, 0 FROM EmployeeDetails " +
+                "UNION ALL " +
+                "SELECT Emp.supervisor, Chain.descendant, Chain.depth + 1 " +
+                "FROM Chain JOIN EmployeeDetails AS Emp ON Emp.staffNo = Chain.ancestor " +
+                "WHERE Emp.supervisor IS NOT NULL AND Chain.depth < 64) " +
+                "SELECT ancestor, descendant, MIN(depth) FROM Chain " +
+                "WHERE NOT EXISTS (SELECT 1 FROM SupervisorChain) " +
+                "GROUP BY ancestor, descendant;";
+        String createSupervisorChainInsertTrigger = "CREATE TRIGGER " +
+                "IF NOT EXISTS SupervisorChainInsert AFTER INSERT ON EmployeeDetails " +
+                "FOR EACH ROW BEGIN " +
+                "INSERT OR IGNORE INTO SupervisorChain VALUES (NEW.staffNo, NEW.staffNo, 0); " +
+                "INSERT OR IGNORE INTO SupervisorChain " +
+                "SELECT ancestor, NEW.staffNo, depth + 1 FROM SupervisorChain " +
+                "WHERE descendant = NEW.supervisor; " +
+                "END;";
+        //An employee can't be supervised by anyone they supervise, directly or not.
+        String createSupervisorCycleTrigger = "CREATE TRIGGER " +
+                "IF NOT EXISTS SupervisorCycle BEFORE UPDATE OF supervisor ON EmployeeDetails " +
+                "FOR EACH ROW WHEN EXISTS (SELECT 1 FROM SupervisorChain " +
+                "WHERE ancestor = NEW.staffNo AND descendant = NEW.supervisor) BEGIN " +
+                "SELECT RAISE(ABORT, 'An employee cannot supervise their own supervisor'); " +
+                "END;";
+        //Moves the employee's whole subtree: paths into it from outside are removed,
+        // then every supervisor of the new supervisor is joined to every employee in it.
+        String createSupervisorChainUpdateTrigger = "CREATE TRIGGER " +
+                "IF NOT EXISTS SupervisorChainUpdate AFTER UPDATE OF supervisor ON EmployeeDetails " +
+                "FOR EACH ROW WHEN OLD.supervisor IS NOT NEW.supervisor BEGIN " +
+                "DELETE FROM SupervisorChain " +
+                "WHERE descendant IN (SELECT descendant FROM SupervisorChain " +
+                "WHERE ancestor = NEW.staffNo) " +
+                "AND ancestor NOT IN (SELECT descendant FROM SupervisorChain " +
+                "WHERE ancestor = NEW.staffNo); " +
+                "INSERT OR IGNORE INTO SupervisorChain " +
+                "SELECT Super.ancestor, Sub.descendant, Super.depth + Sub.depth + 1 " +
+                "FROM SupervisorChain AS Super, SupervisorChain AS Sub " +
+                "WHERE Super.descendant = NEW.supervisor AND Sub.ancestor = NEW.staffNo; " +
+                "END;";
+        String createSupervisorChainDeleteTrigger = "CREATE TRIGGER " +
+                "IF NOT EXISTS SupervisorChainDelete AFTER DELETE ON EmployeeDetails " +
+                "FOR EACH ROW BEGIN " +
+                "DELETE FROM SupervisorChain " +
+                "WHERE ancestor = OLD.staffNo OR descendant = OLD.staffNo; " +
+                "END;";
+
+        statements.add(createSupervisorChainTable);
+        statements.add(createSupervisorChainIndex);
+        statements.add(populateSupervisorChain);
+        statements.add(createSupervisorChainInsertTrigger);
+        statements.add(createSupervisorCycleTrigger);
+        statements.add(createSupervisorChainUpdateTrigger);
+        statements.add(createSupervisorChainDeleteTrigger);
+
+        //Each review's status is kept in a column so it isn't worked out from the three
+        // signatures on every read: 'open' before anyone signs, 'awaiting' once someone has,
+        // and 'complete' once everyone has.
+        String status = "CASE WHEN NEW.revieweeSigned IS NOT NULL " +
+                "AND NEW.supervisorSigned IS NOT NULL AND NEW.secondReviewerSigned IS NOT NULL " +
+                "THEN 'complete' WHEN NEW.revieweeSigned IS NULL AND NEW.supervisorSigned IS NULL " +
+                "AND NEW.secondReviewerSigned IS NULL THEN 'open' ELSE 'awaiting' END";
+        if (!hasColumn("AnnualReview", "status")) {
+            statements.add("ALTER TABLE AnnualReview ADD COLUMN status VARCHAR(16);");
+            statements.add("UPDATE AnnualReview SET status = " +
+                    status.replace("NEW.", "") + ";");
+        }
+        String createReviewStatusInsertTrigger = "CREATE TRIGGER " +
+                "IF NOT EXISTS ReviewStatusInsert AFTER INSERT ON AnnualReview " +
+                "FOR EACH ROW BEGIN " +
+                "UPDATE AnnualReview SET status = " + status + " WHERE reviewID = NEW.reviewID; " +
+                "END;";
+        String createReviewStatusUpdateTrigger = "CREATE TRIGGER " +
+                "IF NOT EXISTS ReviewStatusUpdate AFTER UPDATE OF " +
+                "revieweeSigned, supervisorSigned, secondReviewerSigned ON AnnualReview " +
+                "FOR EACH ROW BEGIN " +
+                "UPDATE AnnualReview SET status = " + status + " WHERE reviewID = NEW.reviewID; " +
+                "END;";
+        //Open reviews are a small part of the table, so only they are indexed.
+        String createOpenReviewStaffNoIndex = "CREATE INDEX IF NOT EXISTS OpenReviewStaffNo " +
+                "ON AnnualReview (staffNo) WHERE status <> 'complete';";
+        String createOpenReviewSupervisorIndex = "CREATE INDEX IF NOT EXISTS " +
+                "OpenReviewSupervisor ON AnnualReview (supervisor) WHERE status <> 'complete';";
+        String createOpenReviewSecondReviewerIndex = "CREATE INDEX IF NOT EXISTS " +
+                "OpenReviewSecondReviewer ON AnnualReview (secondReviewer) " +
+                "WHERE status <> 'complete';";
+        String createCompleteReviewIndex = "CREATE INDEX IF NOT EXISTS CompleteReviewStaffNo " +
+                "ON AnnualReview (staffNo) WHERE status = 'complete';";
+
+        //The number of reviews in each section with each status, for the HR dashboard.
+        String createReviewStatusCountsTable = "CREATE TABLE IF NOT EXISTS ReviewStatusCounts (" +
+                "section VARCHAR(255)," +
+                "status VARCHAR(16)," +
+                "count INTEGER," +
+                "PRIMARY KEY (section, status) );";
+        String populateReviewStatusCounts = "INSERT INTO ReviewStatusCounts " +
+                "SELECT COALESCE(section, ''), status, COUNT(*) FROM AnnualReview " +
+                "WHERE NOT EXISTS (SELECT 1 FROM ReviewStatusCounts) " +
+                "GROUP BY COALESCE(section, ''), status;";
+        String createReviewStatusCountsUpdateTrigger = "CREATE TRIGGER " +
+                "IF NOT EXISTS ReviewStatusCountsUpdate AFTER UPDATE OF status, section " +
+                "ON AnnualReview FOR EACH ROW " +
+                "WHEN OLD.status IS NOT NEW.status OR OLD.section IS NOT NEW.section BEGIN " +
+                "UPDATE ReviewStatusCounts SET count = count - 1 " +
+                "WHERE section = COALESCE(OLD.section, '') AND status = OLD.status; " +
+                "INSERT OR IGNORE INTO ReviewStatusCounts " +
+                "VALUES (COALESCE(NEW.section, ''), NEW.status, 0); " +
+                "UPDATE ReviewStatusCounts SET count = count + 1 " +
+                "WHERE section = COALESCE(NEW.section, '') AND status = NEW.status; " +
+                "END;";
+        //Archived reviews are still counted.
+        dropOutdatedTrigger(statements, "ReviewStatusCountsDelete", "AnnualReviewArchive");
+        String createReviewStatusCountsDeleteTrigger = "CREATE TRIGGER " +
+                "IF NOT EXISTS ReviewStatusCountsDelete AFTER DELETE ON AnnualReview " +
+                "FOR EACH ROW WHEN NOT " + ARCHIVING + " BEGIN " +
+                "UPDATE ReviewStatusCounts SET count = count - 1 " +
+                "WHERE section = COALESCE(OLD.section, '') AND status = OLD.status; " +
+                "END;";
+
+        statements.add(createReviewStatusInsertTrigger);
+        statements.add(createReviewStatusUpdateTrigger);
+        statements.add(createOpenReviewStaffNoIndex);
+        statements.add(createOpenReviewSupervisorIndex);
+        statements.add(createOpenReviewSecondReviewerIndex);
+        statements.add(createCompleteReviewIndex);
+        statements.add(createReviewStatusCountsTable);
+        statements.add(populateReviewStatusCounts);
+        statements.add(createReviewStatusCountsUpdateTrigger);
+        statements.add(createReviewStatusCountsDeleteTrigger);
+
+        //A full-text index over the free text of reviews, if this SQLite build has FTS5.
+        // Each indexed value has a row in ReviewSearchRows saying where it came from,
+        // whose id is the rowid of its entry in ReviewSearch.
+        if (hasFts5()) {
+            String createReviewSearchRowsTable = "CREATE TABLE IF NOT EXISTS ReviewSearchRows (" +
+                    "id INTEGER PRIMARY KEY," +
+                    "reviewID INTEGER," +
+                    "field VARCHAR(32)," +
+                    "itemNo INTEGER," +
+                    "UNIQUE (reviewID, field, itemNo) );";
+            boolean newIndex = !hasTable("ReviewSearch");
+            String createReviewSearchTable = "CREATE VIRTUAL TABLE IF NOT EXISTS ReviewSearch " +
+                    "USING fts5(content, tokenize = 'porter unicode61');";
+            statements.add(createReviewSearchRowsTable);
+            statements.add(createReviewSearchTable);
+            if (newIndex) {
+                statements.add("INSERT INTO ReviewSearchRows (reviewID, field, itemNo) " +
+                        "SELECT reviewID, 'performanceSummary', 0 FROM AnnualReview " +
+                        "UNION ALL SELECT reviewID, 'reviewerComments', 0 FROM AnnualReview " +
+                        "UNION ALL SELECT reviewID, 'objective', number FROM PastPerformance " +
+                        "UNION ALL SELECT reviewID, 'achievement', number FROM PastPerformance " +
+                        "UNION ALL SELECT reviewID, 'content', goalNo FROM FutureGoals;");
+                statements.add("INSERT INTO ReviewSearch (rowid, content) " +
+                        "SELECT Rows.id, CASE Rows.field " +
+                        "WHEN 'performanceSummary' THEN Rev.performanceSummary " +
+                        "WHEN 'reviewerComments' THEN Rev.reviewerComments " +
+                        "WHEN 'objective' THEN Past.objective " +
+                        "WHEN 'achievement' THEN Past.achievement " +
+                        "ELSE Goal.content END " +
+                        "FROM ReviewSearchRows AS Rows " +
+                        "LEFT JOIN AnnualReview AS Rev ON Rev.reviewID = Rows.reviewID " +
+                        "LEFT JOIN PastPerformance AS Past ON Past.reviewID = Rows.reviewID " +
+                        "AND Past.number = Rows.itemNo " +
+                        "LEFT JOIN FutureGoals AS Goal ON Goal.reviewID = Rows.reviewID " +
+                        "AND Goal.goalNo = Rows.itemNo;");
+            }
+            boolean leaking = false;
+            for (String table : new String[] {"AnnualReview", "PastPerformance", "FutureGoals"}) {
+                dropOutdatedTrigger(statements, table + "SearchDelete", "AnnualReviewArchive");
+                leaking |= dropOutdatedTrigger(statements, table + "SearchInsert",
+                        "reviewID = NEW.reviewID");
+            }
+            statements.addAll(getSearchTriggers("AnnualReview", null,
+                    "performanceSummary", "reviewerComments"));
+            statements.addAll(getSearchTriggers("PastPerformance", "number",
+                    "objective", "achievement"));
+            statements.addAll(getSearchTriggers("FutureGoals", "goalNo", "content"));
+            if (leaking) {
+                //Older insert triggers left the entries of replaced rows in the index.
+                statements.add("DELETE FROM ReviewSearch " +
+                        "WHERE rowid NOT IN (SELECT id FROM ReviewSearchRows);");
+            }
+        }
+
+        //The rows each committed change touched, in commit order, so other processes can
+        // tell which of their cached rows are stale. Old rows are pruned by CacheCoherence.
+        String createChangeLogTable = "CREATE TABLE IF NOT EXISTS ChangeLog (" +
+                "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "tableName VARCHAR(32)," +
+                "rowKey VARCHAR(255)," +
+                "changedAt INTEGER DEFAULT (CAST(strftime('%s', 'now') AS INTEGER)) );";
+        String createChangeLogIndex = "CREATE INDEX IF NOT EXISTS ChangeLogChangedAt " +
+                "ON ChangeLog (changedAt);";
+        statements.add(createChangeLogTable);
+        statements.add(createChangeLogIndex);
+        statements.addAll(getChangeLogTriggers("PersonalDetails", "staffNo"));
+        statements.addAll(getChangeLogTriggers("AnnualReview", "reviewID"));
+        statements.addAll(getChangeLogTriggers("EmployeeDetails", "staffNo"));
+        statements.addAll(getChangeLogTriggers("Authentication", "username"));
+
+        //Every change to personal details and reviews, for other systems to follow.
+        // Unlike the ChangeLog it is never pruned, and says what happened to each row.
+        String createChangeStreamTable = "CREATE TABLE IF NOT EXISTS ChangeStream (" +
+                "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "tableName VARCHAR(32)," +
+                "rowKey VARCHAR(255)," +
+                "operation VARCHAR(8)," +
+                "changedAt INTEGER DEFAULT " +
+                "(CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)) );";
+        statements.add(createChangeStreamTable);
+        statements.addAll(getChangeStreamTriggers("PersonalDetails", "staffNo"));
+        //A review's status is set by the ReviewStatus triggers whenever it is inserted or
+        // signed, which would stream a second event for the same change, so only updates of
+        // the other columns are streamed. Older databases streamed every update.
+        dropOutdatedTrigger(statements, "AnnualReviewChangeStreamUpdate", "UPDATE OF");
+        dropOutdatedTrigger(statements, "AnnualReviewChangeStreamDelete", "AnnualReviewArchive");
+        statements.addAll(getChangeStreamTriggers("AnnualReview", "reviewID",
+                "reviewID", "staffNo", "name", "supervisor", "secondReviewer", "section",
+                "jobTitle", "recommendation", "performanceSummary", "reviewerComments",
+                "revieweeSigned", "supervisorSigned", "secondReviewerSigned"));
+
+        //Reviews completed long ago, moved out of the tables every open review query uses.
+        String createAnnualReviewArchiveTable = "CREATE TABLE IF NOT EXISTS AnnualReviewArchive (" +
+                "reviewID INTEGER PRIMARY KEY," +
+                "staffNo VARCHAR(255)," +
+                "name VARCHAR(255)," +
+                "supervisor VARCHAR(255)," +
+                "secondReviewer VARCHAR(255)," +
+                "section VARCHAR(255)," +
+                "jobTitle VARCHAR(255)," +
+                "recommendation VARCHAR(255)," +
+                "performanceSummary TEXT," +
+                "reviewerComments TEXT," +
+                "revieweeSigned DATE," +
+                "supervisorSigned DATE," +
+                "secondReviewerSigned DATE," +
+                "status VARCHAR(16) );";
+        String createAnnualReviewArchiveIndex = "CREATE INDEX IF NOT EXISTS " +
+                "AnnualReviewArchiveStaff ON AnnualReviewArchive (staffNo);";
+        String createPastPerformanceArchiveTable = "CREATE TABLE " +
+                "IF NOT EXISTS PastPerformanceArchive (" +
+                "reviewID INTEGER," +
+                "number INTEGER," +
+                "objective TEXT," +
+                "achievement TEXT," +
+                "PRIMARY KEY (reviewID, number) );";
+        String createFutureGoalsArchiveTable = "CREATE TABLE " +
+                "IF NOT EXISTS FutureGoalsArchive (" +
+                "reviewID INTEGER," +
+                "goalNo INTEGER," +
+                "content TEXT," +
+                "PRIMARY KEY (reviewID, goalNo) );";
+        statements.add(createAnnualReviewArchiveTable);
+        statements.add(createAnnualReviewArchiveIndex);
+        statements.add(createPastPerformanceArchiveTable);
+        statements.add(createFutureGoalsArchiveTable);
+
+        return statements;
+    }
+
+    @Override
+    public synchronized void addDummyUser(String username, String staffNo, String password,
+                             String roles) throws SQLException {
+        String empDetails = "INSERT INTO EmployeeDetails " +
+                "(staffNo, username, role) VALUES (?, ?, ?); ";
+        String authDetails = "INSERT INTO Authentication (username, password) VALUES (?, ?);";
+        String personalDetails = "INSERT INTO PersonalDetails VALUES (?,?,?,?,?,?,?,?,?,?,?);";
+        PreparedStatement empSql = conn.prepareStatement(empDetails);
+        empSql.setString(1, staffNo);
+        empSql.setString(2, username);
+        empSql.setString(3, roles);
+
+        PreparedStatement authSql = conn.prepareStatement(authDetails);
+        authSql.setString(1, username);
+        authSql.setString(2, password);
+
+        PreparedStatement perSql = conn.prepareStatement(personalDetails);
+        perSql.setString(1, staffNo);
+        for(int i = 0; i < 10; i++) {
+            StringBuilder dummyData = new StringBuilder();
+            for(int j = 0; j < 9; j++) {
+                char a = (char) (32 + Math.round(Math.random()*94));
+                dummyData.append(a);
+            }
+            perSql.setString(i+2, dummyData.toString());
+        }
+
+        empSql.execute();
+        authSql.execute();
+        perSql.execute();
+    }
+
+
+
+    @Override
+    public synchronized void removeDummyUser(String username, String staffNo) {
+        removeUser(username);
+        removeEmpDetails(staffNo);
+    }
+
+    @Override
+    public synchronized String getStaffNo(String username) {
+        //Checks to see if the input is already a staffNo
+        if (Character.isDigit(username.charAt(0))) {
+            return username;
+        }
+        String sql = "SELECT staffNo FROM EmployeeDetails WHERE username = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "getStaffNo", sql)){
+            pStatement.setString(1, username);
+            ResultSet rSet = pStatement.executeQuery();
+            if (pStatement.next(rSet)) {
+                return rSet.getString("staffNo");
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Gets the staff numbers of several users with one query per few hundred users.
+     * @param userIDs The usernames or staff numbers of the users.
+     * @return Each user's staff number, by the username or staff number given,
+     *  leaving out usernames which don't exist.
+     */
+    private Map<String, String> getStaffNos(Collection<String> userIDs) {
+        Map<String, String> staffNos = new HashMap<>();
+        List<String> usernames = new ArrayList<>();
+        for (String userID : userIDs) {
+            //Checks to see if the input is already a staffNo
+            if (Character.isDigit(userID.charAt(0))) {
+                staffNos.put(userID, userID);
+            } else if (!usernames.contains(userID)) {
+                usernames.add(userID);
+            }
+        }
+        for (int from = 0; from < usernames.size(); from += MAX_IN_PARAMETERS) {
+            List<String> chunk = usernames.subList(from,
+                    Math.min(usernames.size(), from + MAX_IN_PARAMETERS));
+            String sql = "SELECT username, staffNo FROM EmployeeDetails WHERE username IN (" +
+                    placeholders(chunk.size()) + ")";
+            try (StatementProbe pStatement = StatementProbe.prepare(conn, "getStaffNos", sql)){
+                for (int i = 0; i < chunk.size(); i++) {
+                    pStatement.setString(i + 1, chunk.get(i));
+                }
+                ResultSet rSet = pStatement.executeQuery();
+                while (pStatement.next(rSet)) {
+                    staffNos.put(rSet.getString("username"), rSet.getString("staffNo"));
+                }
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        return staffNos;
+    }
+
+    /**
+     * Builds the parameter list of an IN clause.
+     * @param count The number of parameters.
+     * @return That many question marks, separated by commas.
+     */
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    @Override
+    public synchronized String getSection(String staffNo) {
+        String sql = "SELECT section FROM EmployeeDetails WHERE staffNo = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "getSection", sql)){
+            pStatement.setString(1, staffNo);
+            ResultSet rSet = pStatement.executeQuery();
+            if (pStatement.next(rSet)) {
+                return rSet.getString("section");
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized String[] getAuthData(String username) {
+        String sql = "SELECT pass, permissions FROM Users WHERE uid = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "getAuthData", sql)){
+            pStatement.setString(1, username);
+            ResultSet rSet = pStatement.executeQuery();
+            if (pStatement.next(rSet)) {
+                return new String[] {rSet.getString("pass"), rSet.getString("permissions")};
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized PersonalDetails getPersonalDetails(String userID) {
+        String sql = "SELECT staffNo, surname, name, dob, address, town, postcode, telNo, mobNo, " +
+                "emergCont, contNo FROM PersonalDetails WHERE staffNo = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "getPersonalDetails", sql)){
+            pStatement.setString(1, getStaffNo(userID));
+            ResultSet rSet = pStatement.executeQuery();
+            if (pStatement.next(rSet)) {
+                return readPersonalDetails(rSet);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized Map<String, PersonalDetails> getPersonalDetails(
+            Collection<String> userIDs) {
+        Map<String, String> staffNos = getStaffNos(userIDs);
+        Map<String, PersonalDetails> byStaffNo = new HashMap<>();
+        List<String> wanted = new ArrayList<>(new HashSet<>(staffNos.values()));
+        for (int from = 0; from < wanted.size(); from += MAX_IN_PARAMETERS) {
+            List<String> chunk = wanted.subList(from,
+                    Math.min(wanted.size(), from + MAX_IN_PARAMETERS));
+            String sql = "SELECT staffNo, surname, name, dob, address, town, postcode, telNo, " +
+                    "mobNo, emergCont, contNo FROM PersonalDetails WHERE staffNo IN (" +
+                    placeholders(chunk.size()) + ")";
+            try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                    "getPersonalDetailsIn", sql)){
+                for (int i = 0; i < chunk.size(); i++) {
+                    pStatement.setString(i + 1, chunk.get(i));
+                }
+                ResultSet rSet = pStatement.executeQuery();
+                while (pStatement.next(rSet)) {
+                    PersonalDetails details = readPersonalDetails(rSet);
+                    byStaffNo.put(details.getField("Staff No"), details);
+                }
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        Map<String, PersonalDetails> result = new HashMap<>();
+        staffNos.forEach((userID, staffNo) -> {
+            if (byStaffNo.containsKey(staffNo)) {
+                result.put(userID, byStaffNo.get(staffNo));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Reads the personal details in the current row of a query on PersonalDetails.
+     * @param rSet The query's results, on the row to read.
+     * @return The personal details in that row.
+     * @throws SQLException If a column is missing.
+     */
+    private static PersonalDetails readPersonalDetails(ResultSet rSet) throws SQLException {
+        return new PersonalDetails(
+                rSet.getString("staffNo"),
+                rSet.getString("surname"),
+                rSet.getString("name"),
+                rSet.getString("dob"),
+                rSet.getString("address"),
+                rSet.getString("town"),
+                rSet.getString("postcode"),
+                rSet.getString("telNo"),
+                rSet.getString("mobNo"),
+                rSet.getString("emergCont"),
+                rSet.getString("contNo")
+        );
+    }
+
+    @Override
+    public synchronized void addPersonalDetails(PersonalDetails details) {
+        String sql = "INSERT INTO PersonalDetails VALUES (?,?,?,?,?,?,?,?,?,?,?)";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "addPersonalDetails", sql)) {
+            pStatement.setString(1, details.getField("Staff No"));
+            pStatement.setString(2, details.getField("Surname"));
+            pStatement.setString(3, details.getField("Name"));
+            pStatement.setString(4, details.getField("Date of Birth"));
+            pStatement.setString(5, details.getField("Address"));
+            pStatement.setString(6, details.getField("Town/City"));
+            pStatement.setString(7, details.getField("Post Code"));
+            pStatement.setString(8, details.getField("Telephone Number"));
+            pStatement.setString(9, details.getField("Mobile Number"));
+            pStatement.setString(10, details.getField("Emergency Contact"));
+            pStatement.setString(11, details.getField("Emergency Contact Number"));
+            pStatement.execute();
+            searchIndex.put(details.getField("Staff No"), details.getField("Surname"),
+                    details.getField("Post Code"));
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void updatePersonalDetails(PersonalDetails details) {
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "updatePersonalDetails",
+                    UPDATE_PERSONAL_DETAILS)) {
+            setPersonalDetails(pStatement, details);
+            if (pStatement.execute() > 0) {
+                searchIndex.put(details.getField("Staff No"), details.getField("Surname"),
+                        details.getField("Post Code"));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public int updateAllPersonalDetails(List<PersonalDetails> updates) throws SQLException {
+        //Runs on the write-behind flusher, so the batch's transaction uses its own connection.
+        Connection writer = backgroundConnection();
+        int updated = 0;
+        synchronized (writer) {
+            writer.setAutoCommit(false);
+            try (StatementProbe pStatement = StatementProbe.prepare(writer,
+                    "updateAllPersonalDetails", UPDATE_PERSONAL_DETAILS)) {
+                for (PersonalDetails details : updates) {
+                    setPersonalDetails(pStatement, details);
+                    pStatement.addBatch();
+                }
+                int[] counts = pStatement.executeBatch();
+                writer.commit();
+                for (int i = 0; i < counts.length; i++) {
+                    //The driver may not report the count, which still means success.
+                    if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                        PersonalDetails details = updates.get(i);
+                        searchIndex.put(details.getField("Staff No"),
+                                details.getField("Surname"), details.getField("Post Code"));
+                        updated++;
+                    }
+                }
+            } catch (SQLException e) {
+                writer.rollback();
+                throw e;
+            } finally {
+                writer.setAutoCommit(true);
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public void indexPersonalDetails(PersonalDetails details) {
+        searchIndex.replace(details.getField("Staff No"), details.getField("Surname"),
+                details.getField("Post Code"));
+    }
+
+    /**
+     * Sets the parameters of the UPDATE_PERSONAL_DETAILS statement.
+     * @param pStatement The statement.
+     * @param details The updated personal details file.
+     * @throws SQLException If the parameters could not be set.
+     */
+    private static void setPersonalDetails(StatementProbe pStatement, PersonalDetails details)
+            throws SQLException {
+        pStatement.setString(1, details.getField("Staff No"));
+        pStatement.setString(2, details.getField("Surname"));
+        pStatement.setString(3, details.getField("Name"));
+        pStatement.setString(4, details.getField("Date of Birth"));
+        pStatement.setString(5, details.getField("Address"));
+        pStatement.setString(6, details.getField("Town/City"));
+        pStatement.setString(7, details.getField("Post Code"));
+        pStatement.setString(8, details.getField("Telephone Number"));
+        pStatement.setString(9, details.getField("Mobile Number"));
+        pStatement.setString(10, details.getField("Emergency Contact"));
+        pStatement.setString(11, details.getField("Emergency Contact Number"));
+        pStatement.setString(12, details.getField("Staff No"));
+    }
+
+    @Override
+    public synchronized void removePersonalDetails(String staffNo) {
+        String sql = "DELETE FROM PersonalDetails WHERE staffNo = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "removePersonalDetails",
+                    sql)) {
+            pStatement.setString(1, staffNo);
+            pStatement.execute();
+            searchIndex.remove(staffNo);
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the surname and post code of every employee into the search index.
+     * @param source The connection to read through, which the calling thread must own.
+     */
+    private void loadSearchIndex(Connection source) {
+        try (Tracer.Span span = Tracer.span("SQLiteRepository.loadSearchIndex")) {
+            String sql = "SELECT staffNo, surname, postcode FROM PersonalDetails";
+            PersonalDetailsIndex index = new PersonalDetailsIndex();
+            try (StatementProbe pStatement = StatementProbe.prepare(source, "loadSearchIndex",
+                    sql)) {
+                ResultSet rSet = pStatement.executeQuery();
+                while (pStatement.next(rSet)) {
+                    index.put(rSet.getString("staffNo"), rSet.getString("surname"),
+                            rSet.getString("postcode"));
+                }
+                searchIndex = index;
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+            span.tag("employees", searchIndex.size());
+        }
+    }
+
+    /**
+     * Reloads one employee's surname and post code into the search index.
+     * @param source The connection to read through, which the calling thread must own.
+     * @param staffNo The staff number of the employee, who may have been removed.
+     */
+    private void reloadSearchIndex(Connection source, String staffNo) {
+        String sql = "SELECT surname, postcode FROM PersonalDetails WHERE staffNo = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(source, "reloadSearchIndex",
+                sql)) {
+            pStatement.setString(1, staffNo);
+            ResultSet rSet = pStatement.executeQuery();
+            if (pStatement.next(rSet)) {
+                searchIndex.put(staffNo, rSet.getString("surname"), rSet.getString("postcode"));
+            } else {
+                searchIndex.remove(staffNo);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public Map<String, String[]> searchPersonalDetails(String text, int limit) {
+        //Uses the in-memory search index, not the database.
+        Map<String, String[]> results = new LinkedHashMap<>();
+        PersonalDetailsIndex index = searchIndex;
+        for (String staffNo : index.search(text, limit)) {
+            String[] values = index.getValues(staffNo);
+            if (values != null) {
+                results.put(staffNo, values);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized void addUser(String username, String password) {
+        String sql = "INSERT INTO Authentication VALUES (?,?) " +
+                "ON CONFLICT DO UPDATE SET username = excluded.username, " +
+                "password = excluded.password";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "addUser", sql)) {
+            pStatement.setString(1, username);
+            pStatement.setString(2, password);
+            pStatement.execute();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void removeUser(String username) {
+        String sql = "DELETE FROM Authentication WHERE username = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "removeUser", sql)) {
+            pStatement.setString(1, username);
+            pStatement.execute();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Removes a user from the Employee Details table.
+     * @param staffNo The staff number of the user to remove.
+     */
+    private void removeEmpDetails(String staffNo) {
+        String sql = "DELETE FROM EmployeeDetails WHERE staffNo = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "removeEmpDetails", sql)) {
+            pStatement.setString(1, staffNo);
+            pStatement.execute();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void createAnnualReview(String username) {
+        String sql = "SELECT Emp.staffNo, Pers.name, Emp.supervisor, Emp.section, Emp.jobTitle " +
+                "FROM EmployeeDetails AS Emp JOIN PersonalDetails AS Pers " +
+                "ON Emp.staffNo = Pers.staffNo WHERE username = ?;";
+
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "createAnnualReview", sql)) {
+            pStatement.setString(1, username);
+            ResultSet rSet = pStatement.executeQuery();
+            if (pStatement.next(rSet)) {
+                AnnualReview review = new AnnualReview();
+                review.setField("Staff No", rSet.getString("staffNo"));
+                review.setField("Name", rSet.getString("name"));
+                review.setField("Supervisor", rSet.getString("supervisor"));
+                review.setField("Section", rSet.getString("section"));
+                review.setField("Job Title", rSet.getString("jobTitle"));
+                insertAnnualReview(review);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void insertAnnualReview(AnnualReview review) {
+        String reviewInsert = "INSERT INTO AnnualReview (staffNo, name, supervisor, " +
+                "secondReviewer, section, jobTitle, recommendation, performanceSummary, " +
+                "reviewerComments, revieweeSigned, supervisorSigned, secondReviewerSigned) " +
+                "VALUES (?,?,?,?,?,?,?,?,?,?,?,?);";
+        String pastPerfInsert = "INSERT INTO PastPerformance VALUES (?,?,?,?);";
+        String FutureGoalsInsert = "INSERT INTO FutureGoals VALUES (?,?,?);";
+
+        ArrayList<Date> signatures = review.getSignatures();
+        PerformanceReview pastReview = review.getPastPerformance();
+        PerformanceReview futureGoals = review.getFutureGoals();
+
+        try ( StatementProbe rInsert = StatementProbe.prepare(conn,
+                      "insertAnnualReview.review", reviewInsert);
+              StatementProbe ppInsert = StatementProbe.prepare(conn,
+                      "insertAnnualReview.pastPerformance", pastPerfInsert);
+              StatementProbe fgInsert = StatementProbe.prepare(conn,
+                      "insertAnnualReview.futureGoals", FutureGoalsInsert)){
+            rInsert.setString(1, review.getField("Staff No"));
+            rInsert.setString(2, review.getField("Name"));
+            rInsert.setString(3, review.getField("Supervisor"));
+            rInsert.setString(4, review.getField("Second Reviewer"));
+            rInsert.setString(5, review.getField("Section"));
+            rInsert.setString(6, review.getField("Job Title"));
+            rInsert.setString(7, review.getField("Recommendation"));
+            if (pastReview == null) {
+                rInsert.setNull(8, Types.VARCHAR);
+            } else {
+                rInsert.setString(8, pastReview.getSummary());
+            }
+            if (futureGoals == null) {
+                rInsert.setNull(9, Types.VARCHAR);
+            } else {
+                rInsert.setString(9, futureGoals.getSummary());
+            }
+            for (int i = 0; i < 3; i++) {
+                if (signatures.get(i) == null) {
+                    rInsert.setNull(i+10, Types.DATE);
+                } else {
+                    rInsert.setDate(i+10, signatures.get(i));
+                }
+            }
+            rInsert.execute();
+
+            if (review.getReviewID() != null) {
+                ppInsert.setInt(1, review.getReviewID());
+                //Loop to insert all past performance.
+                List<String> objectives = objectivesOf(pastReview);
+                for (int i = 0; i < objectives.size(); i++) {
+                    ppInsert.setInt(2, i);
+                    ppInsert.setString(3, objectives.get(i));
+                    ppInsert.setString(4, pastReview.getResult(objectives.get(i)));
+
+                    ppInsert.execute();
+                }
+
+                fgInsert.setInt(1, review.getReviewID());
+                //Loop to insert all future goals.
+                ArrayList<String> goals =
+                        futureGoals == null ? new ArrayList<>() : futureGoals.getGoals();
+                for (int i = 0; i < goals.size(); i++) {
+                    fgInsert.setInt(2, i);
+                    fgInsert.setString(3, goals.get(i));
+
+                    fgInsert.execute();
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void reserveReviewIDs(int first) throws SQLException {
+        //AUTOINCREMENT carries on from the highest ID recorded in sqlite_sequence.
+        try (StatementProbe update = StatementProbe.prepare(conn, "reserveReviewIDs",
+                "UPDATE sqlite_sequence SET seq = max(seq, ?) WHERE name = 'AnnualReview'")) {
+            update.setInt(1, first - 1);
+            if (update.execute() == 0) {
+                try (StatementProbe insert = StatementProbe.prepare(conn, "reserveReviewIDs.insert",
+                        "INSERT INTO sqlite_sequence (name, seq) VALUES ('AnnualReview', ?)")) {
+                    insert.setInt(1, first - 1);
+                    insert.execute();
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void updateAnnualReview(AnnualReview updatedReview) {
+        //Update Annual Review table, then update adjacent tables.
+        String reviewUpdate = "UPDATE AnnualReview SET " +
+                "staffNo = ?," +
+                "name = ?," +
+                "supervisor = ?," +
+                "secondReviewer = ?," +
+                "section = ?," +
+                "jobTitle = ?," +
+                "recommendation = ?," +
+                "performanceSummary = ?," +
+                "reviewerComments = ?," +
+                "revieweeSigned = ?," +
+                "supervisorSigned = ?," +
+                "secondReviewerSigned = ? " +
+                "WHERE reviewID = ?;";
+        //SQLite before 3.24 has no upsert, so existing rows are replaced instead.
+        String pastPerfUpdate = "INSERT OR REPLACE INTO PastPerformance VALUES(?,?,?,?)";/* ON CONFLICT(reviewID, number) DO " +
+                "UPDATE SET reviewID = excluded.reviewID," +
+                "number = excluded.number," +
+                "objective = excluded.objective," +
+                "achievement = excluded.achievement;";*/
+        String FutureGoalsUpdate = "INSERT OR REPLACE INTO FutureGoals VALUES(?,?,?)";/* ON CONFLICT(reviewID, number) DO " +
+                "UPDATE SET reviewID = excluded.reviewID," +
+                "number = excluded.number," +
+                "content = excluded.content;";*/
+
+        ArrayList<Date> signatures = updatedReview.getSignatures();
+        PerformanceReview pastReview = updatedReview.getPastPerformance();
+        PerformanceReview futureGoals = updatedReview.getFutureGoals();
+
+        try ( StatementProbe rUpdate = StatementProbe.prepare(conn,
+                        "updateAnnualReview.review", reviewUpdate);
+                StatementProbe ppUpdate = StatementProbe.prepare(conn,
+                        "updateAnnualReview.pastPerformance", pastPerfUpdate);
+                StatementProbe fgUpdate = StatementProbe.prepare(conn,
+                        "updateAnnualReview.futureGoals", FutureGoalsUpdate)){
+            rUpdate.setString(1, updatedReview.getField("Staff No"));
+            rUpdate.setString(2, updatedReview.getField("Name"));
+            rUpdate.setString(3, updatedReview.getField("Supervisor"));
+            rUpdate.setString(4, updatedReview.getField("Second Reviewer"));
+            rUpdate.setString(5, updatedReview.getField("Section"));
+            rUpdate.setString(6, updatedReview.getField("Job Title"));
+            rUpdate.setString(7, updatedReview.getField("Recommendation"));
+            if (pastReview == null) {
+                rUpdate.setNull(8, Types.VARCHAR);
+            } else {
+                rUpdate.setString(8, pastReview.getSummary());
+            }
+            if (futureGoals == null) {
+                rUpdate.setNull(9, Types.VARCHAR);
+            } else {
+                rUpdate.setString(9, futureGoals.getSummary());
+            }
+            for (int i = 0; i < 3; i++) {
+                if (signatures.get(i) == null) {
+                    rUpdate.setNull(i+10, Types.DATE);
+                } else {
+                    rUpdate.setDate(i+10, signatures.get(i));
+                }
+            }
+            rUpdate.setInt(13, updatedReview.getReviewID());
+            rUpdate.execute();
+
+            ppUpdate.setInt(1, updatedReview.getReviewID());
+            //Loop to update all past performance.
+            List<String> objectives = objectivesOf(pastReview);
+            for (int i = 0; i < objectives.size(); i++) {
+                ppUpdate.setInt(2, i);
+                ppUpdate.setString(3, objectives.get(i));
+                ppUpdate.setString(4, pastReview.getResult(objectives.get(i)));
+
+                ppUpdate.execute();
+            }
+
+            fgUpdate.setInt(1, updatedReview.getReviewID());
+            //Loop to update all future goals.
+            ArrayList<String> goals =
+                    futureGoals == null ? new ArrayList<>() : futureGoals.getGoals();
+            for (int i = 0; i < goals.size(); i++) {
+                fgUpdate.setInt(2, i);
+                fgUpdate.setString(3, goals.get(i));
+
+                fgUpdate.execute();
+            }
+
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Lists the objectives of a review of past performance, in order.
+     * @param pastReview The review of past performance, or null if there isn't one.
+     * @return The objectives, which past performance keeps with their achievements.
+     */
+    private static List<String> objectivesOf(PerformanceReview pastReview) {
+        if (pastReview == null || pastReview.getAchievements() == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(pastReview.getAchievements().keySet());
+    }
+
+    @Override
+    public synchronized void deleteAnnualReview(Integer reviewID) {
+        //The review's objectives and goals go with it, taking their search entries with them.
+        for (String table : new String[] {"PastPerformance", "FutureGoals", "AnnualReview"}) {
+            String sql = "DELETE FROM " + table + " WHERE reviewID = ?;";
+            try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                    "deleteAnnualReview." + table, sql)) {
+                pStatement.setInt(1, reviewID);
+                pStatement.execute();
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized AnnualReview getAnnualReview(Integer reviewID) {
+        return getAnnualReview(reviewID, "");
+    }
+
+    /**
+     * Gets an annual review from the current or archived reviews.
+     * @param reviewID The ID of the review.
+     * @param tableSuffix "" for the current reviews, or "Archive" for the archived ones.
+     * @return The review, or null if it isn't there.
+     */
+    private AnnualReview getAnnualReview(Integer reviewID, String tableSuffix) {
+        String sql = "SELECT reviewID, staffNo, name, supervisor, secondReviewer, section, " +
+                "jobTitle, recommendation, performanceSummary, reviewerComments, revieweeSigned, " +
+                "supervisorSigned, secondReviewerSigned FROM AnnualReview" + tableSuffix +
+                " WHERE reviewID = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                    "getAnnualReview" + tableSuffix, sql)){
+            pStatement.setInt(1, reviewID);
+            ResultSet rSet = pStatement.executeQuery();
+            if (pStatement.next(rSet)) {
+                //Add past performance and future goals related to this review.
+                return findAndSetFutureGoals(findAndSetPastPerformance(readAnnualReview(rSet),
+                        tableSuffix), tableSuffix);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Reads the annual review in the current row of a query on AnnualReview, without its
+     *  past performance and future goals.
+     * @param rSet The query's results, on the row to read.
+     * @return The annual review in that row.
+     * @throws SQLException If a column is missing.
+     */
+    private static AnnualReview readAnnualReview(ResultSet rSet) throws SQLException {
+        //Reviews store the recommendation's description, not its name.
+        Recommendation recommended = Recommendation.fromStored(rSet.getString("recommendation"));
+        return new AnnualReview(
+                rSet.getInt("reviewID"),
+                rSet.getString("staffNo"),
+                rSet.getString("name"),
+                rSet.getString("supervisor"),
+                rSet.getString("secondReviewer"),
+                rSet.getString("section"),
+                rSet.getString("jobTitle"),
+                recommended,
+                rSet.getDate("revieweeSigned"),
+                rSet.getDate("supervisorSigned"),
+                rSet.getDate("secondReviewerSigned"),
+                null,
+                null
+        );
+    }
+
+    @Override
+    public synchronized List<AnnualReview> getPastReviews(String username) {
+        return getPastReviews(username, false);
+    }
+
+    @Override
+    public synchronized List<AnnualReview> getPastReviews(String username,
+                                                       boolean includeArchived) {
+        String staffNo = getStaffNo(username);
+        List<AnnualReview> results = new ArrayList<>();
+        String sql = "SELECT reviewID, '' AS tableSuffix FROM AnnualReview WHERE " +
+                "status = 'complete' AND staffNo = ?";
+        if (includeArchived) {
+            sql += " UNION ALL SELECT reviewID, 'Archive' FROM AnnualReviewArchive " +
+                    "WHERE staffNo = ? ORDER BY reviewID";
+        }
+
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                    includeArchived ? "getPastReviewsWithArchive" : "getPastReviews", sql)){
+            pStatement.setString(1, staffNo);
+            if (includeArchived) {
+                pStatement.setString(2, staffNo);
+            }
+            ResultSet rSet = pStatement.executeQuery();
+
+            while (pStatement.next(rSet)) {
+                //Get each record corresponding to a returned recordID,
+                //Add each found record to the list of returned records.
+                results.add(getAnnualReview(rSet.getInt("reviewID"),
+                        rSet.getString("tableSuffix")));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+
+        return results;
+    }
+
+    @Override
+    public int archiveReviews(Date completedBefore, int batchSize) throws SQLException {
+        String columns = "reviewID, staffNo, name, supervisor, secondReviewer, section, " +
+                "jobTitle, recommendation, performanceSummary, reviewerComments, revieweeSigned, " +
+                "supervisorSigned, secondReviewerSigned, status";
+        String batch = " WHERE reviewID IN (SELECT reviewID FROM temp.ArchiveBatch)";
+        //Runs on the archiver's thread, so each batch's transaction uses its own connection.
+        Connection writer = backgroundConnection();
+        try (Tracer.Span span = Tracer.span("SQLiteRepository.archiveReviews")) {
+            synchronized (writer) {
+                writer.setAutoCommit(false);
+                try (Statement statement = writer.createStatement()) {
+                    statement.execute("CREATE TEMP TABLE IF NOT EXISTS ArchiveBatch " +
+                            "(reviewID INTEGER PRIMARY KEY)");
+                    statement.execute("DELETE FROM temp.ArchiveBatch");
+                    //A review is completed when its last signature is made.
+                    String select = "INSERT INTO temp.ArchiveBatch SELECT reviewID " +
+                            "FROM AnnualReview WHERE status = 'complete' AND " +
+                            "max(revieweeSigned, supervisorSigned, secondReviewerSigned) < ? " +
+                            "ORDER BY reviewID LIMIT ?";
+                    int archived;
+                    try (StatementProbe pStatement = StatementProbe.prepare(writer,
+                            "selectArchiveBatch", select)) {
+                        pStatement.setDate(1, completedBefore);
+                        pStatement.setInt(2, batchSize);
+                        archived = pStatement.execute();
+                    }
+                    if (archived > 0) {
+                        //Each review is copied before it is deleted, which tells the delete
+                        // triggers it is being archived.
+                        statement.execute("INSERT INTO AnnualReviewArchive (" + columns + ") " +
+                                "SELECT " + columns + " FROM AnnualReview" + batch);
+                        statement.execute("INSERT INTO PastPerformanceArchive " +
+                                "SELECT reviewID, number, objective, achievement " +
+                                "FROM PastPerformance" + batch);
+                        statement.execute("INSERT INTO FutureGoalsArchive " +
+                                "SELECT reviewID, goalNo, content FROM FutureGoals" + batch);
+                        statement.execute("DELETE FROM PastPerformance" + batch);
+                        statement.execute("DELETE FROM FutureGoals" + batch);
+                        statement.execute("DELETE FROM AnnualReview" + batch);
+                    }
+                    writer.commit();
+                    span.tag("reviews", archived);
+                    return archived;
+                } catch (SQLException e) {
+                    writer.rollback();
+                    throw e;
+                } finally {
+                    writer.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized List<AnnualReview> getReviews(String username) {
+        String staffNo = getStaffNo(username);
+        List<AnnualReview> results = new ArrayList<>();
+        String sql = "SELECT reviewID FROM AnnualReview WHERE staffNo = ?;";
+
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "getReviews", sql)){
+            pStatement.setString(1, staffNo);
+            ResultSet rSet = pStatement.executeQuery();
+
+            while (pStatement.next(rSet)) {
+                //Get each record corresponding to a returned recordID,
+                //Add each found record to the list of returned records.
+                results.add(getAnnualReview(rSet.getInt("reviewID")));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+
+        return results;
+    }
+
+    /**
+     * Finds past performance records related to the specified annual review.
+     * Adds those records to the review, and returns the amended review.
+     * Note: The summary of the past performance needs to be set separately (initialised to "").
+     * @param review The annual review to find past performance records for.
+     * @param tableSuffix "" for the current reviews, or "Archive" for the archived ones.
+     * @return The amended review.
+     */
+    private AnnualReview findAndSetPastPerformance(AnnualReview review, String tableSuffix) {
+        Integer reviewID = review.getReviewID();
+        LinkedHashMap<String, String> pastPerf = new LinkedHashMap<>();
+        String sql = "SELECT * FROM PastPerformance" + tableSuffix +
+                " WHERE reviewID = ? ORDER BY number ASC;";
+
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                    "findAndSetPastPerformance" + tableSuffix, sql)){
+            pStatement.setInt(1, reviewID);
+            ResultSet rSet = pStatement.executeQuery();
+
+            while (pStatement.next(rSet)) {
+                pastPerf.put(rSet.getString("objective"), rSet.getString("achievement"));
+            }
+
+            review.setPastPerformance(new PerformanceReview(pastPerf, ""));
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return review;
+    }
+
+    /**
+     * Finds future goal records related to the specified annual review.
+     * Adds those records to the review, and returns the amended review.
+     * Note: The comments on the future goals need to be set separately (initialised to "").
+     * @param review The annual review to find past performance records for.
+     * @param tableSuffix "" for the current reviews, or "Archive" for the archived ones.
+     * @return The amended review.
+     */
+    private AnnualReview findAndSetFutureGoals(AnnualReview review, String tableSuffix) {
+        Integer reviewID = review.getReviewID();
+        ArrayList<String> goals = new ArrayList<>();
+        String sql = "SELECT * FROM FutureGoals" + tableSuffix +
+                " WHERE reviewID = ? ORDER BY goalNo ASC;";
+
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                    "findAndSetFutureGoals" + tableSuffix, sql)){
+            pStatement.setInt(1, reviewID);
+            ResultSet rSet = pStatement.executeQuery();
+
+            while (pStatement.next(rSet)) {
+                goals.add(rSet.getString("content"));
+            }
+
+            review.setFutureGoals(new PerformanceReview(false, goals, ""));
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return review;
+    }
+
+    @Override
+    public synchronized AnnualReview getUnfinishedReview(String username) {
+        String staffNo = getStaffNo(username);
+        String currentReviewQuery = "SELECT reviewID FROM AnnualReview WHERE " +
+                OPEN_REVIEW + " AND staffNo = ?";
+
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "getUnfinishedReview",
+                    currentReviewQuery)){
+            pStatement.setString(1, staffNo);
+            ResultSet rSet = pStatement.executeQuery();
+            if (pStatement.next(rSet)) {
+                return getAnnualReview(rSet.getInt("reviewID"));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized Map<String, AnnualReview> getUnfinishedReviews(
+            Collection<String> userIDs) {
+        Map<String, String> staffNos = getStaffNos(userIDs);
+        Map<String, AnnualReview> byStaffNo = new HashMap<>();
+        List<String> wanted = new ArrayList<>(new HashSet<>(staffNos.values()));
+        for (int from = 0; from < wanted.size(); from += MAX_IN_PARAMETERS) {
+            List<String> chunk = wanted.subList(from,
+                    Math.min(wanted.size(), from + MAX_IN_PARAMETERS));
+            String sql = "SELECT reviewID, staffNo, name, supervisor, secondReviewer, section, " +
+                    "jobTitle, recommendation, performanceSummary, reviewerComments, " +
+                    "revieweeSigned, supervisorSigned, secondReviewerSigned FROM AnnualReview " +
+                    "WHERE " + OPEN_REVIEW + " AND staffNo IN (" + placeholders(chunk.size()) + ")";
+            Map<Integer, AnnualReview> byReviewID = new HashMap<>();
+            try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                    "getUnfinishedReviews", sql)){
+                for (int i = 0; i < chunk.size(); i++) {
+                    pStatement.setString(i + 1, chunk.get(i));
+                }
+                ResultSet rSet = pStatement.executeQuery();
+                while (pStatement.next(rSet)) {
+                    AnnualReview review = readAnnualReview(rSet);
+                    byReviewID.put(review.getReviewID(), review);
+                    byStaffNo.put(review.getField("Staff No"), review);
+                }
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+            findAndSetPerformance(byReviewID);
+        }
+        Map<String, AnnualReview> result = new HashMap<>();
+        staffNos.forEach((userID, staffNo) -> {
+            if (byStaffNo.containsKey(staffNo)) {
+                result.put(userID, byStaffNo.get(staffNo));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Finds the past performance and future goals of several current reviews at once,
+     *  and adds them to the reviews.
+     * @param reviews The reviews, by reviewID. At most MAX_IN_PARAMETERS of them.
+     */
+    private void findAndSetPerformance(Map<Integer, AnnualReview> reviews) {
+        if (reviews.isEmpty()) {
+            return;
+        }
+        Map<Integer, LinkedHashMap<String, String>> pastPerf = new HashMap<>();
+        Map<Integer, ArrayList<String>> goals = new HashMap<>();
+        for (Integer reviewID : reviews.keySet()) {
+            pastPerf.put(reviewID, new LinkedHashMap<>());
+            goals.put(reviewID, new ArrayList<>());
+        }
+        String in = " WHERE reviewID IN (" + placeholders(reviews.size()) + ")";
+        try (StatementProbe pastStatement = StatementProbe.prepare(conn, "findPastPerformanceIn",
+                    "SELECT reviewID, objective, achievement FROM PastPerformance" + in +
+                    " ORDER BY reviewID, number ASC");
+             StatementProbe goalStatement = StatementProbe.prepare(conn, "findFutureGoalsIn",
+                    "SELECT reviewID, content FROM FutureGoals" + in +
+                    " ORDER BY reviewID, goalNo ASC")){
+            int parameter = 1;
+            for (Integer reviewID : reviews.keySet()) {
+                pastStatement.setInt(parameter, reviewID);
+                goalStatement.setInt(parameter, reviewID);
+                parameter++;
+            }
+            ResultSet rSet = pastStatement.executeQuery();
+            while (pastStatement.next(rSet)) {
+                pastPerf.get(rSet.getInt("reviewID"))
+                        .put(rSet.getString("objective"), rSet.getString("achievement"));
+            }
+            rSet = goalStatement.executeQuery();
+            while (goalStatement.next(rSet)) {
+                goals.get(rSet.getInt("reviewID")).add(rSet.getString("content"));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        reviews.forEach((reviewID, review) -> {
+            review.setPastPerformance(new PerformanceReview(pastPerf.get(reviewID), ""));
+            review.setFutureGoals(new PerformanceReview(false, goals.get(reviewID), ""));
+        });
+    }
+
+    @Override
+    public synchronized List<Map<String, String>> reviewsWithoutASecondReviewer() {
+        String sql = "SELECT staffNo, name, section FROM AnnualReview WHERE secondReviewer IS NULL";
+        List<Map<String, String>> result = new ArrayList<>();
+
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "reviewsWithoutASecondReviewer", sql)){
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                Map<String, String> row = new HashMap<>();
+                row.put("staffNo", rSet.getString("staffNo"));
+                row.put("name", rSet.getString("name"));
+                row.put("section", rSet.getString("section"));
+                result.add(row);
+            }
+            return result;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized Map<Integer, String> getReviewsNeedingSecondReviewer() {
+        String sql = "SELECT reviewID, staffNo FROM AnnualReview " +
+                "WHERE secondReviewer IS NULL AND " + OPEN_REVIEW + " ORDER BY reviewID";
+        Map<Integer, String> reviews = new LinkedHashMap<>();
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "getReviewsNeedingSecondReviewer", sql)) {
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                reviews.put(rSet.getInt("reviewID"), rSet.getString("staffNo"));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return reviews;
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getReviewerLoads() {
+        String sql = "SELECT Emp.staffNo, COUNT(Load.reviewer) AS load " +
+                "FROM EmployeeDetails AS Emp LEFT JOIN (" +
+                "SELECT supervisor AS reviewer FROM AnnualReview WHERE " + OPEN_REVIEW +
+                " UNION ALL " +
+                "SELECT secondReviewer FROM AnnualReview WHERE " + OPEN_REVIEW +
+                ") AS Load ON Load.reviewer = Emp.staffNo " +
+                "WHERE Emp.role LIKE ? GROUP BY Emp.staffNo";
+        Map<String, Integer> loads = new HashMap<>();
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "getReviewerLoads", sql)) {
+            //Roles are stored as a string of role ordinals.
+            pStatement.setString(1, "%" + Role.REVIEWER.ordinal() + "%");
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                loads.put(rSet.getString("staffNo"), rSet.getInt("load"));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return loads;
+    }
+
+    @Override
+    public synchronized Map<String, Set<String>> getRevieweeSupervisorChains() {
+        String sql = "SELECT descendant AS reviewee, ancestor AS supervisor " +
+                "FROM SupervisorChain WHERE depth > 0 AND descendant IN (" +
+                "SELECT staffNo FROM AnnualReview " +
+                "WHERE secondReviewer IS NULL AND " + OPEN_REVIEW + ") " +
+                "UNION SELECT staffNo, supervisor FROM AnnualReview " +
+                "WHERE supervisor IS NOT NULL AND secondReviewer IS NULL AND " + OPEN_REVIEW;
+        Map<String, Set<String>> chains = new HashMap<>();
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "getRevieweeSupervisorChains", sql)) {
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                chains.computeIfAbsent(rSet.getString("reviewee"), (k) -> new HashSet<>())
+                        .add(rSet.getString("supervisor"));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return chains;
+    }
+
+    @Override
+    public synchronized int assignSecondReviewers(Map<Integer, String> assignments) {
+        String sql = "UPDATE AnnualReview SET secondReviewer = ? " +
+                "WHERE reviewID = ? AND secondReviewer IS NULL";
+        int assigned = 0;
+        try {
+            conn.setAutoCommit(false);
+            try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                    "assignSecondReviewers", sql)) {
+                for (Map.Entry<Integer, String> assignment : assignments.entrySet()) {
+                    pStatement.setString(1, assignment.getValue());
+                    pStatement.setInt(2, assignment.getKey());
+                    pStatement.addBatch();
+                }
+                for (int count : pStatement.executeBatch()) {
+                    assigned += Math.max(count, 0);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                assigned = 0;
+                System.out.println(e.getMessage());
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return assigned;
+    }
+
+    @Override
+    public synchronized List<String> listReviewees(String username) {
+        //Written as a union so each half can search its own partial index.
+        String sql = "SELECT staffNo FROM AnnualReview WHERE " + OPEN_REVIEW +
+                " AND supervisor = ? UNION SELECT staffNo FROM AnnualReview WHERE " +
+                OPEN_REVIEW + " AND secondReviewer = ?;";
+        List<String> reviewees = new ArrayList<>();
+        String staffNo = getStaffNo(username);
+
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "listReviewees", sql)){
+            pStatement.setString(1, staffNo);
+            pStatement.setString(2, staffNo);
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                reviewees.add(rSet.getString("staffNo"));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+
+        return reviewees;
+    }
+
+    @Override
+    public synchronized boolean isReviewing(String username, String targetUsername) {
+        List<String> reviewees = listReviewees(username);
+        return reviewees.contains(getStaffNo(targetUsername));
+    }
+
+    /**
+     * Returns the triggers which keep the ReviewSearch index in step with a table.
+     * An update removes the row's old values from the index and adds its new ones. A delete
+     *  removes them, unless the review is being archived, as archived reviews stay searchable.
+     * @param table The table holding the text.
+     * @param itemColumn The column numbering the rows of a review, or null if there is one row.
+     * @param fields The columns of free text to index.
+     * @return The SQLite statements creating the insert, update and delete triggers.
+     */
+    private static List<String> getSearchTriggers(String table, String itemColumn,
+                                                   String... fields) {
+        String newItem = itemColumn == null ? "0" : "NEW." + itemColumn;
+        String oldItem = itemColumn == null ? "0" : "OLD." + itemColumn;
+        StringBuilder insert = new StringBuilder();
+        StringBuilder fieldList = new StringBuilder();
+        for (String field : fields) {
+            insert.append("INSERT INTO ReviewSearchRows (reviewID, field, itemNo) VALUES ")
+                    .append("(NEW.reviewID, '").append(field).append("', ").append(newItem)
+                    .append("); INSERT INTO ReviewSearch (rowid, content) ")
+                    .append("VALUES (last_insert_rowid(), NEW.").append(field).append("); ");
+            fieldList.append(fieldList.length() == 0 ? "'" : ", '").append(field).append("'");
+        }
+        String oldRows = "FROM ReviewSearchRows WHERE reviewID = OLD.reviewID AND itemNo = " +
+                oldItem + " AND field IN (" + fieldList + ")";
+        String remove = "DELETE FROM ReviewSearch WHERE rowid IN (SELECT id " + oldRows + "); " +
+                "DELETE " + oldRows + "; ";
+        //INSERT OR REPLACE deletes the row it replaces without firing the delete trigger,
+        // so any entries for the new row are removed before its values are added.
+        String add = remove.replace("OLD.", "NEW.") + insert;
+        String updatedColumns = String.join(", ", fields) + ", reviewID" +
+                (itemColumn == null ? "" : ", " + itemColumn);
+
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE TRIGGER IF NOT EXISTS " + table + "SearchInsert " +
+                "AFTER INSERT ON " + table + " FOR EACH ROW BEGIN " + add + "END;");
+        statements.add("CREATE TRIGGER IF NOT EXISTS " + table + "SearchUpdate " +
+                "AFTER UPDATE OF " + updatedColumns + " ON " + table + " FOR EACH ROW BEGIN " +
+                remove + add + "END;");
+        statements.add("CREATE TRIGGER IF NOT EXISTS " + table + "SearchDelete " +
+                "AFTER DELETE ON " + table + " FOR EACH ROW WHEN NOT " + ARCHIVING + " BEGIN " +
+                remove + "END;");
+        return statements;
+    }
+
+    /**
+     * Returns the triggers which record each row of a table that is changed in the ChangeLog.
+     * An update which changes the row's key records both the old and the new key.
+     * @param table The table to record the changes of.
+     * @param keyColumn The primary key column of the table.
+     * @return The SQLite statements creating the insert, update and delete triggers.
+     */
+    private static List<String> getChangeLogTriggers(String table, String keyColumn) {
+        String record = "INSERT INTO ChangeLog (tableName, rowKey) ";
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE TRIGGER IF NOT EXISTS " + table + "ChangeLogInsert " +
+                "AFTER INSERT ON " + table + " FOR EACH ROW BEGIN " +
+                record + "VALUES ('" + table + "', NEW." + keyColumn + "); END;");
+        statements.add("CREATE TRIGGER IF NOT EXISTS " + table + "ChangeLogUpdate " +
+                "AFTER UPDATE ON " + table + " FOR EACH ROW BEGIN " +
+                record + "SELECT '" + table + "', OLD." + keyColumn + " " +
+                "UNION SELECT '" + table + "', NEW." + keyColumn + "; END;");
+        statements.add("CREATE TRIGGER IF NOT EXISTS " + table + "ChangeLogDelete " +
+                "AFTER DELETE ON " + table + " FOR EACH ROW BEGIN " +
+                record + "VALUES ('" + table + "', OLD." + keyColumn + "); END;");
+        return statements;
+    }
+
+    /**
+     * Returns the triggers which append each change to a row of a table to the ChangeStream.
+     * An update which changes the row's key is streamed as a delete and an insert, and a
+     *  review deleted as it is moved into the archive is streamed as an archive.
+     * @param table The table to stream the changes of.
+     * @param keyColumn The primary key column of the table.
+     * @param updatedColumns The columns whose updates are streamed, or none to stream every
+     *                       update.
+     * @return The SQLite statements creating the insert, update and delete triggers.
+     */
+    private static List<String> getChangeStreamTriggers(String table, String keyColumn,
+                                                        String... updatedColumns) {
+        String append = "INSERT INTO ChangeStream (tableName, rowKey, operation) ";
+        String oldKey = "OLD." + keyColumn;
+        String newKey = "NEW." + keyColumn;
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE TRIGGER IF NOT EXISTS " + table + "ChangeStreamInsert " +
+                "AFTER INSERT ON " + table + " FOR EACH ROW BEGIN " +
+                append + "VALUES ('" + table + "', " + newKey + ", 'insert'); END;");
+        String updateOf = updatedColumns.length == 0 ? ""
+                : " OF " + String.join(", ", updatedColumns);
+        //Moving a review into the archive isn't deleting it, so it is streamed as an archive.
+        String deleted = "AnnualReview".equals(table)
+                ? "CASE WHEN " + ARCHIVING + " THEN 'archive' ELSE 'delete' END" : "'delete'";
+        statements.add("CREATE TRIGGER IF NOT EXISTS " + table + "ChangeStreamUpdate " +
+                "AFTER UPDATE" + updateOf + " ON " + table + " FOR EACH ROW BEGIN " +
+                append + "SELECT '" + table + "', " + oldKey + ", 'delete' " +
+                "WHERE " + oldKey + " IS NOT " + newKey + "; " +
+                append + "VALUES ('" + table + "', " + newKey + ", CASE WHEN " + oldKey +
+                " IS " + newKey + " THEN 'update' ELSE 'insert' END); END;");
+        statements.add("CREATE TRIGGER IF NOT EXISTS " + table + "ChangeStreamDelete " +
+                "AFTER DELETE ON " + table + " FOR EACH ROW BEGIN " +
+                append + "VALUES ('" + table + "', " + oldKey + ", " + deleted + "); END;");
+        return statements;
+    }
+
+    /**
+     * Checks whether this SQLite build includes the FTS5 full-text search extension.
+     * @return Whether FTS5 is available.
+     * @throws SQLException If the compile options could not be read.
+     */
+    private boolean hasFts5() throws SQLException {
+        try (ResultSet rSet = conn.createStatement()
+                .executeQuery("SELECT sqlite_compileoption_used('ENABLE_FTS5')")) {
+            return rSet.next() && rSet.getInt(1) == 1;
+        }
+    }
+
+    /**
+     * Checks whether the database has a table with the given name.
+     * @param table The name of the table.
+     * @return Whether the table exists.
+     * @throws SQLException If the schema could not be read.
+     */
+    private boolean hasTable(String table) throws SQLException {
+        try (PreparedStatement pStatement = conn.prepareStatement(
+                "SELECT 1 FROM sqlite_master WHERE name = ?")) {
+            pStatement.setString(1, table);
+            return pStatement.executeQuery().next();
+        }
+    }
+
+    /**
+     * Drops a trigger made by an older version, so that it is created again from its current
+     *  definition.
+     * @param statements The upgrade statements to add the drop to.
+     * @param trigger The name of the trigger.
+     * @param marker Text which is only in the trigger's current definition.
+     * @return Whether the trigger was outdated.
+     * @throws SQLException If the schema could not be read.
+     */
+    private boolean dropOutdatedTrigger(List<String> statements, String trigger, String marker)
+            throws SQLException {
+        String definition = getDefinition(trigger);
+        if (definition != null && !definition.contains(marker)) {
+            statements.add("DROP TRIGGER " + trigger + ";");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the SQL which created a table, index or trigger.
+     * @param name The name of the table, index or trigger.
+     * @return Its definition, or null if there is none with that name.
+     * @throws SQLException If the schema could not be read.
+     */
+    private String getDefinition(String name) throws SQLException {
+        try (PreparedStatement pStatement = conn.prepareStatement(
+                "SELECT sql FROM sqlite_master WHERE name = ?")) {
+            pStatement.setString(1, name);
+            ResultSet rSet = pStatement.executeQuery();
+            return rSet.next() ? rSet.getString(1) : null;
+        }
+    }
+
+    /**
+     * Checks whether a table has the given column.
+     * @param table The name of the table.
+     * @param column The name of the column.
+     * @return Whether the column exists.
+     * @throws SQLException If the table's columns could not be read.
+     */
+    private boolean hasColumn(String table, String column) throws SQLException {
+        try (ResultSet rSet = conn.createStatement()
+                .executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rSet.next()) {
+                if (column.equalsIgnoreCase(rSet.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized Map<String, Map<String, Integer>> getReviewStatusCounts() {
+        //Read from the counters kept up to date by the database's triggers.
+        String sql = "SELECT section, status, count FROM ReviewStatusCounts " +
+                "ORDER BY section, status";
+        Map<String, Map<String, Integer>> counts = new TreeMap<>();
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "getReviewStatusCounts", sql)) {
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                Map<String, Integer> section = counts.computeIfAbsent(
+                        rSet.getString("section"), (k) -> {
+                            Map<String, Integer> statuses = new LinkedHashMap<>();
+                            statuses.put("open", 0);
+                            statuses.put("awaiting", 0);
+                            statuses.put("complete", 0);
+                            return statuses;
+                        });
+                section.put(rSet.getString("status"), rSet.getInt("count"));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return counts;
+    }
+
+    @Override
+    public synchronized List<Map<String, String>> searchReviews(String query, int limit) {
+        String sql = "SELECT Rows.reviewID, Rows.field, " +
+                "snippet(ReviewSearch, 0, '[', ']', '...', 12) AS snippet " +
+                "FROM ReviewSearch JOIN ReviewSearchRows AS Rows " +
+                "ON Rows.id = ReviewSearch.rowid " +
+                "WHERE ReviewSearch MATCH ? ORDER BY bm25(ReviewSearch)";
+        List<Map<String, String>> results = new ArrayList<>();
+        Set<Integer> found = new HashSet<>();
+        String match = toMatchExpression(query);
+        if (match.isEmpty()) {
+            return results;
+        }
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "searchReviews", sql)){
+            pStatement.setString(1, match);
+            ResultSet rSet = pStatement.executeQuery();
+            //Rows are in rank order, so the first row for each review is its best match.
+            while (results.size() < limit && pStatement.next(rSet)) {
+                if (found.add(rSet.getInt("reviewID"))) {
+                    Map<String, String> row = new HashMap<>();
+                    row.put("reviewID", rSet.getString("reviewID"));
+                    row.put("field", rSet.getString("field"));
+                    row.put("snippet", rSet.getString("snippet"));
+                    results.add(row);
+                }
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * Turns a user's query into an FTS5 match expression, quoting each word so that
+     *  punctuation in the query can't be read as FTS5 syntax.
+     * @param query The words to search for.
+     * @return The match expression, or an empty string if the query has no words.
+     */
+    static String toMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            word = word.replace("*", "").replace("\"", "\"\"");
+            if (!word.isEmpty()) {
+                match.append(match.length() == 0 ? "" : " ").append('"').append(word).append('"')
+                        .append(prefix ? "*" : "");
+            }
+        }
+        return match.toString();
+    }
+
+    @Override
+    public synchronized void setSection(String staffNo, String section) {
+        String sql = "UPDATE EmployeeDetails SET section = ? WHERE staffNo = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "setSection", sql)){
+            pStatement.setString(1, section);
+            pStatement.setString(2, staffNo);
+            pStatement.execute();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void setSupervisor(String staffNo, String supervisor) {
+        //The SupervisorChain table is kept up to date by the database's triggers.
+        String sql = "UPDATE EmployeeDetails SET supervisor = ? WHERE staffNo = ?";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "setSupervisor", sql)){
+            pStatement.setString(1, supervisor);
+            pStatement.setString(2, staffNo);
+            pStatement.execute();
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized boolean isInManagementChain(String manager, String employee) {
+        String managerNo = getStaffNo(manager);
+        String employeeNo = getStaffNo(employee);
+        if (managerNo == null || employeeNo == null) {
+            return false;
+        }
+        //A single lookup in the SupervisorChain table, however deep the chain is.
+        String sql = "SELECT 1 FROM SupervisorChain " +
+                "WHERE ancestor = ? AND descendant = ? AND depth > 0";
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "isInManagementChain", sql)) {
+            pStatement.setString(1, managerNo);
+            pStatement.setString(2, employeeNo);
+            return pStatement.next(pStatement.executeQuery());
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized List<String> listManagedEmployees(String manager) {
+        String sql = "SELECT descendant FROM SupervisorChain " +
+                "WHERE ancestor = ? AND depth > 0 ORDER BY depth, descendant";
+        List<String> employees = new ArrayList<>();
+        try (StatementProbe pStatement = StatementProbe.prepare(conn,
+                "listManagedEmployees", sql)) {
+            pStatement.setString(1, getStaffNo(manager));
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                employees.add(rSet.getString("descendant"));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return employees;
+    }
+
+    @Override
+    public synchronized List<AnnualReview> getAllReviews() {
+        String sql = "SELECT reviewID FROM AnnualReview";
+        List<AnnualReview> result = new ArrayList<>();
+
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "getAllReviews", sql)){
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                result.add(getAnnualReview(rSet.getInt("reviewID")));
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<ChangeEvent> readChanges(long afterSeq, int limit)
+            throws SQLException {
+        //A range scan of the primary key, so reading from any offset costs the same.
+        String sql = "SELECT seq, tableName, rowKey, operation, changedAt FROM ChangeStream " +
+                "WHERE seq > ? ORDER BY seq LIMIT ?";
+        List<ChangeEvent> changes = new ArrayList<>();
+        try (StatementProbe pStatement = StatementProbe.prepare(conn, "readChanges", sql)) {
+            pStatement.setLong(1, afterSeq);
+            pStatement.setInt(2, limit);
+            ResultSet rSet = pStatement.executeQuery();
+            while (pStatement.next(rSet)) {
+                changes.add(new ChangeEvent(rSet.getLong("seq"), rSet.getString("tableName"),
+                        rSet.getString("rowKey"),
+                        ChangeEvent.Operation.of(rSet.getString("operation")),
+                        rSet.getLong("changedAt")));
+            }
+        }
+        return changes;
+    }
+
+    @Override
+    public OnlineBackup startBackup(Path target) {
+        OnlineBackup backup = new OnlineBackup(path, target);
+        backup.start();
+        return backup;
+    }
+}
@@ -0,0 +1,226 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SQLiteRepositoryTests
+{
+    private Path directory;
+    private SQLiteRepository repository;
+
+    public SQLiteRepositoryTests()
+    {
+    }
+
+    /**
+     * Makes a personal details record for tests. Records differ only in staff number and surname.
+     * @param staffNo The staff number of the record.
+     * @param surname The surname of the employee.
+     * @return The personal details.
+     */
+    static PersonalDetails details(String staffNo, String surname)
+    {
+        return new PersonalDetails(staffNo, surname, "Sam", "1982/12/12", "28 Dark Lane",
+                "Bangle Town", "MK5 9LS", "09487321582", "05748392437", "Peter Shoal",
+                "01923421543");
+    }
+
+    /**
+     * Chooses a location for a new database file.
+     * @param engine "memory" for an in-memory repository, or "sqlite" for a database file.
+     * @return The database file, which doesn't exist yet, or null for an in-memory repository.
+     */
+    static Path newDatabase(String engine) throws IOException
+    {
+        if (!"sqlite".equals(engine)) {
+            return null;
+        }
+        Path database = Files.createTempFile("yuconz", ".db");
+        Files.delete(database);
+        return database;
+    }
+
+    /**
+     * Creates a repository for a database made by newDatabase.
+     * @param database The database file, or null for an in-memory repository.
+     * @return The repository, which isn't connected yet.
+     */
+    static HRRepository repository(Path database)
+    {
+        return database == null ? new InMemoryRepository()
+                : new SQLiteRepository(database.toString());
+    }
+
+    /**
+     * Connects the database controller to a new repository.
+     * @param engine "memory" for an in-memory repository, or "sqlite" for a new database file.
+     * @return The database file, or null for an in-memory repository.
+     */
+    static Path connect(String engine) throws IOException
+    {
+        Path database = newDatabase(engine);
+        DatabaseController.connect(repository(database));
+        return database;
+    }
+
+    /**
+     * Deletes a database file made by connect, along with its write-ahead log.
+     * @param database The database file, or null.
+     */
+    static void delete(Path database) throws IOException
+    {
+        if (database != null) {
+            for (String suffix : new String[] {"", "-wal", "-shm"}) {
+                Files.deleteIfExists(database.resolveSibling(database.getFileName() + suffix));
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("sqliteRepository");
+        repository = new SQLiteRepository(directory.resolve("hr.db").toString());
+        repository.connect();
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        repository.close();
+        Files.walk(directory).sorted(Comparator.reverseOrder()).forEach((path) -> {
+            path.toFile().delete();
+        });
+    }
+
+    @Test
+    public void newDatabaseIsCreatedAndPopulated()
+    {
+        assertEquals("trueLies2019", repository.getAuthData("abc123")[0]);
+        assertEquals("1234", repository.getStaffNo("abc123"));
+    }
+
+    @Test
+    public void writesAreCommittedAndSurviveReconnecting()
+    {
+        //Every dummy user starts with made up personal details.
+        repository.updatePersonalDetails(details("1234", "Harper"));
+
+        repository.connect();
+        assertEquals("Harper", repository.getPersonalDetails("1234").getField("Surname"));
+    }
+
+    @Test
+    public void signedOffReviewIsCompleted()
+    {
+        repository.insertAnnualReview(new AnnualReview(null, "1234", "Sam", "1235", "9876",
+                "HR", "Clerk", Recommendation.NOT_SET, null, null, null, null, null));
+        AnnualReview review = repository.getUnfinishedReview("abc123");
+        assertTrue(review.signOff("1234"));
+        repository.updateAnnualReview(review);
+        assertEquals(1, repository.getReviewStatusCounts().get("HR").get("awaiting").intValue());
+
+        review.signOff("1235");
+        review.signOff("9876");
+        repository.updateAnnualReview(review);
+        assertNull(repository.getUnfinishedReview("abc123"));
+        assertEquals(1, repository.getPastReviews("abc123").size());
+        assertEquals(1, repository.getReviewStatusCounts().get("HR").get("complete").intValue());
+        assertNotNull(repository.getAnnualReview(review.getReviewID()).getSignatures().get(2));
+    }
+
+    @Test
+    public void batchedAmendmentsDontDisturbOtherWrites() throws Exception
+    {
+        AtomicReference<SQLException> failure = new AtomicReference<>();
+        Thread flusher = new Thread(() -> {
+            for (int i = 0; i < 50; i++) {
+                try {
+                    repository.updateAllPersonalDetails(
+                            Collections.singletonList(details("1234", "Batch" + i)));
+                } catch (SQLException e) {
+                    failure.set(e);
+                }
+            }
+        });
+        SQLiteRepository reader = new SQLiteRepository(directory.resolve("hr.db").toString());
+        reader.connect();
+        flusher.start();
+        try {
+            //Each write is committed as it returns, not swept into the flusher's transaction.
+            for (int i = 0; i < 50; i++) {
+                repository.updatePersonalDetails(details("1235", "Single" + i));
+                assertEquals("Single" + i,
+                        reader.getPersonalDetails("1235").getField("Surname"));
+            }
+        } finally {
+            flusher.join();
+            reader.close();
+        }
+        assertNull(failure.get());
+
+        repository.connect();
+        assertEquals("Batch49", repository.getPersonalDetails("1234").getField("Surname"));
+        assertEquals("Single49", repository.getPersonalDetails("1235").getField("Surname"));
+    }
+
+    @Test
+    public void searchesFindChangesMadeByOtherConnections() throws Exception
+    {
+        SQLiteRepository other = new SQLiteRepository(directory.resolve("hr.db").toString());
+        other.connect();
+        try {
+            other.updatePersonalDetails(details("1234", "Quixote"));
+        } finally {
+            other.close();
+        }
+        //The poller reloads the employee through its own connection.
+        long deadline = System.currentTimeMillis() + 10000;
+        while (repository.searchPersonalDetails("Quixote", 10).isEmpty()
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(repository.searchPersonalDetails("Quixote", 10).containsKey("1234"));
+    }
+
+    @Test
+    public void transactionsDontTakeInOtherThreadsWrites() throws Exception
+    {
+        Map<Integer, String> assignments = new HashMap<>();
+        for (int i = 1; i <= 500; i++) {
+            assignments.put(i, "9876");
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        Thread assigner = new Thread(() -> {
+            while (!done.get()) {
+                repository.assignSecondReviewers(assignments);
+            }
+        });
+        SQLiteRepository reader = new SQLiteRepository(directory.resolve("hr.db").toString());
+        reader.connect();
+        assigner.start();
+        try {
+            //Each write is committed as it returns, not swept into the assigner's transaction.
+            for (int i = 0; i < 100; i++) {
+                repository.updatePersonalDetails(details("1235", "Single" + i));
+                assertEquals("Single" + i,
+                        reader.getPersonalDetails("1235").getField("Surname"));
+            }
+        } finally {
+            done.set(true);
+            assigner.join();
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,404 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Runs a script of commands through an AppController without the menus, so bulk corrections
+ *  can be made at machine speed instead of by driving the menus by hand.
+ * Each line of the script is one command, with words separated by spaces and values
+ *  containing spaces in double quotes. Blank lines and lines starting with # are skipped.
+ * <pre>
+ * login ROLE USERNAME PASSWORD      e.g. login HR_EMPLOYEE hrs001 password
+ * logout
+ * read [TARGET]                     reads personal details, the user's own if no target
+ * amend [TARGET] FIELD=VALUE...     e.g. amend 1234 "Post Code=MK5 9LS"
+ * sign [TARGET]                     signs off the unfinished review, the user's own if no target
+ * create-review                     creates the user's next annual review, if one is due
+ * </pre>
+ * Consecutive reads and amendments are run as two batches: one coalesced read of every
+ *  record they touch, then the amendments in order. Each command is still authorised
+ *  on its own.
+ * A line is reported for each command, with its line number, status (OK, DENIED, FAILED or
+ *  INVALID), time taken in milliseconds, the command, and any detail. Commands run in a batch
+ *  each report an equal share of the batch's time. Passwords are never reported.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class ScriptRunner {
+    private final static List<String> COMMANDS =
+            Arrays.asList("login", "logout", "read", "amend", "sign", "create-review");
+    private final AppController app;
+    private final PrintStream out;
+    private int failures;
+
+    /**
+     * A parsed line of the script.
+     */
+    private static final class Command {
+        private final int line;
+        private final List<String> words;
+        private String status;
+        private String detail = "";
+
+        private Command(int line, List<String> words) {
+            this.line = line;
+            this.words = words;
+        }
+
+        private String name() {
+            return words.get(0).toLowerCase(Locale.ROOT);
+        }
+
+        private boolean isPipelined() {
+            return name().equals("read") || name().equals("amend");
+        }
+
+        private void finish(String status, String detail) {
+            this.status = status;
+            this.detail = detail;
+        }
+    }
+
+    /**
+     * Creates a runner.
+     * @param app The controller to run the commands as, which holds the logged-in session.
+     * @param report Where the outcome of each command is reported.
+     */
+    ScriptRunner(AppController app, PrintStream report) {
+        this.app = app;
+        this.out = report;
+    }
+
+    /**
+     * Runs every command in a script, logging out at the end.
+     * @param script The script.
+     * @return The number of commands which weren't run successfully.
+     */
+    int run(Scanner script) {
+        List<Command> pipeline = new ArrayList<>();
+        int line = 0;
+        while (script.hasNextLine()) {
+            line++;
+            String text = script.nextLine().trim();
+            if (text.isEmpty() || text.startsWith("#")) {
+                continue;
+            }
+            Command command;
+            try {
+                command = new Command(line, split(text));
+            } catch (IllegalArgumentException e) {
+                runPipeline(pipeline);
+                Command invalid = new Command(line, Collections.singletonList(text));
+                invalid.finish("INVALID", e.getMessage());
+                report(invalid, 0);
+                continue;
+            }
+            if (command.isPipelined()) {
+                pipeline.add(command);
+            } else {
+                runPipeline(pipeline);
+                long start = System.nanoTime();
+                try (Tracer.Span span = Tracer.startTrace("ScriptRunner." + command.name())) {
+                    runSingle(command);
+                    span.tag("status", command.status);
+                }
+                report(command, System.nanoTime() - start);
+            }
+        }
+        runPipeline(pipeline);
+        if (app.getActiveSession().isValidSession()) {
+            app.logout();
+        }
+        return failures;
+    }
+
+    /**
+     * Splits a command into words, keeping text in double quotes together.
+     * @param text The command.
+     * @return Its words.
+     * @throws IllegalArgumentException If a quote isn't closed.
+     */
+    static List<String> split(String text) {
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean quoted = false;
+        boolean inWord = false;
+        for (char c : text.toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+                inWord = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inWord) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unclosed quote");
+        }
+        if (inWord) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * Runs a command which isn't pipelined.
+     * @param command The command.
+     */
+    private void runSingle(Command command) {
+        List<String> words = command.words;
+        Session session = app.getActiveSession();
+        if (!COMMANDS.contains(command.name())) {
+            command.finish("INVALID", "Unknown command");
+            return;
+        } else if (!command.name().equals("login") && !session.isValidSession()) {
+            command.finish("DENIED", "Not logged in");
+            return;
+        }
+        try {
+            switch (command.name()) {
+                case "login":
+                    if (words.size() != 4) {
+                        command.finish("INVALID", "Usage: login ROLE USERNAME PASSWORD");
+                        return;
+                    }
+                    Role role;
+                    try {
+                        role = Role.valueOf(words.get(1).toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        command.finish("INVALID", "Unknown role " + words.get(1));
+                        return;
+                    }
+                    app.login(words.get(2), words.get(3), role);
+                    ExitCode exitCode = app.getActiveSession().getExitCode();
+                    command.finish(app.getActiveSession().isValidSession() ? "OK" : "DENIED",
+                            exitCode.name());
+                    return;
+                case "logout":
+                    command.finish(app.logout() ? "OK" : "FAILED", "");
+                    return;
+                case "sign":
+                    sign(command, session, words.size() > 1 ? words.get(1) : session.getUsername());
+                    return;
+                case "create-review":
+                    if (!Authoriser.getAuthorisation(session, Permission.CREATE_ANNUAL_REVIEW,
+                            session.getUsername())) {
+                        command.finish("DENIED", "");
+                    } else if (app.createNewReview()) {
+                        command.finish("OK", "");
+                    } else {
+                        command.finish("FAILED", "A review is already open or not yet due");
+                    }
+                    return;
+                default:
+                    break;
+            }
+        } catch (RuntimeException e) {
+            command.finish("FAILED", String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Signs off someone's unfinished review as the logged-in user.
+     * The review and the signer's staff number are looked up at the same time.
+     * @param command The sign command.
+     * @param session The logged-in session.
+     * @param targetID The username or staff number whose review is signed.
+     */
+    private void sign(Command command, Session session, String targetID) {
+        if (!Authoriser.getAuthorisation(session, Permission.SIGN_ANNUAL_REVIEW, targetID)) {
+            command.finish("DENIED", "");
+            return;
+        }
+        CompletableFuture<AnnualReview> review = DatabaseAsync.getUnfinishedReview(targetID);
+        CompletableFuture<String> staffNo = DatabaseAsync.getStaffNo(session.getUsername());
+        try {
+            if (review.join() == null) {
+                command.finish("FAILED", "No unfinished review");
+            } else if (!review.join().signOff(staffNo.join())) {
+                command.finish("FAILED", "Not a signatory of this review");
+            } else {
+                DatabaseController.updateAnnualReview(review.join());
+                command.finish("OK", "Review " + review.join().getReviewID());
+            }
+        } catch (CompletionException e) {
+            command.finish("FAILED", String.valueOf(e.getCause().getMessage()));
+        }
+    }
+
+    /**
+     * Runs consecutive reads and amendments as a batch reading every record they touch,
+     *  then a batch of the amendments.
+     * @param pipeline The commands, which is emptied.
+     */
+    private void runPipeline(List<Command> pipeline) {
+        if (pipeline.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (Tracer.Span span = Tracer.startTrace("ScriptRunner.pipeline")) {
+            span.tag("commands", pipeline.size());
+            Session session = app.getActiveSession();
+            if (!session.isValidSession()) {
+                for (Command command : pipeline) {
+                    command.finish("DENIED", "Not logged in");
+                }
+            } else {
+                runPipeline(pipeline, session);
+            }
+        }
+        long share = (System.nanoTime() - start) / pipeline.size();
+        for (Command command : pipeline) {
+            report(command, share);
+        }
+        pipeline.clear();
+    }
+
+    private void runPipeline(List<Command> pipeline, Session session) {
+        //Reads each record once.
+        DatabaseBatch reads = new DatabaseBatch(session);
+        Map<String, DatabaseBatch.Result<PersonalDetails>> fetched = new HashMap<>();
+        List<String> targets = new ArrayList<>();
+        List<Permission> permissions = new ArrayList<>();
+        for (Command command : pipeline) {
+            boolean amend = command.name().equals("amend");
+            String target = command.words.size() > 1 && !command.words.get(1).contains("=")
+                    ? command.words.get(1) : session.getUsername();
+            boolean own = target.equals(session.getUsername());
+            //An amendment reads the record it amends too, under the matching read permission.
+            Permission read = own ? Permission.READ_PERSONAL_DETAILS
+                    : Permission.HR_READ_PERSONAL_DETAILS;
+            Permission permission = read;
+            if (amend) {
+                permission = own ? Permission.AMEND_PERSONAL_DETAILS
+                        : Permission.HR_AMEND_PERSONAL_DETAILS;
+            }
+            targets.add(target);
+            permissions.add(permission);
+            fetched.computeIfAbsent(target, (key) -> reads.readPersonalDetails(read, target));
+        }
+        reads.execute();
+
+        //Amendments are applied in order to one copy of each record, so later commands see them.
+        DatabaseBatch writes = new DatabaseBatch(session);
+        Map<String, PersonalDetails> current = new HashMap<>();
+        Map<Command, DatabaseBatch.Result<Void>> written = new LinkedHashMap<>();
+        for (int i = 0; i < pipeline.size(); i++) {
+            Command command = pipeline.get(i);
+            String target = targets.get(i);
+            DatabaseBatch.Result<PersonalDetails> read = fetched.get(target);
+            if (!read.isAuthorised()) {
+                command.finish("DENIED", "");
+                continue;
+            }
+            PersonalDetails details = current.computeIfAbsent(target, (key) -> read.get());
+            if (details == null) {
+                command.finish("FAILED", read.getError() == null ? "No personal details"
+                        : String.valueOf(read.getError().getMessage()));
+                continue;
+            }
+            if (command.name().equals("read")) {
+                command.finish("OK", details.getField("Staff No"));
+                continue;
+            }
+            String invalid = amend(details, command.words.subList(
+                    command.words.size() > 1 && !command.words.get(1).contains("=") ? 2 : 1,
+                    command.words.size()));
+            if (invalid != null) {
+                command.finish("INVALID", invalid);
+            } else {
+                written.put(command, writes.amendPersonalDetails(permissions.get(i), target,
+                        details));
+            }
+        }
+        writes.execute();
+        written.forEach((command, result) -> {
+            if (!result.isAuthorised()) {
+                command.finish("DENIED", "");
+            } else if (result.getError() != null) {
+                command.finish("FAILED", String.valueOf(result.getError().getMessage()));
+            } else {
+                command.finish("OK", "");
+            }
+        });
+    }
+
+    /**
+     * Applies FIELD=VALUE assignments to personal details.
+     * @param details The details to amend.
+     * @param assignments The assignments.
+     * @return Why the assignments are invalid, or null if they were all applied.
+     */
+    private static String amend(PersonalDetails details, List<String> assignments) {
+        if (assignments.isEmpty()) {
+            return "Usage: amend [TARGET] FIELD=VALUE...";
+        }
+        for (String assignment : assignments) {
+            int equals = assignment.indexOf('=');
+            if (equals < 0 || !details.returnFields().contains(assignment.substring(0, equals))) {
+                return "Unknown field in " + assignment;
+            }
+        }
+        for (String assignment : assignments) {
+            int equals = assignment.indexOf('=');
+            details.setField(assignment.substring(0, equals), assignment.substring(equals + 1));
+        }
+        return null;
+    }
+
+    private void report(Command command, long nanos) {
+        if (!"OK".equals(command.status)) {
+            failures++;
+        }
+        //Everything after the username of a login is its password.
+        List<String> shown = command.name().equals("login") && command.words.size() > 3
+                ? command.words.subList(0, 3) : command.words;
+        out.printf(Locale.ROOT, "%d\t%s\t%.3f\t%s\t%s%n", command.line, command.status,
+                nanos / 1e6, String.join(" ", shown), command.detail);
+    }
+
+    /**
+     * Runs the script maintenance tool.
+     * @param args The options, then the script to run, or - to read it from standard input.
+     */
+    static void runTool(String[] args) {
+        if (args.length != 1 && !(args.length == 3 && args[0].equals("--db"))) {
+            System.out.println("Usage: script [--db DATABASE] SCRIPT|-");
+            return;
+        }
+        if (args.length == 3) {
+            System.setProperty("yuconz.db.path", args[1]);
+        }
+        String path = args[args.length - 1];
+        try (InputStream in = path.equals("-") ? System.in
+                : Files.newInputStream(Paths.get(path))) {
+            long start = System.nanoTime();
+            int failed = new AppController(in).runScript(System.out);
+            System.out.printf(Locale.ROOT, "Finished in %.1f ms, %d commands not OK.%n",
+                    (System.nanoTime() - start) / 1e6, failed);
+        } catch (IOException e) {
+            System.out.println("Could not read " + path + ": " + e.getMessage());
+        } finally {
+            DatabaseController.disconnect();
+        }
+    }
+}
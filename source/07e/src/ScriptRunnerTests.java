@@ -0,0 +1,71 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+
+public class ScriptRunnerTests
+{
+    public ScriptRunnerTests()
+    {
+    }
+
+    @Before
+    public void setUp() throws SQLException
+    {
+        DatabaseController.connect(new InMemoryRepository());
+        DatabaseController.addDummyUser("hrs900", "9000", "password", "2");
+        DatabaseController.addDummyUser("emp901", "9001", "password", "0");
+    }
+
+    @After
+    public void tearDown()
+    {
+        DatabaseController.disconnect();
+    }
+
+    private static String[] run(String script)
+    {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        AppController app = new AppController(
+                new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)));
+        app.runScript(new PrintStream(report, true));
+        return new String(report.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    }
+
+    @Test
+    public void commandsAreReportedInOrderWithTheirStatus()
+    {
+        String[] report = run("# Corrections\n" +
+                "read 9001\n" +
+                "login HR_EMPLOYEE hrs900 password\n" +
+                "read 9001\n" +
+                "amend 9001 \"Town/City=Bath Spa\"\n" +
+                "amend 9001 Nope=1\n" +
+                "read emp901\n" +
+                "login NOBODY a b\n");
+
+        assertEquals(7, report.length);
+        String[] statuses = {"2\tDENIED", "3\tOK", "4\tOK", "5\tOK", "6\tINVALID", "7\tOK",
+                "8\tINVALID"};
+        for (int i = 0; i < statuses.length; i++) {
+            assertTrue(report[i], report[i].startsWith(statuses[i]));
+        }
+        assertFalse(report[1].contains("password"));
+        assertEquals("Bath Spa",
+                DatabaseController.getPersonalDetails("9001").getField("Town/City"));
+    }
+
+    @Test
+    public void quotedValuesStayTogether()
+    {
+        assertEquals(3, ScriptRunner.split("amend 1234 \"Post Code=MK5 9LS\"").size());
+        assertEquals("Post Code=MK5 9LS",
+                ScriptRunner.split("amend 1234 \"Post Code=MK5 9LS\"").get(2));
+    }
+}
@@ -0,0 +1,602 @@
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An HR repository split across several repositories, or shards, by section, so that each
+ *  section's writes go to its own database file and don't wait for other sections'.
+ * Personal details and reviews are kept in the shard of the employee's section, as set by
+ *  setSection, or the first shard if their section has no shard of its own or isn't set.
+ * Employee details and logins are kept in every shard, as the supervisor hierarchy and the
+ *  reviewers of a review cross sections. They are small and rarely change.
+ * Each shard's reviewIDs start at a multiple of REVIEW_IDS_PER_SHARD, so a review's shard
+ *  is known from its ID.
+ * Queries about every employee or review are asked of every shard at once, and the
+ *  results merged.
+ * Writes to more than one shard are not atomic. Setting an employee's section moves their
+ *  personal details to its shard, but an employee with reviews can't change shard.
+ * To shard an existing database, which becomes the first shard, set the section of each
+ *  employee of a sharded section. Those without reviews are moved to its shard, and those
+ *  with reviews stay in the first shard.
+ * Each shard has its own change stream and backup, so they are read and made through
+ *  getShards, as ChangeStream and DatabaseController.startBackup do.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class ShardedRepository implements HRRepository {
+    //Leaves room for 214 shards of ten million reviews in an int.
+    private final static int REVIEW_IDS_PER_SHARD = 10_000_000;
+    private final List<HRRepository> shards;
+    private final Map<String, Integer> shardBySection;
+    //The shard of each employee looked up so far, by staff number.
+    private final ConcurrentHashMap<String, Integer> shardByStaffNo = new ConcurrentHashMap<>();
+    private final ExecutorService pool;
+
+    /**
+     * Creates a repository split across the given shards.
+     * @param shards The shards. The first holds the employees of every other section.
+     * @param shardBySection The index of each section's shard, by section.
+     */
+    ShardedRepository(List<HRRepository> shards, Map<String, Integer> shardBySection) {
+        this.shards = new ArrayList<>(shards);
+        this.shardBySection = new HashMap<>(shardBySection);
+        AtomicInteger threads = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(shards.size(), (runnable) -> {
+            Thread thread = new Thread(runnable, "yuconz-shard-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a repository of SQLite databases: the given database for sections without
+     *  a shard of their own, and a database beside it for each of the given sections.
+     * @param path The location of the first shard's database file.
+     * @param sections The sections with a shard of their own.
+     * @return The sharded repository.
+     */
+    static ShardedRepository ofSQLite(String path, List<String> sections) {
+        List<HRRepository> shards = new ArrayList<>();
+        Map<String, Integer> shardBySection = new HashMap<>();
+        shards.add(new SQLiteRepository(path));
+        String base = path.endsWith(".db") ? path.substring(0, path.length() - 3) : path;
+        for (String section : sections) {
+            shardBySection.put(section, shards.size());
+            shards.add(new SQLiteRepository(base + "-" +
+                    section.replaceAll("[^A-Za-z0-9]", "_") + ".db"));
+        }
+        return new ShardedRepository(shards, shardBySection);
+    }
+
+    @Override
+    public void connect() {
+        fanOut((shard) -> {
+            shard.connect();
+            return null;
+        });
+        for (int i = 1; i < shards.size(); i++) {
+            try {
+                shards.get(i).reserveReviewIDs(i * REVIEW_IDS_PER_SHARD);
+            } catch (SQLException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public int getConnectionCount() {
+        int count = 0;
+        for (HRRepository shard : shards) {
+            count += shard.getConnectionCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        fanOut((shard) -> {
+            shard.close();
+            return null;
+        });
+        shardByStaffNo.clear();
+    }
+
+    /**
+     * Groups employees by the shard holding their personal details and reviews.
+     * @param userIDs The usernames or staff numbers of the employees.
+     * @return The employees held by each shard, leaving out shards holding none of them.
+     */
+    private Map<HRRepository, List<String>> groupByShard(Collection<String> userIDs) {
+        Map<HRRepository, List<String>> byShard = new HashMap<>();
+        for (String userID : userIDs) {
+            byShard.computeIfAbsent(shardOf(userID), (k) -> new ArrayList<>()).add(userID);
+        }
+        return byShard;
+    }
+
+    /**
+     * Gets the shard holding an employee's personal details and reviews.
+     * @param userID The username or staff number of the employee.
+     * @return Their shard.
+     */
+    private HRRepository shardOf(String userID) {
+        String staffNo = userID == null ? null : getStaffNo(userID);
+        if (staffNo == null) {
+            return shards.get(0);
+        }
+        return shards.get(shardByStaffNo.computeIfAbsent(staffNo, (key) -> {
+            String section = getSection(key);
+            return section == null ? 0 : shardBySection.getOrDefault(section, 0);
+        }));
+    }
+
+    /**
+     * Gets the shard holding a review, from the range its reviewID is in.
+     */
+    private HRRepository shardOf(Integer reviewID) {
+        int index = reviewID == null ? 0 : reviewID / REVIEW_IDS_PER_SHARD;
+        return shards.get(Math.min(Math.max(index, 0), shards.size() - 1));
+    }
+
+    private boolean isHomeShard(HRRepository shard, String staffNo) {
+        return shardOf(staffNo) == shard;
+    }
+
+    @Override
+    public void addDummyUser(String username, String staffNo, String password,
+                             String roles) throws SQLException {
+        fanOutChecked((shard) -> {
+            shard.addDummyUser(username, staffNo, password, roles);
+            return null;
+        });
+        //Only the new employee's own shard keeps their personal details.
+        for (HRRepository shard : shards) {
+            if (!isHomeShard(shard, staffNo)) {
+                shard.removePersonalDetails(staffNo);
+            }
+        }
+    }
+
+    @Override
+    public void removeDummyUser(String username, String staffNo) {
+        fanOut((shard) -> {
+            shard.removeDummyUser(username, staffNo);
+            return null;
+        });
+        shardByStaffNo.remove(staffNo);
+    }
+
+    @Override
+    public String getStaffNo(String username) {
+        return shards.get(0).getStaffNo(username);
+    }
+
+    @Override
+    public String getSection(String staffNo) {
+        return shards.get(0).getSection(staffNo);
+    }
+
+    @Override
+    public String[] getAuthData(String username) {
+        return shards.get(0).getAuthData(username);
+    }
+
+    @Override
+    public PersonalDetails getPersonalDetails(String userID) {
+        return shardOf(userID).getPersonalDetails(userID);
+    }
+
+    @Override
+    public Map<String, PersonalDetails> getPersonalDetails(Collection<String> userIDs) {
+        Map<HRRepository, List<String>> byShard = groupByShard(userIDs);
+        Map<String, PersonalDetails> result = new HashMap<>();
+        List<Map<String, PersonalDetails>> shardResults = fanOut((shard) ->
+                byShard.containsKey(shard) ? shard.getPersonalDetails(byShard.get(shard))
+                        : Collections.<String, PersonalDetails>emptyMap());
+        for (Map<String, PersonalDetails> shardResult : shardResults) {
+            result.putAll(shardResult);
+        }
+        return result;
+    }
+
+    @Override
+    public void addPersonalDetails(PersonalDetails details) {
+        shardOf(details.getField("Staff No")).addPersonalDetails(details);
+    }
+
+    @Override
+    public void updatePersonalDetails(PersonalDetails details) {
+        shardOf(details.getField("Staff No")).updatePersonalDetails(details);
+    }
+
+    @Override
+    public int updateAllPersonalDetails(List<PersonalDetails> updates) throws SQLException {
+        Map<HRRepository, List<PersonalDetails>> byShard = new HashMap<>();
+        for (PersonalDetails details : updates) {
+            byShard.computeIfAbsent(shardOf(details.getField("Staff No")),
+                    (k) -> new ArrayList<>()).add(details);
+        }
+        int updated = 0;
+        for (Integer count : fanOutChecked((shard) -> byShard.containsKey(shard)
+                ? shard.updateAllPersonalDetails(byShard.get(shard)) : 0)) {
+            updated += count;
+        }
+        return updated;
+    }
+
+    @Override
+    public void indexPersonalDetails(PersonalDetails details) {
+        shardOf(details.getField("Staff No")).indexPersonalDetails(details);
+    }
+
+    @Override
+    public void removePersonalDetails(String staffNo) {
+        shardOf(staffNo).removePersonalDetails(staffNo);
+    }
+
+    @Override
+    public Map<String, String[]> searchPersonalDetails(String text, int limit) {
+        List<Map<String, String[]>> found = fanOut((shard) -> {
+            //Another shard's copy of a dummy user isn't theirs to return.
+            Map<String, String[]> results = new LinkedHashMap<>();
+            for (Map.Entry<String, String[]> result :
+                    shard.searchPersonalDetails(text, limit).entrySet()) {
+                if (isHomeShard(shard, result.getKey())) {
+                    results.put(result.getKey(), result.getValue());
+                }
+            }
+            return results;
+        });
+        Map<String, String[]> results = new LinkedHashMap<>();
+        for (Map<String, String[]> shardResults : found) {
+            for (Map.Entry<String, String[]> result : shardResults.entrySet()) {
+                if (results.size() < limit) {
+                    results.put(result.getKey(), result.getValue());
+                }
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void addUser(String username, String password) {
+        fanOut((shard) -> {
+            shard.addUser(username, password);
+            return null;
+        });
+    }
+
+    @Override
+    public void removeUser(String username) {
+        fanOut((shard) -> {
+            shard.removeUser(username);
+            return null;
+        });
+    }
+
+    @Override
+    public void createAnnualReview(String username) {
+        shardOf(username).createAnnualReview(username);
+    }
+
+    @Override
+    public void insertAnnualReview(AnnualReview review) {
+        shardOf(review.getField("Staff No")).insertAnnualReview(review);
+    }
+
+    @Override
+    public void reserveReviewIDs(int first) throws SQLException {
+        shards.get(0).reserveReviewIDs(first);
+    }
+
+    @Override
+    public void updateAnnualReview(AnnualReview updatedReview) {
+        shardOf(updatedReview.getReviewID()).updateAnnualReview(updatedReview);
+    }
+
+    @Override
+    public void deleteAnnualReview(Integer reviewID) {
+        shardOf(reviewID).deleteAnnualReview(reviewID);
+    }
+
+    @Override
+    public AnnualReview getAnnualReview(Integer reviewID) {
+        return shardOf(reviewID).getAnnualReview(reviewID);
+    }
+
+    @Override
+    public List<AnnualReview> getPastReviews(String username) {
+        return shardOf(username).getPastReviews(username);
+    }
+
+    @Override
+    public List<AnnualReview> getPastReviews(String username, boolean includeArchived) {
+        return shardOf(username).getPastReviews(username, includeArchived);
+    }
+
+    @Override
+    public int archiveReviews(Date completedBefore, int batchSize) throws SQLException {
+        int archived = 0;
+        for (Integer count : fanOutChecked((shard) ->
+                shard.archiveReviews(completedBefore, batchSize))) {
+            archived += count;
+        }
+        return archived;
+    }
+
+    @Override
+    public List<AnnualReview> getReviews(String username) {
+        return shardOf(username).getReviews(username);
+    }
+
+    @Override
+    public AnnualReview getUnfinishedReview(String username) {
+        return shardOf(username).getUnfinishedReview(username);
+    }
+
+    @Override
+    public Map<String, AnnualReview> getUnfinishedReviews(Collection<String> userIDs) {
+        Map<HRRepository, List<String>> byShard = groupByShard(userIDs);
+        Map<String, AnnualReview> result = new HashMap<>();
+        List<Map<String, AnnualReview>> shardResults = fanOut((shard) ->
+                byShard.containsKey(shard) ? shard.getUnfinishedReviews(byShard.get(shard))
+                        : Collections.<String, AnnualReview>emptyMap());
+        for (Map<String, AnnualReview> shardResult : shardResults) {
+            result.putAll(shardResult);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Map<String, String>> reviewsWithoutASecondReviewer() {
+        List<Map<String, String>> reviews = new ArrayList<>();
+        for (List<Map<String, String>> shardReviews :
+                fanOut(HRRepository::reviewsWithoutASecondReviewer)) {
+            reviews.addAll(shardReviews);
+        }
+        return reviews;
+    }
+
+    @Override
+    public Map<Integer, String> getReviewsNeedingSecondReviewer() {
+        //Each shard's reviews are in order, but the shards' ranges must be merged in order too.
+        Map<Integer, String> reviews = new TreeMap<>();
+        for (Map<Integer, String> shardReviews :
+                fanOut(HRRepository::getReviewsNeedingSecondReviewer)) {
+            reviews.putAll(shardReviews);
+        }
+        return reviews;
+    }
+
+    @Override
+    public Map<String, Integer> getReviewerLoads() {
+        //Every shard lists every reviewer, with the reviews they have in that shard.
+        Map<String, Integer> loads = new HashMap<>();
+        for (Map<String, Integer> shardLoads : fanOut(HRRepository::getReviewerLoads)) {
+            for (Map.Entry<String, Integer> load : shardLoads.entrySet()) {
+                loads.merge(load.getKey(), load.getValue(), Integer::sum);
+            }
+        }
+        return loads;
+    }
+
+    @Override
+    public Map<String, Set<String>> getRevieweeSupervisorChains() {
+        Map<String, Set<String>> chains = new HashMap<>();
+        for (Map<String, Set<String>> shardChains :
+                fanOut(HRRepository::getRevieweeSupervisorChains)) {
+            for (Map.Entry<String, Set<String>> chain : shardChains.entrySet()) {
+                chains.computeIfAbsent(chain.getKey(), (k) -> new HashSet<>())
+                        .addAll(chain.getValue());
+            }
+        }
+        return chains;
+    }
+
+    @Override
+    public int assignSecondReviewers(Map<Integer, String> assignments) {
+        Map<HRRepository, Map<Integer, String>> byShard = new HashMap<>();
+        for (Map.Entry<Integer, String> assignment : assignments.entrySet()) {
+            byShard.computeIfAbsent(shardOf(assignment.getKey()), (k) -> new LinkedHashMap<>())
+                    .put(assignment.getKey(), assignment.getValue());
+        }
+        int assigned = 0;
+        for (Integer count : fanOut((shard) -> byShard.containsKey(shard)
+                ? shard.assignSecondReviewers(byShard.get(shard)) : 0)) {
+            assigned += count;
+        }
+        return assigned;
+    }
+
+    @Override
+    public List<String> listReviewees(String username) {
+        //A reviewer's reviewees can be in any section.
+        List<String> reviewees = new ArrayList<>();
+        for (List<String> shardReviewees : fanOut((shard) -> shard.listReviewees(username))) {
+            reviewees.addAll(shardReviewees);
+        }
+        return reviewees;
+    }
+
+    @Override
+    public boolean isReviewing(String username, String targetUsername) {
+        return shardOf(targetUsername).isReviewing(username, targetUsername);
+    }
+
+    @Override
+    public Map<String, Map<String, Integer>> getReviewStatusCounts() {
+        Map<String, Map<String, Integer>> counts = new HashMap<>();
+        for (Map<String, Map<String, Integer>> shardCounts :
+                fanOut(HRRepository::getReviewStatusCounts)) {
+            for (Map.Entry<String, Map<String, Integer>> section : shardCounts.entrySet()) {
+                Map<String, Integer> statuses =
+                        counts.computeIfAbsent(section.getKey(), (k) -> new LinkedHashMap<>());
+                for (Map.Entry<String, Integer> status : section.getValue().entrySet()) {
+                    statuses.merge(status.getKey(), status.getValue(), Integer::sum);
+                }
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public List<Map<String, String>> searchReviews(String query, int limit) {
+        //Ranks from different shards can't be compared, so each shard's best come first.
+        List<List<Map<String, String>>> found = fanOut((shard) -> shard.searchReviews(query, limit));
+        List<Map<String, String>> results = new ArrayList<>();
+        for (int rank = 0; results.size() < limit; rank++) {
+            boolean more = false;
+            for (List<Map<String, String>> shardResults : found) {
+                if (rank < shardResults.size() && results.size() < limit) {
+                    results.add(shardResults.get(rank));
+                    more = true;
+                }
+            }
+            if (!more) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void setSection(String staffNo, String section) {
+        HRRepository from = shardOf(staffNo);
+        int to = section == null ? 0 : shardBySection.getOrDefault(section, 0);
+        if (shards.get(to) != from && (!from.getReviews(staffNo).isEmpty()
+                || !from.getPastReviews(staffNo, true).isEmpty())) {
+            System.out.println("An employee with reviews cannot change shard");
+            return;
+        }
+        fanOut((shard) -> {
+            shard.setSection(staffNo, section);
+            return null;
+        });
+        shardByStaffNo.put(staffNo, to);
+        PersonalDetails details = from.getPersonalDetails(staffNo);
+        if (shards.get(to) != from && details != null) {
+            shards.get(to).addPersonalDetails(details);
+            from.removePersonalDetails(staffNo);
+        }
+    }
+
+    @Override
+    public void setSupervisor(String staffNo, String supervisor) {
+        fanOut((shard) -> {
+            shard.setSupervisor(staffNo, supervisor);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isInManagementChain(String manager, String employee) {
+        return shards.get(0).isInManagementChain(manager, employee);
+    }
+
+    @Override
+    public List<String> listManagedEmployees(String manager) {
+        return shards.get(0).listManagedEmployees(manager);
+    }
+
+    @Override
+    public List<AnnualReview> getAllReviews() {
+        List<AnnualReview> reviews = new ArrayList<>();
+        for (List<AnnualReview> shardReviews : fanOut(HRRepository::getAllReviews)) {
+            reviews.addAll(shardReviews);
+        }
+        reviews.sort(Comparator.comparing(AnnualReview::getReviewID));
+        return reviews;
+    }
+
+    @Override
+    public List<ChangeEvent> readChanges(long afterSeq, int limit) throws SQLException {
+        if (shards.size() == 1) {
+            return shards.get(0).readChanges(afterSeq, limit);
+        }
+        throw new SQLException("Each shard has its own change stream, read through getShards");
+    }
+
+    @Override
+    public OnlineBackup startBackup(Path target) throws SQLException {
+        if (shards.size() == 1) {
+            return shards.get(0).startBackup(target);
+        }
+        throw new SQLException("Each shard is backed up on its own, through getShards");
+    }
+
+    /**
+     * Gets the shards, e.g. to read their change streams or back them up.
+     * @return The shards, the first being the one for sections without their own.
+     */
+    @Override
+    public List<HRRepository> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * A query or update of one shard.
+     */
+    private interface ShardCall<T> {
+        T call(HRRepository shard) throws SQLException;
+    }
+
+    /**
+     * Runs a call on every shard at once, and waits for them all.
+     * @return The result from each shard, in shard order.
+     */
+    private <T> List<T> fanOutChecked(ShardCall<T> call) throws SQLException {
+        try (Tracer.Span span = Tracer.span("ShardedRepository.fanOut")) {
+            span.tag("shards", shards.size());
+            List<Future<T>> futures = new ArrayList<>();
+            for (HRRepository shard : shards) {
+                futures.add(pool.submit(() -> call.call(shard)));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof SQLException) {
+                        throw (SQLException) e.getCause();
+                    }
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted waiting for the shards", e);
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Runs a call which doesn't throw SQLExceptions on every shard at once.
+     */
+    private <T> List<T> fanOut(ShardCall<T> call) {
+        try {
+            return fanOutChecked(call);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ShardedRepositoryTests
+{
+    private List<HRRepository> shards;
+    private ShardedRepository repository;
+
+    public ShardedRepositoryTests()
+    {
+    }
+
+    @Before
+    public void setUp() throws Exception
+    {
+        shards = Arrays.asList(new InMemoryRepository(), new InMemoryRepository());
+        repository = new ShardedRepository(shards, Collections.singletonMap("Sales", 1));
+        repository.connect();
+        repository.addDummyUser("sal001", "9001", "password", "0");
+        repository.addDummyUser("hrs001", "9002", "password", "0");
+        //New employees start in the first shard, and move once their section is set.
+        repository.setSection("9001", "Sales");
+        repository.setSection("9002", "HR");
+    }
+
+    @Test
+    public void employeesAreKeptInTheirSectionsShard()
+    {
+        assertNotNull(repository.getAuthData("sal001"));
+        assertNotNull(shards.get(0).getAuthData("sal001"));
+        assertNotNull(shards.get(1).getPersonalDetails("9001"));
+        assertNull(shards.get(0).getPersonalDetails("9001"));
+        assertNotNull(shards.get(0).getPersonalDetails("9002"));
+        assertNull(shards.get(1).getPersonalDetails("9002"));
+        assertEquals("9001", repository.getPersonalDetails("sal001").getField("Staff No"));
+        assertEquals("Sales", shards.get(0).getSection("9001"));
+    }
+
+    @Test
+    public void reviewsAreRoutedByIdAndMergedAcrossShards()
+    {
+        AnnualReview sales = new AnnualReview();
+        sales.setField("Staff No", "9001");
+        repository.insertAnnualReview(sales);
+        AnnualReview hr = new AnnualReview();
+        hr.setField("Staff No", "9002");
+        repository.insertAnnualReview(hr);
+
+        List<AnnualReview> all = repository.getAllReviews();
+        assertEquals(2, all.size());
+        assertEquals("9002", all.get(0).getField("Staff No"));
+        Integer salesID = all.get(1).getReviewID();
+        assertTrue(salesID >= 10_000_000);
+        assertEquals("9001", repository.getAnnualReview(salesID).getField("Staff No"));
+        assertEquals(1, shards.get(1).getAllReviews().size());
+
+        repository.deleteAnnualReview(salesID);
+        assertTrue(shards.get(1).getAllReviews().isEmpty());
+        assertEquals(1, repository.getAllReviews().size());
+    }
+
+    @Test
+    public void employeesWithReviewsKeepTheirShard()
+    {
+        AnnualReview review = new AnnualReview();
+        review.setField("Staff No", "9002");
+        repository.insertAnnualReview(review);
+        repository.setSection("9002", "Sales");
+        assertNull(shards.get(1).getPersonalDetails("9002"));
+        assertEquals("HR", repository.getSection("9002"));
+        assertEquals(1, repository.getReviews("9002").size());
+    }
+
+    @Test
+    public void reviewsNeedingASecondReviewerAreMergedInOrder()
+    {
+        for (int i = 0; i < 3; i++) {
+            for (String staffNo : new String[] {"9001", "9002"}) {
+                AnnualReview review = new AnnualReview();
+                review.setField("Staff No", staffNo);
+                repository.insertAnnualReview(review);
+            }
+        }
+        List<Integer> reviewIDs =
+                new ArrayList<>(repository.getReviewsNeedingSecondReviewer().keySet());
+        assertEquals(6, reviewIDs.size());
+        for (int i = 1; i < reviewIDs.size(); i++) {
+            assertTrue(reviewIDs.get(i - 1) < reviewIDs.get(i));
+        }
+    }
+
+    @Test
+    public void changesOfEveryShardAreStreamed() throws Exception
+    {
+        ChangeStream stream = new ChangeStream(repository, null, 100);
+        stream.poll();
+        for (String staffNo : new String[] {"9001", "9002"}) {
+            AnnualReview review = new AnnualReview();
+            review.setField("Staff No", staffNo);
+            repository.insertAnnualReview(review);
+        }
+        List<String> keys = new ArrayList<>();
+        for (ChangeEvent change : stream.poll()) {
+            keys.add(change.getKey());
+        }
+        keys.sort(null);
+        assertEquals(Arrays.asList("1", "10000000"), keys);
+
+        ChangeStream resumed = new ChangeStream(repository, stream.getOffsets(), 100);
+        assertTrue(resumed.poll().isEmpty());
+    }
+
+    @Test
+    public void sqliteShardsReserveTheirReviewIDsAndAreBackedUp() throws Exception
+    {
+        Path directory = Files.createTempDirectory("shardedRepository");
+        ShardedRepository sqlite = ShardedRepository.ofSQLite(
+                directory.resolve("hr.db").toString(), Collections.singletonList("Sales"));
+        try {
+            sqlite.connect();
+            try (Connection conn = DriverManager.getConnection(
+                    "jdbc:sqlite:" + directory.resolve("hr-Sales.db"))) {
+                ResultSet rSet = conn.createStatement().executeQuery(
+                        "SELECT seq FROM sqlite_sequence WHERE name = 'AnnualReview'");
+                assertTrue(rSet.next());
+                assertEquals(9_999_999, rSet.getInt(1));
+            }
+            sqlite.setSection("1234", "Sales");
+            AnnualReview review = new AnnualReview();
+            review.setField("Staff No", "1234");
+            sqlite.insertAnnualReview(review);
+            assertEquals(10_000_000, sqlite.getReviews("1234").get(0).getReviewID().intValue());
+
+            DatabaseController.connect(sqlite);
+            List<OnlineBackup> backups =
+                    DatabaseController.startBackup(directory.resolve("backup.db"));
+            assertEquals(2, backups.size());
+            assertEquals(directory.resolve("backup.db"),
+                    backups.get(0).getResult().get(10, TimeUnit.SECONDS));
+            assertEquals(directory.resolve("backup-1.db"),
+                    backups.get(1).getResult().get(10, TimeUnit.SECONDS));
+            assertTrue(Files.exists(directory.resolve("backup-1.db")));
+        } finally {
+            DatabaseController.disconnect();
+            Files.walk(directory).sorted(Comparator.reverseOrder()).forEach((path) -> {
+                path.toFile().delete();
+            });
+        }
+    }
+}
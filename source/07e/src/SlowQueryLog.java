@@ -0,0 +1,130 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Records SQL statements which take longer than a configurable threshold.
+ * The threshold is read from the "yuconz.slowQuery.thresholdMs" system property
+ *  (default 100ms), and a negative threshold disables the log.
+ * Each entry holds the statement, the shape of its parameters, its duration and row count.
+ * The SQLite query plan is captured the first time each statement is found to be slow.
+ * Entries are written to log/SlowQueryLog.txt on a background thread.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class SlowQueryLog {
+    private final static long THRESHOLD_NANOS =
+            Long.getLong("yuconz.slowQuery.thresholdMs", 100) * 1_000_000L;
+    //The query plans already captured, keyed by SQL id.
+    private final static ConcurrentHashMap<String, Boolean> explained = new ConcurrentHashMap<>();
+    private final static ExecutorService writer = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "yuconz-slow-query-log");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Checks whether a statement with the given duration should be logged.
+     * @param nanos How long the statement took, in nanoseconds.
+     * @return Whether the statement exceeded the threshold.
+     */
+    static boolean isSlow(long nanos) {
+        return THRESHOLD_NANOS >= 0 && nanos >= THRESHOLD_NANOS;
+    }
+
+    /**
+     * Logs a slow statement.
+     * The query plan is captured synchronously on the given connection, but only the first
+     *  time a statement is slow. Writing the entry happens on the log's own thread.
+     * @param conn The connection the statement ran on.
+     * @param sqlId The identifier of the statement.
+     * @param sql The SQL of the statement.
+     * @param params The shape of the parameters bound to the statement.
+     * @param nanos How long the statement took, in nanoseconds.
+     * @param rows The number of rows read or changed by the statement.
+     */
+    static void record(Connection conn, String sqlId, String sql, String params,
+                       long nanos, int rows) {
+        long timestamp = System.currentTimeMillis();
+        List<String> plan = null;
+        if (explained.putIfAbsent(sqlId, Boolean.TRUE) == null) {
+            plan = explain(conn, sql);
+        }
+
+        StringBuilder entry = new StringBuilder();
+        entry.append(timestamp).append(',');
+        entry.append(sqlId).append(',');
+        entry.append(String.format("%.3f", nanos / 1e6)).append("ms,");
+        entry.append(rows).append(" rows,");
+        entry.append(params).append('\n');
+        entry.append("    SQL: ").append(sql).append('\n');
+        if (plan != null) {
+            for (String step : plan) {
+                entry.append("    PLAN: ").append(step).append('\n');
+            }
+        }
+        writer.execute(() -> write(entry.toString()));
+    }
+
+    /**
+     * Gets the SQLite query plan for a statement.
+     * Parameters are left unbound, which SQLite treats as NULL when planning.
+     * @param conn The connection to plan the statement on.
+     * @param sql The statement to plan.
+     * @return Each step of the plan, indented by depth.
+     */
+    private static List<String> explain(Connection conn, String sql) {
+        List<String> plan = new ArrayList<>();
+        try (Statement statement = conn.createStatement()) {
+            ResultSet rSet = statement.executeQuery("EXPLAIN QUERY PLAN " + sql);
+            List<Integer> parents = new ArrayList<>();
+            while (rSet.next()) {
+                //Each row's parent is an earlier row, so its depth is one more than the parent's.
+                int id = rSet.getInt("id");
+                int parent = rSet.getInt("parent");
+                int depth = parents.indexOf(parent) + 1;
+                while (parents.size() > depth) {
+                    parents.remove(parents.size() - 1);
+                }
+                parents.add(id);
+                StringBuilder step = new StringBuilder();
+                for (int i = 0; i < depth; i++) {
+                    step.append("  ");
+                }
+                plan.add(step.append(rSet.getString("detail")).toString());
+            }
+        } catch (SQLException e) {
+            plan.add("Could not explain statement: " + e.getMessage());
+        }
+        return plan;
+    }
+
+    /**
+     * Appends an entry to the slow query log.
+     * If the log file cannot be found at the expected location,
+     *  create the file before appending this entry.
+     * @param entry The entry to append.
+     */
+    private static void write(String entry) {
+        File path = new File("log/SlowQueryLog.txt").getAbsoluteFile();
+        //Make the log directory if it doesn't already exist
+        path.getParentFile().mkdirs();
+        try {
+            Files.write(path.toPath(), entry.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("IOException when writing to the slow query log.");
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A prepared statement which measures how long it spends inside the database.
+ * Only time spent executing the statement and stepping through its results is counted,
+ *  so work done by the caller between rows (such as loading related records) is excluded.
+ * The measurement is recorded when the probe is closed, both as a metric and as a
+ *  DatabaseStatementEvent for Flight Recorder. Statements slower than the configured
+ *  threshold are also written to the SlowQueryLog, and each statement is a span in the
+ *  current trace.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class StatementProbe implements AutoCloseable {
+    //The number of statements currently open across all threads.
+    private final static AtomicInteger activeStatements = new AtomicInteger();
+    private final Connection conn;
+    private final String sqlId;
+    private final String sql;
+    private final PreparedStatement statement;
+    private final DatabaseStatementEvent event = new DatabaseStatementEvent();
+    private final Tracer.Span span;
+    private long elapsed;
+    private int rows;
+    //The kind ('S'tring, 'I'nteger, 'D'ate or 'N'ull) and length of each bound parameter,
+    // indexed from 1. Only the shape of each parameter is kept, never its value.
+    private char[] paramKinds = new char[8];
+    private int[] paramLengths = new int[8];
+
+    private StatementProbe(Connection conn, String sqlId, String sql,
+                           PreparedStatement statement) {
+        this.conn = conn;
+        this.sqlId = sqlId;
+        this.sql = sql;
+        this.statement = statement;
+        activeStatements.incrementAndGet();
+        event.begin();
+        span = Tracer.leafSpan(sqlId);
+    }
+
+    /**
+     * Prepares a statement on the given connection.
+     * @param conn The connection to prepare the statement on.
+     * @param sqlId A short, stable name for the statement, used when reporting on it.
+     * @param sql The SQL of the statement.
+     * @return A probe wrapping the prepared statement.
+     * @throws SQLException If the statement could not be prepared.
+     */
+    static StatementProbe prepare(Connection conn, String sqlId, String sql)
+            throws SQLException {
+        return new StatementProbe(conn, sqlId, sql, conn.prepareStatement(sql));
+    }
+
+    /**
+     * Returns how many statements are currently open.
+     * @return The number of open statements.
+     */
+    static int activeStatements() {
+        return activeStatements.get();
+    }
+
+    void setString(int index, String value) throws SQLException {
+        statement.setString(index, value);
+        if (value == null) {
+            recordParam(index, 'N', 0);
+        } else {
+            recordParam(index, 'S', value.length());
+        }
+    }
+
+    void setInt(int index, int value) throws SQLException {
+        statement.setInt(index, value);
+        recordParam(index, 'I', 0);
+    }
+
+    void setLong(int index, long value) throws SQLException {
+        statement.setLong(index, value);
+        recordParam(index, 'I', 0);
+    }
+
+    void setNull(int index, int sqlType) throws SQLException {
+        statement.setNull(index, sqlType);
+        recordParam(index, 'N', 0);
+    }
+
+    void setDate(int index, Date value) throws SQLException {
+        statement.setDate(index, value);
+        recordParam(index, value == null ? 'N' : 'D', 0);
+    }
+
+    private void recordParam(int index, char kind, int length) {
+        if (index >= paramKinds.length) {
+            paramKinds = Arrays.copyOf(paramKinds, index * 2);
+            paramLengths = Arrays.copyOf(paramLengths, index * 2);
+        }
+        paramKinds[index] = kind;
+        paramLengths[index] = length;
+    }
+
+    /**
+     * Describes the shape of the parameters currently bound to this statement.
+     * e.g. [VARCHAR(6), INTEGER, NULL]
+     * @return The type of each bound parameter, and the length of any strings.
+     */
+    String describeParams() {
+        StringBuilder shapes = new StringBuilder("[");
+        for (int i = 1; i < paramKinds.length; i++) {
+            if (paramKinds[i] == 0) {
+                continue;
+            }
+            if (shapes.length() > 1) {
+                shapes.append(", ");
+            }
+            switch (paramKinds[i]) {
+                case 'S':
+                    shapes.append("VARCHAR(").append(paramLengths[i]).append(')');
+                    break;
+                case 'I':
+                    shapes.append("INTEGER");
+                    break;
+                case 'D':
+                    shapes.append("DATE");
+                    break;
+                default:
+                    shapes.append("NULL");
+                    break;
+            }
+        }
+        return shapes.append(']').toString();
+    }
+
+    /**
+     * Executes the statement as a query.
+     * Rows should be read with next(ResultSet) so that they are included in the measurement.
+     * @return The results of the query.
+     * @throws SQLException If the query failed.
+     */
+    ResultSet executeQuery() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return statement.executeQuery();
+        } finally {
+            elapsed += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Moves to the next row of the given results.
+     * @param rSet The results returned by executeQuery.
+     * @return Whether there was another row.
+     * @throws SQLException If the next row could not be read.
+     */
+    boolean next(ResultSet rSet) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            boolean hasNext = rSet.next();
+            if (hasNext) {
+                rows++;
+            }
+            return hasNext;
+        } finally {
+            elapsed += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Executes the statement as an insert, update or delete.
+     * @return The number of rows changed.
+     * @throws SQLException If the statement failed.
+     */
+    int execute() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int changed = statement.executeUpdate();
+            rows += changed;
+            return changed;
+        } finally {
+            elapsed += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Adds the current parameters to the batch, to be executed together by executeBatch.
+     * @throws SQLException If the parameters could not be added.
+     */
+    void addBatch() throws SQLException {
+        statement.addBatch();
+    }
+
+    /**
+     * Executes every batch of parameters added so far.
+     * @return The number of rows changed by each batch.
+     * @throws SQLException If the statement failed.
+     */
+    int[] executeBatch() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int[] changed = statement.executeBatch();
+            for (int count : changed) {
+                rows += Math.max(count, 0);
+            }
+            return changed;
+        } finally {
+            elapsed += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Closes the statement and records the time it spent in the database.
+     * @throws SQLException If the statement could not be closed.
+     */
+    @Override
+    public void close() throws SQLException {
+        activeStatements.decrementAndGet();
+        AppMetrics.recordQuery(sqlId, elapsed);
+        event.end();
+        if (event.shouldCommit()) {
+            event.sqlId = sqlId;
+            event.rows = rows;
+            event.databaseTime = elapsed;
+            event.commit();
+        }
+        span.tag("db.rows", rows).tag("db.time_us", elapsed / 1000).close();
+        statement.close();
+        if (SlowQueryLog.isSlow(elapsed)) {
+            SlowQueryLog.record(conn, sqlId, sql, describeParams(), elapsed, rows);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Lightweight tracing of user actions down to individual SQL statements.
+ * A trace is started for each user action, and spans are opened as a child of whichever
+ *  span is currently open on the same thread.
+ * Traces are sampled at the rate given by the "yuconz.trace.sampleRate" system property
+ *  (between 0 and 1, default 0). Unsampled traces cost one ThreadLocal lookup per span.
+ * Sampled traces are written to log/Traces.json on a background thread, one trace per line,
+ *  each line being a JSON array of spans in the Zipkin v2 format.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class Tracer {
+    private final static double SAMPLE_RATE =
+            Double.parseDouble(System.getProperty("yuconz.trace.sampleRate", "0"));
+    private final static Span NOOP = new Span(null, null, null, true);
+    private final static ThreadLocal<Span> current = new ThreadLocal<>();
+    private final static ExecutorService writer = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "yuconz-tracer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Starts a new trace for a user action, and makes its root span the current span.
+     * If a span is already open on this thread, a child span is started instead.
+     * @param name The name of the user action.
+     * @return The root span of the trace, which must be closed when the action ends.
+     */
+    static Span startTrace(String name) {
+        Span parent = current.get();
+        if (parent != null) {
+            return parent.child(name, false);
+        }
+        if (SAMPLE_RATE <= 0 || ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE) {
+            return NOOP;
+        }
+        Span root = new Span(new Trace(), null, name, false);
+        current.set(root);
+        return root;
+    }
+
+    /**
+     * Starts a span as a child of the current span.
+     * If there is no sampled trace on this thread, a span which records nothing is returned.
+     * @param name The name of the operation.
+     * @return The new span, which must be closed when the operation ends.
+     */
+    static Span span(String name) {
+        Span parent = current.get();
+        if (parent == null) {
+            return NOOP;
+        }
+        return parent.child(name, false);
+    }
+
+    /**
+     * Starts a span as a child of the current span, without making it the current span.
+     * Used for operations which never open spans of their own, such as SQL statements.
+     * @param name The name of the operation.
+     * @return The new span, which must be closed when the operation ends.
+     */
+    static Span leafSpan(String name) {
+        Span parent = current.get();
+        if (parent == null) {
+            return NOOP;
+        }
+        return parent.child(name, true);
+    }
+
+    /**
+     * Wraps a task so that, on whichever thread runs it, its spans are children of the span
+     *  which is current on this thread now.
+     * @param task The task to run in the current trace.
+     * @param <T> The type of the task's result.
+     * @return The wrapped task.
+     */
+    static <T> Supplier<T> inCurrentTrace(Supplier<T> task) {
+        Span parent = current.get();
+        if (parent == null) {
+            return task;
+        }
+        return () -> {
+            Span previous = current.get();
+            current.set(parent);
+            try {
+                return task.get();
+            } finally {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        };
+    }
+
+    private static String newId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Appends a finished trace to the trace file.
+     * @param json The trace as a JSON array of spans.
+     */
+    private static void write(String json) {
+        File path = new File("log/Traces.json").getAbsoluteFile();
+        //Make the log directory if it doesn't already exist
+        path.getParentFile().mkdirs();
+        try {
+            Files.write(path.toPath(), (json + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("IOException when writing a trace.");
+        }
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * The spans of a single trace, collected until the root span closes.
+     */
+    private static class Trace {
+        private final String traceId = newId();
+        //Span timestamps are offsets from this instant, so they have microsecond precision.
+        private final long epochMicros = System.currentTimeMillis() * 1000;
+        private final long epochNanos = System.nanoTime();
+        private final ConcurrentLinkedQueue<Span> finished = new ConcurrentLinkedQueue<>();
+
+        String toJson() {
+            StringBuilder json = new StringBuilder("[");
+            for (Span span : finished) {
+                if (json.length() > 1) {
+                    json.append(',');
+                }
+                span.appendJson(json);
+            }
+            return json.append(']').toString();
+        }
+    }
+
+    /**
+     * A timed operation within a trace.
+     */
+    static class Span implements AutoCloseable {
+        private final Trace trace;
+        private final Span parent;
+        private final String id;
+        private final String name;
+        private final boolean leaf;
+        private final long timestampMicros;
+        private final long start;
+        private long durationMicros;
+        private Map<String, String> tags;
+
+        private Span(Trace trace, Span parent, String name, boolean leaf) {
+            this.trace = trace;
+            this.parent = parent;
+            this.name = name;
+            this.leaf = leaf;
+            if (trace != null) {
+                id = newId();
+                start = System.nanoTime();
+                timestampMicros = trace.epochMicros + (start - trace.epochNanos) / 1000;
+            } else {
+                id = null;
+                timestampMicros = 0;
+                start = 0;
+            }
+        }
+
+        private Span child(String name, boolean leaf) {
+            Span child = new Span(trace, this, name, leaf);
+            if (!leaf) {
+                current.set(child);
+            }
+            return child;
+        }
+
+        /**
+         * Attaches a tag to this span.
+         * @param key The name of the tag.
+         * @param value The value of the tag.
+         * @return This span.
+         */
+        Span tag(String key, Object value) {
+            if (trace != null) {
+                if (tags == null) {
+                    tags = new TreeMap<>();
+                }
+                tags.put(key, String.valueOf(value));
+            }
+            return this;
+        }
+
+        /**
+         * Ends this span and makes its parent the current span.
+         * Closing the root span writes the whole trace.
+         */
+        @Override
+        public void close() {
+            if (trace == null) {
+                return;
+            }
+            durationMicros = Math.max(1, (System.nanoTime() - start) / 1000);
+            trace.finished.add(this);
+            if (parent == null) {
+                current.remove();
+                String json = trace.toJson();
+                writer.execute(() -> write(json));
+            } else if (!leaf) {
+                current.set(parent);
+            }
+        }
+
+        private void appendJson(StringBuilder json) {
+            json.append("{\"traceId\":\"").append(trace.traceId);
+            json.append("\",\"id\":\"").append(id).append('"');
+            if (parent != null) {
+                json.append(",\"parentId\":\"").append(parent.id).append('"');
+            }
+            json.append(",\"name\":");
+            appendJsonString(json, name);
+            json.append(",\"timestamp\":").append(timestampMicros);
+            json.append(",\"duration\":").append(durationMicros);
+            json.append(",\"localEndpoint\":{\"serviceName\":\"yuconz\"}");
+            if (tags != null) {
+                json.append(",\"tags\":{");
+                boolean first = true;
+                for (Map.Entry<String, String> tag : tags.entrySet()) {
+                    if (!first) {
+                        json.append(',');
+                    }
+                    first = false;
+                    appendJsonString(json, tag.getKey());
+                    json.append(':');
+                    appendJsonString(json, tag.getValue());
+                }
+                json.append('}');
+            }
+            json.append('}');
+        }
+    }
+}
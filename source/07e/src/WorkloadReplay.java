@@ -0,0 +1,357 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the logins and permission checks recorded in the audit logs against a test database.
+ * Each authentication record is replayed with Authenticator.authenticate, and each
+ *  authorisation record with Authoriser.getAuthorisation, followed by the DatabaseController
+ *  reads the AppController makes when that action is authorised.
+ * Passwords aren't in the logs, so the stored password is used for logins that succeeded,
+ *  and a wrong one for logins that failed.
+ * Records can be replayed at their original pacing, scaled by a speed factor,
+ *  or as fast as possible. The time taken by each kind of call is reported at the end,
+ *  along with how many outcomes differed from the original.
+ * @author Untitled Solutions
+ * @version 20261019
+ */
+class WorkloadReplay {
+    private final double speed;
+    private final HashMap<String, Session> sessions = new HashMap<>();
+    private final HashMap<String, String> passwords = new HashMap<>();
+    private final TreeMap<String, List<Long>> timings = new TreeMap<>();
+    private long replayed;
+    private long mismatches;
+
+    /**
+     * Creates a replay.
+     * @param speed How many times faster than the original to replay, or 0 for as fast as possible.
+     */
+    WorkloadReplay(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Reads the authentication and authorisation records between the given times,
+     *  merged into the order they originally happened.
+     * @param authentication The authentication log.
+     * @param authorisation The authorisation log.
+     * @param from The earliest timestamp to replay.
+     * @param to The latest timestamp to replay.
+     * @return The records in timestamp order.
+     * @throws IOException If either log could not be read.
+     */
+    static List<String[]> load(AuditLog authentication, AuditLog authorisation, long from, long to)
+            throws IOException {
+        List<String[]> records = new ArrayList<>();
+        for (AuditLog log : Arrays.asList(authentication, authorisation)) {
+            log.read(from, to, (line) -> {
+                String[] fields = line.split(",", -1);
+                if (isReplayable(fields)) {
+                    long timestamp = Long.parseLong(fields[0]);
+                    if (timestamp >= from && timestamp <= to) {
+                        records.add(fields);
+                    }
+                }
+            });
+        }
+        //A stable sort keeps logins ahead of the checks made in the same millisecond.
+        records.sort(Comparator.comparingLong((fields) -> Long.parseLong(fields[0])));
+        return records;
+    }
+
+    /**
+     * Checks that a record is a well-formed authentication or authorisation record.
+     * @param fields The fields of the record.
+     * @return Whether the record can be replayed.
+     */
+    private static boolean isReplayable(String[] fields) {
+        if (!fields[0].matches("\\d+") || Role.fromTitle(fields[2]) == null) {
+            return false;
+        }
+        try {
+            if (fields.length == 4) {
+                ExitCode.valueOf(fields[3]);
+                return true;
+            } else if (fields.length == 6) {
+                Permission.valueOf(fields[3]);
+                return true;
+            }
+        } catch (IllegalArgumentException e) {
+            //Not a permission or exit code this version knows about.
+        }
+        return false;
+    }
+
+    /**
+     * Replays the given records in order, pacing them as configured.
+     * @param records The records to replay, in timestamp order.
+     */
+    void replay(List<String[]> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        long firstTimestamp = Long.parseLong(records.get(0)[0]);
+        long start = System.nanoTime();
+        for (String[] fields : records) {
+            if (speed > 0) {
+                long due = start + (long) (TimeUnit.MILLISECONDS.toNanos(
+                        Long.parseLong(fields[0]) - firstTimestamp) / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            if (fields.length == 4) {
+                replayAuthentication(fields);
+            } else {
+                replayAuthorisation(fields);
+            }
+            replayed++;
+        }
+        for (Session session : sessions.values()) {
+            Authenticator.logout(session);
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Replays a record of the form timestamp, username, role, exitCode.
+     * @param fields The fields of the record.
+     */
+    private void replayAuthentication(String[] fields) {
+        String username = fields[1];
+        Role role = Role.fromTitle(fields[2]);
+        ExitCode original = ExitCode.valueOf(fields[3]);
+        String key = username + "," + fields[2];
+        if (original == ExitCode.LOGGED_OUT) {
+            Session session = sessions.remove(key);
+            if (session != null) {
+                long start = System.nanoTime();
+                Authenticator.logout(session);
+                record("Authenticator.logout", start);
+            }
+            return;
+        }
+        String password = passwords.computeIfAbsent(username, (name) -> {
+            String[] authData = DatabaseController.getAuthData(name);
+            return authData == null ? "" : authData[0];
+        });
+        if (original == ExitCode.INVALID_LOGIN) {
+            password += "\u0000";
+        }
+        long start = System.nanoTime();
+        Session session = Authenticator.authenticate(username, password, role);
+        record("Authenticator.authenticate", start);
+        if (session.getExitCode() != original) {
+            mismatches++;
+        }
+        if (session.getExitCode() == ExitCode.LOGIN_SUCCESS) {
+            Session previous = sessions.put(key, session);
+            if (previous != null) {
+                Authenticator.logout(previous);
+            }
+        } else {
+            Authenticator.logout(session);
+        }
+    }
+
+    /**
+     * Replays a record of the form timestamp, username, role, permission, targetUser, result,
+     *  followed by the reads the AppController makes when the permission is granted.
+     * Checks made by users who logged in before the replayed records began are
+     *  given a session of their own.
+     * @param fields The fields of the record.
+     */
+    private void replayAuthorisation(String[] fields) {
+        String username = fields[1];
+        Role role = Role.fromTitle(fields[2]);
+        Permission permission = Permission.valueOf(fields[3]);
+        String targetUser = fields[4];
+        Session session = sessions.computeIfAbsent(username + "," + fields[2], (key) ->
+                new Session(Long.parseLong(fields[0]), username, role, ExitCode.LOGIN_SUCCESS));
+
+        if (permission == Permission.SIGN_ANNUAL_REVIEW && role == Role.REVIEWER) {
+            //Reviewers choose who to sign off from their list of reviewees first.
+            long start = System.nanoTime();
+            DatabaseController.listReviewees(username);
+            record("reads." + permission.name(), start);
+        }
+        long start = System.nanoTime();
+        boolean granted = Authoriser.getAuthorisation(session, permission, targetUser);
+        record("Authoriser.getAuthorisation", start);
+        if (granted != fields[5].equals("Authorised")) {
+            mismatches++;
+        }
+        if (granted) {
+            start = System.nanoTime();
+            impliedReads(permission, username, targetUser);
+            record("reads." + permission.name(), start);
+        }
+    }
+
+    /**
+     * Makes the DatabaseController reads the AppController makes once the action is authorised.
+     * Writes are not replayed, so the test database is left unchanged.
+     * @param permission The action that was authorised.
+     * @param username The user performing the action.
+     * @param targetUser The user the action was performed on.
+     */
+    private static void impliedReads(Permission permission, String username, String targetUser) {
+        switch (permission) {
+            case READ_PERSONAL_DETAILS: case AMEND_PERSONAL_DETAILS:
+            case HR_READ_PERSONAL_DETAILS: case HR_AMEND_PERSONAL_DETAILS:
+            case CREATE_PERSONAL_DETAILS:
+                DatabaseController.getPersonalDetails(targetUser);
+                break;
+            case CREATE_ANNUAL_REVIEW: case MANAGER_READ_ANNUAL_REVIEW:
+                DatabaseController.getReviews(targetUser);
+                break;
+            case READ_CURRENT_ANNUAL_REVIEW: case REVIEWER_READ_CURRENT_ANNUAL_REVIEW:
+            case REVIEWER_AMEND_ANNUAL_REVIEW:
+                DatabaseController.getUnfinishedReview(targetUser);
+                break;
+            case READ_PAST_ANNUAL_REVIEW: case REVIEWER_READ_PAST_ANNUAL_REVIEW:
+                DatabaseController.getPastReviews(targetUser);
+                break;
+            case SIGN_ANNUAL_REVIEW:
+                DatabaseController.getUnfinishedReview(targetUser);
+                DatabaseController.getStaffNo(username.equals(targetUser) ? targetUser : username);
+                break;
+            default:
+                //The review read by READ_ANY_ANNUAL_REVIEW is chosen by the user, and isn't logged.
+                break;
+        }
+    }
+
+    private void record(String operation, long start) {
+        timings.computeIfAbsent(operation, (key) -> new ArrayList<>()).add(System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the number of records replayed.
+     * @return The number of records replayed.
+     */
+    long getReplayed() {
+        return replayed;
+    }
+
+    /**
+     * Returns the number of replayed calls whose outcome differed from the original.
+     * @return The number of differing outcomes.
+     */
+    long getMismatches() {
+        return mismatches;
+    }
+
+    /**
+     * Returns the time taken by each call made, in nanoseconds, grouped by the kind of call.
+     * @return The timings of each kind of call.
+     */
+    Map<String, List<Long>> getTimings() {
+        return timings;
+    }
+
+    /**
+     * Prints the count, mean and percentiles of the time taken by each kind of call.
+     * @param elapsedNanos How long the whole replay took.
+     */
+    void printReport(long elapsedNanos) {
+        System.out.printf("Replayed %d records in %.1fms (%.0f records/s), %d outcomes differed.%n",
+                replayed, elapsedNanos / 1e6, replayed / (elapsedNanos / 1e9), mismatches);
+        System.out.printf("%-45s %8s %10s %10s %10s %10s%n",
+                "operation", "count", "mean(us)", "p50(us)", "p99(us)", "max(us)");
+        for (Map.Entry<String, List<Long>> entry : timings.entrySet()) {
+            long[] sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%-45s %8d %10.1f %10.1f %10.1f %10.1f%n", entry.getKey(),
+                    sorted.length, Arrays.stream(sorted).average().orElse(0) / 1e3,
+                    sorted[(sorted.length - 1) / 2] / 1e3,
+                    sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1e3,
+                    sorted[sorted.length - 1] / 1e3);
+        }
+    }
+
+    /**
+     * Runs the replay maintenance tool.
+     * The database to replay against must be given, so that the live database is never used.
+     * The audit records made while replaying are written to a separate directory,
+     *  so the logs being replayed are left unchanged.
+     * @param args The options for the replay.
+     */
+    static void runTool(String[] args) {
+        String database = null;
+        String logs = "log";
+        String auditDir = null;
+        double speed = 0;
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--db":
+                    database = args[i + 1];
+                    break;
+                case "--logs":
+                    logs = args[i + 1];
+                    break;
+                case "--audit-dir":
+                    auditDir = args[i + 1];
+                    break;
+                case "--speed":
+                    speed = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--from":
+                    from = AuditLogIndex.parseTime(args[i + 1], false);
+                    break;
+                case "--to":
+                    to = AuditLogIndex.parseTime(args[i + 1], true);
+                    break;
+                default:
+                    System.out.println("Unknown option " + args[i]);
+                    return;
+            }
+        }
+        if (database == null || args.length % 2 != 0) {
+            System.out.println("Usage: replay --db TEST_DATABASE [--logs DIR] [--audit-dir DIR] " +
+                    "[--speed FACTOR (0 for as fast as possible)] [--from DATE] [--to DATE]");
+            return;
+        }
+        try {
+            if (auditDir == null) {
+                auditDir = Files.createTempDirectory("yuconz-replay").toString();
+            }
+            //Must be set before the audit logs are first used.
+            System.setProperty("yuconz.audit.dir", auditDir);
+            System.setProperty("yuconz.db.path", database);
+            File logDir = new File(logs);
+            List<String[]> records = load(
+                    new AuditLog("AuthenticationLog", logDir, Long.MAX_VALUE, Long.MAX_VALUE, 0,
+                            false),
+                    new AuditLog("AuthorisationLog", logDir, Long.MAX_VALUE, Long.MAX_VALUE, 0,
+                            false),
+                    from, to);
+            DatabaseController.connect();
+            WorkloadReplay replay = new WorkloadReplay(speed);
+            long start = System.nanoTime();
+            replay.replay(records);
+            replay.printReport(System.nanoTime() - start);
+            System.out.println("Audit records from the replay were written to " + auditDir);
+        } catch (IOException e) {
+            System.out.println("Could not replay the audit logs: " + e.getMessage());
+        } finally {
+            DatabaseController.disconnect();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+public class WorkloadReplayTests
+{
+    private Path directory;
+    private AuditLog authentication;
+    private AuditLog authorisation;
+
+    public WorkloadReplayTests()
+    {
+    }
+
+    @Before
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("replay");
+        authentication = new AuditLog("AuthenticationLog", directory.toFile(), Long.MAX_VALUE,
+                Long.MAX_VALUE, 0, false);
+        authorisation = new AuditLog("AuthorisationLog", directory.toFile(), Long.MAX_VALUE,
+                Long.MAX_VALUE, 0, false);
+        authentication.append("1000,abc123,User,LOGIN_SUCCESS");
+        authentication.append("4000,zzz987,HR Employee,INVALID_LOGIN");
+        authorisation.append("1000,abc123,User,READ_PERSONAL_DETAILS,abc123,Authorised");
+        authorisation.append("3000,abc123,User,AMEND_PERSONAL_DETAILS,abc123,Authorised");
+        authorisation.append("5000,abc123,Intern,READ_PERSONAL_DETAILS,abc123,Authorised");
+        authorisation.append("6000,abc123,User,UNKNOWN_PERMISSION,abc123,Authorised");
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        Files.walk(directory).sorted(Comparator.reverseOrder()).forEach((path) -> {
+            path.toFile().delete();
+        });
+    }
+
+    @Test
+    public void recordsAreMergedInTimestampOrder() throws IOException
+    {
+        List<String[]> records = WorkloadReplay.load(authentication, authorisation,
+                Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(4, records.size());
+        //The login comes before the check made in the same millisecond.
+        assertEquals("LOGIN_SUCCESS", records.get(0)[3]);
+        assertEquals("READ_PERSONAL_DETAILS", records.get(1)[3]);
+        assertEquals("AMEND_PERSONAL_DETAILS", records.get(2)[3]);
+        assertEquals("INVALID_LOGIN", records.get(3)[3]);
+    }
+
+    @Test
+    public void recordsOutsideTheRangeAreSkipped() throws IOException
+    {
+        List<String[]> records = WorkloadReplay.load(authentication, authorisation, 2000, 4000);
+        assertEquals(2, records.size());
+        assertEquals("3000", records.get(0)[0]);
+        assertEquals("4000", records.get(1)[0]);
+    }
+}